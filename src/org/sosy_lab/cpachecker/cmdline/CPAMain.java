@@ -51,6 +51,7 @@ import org.sosy_lab.cpachecker.core.CPAcheckerResult;
 import org.sosy_lab.cpachecker.core.ShutdownNotifier;
 import org.sosy_lab.cpachecker.core.ShutdownNotifier.ShutdownRequestListener;
 import org.sosy_lab.cpachecker.core.algorithm.ProofGenerator;
+import org.sosy_lab.cpachecker.util.CPAs;
 import org.sosy_lab.cpachecker.util.resources.ResourceLimitChecker;
 
 import com.google.common.base.Strings;
@@ -146,6 +147,11 @@ public class CPAMain {
       logManager.logUserException(Level.WARNING, e, "Could not write statistics to file");
     }
 
+    if (result.getReached() != null) {
+      // e.g., delete temporary files of the reached set
+      CPAs.closeReachedSetIfPossible(result.getReached(), logManager);
+    }
+
     System.out.flush();
     System.err.flush();
     logManager.flush();
@@ -124,6 +124,7 @@ class CmdLineArguments {
           || handleArgument1("-entryfunction", "analysis.entryFunction",  arg, argsIt, properties)
           || handleArgument1("-config",        CONFIGURATION_FILE_OPTION, arg, argsIt, properties)
           || handleArgument1("-timelimit",     "limits.time.cpu", arg, argsIt, properties)
+          || handleArgument1("-resume",        "analysis.checkpoint.resume", arg, argsIt, properties)
           || handleArgument1("-sourcepath",    "java.sourcepath",         arg, argsIt, properties)
           || handleArgument1("-cp",            "java.classpath",          arg, argsIt, properties)
           || handleArgument1("-classpath",     "java.classpath",          arg, argsIt, properties)
@@ -260,6 +261,7 @@ class CmdLineArguments {
     System.out.println(" -logfile");
     System.out.println(" -entryfunction");
     System.out.println(" -timelimit");
+    System.out.println(" -resume");
     System.out.println(" -cbmc");
     System.out.println(" -stats");
     System.out.println(" -nolog");
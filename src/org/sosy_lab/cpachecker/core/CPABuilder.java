@@ -145,7 +145,12 @@ public class CPABuilder {
       }
     }
 
-    return buildCPAs(cpaName, CPA_OPTION_NAME, usedAliases, cpas, cfa);
+    ConfigurableProgramAnalysis cpa = buildCPAs(cpaName, CPA_OPTION_NAME, usedAliases, cpas, cfa);
+
+    if (reachedSetFactory != null) {
+      reachedSetFactory.checkCompatibility(cpa);
+    }
+    return cpa;
   }
 
   private Scope createScope(CFA cfa) {
@@ -61,10 +61,12 @@ import org.sosy_lab.cpachecker.core.interfaces.ConfigurableProgramAnalysis;
 import org.sosy_lab.cpachecker.core.interfaces.Precision;
 import org.sosy_lab.cpachecker.core.interfaces.Targetable;
 import org.sosy_lab.cpachecker.core.reachedset.ReachedSet;
+import org.sosy_lab.cpachecker.core.reachedset.ReachedSetCheckpointer;
 import org.sosy_lab.cpachecker.exceptions.CPAException;
 import org.sosy_lab.cpachecker.exceptions.ParserException;
 import org.sosy_lab.cpachecker.util.automaton.TargetLocationProvider;
 import org.sosy_lab.cpachecker.util.globalinfo.GlobalInfo;
+import org.sosy_lab.cpachecker.util.statistics.TelemetryExporter;
 
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
@@ -130,6 +132,7 @@ public class CPAchecker {
   private final Configuration config;
   private final ShutdownNotifier shutdownNotifier;
   private final CoreComponentsFactory factory;
+  private final TelemetryExporter telemetry;
 
   // The content of this String is read from a file that is created by the
   // ant task "init".
@@ -169,6 +172,7 @@ public class CPAchecker {
 
     config.inject(this);
     factory = new CoreComponentsFactory(pConfiguration, pLogManager, shutdownNotifier);
+    telemetry = new TelemetryExporter(pConfiguration, pLogManager);
   }
 
   public CPAcheckerResult run(String programDenotation) {
@@ -209,12 +213,25 @@ public class CPAchecker {
 
         algorithm = factory.createAlgorithm(cpa, programDenotation, cfa, stats);
 
-        if (algorithm instanceof ImpactAlgorithm) {
+        ReachedSetCheckpointer checkpointer = new ReachedSetCheckpointer(config, logger);
+        if (checkpointer.isEnabled()) {
+          stats.addIterationListener(checkpointer);
+        }
+        if (checkpointer.isEnabled() || checkpointer.shouldResume()) {
+          stats.getSubStatistics().add(checkpointer);
+        }
+
+        if (checkpointer.shouldResume()) {
+          checkpointer.restore(reached);
+        } else if (algorithm instanceof ImpactAlgorithm) {
           ImpactAlgorithm mcmillan = (ImpactAlgorithm)algorithm;
           reached.add(mcmillan.getInitialState(cfa.getMainFunction()), mcmillan.getInitialPrecision(cfa.getMainFunction()));
         } else {
           initializeReachedSet(reached, cpa, cfa.getMainFunction(), cfa);
         }
+        if (checkpointer.isEnabled()) {
+          checkpointer.checkCompatibility(reached);
+        }
       }
 
       printConfigurationWarnings();
@@ -332,6 +349,7 @@ public class CPAchecker {
 
     // register management interface for CPAchecker
     CPAcheckerBean mxbean = new CPAcheckerBean(reached, logger, shutdownNotifier);
+    telemetry.start();
 
     stats.startAnalysisTimer();
     try {
@@ -351,6 +369,7 @@ public class CPAchecker {
 
       // unregister management interface for CPAchecker
       mxbean.unregister();
+      telemetry.stop();
     }
   }
 
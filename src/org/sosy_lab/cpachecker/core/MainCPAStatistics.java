@@ -65,6 +65,7 @@ import org.sosy_lab.cpachecker.core.reachedset.ForwardingReachedSet;
 import org.sosy_lab.cpachecker.core.reachedset.LocationMappedReachedSet;
 import org.sosy_lab.cpachecker.core.reachedset.PartitionedReachedSet;
 import org.sosy_lab.cpachecker.core.reachedset.ReachedSet;
+import org.sosy_lab.cpachecker.core.reachedset.SpillingPartitionedReachedSet;
 import org.sosy_lab.cpachecker.util.CFAUtils;
 import org.sosy_lab.cpachecker.util.coverage.CoverageInformation;
 import org.sosy_lab.cpachecker.util.resources.MemoryStatistics;
@@ -113,6 +114,7 @@ class MainCPAStatistics implements Statistics, AlgorithmIterationListener {
   private Thread memStatsThread;
 
   private Collection<IterationStatistics> iterationStats;
+  private final Collection<AlgorithmIterationListener> iterationListeners = new ArrayList<>();
 
   private final Timer programTime = new Timer();
   final Timer creationTime = new Timer();
@@ -163,6 +165,14 @@ class MainCPAStatistics implements Statistics, AlgorithmIterationListener {
     return subStats;
   }
 
+  /**
+   * Register a listener that is notified after each iteration
+   * of the main CPA algorithm.
+   */
+  public void addIterationListener(AlgorithmIterationListener pListener) {
+    iterationListeners.add(pListener);
+  }
+
   @Override
   public String getName() {
     return "CPAchecker";
@@ -326,6 +336,13 @@ class MainCPAStatistics implements Statistics, AlgorithmIterationListener {
         out.println("  Size of final wait list        " + reached.getWaitlistSize());
       }
     }
+
+    if (reached instanceof PartitionedReachedSet && ((PartitionedReachedSet)reached).hasCoverageIndex()) {
+      ((PartitionedReachedSet)reached).printCoverageIndexStatistics(out);
+    }
+    if (reached instanceof SpillingPartitionedReachedSet) {
+      ((SpillingPartitionedReachedSet)reached).printStatistics(out);
+    }
   }
 
   private void printReachedSetStatisticsDetails(ReachedSet reached, PrintStream out) {
@@ -455,5 +472,9 @@ class MainCPAStatistics implements Statistics, AlgorithmIterationListener {
     for(IterationStatistics s: iterationStats) {
       s.printIterationStatistics(System.out, pReached);
     }
+
+    for (AlgorithmIterationListener listener : iterationListeners) {
+      listener.afterAlgorithmIteration(pAlg, pReached);
+    }
   }
 }
@@ -46,6 +46,7 @@ import org.sosy_lab.common.configuration.Options;
 import org.sosy_lab.common.log.LogManager;
 import org.sosy_lab.common.time.Timer;
 import org.sosy_lab.cpachecker.core.CPAcheckerResult.Result;
+import org.sosy_lab.cpachecker.core.interfaces.BatchRefiner;
 import org.sosy_lab.cpachecker.core.interfaces.ConfigurableProgramAnalysis;
 import org.sosy_lab.cpachecker.core.interfaces.Refiner;
 import org.sosy_lab.cpachecker.core.interfaces.Statistics;
@@ -58,6 +59,7 @@ import org.sosy_lab.cpachecker.cpa.value.refiner.UnsoundRefiner;
 import org.sosy_lab.cpachecker.exceptions.CPAException;
 import org.sosy_lab.cpachecker.exceptions.InvalidComponentException;
 import org.sosy_lab.cpachecker.exceptions.RefinementFailedException;
+import org.sosy_lab.cpachecker.util.CPAs;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
@@ -65,7 +67,7 @@ import com.google.common.base.Throwables;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 @Options(prefix="cegar")
-public class CEGARAlgorithm implements Algorithm, StatisticsProvider {
+public class CEGARAlgorithm implements Algorithm, StatisticsProvider, AutoCloseable {
 
   private static class CEGARStatistics implements Statistics {
 
@@ -240,6 +242,14 @@ public class CEGARAlgorithm implements Algorithm, StatisticsProvider {
         // run algorithm
         isComplete &= algorithm.run(reached);
 
+        // collect more target states before refining if the refiner wants it
+        if (isBatchRefinement()) {
+          while (isTargetState(reached.getLastState()) && reached.hasWaitingState()
+              && !((BatchRefiner)mRefiner).isBatchComplete(reached)) {
+            isComplete &= algorithm.run(reached);
+          }
+        }
+
         // if there is any target state do refinement
         if (refinementNecessary(reached)) {
           refinementSuccessful = refine(reached);
@@ -274,8 +284,12 @@ public class CEGARAlgorithm implements Algorithm, StatisticsProvider {
     return isComplete;
   }
 
+  private boolean isBatchRefinement() {
+    return mRefiner instanceof BatchRefiner && ((BatchRefiner)mRefiner).isBatchingEnabled();
+  }
+
   private boolean refinementNecessary(ReachedSet reached) {
-    if (globalRefinement) {
+    if (globalRefinement || isBatchRefinement()) {
       // check other states
       return from(reached).anyMatch(IS_TARGET_STATE);
 
@@ -295,7 +309,11 @@ public class CEGARAlgorithm implements Algorithm, StatisticsProvider {
     stats.refinementTimer.start();
     boolean refinementResult;
     try {
-      refinementResult = mRefiner.performRefinement(reached);
+      if (isBatchRefinement()) {
+        refinementResult = ((BatchRefiner)mRefiner).performBatchRefinement(reached);
+      } else {
+        refinementResult = mRefiner.performRefinement(reached);
+      }
 
     } catch (RefinementFailedException e) {
       stats.countFailedRefinements++;
@@ -315,6 +333,12 @@ public class CEGARAlgorithm implements Algorithm, StatisticsProvider {
     return refinementResult;
   }
 
+  @Override
+  public void close() {
+    CPAs.closeIfPossible(mRefiner, logger);
+    CPAs.closeIfPossible(algorithm, logger);
+  }
+
   @Override
   public void collectStatistics(Collection<Statistics> pStatsCollection) {
     if (algorithm instanceof StatisticsProvider) {
@@ -23,23 +23,32 @@
  */
 package org.sosy_lab.cpachecker.core.algorithm;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import javax.annotation.Nullable;
 
 import org.sosy_lab.common.Classes;
-import org.sosy_lab.common.Pair;
+import org.sosy_lab.common.Classes.UnexpectedCheckedException;
+import org.sosy_lab.common.concurrency.Threads;
 import org.sosy_lab.common.configuration.ClassOption;
 import org.sosy_lab.common.configuration.Configuration;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.configuration.Option;
 import org.sosy_lab.common.configuration.Options;
 import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.common.time.TimeSpan;
 import org.sosy_lab.common.time.Timer;
 import org.sosy_lab.cpachecker.core.CPAcheckerResult.Result;
 import org.sosy_lab.cpachecker.core.ShutdownNotifier;
@@ -57,11 +66,22 @@ import org.sosy_lab.cpachecker.core.interfaces.Statistics;
 import org.sosy_lab.cpachecker.core.interfaces.StatisticsProvider;
 import org.sosy_lab.cpachecker.core.interfaces.StopOperator;
 import org.sosy_lab.cpachecker.core.interfaces.TransferRelation;
+import org.sosy_lab.cpachecker.core.reachedset.ConcurrentPartitionedReachedSet;
+import org.sosy_lab.cpachecker.core.reachedset.ForwardingReachedSet;
 import org.sosy_lab.cpachecker.core.reachedset.ReachedSet;
 import org.sosy_lab.cpachecker.cpa.arg.ARGMergeJoinPredicatedAnalysis;
+import org.sosy_lab.cpachecker.cpa.callstack.CallstackCPA;
+import org.sosy_lab.cpachecker.cpa.composite.CompositeCPA;
+import org.sosy_lab.cpachecker.cpa.location.LocationCPA;
+import org.sosy_lab.cpachecker.cpa.location.LocationCPABackwards;
 import org.sosy_lab.cpachecker.exceptions.CPAException;
 import org.sosy_lab.cpachecker.util.AbstractStates;
+import org.sosy_lab.cpachecker.util.CPAs;
+import org.sosy_lab.cpachecker.util.resources.ThreadAllocation;
+import org.sosy_lab.cpachecker.util.statistics.Telemetry;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 
 public class CPAAlgorithm implements Algorithm, StatisticsProvider {
@@ -85,6 +105,56 @@ public class CPAAlgorithm implements Algorithm, StatisticsProvider {
     private int   countMerge        = 0;
     private int   countStop         = 0;
     private int   countBreak        = 0;
+    private int   countMergeBufferAllocations = 0;
+    private long  allocatedBytes    = 0; // -1 if not supported by the JVM
+
+    // statistics of the threads in parallel mode,
+    // their counters are added to the counters above after each run
+    private final List<CPAStatistics> workerStats = new ArrayList<>();
+
+    private void addAllocatedBytes(long allocatedBefore) {
+      if (allocatedBefore < 0 || allocatedBytes < 0) {
+        allocatedBytes = -1;
+      } else {
+        allocatedBytes += ThreadAllocation.getAllocatedBytesOfCurrentThread() - allocatedBefore;
+      }
+    }
+
+    private void addCountersOf(CPAStatistics other) {
+      countIterations += other.countIterations;
+      maxWaitlistSize = Math.max(maxWaitlistSize, other.maxWaitlistSize);
+      countWaitlistSize += other.countWaitlistSize;
+      countSuccessors += other.countSuccessors;
+      maxSuccessors = Math.max(maxSuccessors, other.maxSuccessors);
+      countMerge += other.countMerge;
+      countStop += other.countStop;
+      countBreak += other.countBreak;
+      countMergeBufferAllocations += other.countMergeBufferAllocations;
+      if (allocatedBytes >= 0) {
+        allocatedBytes = (other.allocatedBytes >= 0) ? allocatedBytes + other.allocatedBytes : -1;
+      }
+
+      other.countIterations = 0;
+      other.maxWaitlistSize = 0;
+      other.countWaitlistSize = 0;
+      other.countSuccessors = 0;
+      other.maxSuccessors = 0;
+      other.countMerge = 0;
+      other.countStop = 0;
+      other.countBreak = 0;
+      other.countMergeBufferAllocations = 0;
+      other.allocatedBytes = 0;
+    }
+
+    private static String sumOf(List<Timer> timers) {
+      TimeSpan sum = TimeSpan.empty();
+      int intervals = 0;
+      for (Timer timer : timers) {
+        sum = TimeSpan.sum(sum, timer.getSumTime());
+        intervals += timer.getNumberOfIntervals();
+      }
+      return sum.formatAs(TimeUnit.SECONDS) + " (sum of all workers, " + intervals + " calls)";
+    }
 
     @Override
     public String getName() {
@@ -108,19 +178,78 @@ public class CPAAlgorithm implements Algorithm, StatisticsProvider {
       out.println("Number of times merged:          " + countMerge);
       out.println("Number of times stopped:         " + countStop);
       out.println("Number of times breaked:         " + countBreak);
+      if (countMerge > 0) {
+        out.println("Number of merge buffers created: " + countMergeBufferAllocations);
+      }
+      if (allocatedBytes >= 0) {
+        long totalMillis = totalTimer.getSumTime().asMillis();
+        out.print("Heap allocated by CPA algorithm: " + (allocatedBytes >> 20) + " MB");
+        if (totalMillis > 0) {
+          out.print(" (" + (allocatedBytes / totalMillis * 1000 >> 20) + " MB/s)");
+        }
+        out.println();
+      }
       out.println();
       out.println("Total time for CPA algorithm:     " + totalTimer + " (Max: " + totalTimer.getMaxTime().formatAs(TimeUnit.SECONDS) + ")");
-      out.println("  Time for choose from waitlist:  " + chooseTimer);
-      if (forcedCoveringTimer.getNumberOfIntervals() > 0) {
-        out.println("  Time for forced covering:       " + forcedCoveringTimer);
+      if (workerStats.isEmpty() || transferTimer.getNumberOfIntervals() > 0) {
+        // sequential mode, or parallel mode without a thread-safe reached set
+        out.println("  Time for choose from waitlist:  " + chooseTimer);
+        if (forcedCoveringTimer.getNumberOfIntervals() > 0) {
+          out.println("  Time for forced covering:       " + forcedCoveringTimer);
+        }
+        out.println("  Time for precision adjustment:  " + precisionTimer);
+        out.println("  Time for transfer relation:     " + transferTimer);
+        if (mergeTimer.getNumberOfIntervals() > 0) {
+          out.println("  Time for merge operator:        " + mergeTimer);
+        }
+        out.println("  Time for stop operator:         " + stopTimer);
+        out.println("  Time for adding to reached set: " + addTimer);
+
+      } else {
+        // In parallel mode only the workers use their timers,
+        // so we print the sum of the times of all workers here.
+        List<Timer> choose = new ArrayList<>(workerStats.size());
+        List<Timer> precision = new ArrayList<>(workerStats.size());
+        List<Timer> transfer = new ArrayList<>(workerStats.size());
+        List<Timer> merge = new ArrayList<>(workerStats.size());
+        List<Timer> stop = new ArrayList<>(workerStats.size());
+        List<Timer> add = new ArrayList<>(workerStats.size());
+        boolean merged = false;
+        for (CPAStatistics worker : workerStats) {
+          choose.add(worker.chooseTimer);
+          precision.add(worker.precisionTimer);
+          transfer.add(worker.transferTimer);
+          merge.add(worker.mergeTimer);
+          merged |= worker.mergeTimer.getNumberOfIntervals() > 0;
+          stop.add(worker.stopTimer);
+          add.add(worker.addTimer);
+        }
+        out.println("  Time for choose from waitlist:  " + sumOf(choose));
+        out.println("  Time for precision adjustment:  " + sumOf(precision));
+        out.println("  Time for transfer relation:     " + sumOf(transfer));
+        if (merged) {
+          out.println("  Time for merge operator:        " + sumOf(merge));
+        }
+        out.println("  Time for stop operator:         " + sumOf(stop));
+        out.println("  Time for adding to reached set: " + sumOf(add));
       }
-      out.println("  Time for precision adjustment:  " + precisionTimer);
-      out.println("  Time for transfer relation:     " + transferTimer);
-      if (mergeTimer.getNumberOfIntervals() > 0) {
-        out.println("  Time for merge operator:        " + mergeTimer);
+
+      int i = 0;
+      for (CPAStatistics worker : workerStats) {
+        if (worker.transferTimer.getNumberOfIntervals() == 0) {
+          i++;
+          continue; // worker did not handle any state
+        }
+        out.println("  Worker " + i++ + ":");
+        out.println("    Time for choose from waitlist:  " + worker.chooseTimer);
+        out.println("    Time for precision adjustment:  " + worker.precisionTimer);
+        out.println("    Time for transfer relation:     " + worker.transferTimer);
+        if (worker.mergeTimer.getNumberOfIntervals() > 0) {
+          out.println("    Time for merge operator:        " + worker.mergeTimer);
+        }
+        out.println("    Time for stop operator:         " + worker.stopTimer);
+        out.println("    Time for adding to reached set: " + worker.addTimer);
       }
-      out.println("  Time for stop operator:         " + stopTimer);
-      out.println("  Time for adding to reached set: " + addTimer);
     }
   }
 
@@ -159,7 +288,7 @@ public class CPAAlgorithm implements Algorithm, StatisticsProvider {
     }
 
     public CPAAlgorithm newInstance() {
-      return new CPAAlgorithm(cpa, logger, shutdownNotifier, forcedCovering, iterationListener);
+      return new CPAAlgorithm(cpa, logger, shutdownNotifier, forcedCovering, iterationListener, 1);
     }
   }
 
@@ -176,11 +305,55 @@ public class CPAAlgorithm implements Algorithm, StatisticsProvider {
     return new CPAAlgorithmFactory(cpa, logger, config, pShutdownNotifier, null).newInstance();
   }
 
+  /**
+   * CPAs whose operators do not have mutable shared state
+   * and can thus be called from several worker threads concurrently.
+   */
+  private static final ImmutableSet<Class<? extends ConfigurableProgramAnalysis>> THREAD_SAFE_CPAS =
+      ImmutableSet.<Class<? extends ConfigurableProgramAnalysis>>of(
+          CompositeCPA.class, LocationCPA.class, LocationCPABackwards.class, CallstackCPA.class);
+
+  /**
+   * Create a CPA algorithm that explores the state space with several threads in parallel.
+   *
+   * This is an experimental skeleton and deliberately not available in the configuration:
+   * only the CPAs in {@link #THREAD_SAFE_CPAS} can be used,
+   * and in particular the ARGCPA is not thread-safe,
+   * so no analysis that produces counterexamples can use it yet.
+   * The reached set needs to be a {@link ConcurrentPartitionedReachedSet},
+   * otherwise the algorithm falls back to a single thread.
+   *
+   * @param pWorkers The number of worker threads.
+   * @throws InvalidConfigurationException If the CPA is not known to be thread-safe.
+   */
+  static CPAAlgorithm createParallel(ConfigurableProgramAnalysis cpa, LogManager logger,
+      ShutdownNotifier pShutdownNotifier, int pWorkers) throws InvalidConfigurationException {
+    checkArgument(pWorkers > 1, "Parallel exploration needs more than one worker");
+
+    for (ConfigurableProgramAnalysis currentCpa : CPAs.asIterable(cpa)) {
+      if (!THREAD_SAFE_CPAS.contains(currentCpa.getClass())) {
+        throw new InvalidConfigurationException(currentCpa.getClass().getSimpleName()
+            + " is not known to be thread-safe and cannot be used for parallel exploration.");
+      }
+    }
+    return new CPAAlgorithm(cpa, logger, pShutdownNotifier, null, null, pWorkers);
+  }
+
+
+  // live counters, in addition to the statistics printed at the end
+  private static final Telemetry.Counter ITERATIONS = Telemetry.getCounter("cpa.iterations");
+  private static final Telemetry.Gauge WAITLIST_SIZE = Telemetry.getGauge("cpa.waitlistSize");
+  private static final Telemetry.Counter SUCCESSORS = Telemetry.getCounter("cpa.successors");
+  private static final Telemetry.Counter MERGES = Telemetry.getCounter("cpa.merges");
+  private static final Telemetry.Counter STOPS = Telemetry.getCounter("cpa.stops");
 
   private final ForcedCovering forcedCovering;
 
   private final CPAStatistics               stats = new CPAStatistics();
 
+  // empty if the state space is explored sequentially
+  private final List<CPAStatistics>         workerStats = stats.workerStats;
+
   private final ConfigurableProgramAnalysis cpa;
 
   private final LogManager                  logger;
@@ -192,20 +365,39 @@ public class CPAAlgorithm implements Algorithm, StatisticsProvider {
   private CPAAlgorithm(ConfigurableProgramAnalysis cpa, LogManager logger,
       ShutdownNotifier pShutdownNotifier,
       ForcedCovering pForcedCovering,
-      AlgorithmIterationListener pIterationListener) {
+      AlgorithmIterationListener pIterationListener,
+      int pParallelWorkers) {
 
     this.cpa = cpa;
     this.logger = logger;
     this.shutdownNotifier = pShutdownNotifier;
     this.forcedCovering = pForcedCovering;
     this.iterationListener = pIterationListener;
+
+    if (pParallelWorkers > 1) {
+      for (int i = 0; i < pParallelWorkers; i++) {
+        workerStats.add(new CPAStatistics());
+      }
+    }
   }
 
   @Override
   public boolean run(final ReachedSet reachedSet) throws CPAException, InterruptedException {
     stats.totalTimer.start();
+    final long allocatedBefore = ThreadAllocation.getAllocatedBytesOfCurrentThread();
     try {
-      return run0(reachedSet);
+      ConcurrentPartitionedReachedSet concurrentReached = getConcurrentReachedSet(reachedSet);
+      if (workerStats.isEmpty()) {
+        return run0(reachedSet);
+
+      } else if (concurrentReached == null) {
+        logger.log(Level.WARNING, "Parallel exploration needs a thread-safe reached set "
+            + "(analysis.reachedSet=CONCURRENTPARTITIONED), using only one thread.");
+        return run0(reachedSet);
+
+      } else {
+        return runParallel(reachedSet, concurrentReached);
+      }
     } finally {
       stats.totalTimer.stopIfRunning();
       stats.chooseTimer.stopIfRunning();
@@ -215,16 +407,22 @@ public class CPAAlgorithm implements Algorithm, StatisticsProvider {
       stats.stopTimer.stopIfRunning();
       stats.addTimer.stopIfRunning();
       stats.forcedCoveringTimer.stopIfRunning();
+      stats.addAllocatedBytes(allocatedBefore);
     }
   }
 
-  private boolean run0(final ReachedSet reachedSet) throws CPAException, InterruptedException {
-    final TransferRelation transferRelation = cpa.getTransferRelation();
-    final MergeOperator mergeOperator = cpa.getMergeOperator();
-    final StopOperator stopOperator = cpa.getStopOperator();
-    final PrecisionAdjustment precisionAdjustment =
-        cpa.getPrecisionAdjustment();
+  private static @Nullable ConcurrentPartitionedReachedSet getConcurrentReachedSet(ReachedSet pReachedSet) {
+    ReachedSet reachedSet = pReachedSet;
+    while (reachedSet instanceof ForwardingReachedSet) {
+      reachedSet = ((ForwardingReachedSet)reachedSet).getDelegate();
+    }
+    if (reachedSet instanceof ConcurrentPartitionedReachedSet) {
+      return (ConcurrentPartitionedReachedSet)reachedSet;
+    }
+    return null;
+  }
 
+  private boolean run0(final ReachedSet reachedSet) throws CPAException, InterruptedException {
     while (reachedSet.hasWaitingState()) {
       shutdownNotifier.shutdownIfNecessary();
 
@@ -237,6 +435,8 @@ public class CPAAlgorithm implements Algorithm, StatisticsProvider {
         stats.maxWaitlistSize = size;
       }
       stats.countWaitlistSize += size;
+      ITERATIONS.inc();
+      WAITLIST_SIZE.set(size);
 
       stats.chooseTimer.start();
       final AbstractState state = reachedSet.popFromWaitlist();
@@ -261,142 +461,351 @@ public class CPAAlgorithm implements Algorithm, StatisticsProvider {
         }
       }
 
-      stats.transferTimer.start();
-      Collection<? extends AbstractState> successors;
+      if (handleState(state, precision, reachedSet, null, stats)) {
+        return true;
+      }
+
+      if (iterationListener != null) {
+        iterationListener.afterAlgorithmIteration(this, reachedSet);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compute all successors of a state from the waitlist
+   * and add them to the reached set (applying precision adjustment,
+   * merge, and stop).
+   *
+   * @param concurrentReached If not null, the partition locks of this reached set
+   *    are used to make merge and stop atomic with respect to other workers.
+   * @return true if a BREAK was signalled and the algorithm should stop.
+   */
+  private boolean handleState(final AbstractState state, final Precision precision,
+      final ReachedSet reachedSet, final @Nullable ConcurrentPartitionedReachedSet concurrentReached,
+      final CPAStatistics stats) throws CPAException, InterruptedException {
+    final TransferRelation transferRelation = cpa.getTransferRelation();
+    final PrecisionAdjustment precisionAdjustment =
+        cpa.getPrecisionAdjustment();
+
+    stats.transferTimer.start();
+    Collection<? extends AbstractState> successors;
+    try {
+      successors = transferRelation.getAbstractSuccessors(state, precision);
+    } finally {
+      stats.transferTimer.stop();
+    }
+    // TODO When we have a nice way to mark the analysis result as incomplete,
+    // we could continue analysis on a CPATransferException with the next state from waitlist.
+
+    int numSuccessors = successors.size();
+    logger.log(Level.FINER, "Current state has", numSuccessors,
+        "successors");
+    stats.countSuccessors += numSuccessors;
+    SUCCESSORS.add(numSuccessors);
+    stats.maxSuccessors = Math.max(numSuccessors, stats.maxSuccessors);
+
+    for (AbstractState successor : Iterables.consumingIterable(successors)) {
+      logger.log(Level.FINER, "Considering successor of current state");
+      logger.log(Level.ALL, "Successor of", state, "\nis", successor);
+
+      stats.precisionTimer.start();
+      PrecisionAdjustmentResult precAdjustmentResult;
       try {
-        successors = transferRelation.getAbstractSuccessors(state, precision);
+        precAdjustmentResult = precisionAdjustment.prec(successor, precision, reachedSet);
       } finally {
-        stats.transferTimer.stop();
+        stats.precisionTimer.stop();
       }
-      // TODO When we have a nice way to mark the analysis result as incomplete,
-      // we could continue analysis on a CPATransferException with the next state from waitlist.
 
-      int numSuccessors = successors.size();
-      logger.log(Level.FINER, "Current state has", numSuccessors,
-          "successors");
-      stats.countSuccessors += numSuccessors;
-      stats.maxSuccessors = Math.max(numSuccessors, stats.maxSuccessors);
-
-      for (AbstractState successor : Iterables.consumingIterable(successors)) {
-        logger.log(Level.FINER, "Considering successor of current state");
-        logger.log(Level.ALL, "Successor of", state, "\nis", successor);
+      boolean breakSignalled;
+      if (concurrentReached == null) {
+        breakSignalled = handleSuccessor(precAdjustmentResult, reachedSet, stats);
+      } else {
+        synchronized (concurrentReached.getPartitionLock(precAdjustmentResult.abstractState())) {
+          breakSignalled = handleSuccessor(precAdjustmentResult, reachedSet, stats);
+        }
+      }
 
-        stats.precisionTimer.start();
-        PrecisionAdjustmentResult precAdjustmentResult;
-        try {
-          precAdjustmentResult = precisionAdjustment.prec(successor, precision, reachedSet);
-        } finally {
-          stats.precisionTimer.stop();
+      if (breakSignalled) {
+        if (!successors.isEmpty()) {
+          // re-add the old state to the waitlist, there are unhandled
+          // successors left that otherwise would be forgotten
+          reachedSet.reAddToWaitlist(state);
         }
 
-        successor = precAdjustmentResult.abstractState();
-        Precision successorPrecision = precAdjustmentResult.precision();
-        Action action = precAdjustmentResult.action();
+        return true;
+      }
+    }
+    return false;
+  }
 
-        if (action == Action.BREAK) {
-          stats.stopTimer.start();
-          boolean stop;
-          try {
-            stop = stopOperator.stop(successor, reachedSet.getReached(successor), successorPrecision);
-          } finally {
-            stats.stopTimer.stop();
-          }
+  /**
+   * Apply merge and stop to a successor and add it to the reached set if necessary.
+   * @return true if a BREAK was signalled and the algorithm should stop.
+   */
+  private boolean handleSuccessor(final PrecisionAdjustmentResult precAdjustmentResult,
+      final ReachedSet reachedSet, final CPAStatistics stats) throws CPAException {
+    final MergeOperator mergeOperator = cpa.getMergeOperator();
+    final StopOperator stopOperator = cpa.getStopOperator();
 
-          if (AbstractStates.isTargetState(successor) && stop) {
-            // don't signal BREAK for covered states
-            // no need to call merge and stop either, so just ignore this state
-            // and handle next successor
-            stats.countStop++;
-            logger.log(Level.FINER,
-                "Break was signalled but ignored because the state is covered.");
-            continue;
+    AbstractState successor = precAdjustmentResult.abstractState();
+    Precision successorPrecision = precAdjustmentResult.precision();
+    Action action = precAdjustmentResult.action();
 
-          } else {
-            stats.countBreak++;
-            logger.log(Level.FINER, "Break signalled, CPAAlgorithm will stop.");
+    if (action == Action.BREAK) {
+      stats.stopTimer.start();
+      boolean stop;
+      try {
+        stop = stopOperator.stop(successor, reachedSet.getReached(successor), successorPrecision);
+      } finally {
+        stats.stopTimer.stop();
+      }
 
-            // add the new state
-            reachedSet.add(successor, successorPrecision);
+      if (AbstractStates.isTargetState(successor) && stop) {
+        // don't signal BREAK for covered states
+        // no need to call merge and stop either, so just ignore this state
+        // and handle next successor
+        stats.countStop++;
+        STOPS.inc();
+        logger.log(Level.FINER,
+            "Break was signalled but ignored because the state is covered.");
+        return false;
+
+      } else {
+        stats.countBreak++;
+        logger.log(Level.FINER, "Break signalled, CPAAlgorithm will stop.");
 
-            if (!successors.isEmpty()) {
-              // re-add the old state to the waitlist, there are unhandled
-              // successors left that otherwise would be forgotten
-              reachedSet.reAddToWaitlist(state);
+        // add the new state
+        reachedSet.add(successor, successorPrecision);
+        return true;
+      }
+    }
+    assert action == Action.CONTINUE : "Enum Action has unhandled values!";
+
+    Collection<AbstractState> reached = reachedSet.getReached(successor);
+
+    // An optimization, we don't bother merging if we know that the
+    // merge operator won't do anything (i.e., it is merge-sep).
+    if (mergeOperator != MergeSepOperator.getInstance() && !reached.isEmpty()) {
+      stats.mergeTimer.start();
+      try {
+        // Usually nothing is merged, so we create the lists only when needed.
+        // All merged states get the same precision, so we do not need pairs.
+        List<AbstractState> toRemove = null;
+        List<AbstractState> toAdd = null;
+
+        logger.log(Level.FINER, "Considering", reached.size(),
+            "states from reached set for merge");
+        for (AbstractState reachedState : reached) {
+          AbstractState mergedState =
+              mergeOperator.merge(successor, reachedState,
+                  successorPrecision);
+
+          if (!mergedState.equals(reachedState)) {
+            logger.log(Level.FINER,
+                "Successor was merged with state from reached set");
+            logger.log(Level.ALL, "Merged", successor, "\nand",
+                reachedState, "\n-->", mergedState);
+            stats.countMerge++;
+            MERGES.inc();
+
+            if (toRemove == null) {
+              toRemove = new ArrayList<>(2);
+              toAdd = new ArrayList<>(2);
+              stats.countMergeBufferAllocations++;
             }
+            toRemove.add(reachedState);
+            toAdd.add(mergedState);
+          }
+        }
 
-            return true;
+        if (toRemove != null) {
+          reachedSet.removeAll(toRemove);
+          for (AbstractState mergedState : toAdd) {
+            reachedSet.add(mergedState, successorPrecision);
           }
         }
-        assert action == Action.CONTINUE : "Enum Action has unhandled values!";
 
-        Collection<AbstractState> reached = reachedSet.getReached(successor);
+        if (mergeOperator instanceof ARGMergeJoinPredicatedAnalysis) {
+          ((ARGMergeJoinPredicatedAnalysis)mergeOperator).cleanUp(reachedSet);
+        }
+
+      } finally {
+        stats.mergeTimer.stop();
+      }
+    }
 
-        // An optimization, we don't bother merging if we know that the
-        // merge operator won't do anything (i.e., it is merge-sep).
-        if (mergeOperator != MergeSepOperator.getInstance() && !reached.isEmpty()) {
-          stats.mergeTimer.start();
-          try {
-            List<AbstractState> toRemove = new ArrayList<>();
-            List<Pair<AbstractState, Precision>> toAdd = new ArrayList<>();
-
-            logger.log(Level.FINER, "Considering", reached.size(),
-                "states from reached set for merge");
-            for (AbstractState reachedState : reached) {
-              AbstractState mergedState =
-                  mergeOperator.merge(successor, reachedState,
-                      successorPrecision);
-
-              if (!mergedState.equals(reachedState)) {
-                logger.log(Level.FINER,
-                    "Successor was merged with state from reached set");
-                logger.log(Level.ALL, "Merged", successor, "\nand",
-                    reachedState, "\n-->", mergedState);
-                stats.countMerge++;
-
-                toRemove.add(reachedState);
-                toAdd.add(Pair.of(mergedState, successorPrecision));
+    stats.stopTimer.start();
+    boolean stop;
+    try {
+      stop = stopOperator.stop(successor, reached, successorPrecision);
+    } finally {
+      stats.stopTimer.stop();
+    }
+
+    if (stop) {
+      logger.log(Level.FINER,
+          "Successor is covered or unreachable, not adding to waitlist");
+      stats.countStop++;
+      STOPS.inc();
+
+    } else {
+      logger.log(Level.FINER,
+          "No need to stop, adding successor to waitlist");
+
+      stats.addTimer.start();
+      reachedSet.add(successor, successorPrecision);
+      stats.addTimer.stop();
+    }
+    return false;
+  }
+
+  private boolean runParallel(final ReachedSet reachedSet,
+      final ConcurrentPartitionedReachedSet concurrentReached) throws CPAException, InterruptedException {
+
+    logger.log(Level.FINE, "Starting parallel exploration with", workerStats.size(), "workers");
+    final ParallelExploration exploration = new ParallelExploration(reachedSet, concurrentReached);
+
+    ExecutorService executor = Executors.newFixedThreadPool(workerStats.size(),
+        Threads.threadFactoryBuilder().setDaemon(true).setNameFormat("CPAAlgorithm worker %d").build());
+    List<Future<Void>> workers = new ArrayList<>(workerStats.size());
+    try {
+      for (final CPAStatistics currentWorkerStats : workerStats) {
+        workers.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws CPAException, InterruptedException {
+            exploration.runWorker(currentWorkerStats);
+            return null;
+          }
+        }));
+      }
+      executor.shutdown();
+
+      for (Future<Void> worker : workers) {
+        worker.get();
+      }
+
+    } catch (ExecutionException e) {
+      Throwable t = e.getCause();
+      Throwables.propagateIfPossible(t, CPAException.class, InterruptedException.class);
+
+      throw new UnexpectedCheckedException("parallel state-space exploration", t);
+
+    } finally {
+      exploration.abort();
+      executor.shutdownNow();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+      for (CPAStatistics currentWorkerStats : workerStats) {
+        stats.addCountersOf(currentWorkerStats);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Coordination of the workers of one parallel run of the CPA algorithm.
+   * Workers pop states from the shared waitlist,
+   * the run ends if the waitlist is empty and no worker is currently handling a state
+   * (which might produce new states for the waitlist),
+   * or if a worker signals BREAK or fails.
+   */
+  private class ParallelExploration {
+
+    private final ReachedSet reachedSet;
+    private final ConcurrentPartitionedReachedSet concurrentReached;
+
+    // all of the following fields are guarded by "this"
+    private int activeWorkers = 0;
+    private boolean finished = false;
+
+    private ParallelExploration(ReachedSet pReachedSet,
+        ConcurrentPartitionedReachedSet pConcurrentReached) {
+      reachedSet = pReachedSet;
+      concurrentReached = pConcurrentReached;
+    }
+
+    private synchronized void abort() {
+      finished = true;
+      notifyAll();
+    }
+
+    private void runWorker(final CPAStatistics workerStats) throws CPAException, InterruptedException {
+      final long allocatedBefore = ThreadAllocation.getAllocatedBytesOfCurrentThread();
+      boolean success = false;
+      try {
+        while (true) {
+          shutdownNotifier.shutdownIfNecessary();
+
+          AbstractState state;
+          Precision precision;
+          synchronized (this) {
+            while (!finished && !reachedSet.hasWaitingState()) {
+              if (activeWorkers == 0) {
+                // nobody can add new states anymore
+                finished = true;
+                notifyAll();
+              } else {
+                wait();
               }
             }
-            reachedSet.removeAll(toRemove);
-            reachedSet.addAll(toAdd);
+            if (finished) {
+              success = true;
+              return;
+            }
 
-            if (mergeOperator instanceof ARGMergeJoinPredicatedAnalysis) {
-              ((ARGMergeJoinPredicatedAnalysis)mergeOperator).cleanUp(reachedSet);
+            workerStats.countIterations++;
+            int size = reachedSet.getWaitlistSize();
+            if (size >= workerStats.maxWaitlistSize) {
+              workerStats.maxWaitlistSize = size;
             }
+            workerStats.countWaitlistSize += size;
+            ITERATIONS.inc();
+            WAITLIST_SIZE.set(size);
+
+            workerStats.chooseTimer.start();
+            state = reachedSet.popFromWaitlist();
+            precision = reachedSet.getPrecision(state);
+            workerStats.chooseTimer.stop();
+            activeWorkers++;
+          }
 
+          logger.log(Level.FINER, "Retrieved state from waitlist");
+          logger.log(Level.ALL, "Current state is", state, "with precision",
+              precision);
+
+          boolean breakSignalled = false;
+          try {
+            breakSignalled = handleState(state, precision, reachedSet, concurrentReached, workerStats);
           } finally {
-            stats.mergeTimer.stop();
+            synchronized (this) {
+              activeWorkers--;
+              if (breakSignalled) {
+                finished = true;
+              }
+              notifyAll();
+            }
           }
-        }
 
-        stats.stopTimer.start();
-        boolean stop;
-        try {
-          stop = stopOperator.stop(successor, reached, successorPrecision);
-        } finally {
-          stats.stopTimer.stop();
+          if (iterationListener != null && !breakSignalled) {
+            synchronized (this) {
+              iterationListener.afterAlgorithmIteration(CPAAlgorithm.this, reachedSet);
+            }
+          }
         }
-
-        if (stop) {
-          logger.log(Level.FINER,
-              "Successor is covered or unreachable, not adding to waitlist");
-          stats.countStop++;
-
-        } else {
-          logger.log(Level.FINER,
-              "No need to stop, adding successor to waitlist");
-
-          stats.addTimer.start();
-          reachedSet.add(successor, successorPrecision);
-          stats.addTimer.stop();
+      } finally {
+        workerStats.chooseTimer.stopIfRunning();
+        workerStats.precisionTimer.stopIfRunning();
+        workerStats.transferTimer.stopIfRunning();
+        workerStats.mergeTimer.stopIfRunning();
+        workerStats.stopTimer.stopIfRunning();
+        workerStats.addTimer.stopIfRunning();
+        workerStats.addAllocatedBytes(allocatedBefore);
+        if (!success) {
+          abort();
         }
       }
-
-      if (iterationListener != null) {
-        iterationListener.afterAlgorithmIteration(this, reachedSet);
-      }
     }
-    return true;
   }
 
   @Override
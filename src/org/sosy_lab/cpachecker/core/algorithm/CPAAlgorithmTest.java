@@ -0,0 +1,173 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.core.algorithm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.FileOption;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.configuration.converters.FileTypeConverter;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.common.log.TestLogManager;
+import org.sosy_lab.cpachecker.cfa.CFA;
+import org.sosy_lab.cpachecker.cfa.CFACreator;
+import org.sosy_lab.cpachecker.core.CPABuilder;
+import org.sosy_lab.cpachecker.core.ShutdownNotifier;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.interfaces.ConfigurableProgramAnalysis;
+import org.sosy_lab.cpachecker.core.interfaces.Statistics;
+import org.sosy_lab.cpachecker.core.reachedset.ReachedSet;
+import org.sosy_lab.cpachecker.core.reachedset.ReachedSetFactory;
+import org.sosy_lab.cpachecker.util.AbstractStates;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multiset;
+
+public class CPAAlgorithmTest {
+
+  private static final String PROGRAM = "test/programs/simple/SynchronousSimulator.c";
+
+  private final LogManager logger = TestLogManager.getInstance();
+  private final ShutdownNotifier shutdownNotifier = ShutdownNotifier.create();
+
+  private static Configuration createConfig(String cpas, String reachedSet)
+      throws InvalidConfigurationException {
+    return Configuration.builder()
+        .addConverter(FileOption.class, new FileTypeConverter(Configuration.defaultConfiguration()))
+        .setOption("cpa", "cpa.composite.CompositeCPA")
+        .setOption("CompositeCPA.cpas", cpas)
+        .setOption("analysis.reachedSet", reachedSet)
+        .build();
+  }
+
+  private static class Run {
+    private final ConfigurableProgramAnalysis cpa;
+    private final ReachedSet reached;
+
+    private Run(ConfigurableProgramAnalysis pCpa, ReachedSet pReached) {
+      cpa = pCpa;
+      reached = pReached;
+    }
+  }
+
+  private Run prepare(Configuration config) throws Exception {
+    CFA cfa = new CFACreator(config, logger, shutdownNotifier)
+        .parseFileAndCreateCFA(ImmutableList.of(PROGRAM));
+    ReachedSetFactory reachedSetFactory = new ReachedSetFactory(config, logger);
+    ConfigurableProgramAnalysis cpa = new CPABuilder(config, logger, shutdownNotifier, reachedSetFactory)
+        .buildCPAs(cfa);
+
+    ReachedSet reached = reachedSetFactory.create();
+    reached.add(cpa.getInitialState(cfa.getMainFunction()), cpa.getInitialPrecision(cfa.getMainFunction()));
+    return new Run(cpa, reached);
+  }
+
+  private static Multiset<String> getLocations(ReachedSet reached) {
+    Multiset<String> result = HashMultiset.create();
+    for (AbstractState state : reached) {
+      result.add(AbstractStates.extractLocation(state).toString());
+    }
+    return result;
+  }
+
+  private static String getStatistics(CPAAlgorithm algorithm, ReachedSet reached) {
+    Collection<Statistics> stats = new ArrayList<>();
+    algorithm.collectStatistics(stats);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(output);
+    for (Statistics s : stats) {
+      s.printStatistics(out, null, reached);
+    }
+    out.flush();
+    return output.toString();
+  }
+
+  private static final String CPAS = "cpa.location.LocationCPA, cpa.callstack.CallstackCPA";
+
+  @Test
+  public void testParallelExplorationReachesSameStates() throws Exception {
+    Run sequential = prepare(createConfig(CPAS, "PARTITIONED"));
+    CPAAlgorithm.create(sequential.cpa, logger, createConfig(CPAS, "PARTITIONED"), shutdownNotifier)
+        .run(sequential.reached);
+    Assert.assertFalse(sequential.reached.hasWaitingState());
+
+    Run parallel = prepare(createConfig(CPAS, "CONCURRENTPARTITIONED"));
+    CPAAlgorithm algorithm = CPAAlgorithm.createParallel(parallel.cpa, logger, shutdownNotifier, 4);
+    Assert.assertTrue(algorithm.run(parallel.reached));
+    Assert.assertFalse(parallel.reached.hasWaitingState());
+
+    Assert.assertEquals(sequential.reached.size(), parallel.reached.size());
+    Assert.assertEquals(getLocations(sequential.reached), getLocations(parallel.reached));
+  }
+
+  @Test
+  public void testParallelStatisticsContainTimesOfWorkers() throws Exception {
+    Run parallel = prepare(createConfig(CPAS, "CONCURRENTPARTITIONED"));
+    CPAAlgorithm algorithm = CPAAlgorithm.createParallel(parallel.cpa, logger, shutdownNotifier, 2);
+    algorithm.run(parallel.reached);
+
+    String statistics = getStatistics(algorithm, parallel.reached);
+    String iterations = null;
+    String transfer = null;
+    for (String line : statistics.split("\n")) {
+      if (line.startsWith("Number of iterations:") && iterations == null) {
+        iterations = line.substring(line.indexOf(':') + 1).trim();
+      } else if (line.startsWith("  Time for transfer relation:") && transfer == null) {
+        transfer = line;
+      }
+    }
+    Assert.assertNotNull(iterations);
+    Assert.assertNotNull(transfer);
+    Assert.assertTrue(Integer.parseInt(iterations) > 0);
+    // the transfer relation is called once per iteration by one of the workers
+    Assert.assertTrue(transfer, transfer.endsWith(" " + iterations + " calls)"));
+    Assert.assertTrue(statistics.contains("Worker 1:"));
+  }
+
+  @Test(expected = InvalidConfigurationException.class)
+  public void testParallelExplorationRejectsThreadUnsafeCPAs() throws Exception {
+    String cpas = CPAS + ", cpa.value.ValueAnalysisCPA";
+    Run parallel = prepare(createConfig(cpas, "CONCURRENTPARTITIONED"));
+    CPAAlgorithm.createParallel(parallel.cpa, logger, shutdownNotifier, 2);
+  }
+
+  @Test
+  public void testParallelExplorationWithoutConcurrentReachedSetUsesOneThread() throws Exception {
+    Run run = prepare(createConfig(CPAS, "PARTITIONED"));
+    CPAAlgorithm algorithm = CPAAlgorithm.createParallel(run.cpa, logger, shutdownNotifier, 2);
+    Assert.assertTrue(algorithm.run(run.reached));
+    Assert.assertFalse(run.reached.hasWaitingState());
+
+    String statistics = getStatistics(algorithm, run.reached);
+    Assert.assertTrue(statistics.contains("Time for transfer relation:"));
+    Assert.assertFalse(statistics.contains("sum of all workers"));
+  }
+}
@@ -30,23 +30,36 @@ import static org.sosy_lab.cpachecker.util.AbstractStates.IS_TARGET_STATE;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import javax.annotation.Nullable;
 
+import org.sosy_lab.common.Classes.UnexpectedCheckedException;
 import org.sosy_lab.common.Triple;
+import org.sosy_lab.common.concurrency.Threads;
 import org.sosy_lab.common.configuration.Configuration;
 import org.sosy_lab.common.configuration.ConfigurationBuilder;
 import org.sosy_lab.common.configuration.FileOption;
+import org.sosy_lab.common.configuration.IntegerOption;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.configuration.Option;
 import org.sosy_lab.common.configuration.Options;
 import org.sosy_lab.common.io.Path;
 import org.sosy_lab.common.io.Paths;
 import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.common.time.TimeSpan;
 import org.sosy_lab.common.time.Timer;
 import org.sosy_lab.cpachecker.cfa.CFA;
 import org.sosy_lab.cpachecker.cfa.model.CFANode;
@@ -68,6 +81,7 @@ import org.sosy_lab.cpachecker.util.resources.ResourceLimitChecker;
 
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
 
@@ -83,6 +97,10 @@ public class RestartAlgorithm implements Algorithm, StatisticsProvider {
     private int noOfAlgorithmsUsed = 0;
     private Timer totalTime = new Timer();
 
+    // only used in parallel mode
+    private List<PortfolioAnalysis> portfolio = null;
+    private PortfolioAnalysis winner = null;
+
     public RestartAlgorithmStatistics(int pNoOfAlgorithms) {
       noOfAlgorithms = pNoOfAlgorithms;
       subStats = new ArrayList<>();
@@ -120,9 +138,28 @@ public class RestartAlgorithm implements Algorithm, StatisticsProvider {
       out.println("Number of algorithms provided:    " + noOfAlgorithms);
       out.println("Number of algorithms used:        " + noOfAlgorithmsUsed);
 
+      if (portfolio != null) {
+        printPortfolioStatistics(out);
+      }
+
       printSubStatistics(out, result, reached);
     }
 
+    private void printPortfolioStatistics(PrintStream out) {
+      out.println("Winning configuration:            " + (winner == null ? "none" : winner.configFile));
+      for (PortfolioAnalysis analysis : portfolio) {
+        out.println("  Configuration " + analysis.index + ": " + analysis.configFile);
+        out.println("    Status:                       " + analysis.status);
+        out.println("    Wall time:                    " + formatNanos(analysis.wallTime));
+        out.println("    CPU time of analysis thread:  " + formatNanos(analysis.cpuTime));
+      }
+      out.println();
+    }
+
+    private static String formatNanos(long nanos) {
+      return nanos < 0 ? "n/a" : TimeSpan.ofNanos(nanos).formatAs(TimeUnit.SECONDS);
+    }
+
     private void printSubStatistics(PrintStream out, Result result, ReachedSet reached) {
       out.println("Total time for algorithm " + noOfAlgorithmsUsed + ": " + totalTime);
 
@@ -146,6 +183,22 @@ public class RestartAlgorithm implements Algorithm, StatisticsProvider {
   @FileOption(FileOption.Type.OPTIONAL_INPUT_FILE)
   private List<Path> configFiles;
 
+  @Option(name="parallel",
+      description="Start all configurations at the same time on separate threads"
+      + " instead of one after another. The result of the first analysis that finishes"
+      + " with a conclusive result is used and the remaining analyses are stopped."
+      + " Conditions like :if-interrupted are ignored in this mode."
+      + " All used CPAs and solvers need to support running in parallel to each other."
+      + " The cpu-time limit of each configuration applies to the cpu time of its analysis thread.")
+  private boolean runInParallel = false;
+
+  @Option(name="parallel.threads",
+      description="maximal number of configurations that run at the same time in parallel mode"
+      + " (0 for the number of available processors); the next configuration is started"
+      + " as soon as an analysis finishes without a conclusive result")
+  @IntegerOption(min=0)
+  private int parallelThreads = 0;
+
   private final LogManager logger;
   private final ShutdownNotifier shutdownNotifier;
   private final RestartAlgorithmStatistics stats;
@@ -182,6 +235,10 @@ public class RestartAlgorithm implements Algorithm, StatisticsProvider {
     CFANode mainFunction = AbstractStates.extractLocation(pReached.getFirstState());
     assert mainFunction != null : "Location information needed";
 
+    if (runInParallel) {
+      return runParallel(reached, mainFunction);
+    }
+
     PeekingIterator<Path> configFilesIterator = Iterators.peekingIterator(configFiles.iterator());
 
     while (configFilesIterator.hasNext()) {
@@ -200,7 +257,7 @@ public class RestartAlgorithm implements Algorithm, StatisticsProvider {
         singleConfigFileName = Paths.get(CONFIG_FILE_CONDITION_SPLITTER.split(singleConfigFileName.toString()).iterator().next());
 
         try {
-          Triple<Algorithm, ConfigurableProgramAnalysis, ReachedSet> currentAlg = createNextAlgorithm(singleConfigFileName, mainFunction, singleShutdownNotifier);
+          Triple<Algorithm, ConfigurableProgramAnalysis, ReachedSet> currentAlg = createNextAlgorithm(singleConfigFileName, mainFunction, singleShutdownNotifier, stats.getSubStatistics());
           currentAlgorithm = currentAlg.getFirst();
           currentCpa = currentAlg.getSecond();
           currentReached = currentAlg.getThird();
@@ -305,6 +362,7 @@ public class RestartAlgorithm implements Algorithm, StatisticsProvider {
           CPAs.closeCpaIfPossible(currentCpa, logger);
         }
         CPAs.closeIfPossible(currentAlgorithm, logger);
+        CPAs.closeReachedSetIfPossible(currentReached, logger);
 
         logger.log(Level.INFO, "RestartAlgorithm switches to the next configuration...");
       }
@@ -315,6 +373,243 @@ public class RestartAlgorithm implements Algorithm, StatisticsProvider {
     return false;
   }
 
+  private static enum PortfolioStatus {
+    WAITING, RUNNING, CONCLUSIVE, INCONCLUSIVE, FAILED, INVALID_CONFIGURATION, STOPPED
+  }
+
+  /**
+   * One analysis of the parallel portfolio,
+   * which runs the configuration in one file with its own reached set,
+   * statistics, and shutdown notifier.
+   */
+  private class PortfolioAnalysis implements Callable<PortfolioAnalysis> {
+
+    private final int index;
+    private final Path configFile;
+    private final CFANode mainFunction;
+    private final ShutdownNotifier singleShutdownNotifier = ShutdownNotifier.createWithParent(shutdownNotifier);
+    private final Collection<Statistics> subStats = new ArrayList<>();
+
+    private volatile PortfolioStatus status = PortfolioStatus.WAITING;
+    private volatile long wallTime = -1;
+    private volatile long cpuTime = -1;
+
+    // only valid after the analysis has finished
+    private @Nullable ReachedSet reached = null;
+    private boolean sound = false;
+    private @Nullable CPAException failure = null;
+
+    // kept open as long as the reached set may still be used as result
+    private @Nullable ConfigurableProgramAnalysis cpa = null;
+    private @Nullable Algorithm algorithm = null;
+
+    private PortfolioAnalysis(int pIndex, Path pConfigFile, CFANode pMainFunction) {
+      index = pIndex;
+      configFile = pConfigFile;
+      mainFunction = pMainFunction;
+    }
+
+    @Override
+    public PortfolioAnalysis call() {
+      long startTime = System.nanoTime();
+      long startCpuTime = getCurrentThreadCpuTime();
+      ReachedSet currentReached = null;
+
+      try {
+        singleShutdownNotifier.shutdownIfNecessary();
+        status = PortfolioStatus.RUNNING;
+
+        Triple<Algorithm, ConfigurableProgramAnalysis, ReachedSet> alg =
+            createNextAlgorithm(configFile, mainFunction, singleShutdownNotifier, subStats);
+        algorithm = alg.getFirst();
+        cpa = alg.getSecond();
+        currentReached = alg.getThird();
+
+        if (algorithm instanceof StatisticsProvider) {
+          ((StatisticsProvider)algorithm).collectStatistics(subStats);
+        }
+
+        sound = algorithm.run(currentReached);
+        reached = currentReached;
+
+        if (from(currentReached).anyMatch(IS_TARGET_STATE)
+            || (sound && !currentReached.hasWaitingState())) {
+          status = PortfolioStatus.CONCLUSIVE;
+        } else {
+          status = PortfolioStatus.INCONCLUSIVE;
+        }
+
+      } catch (InvalidConfigurationException e) {
+        status = PortfolioStatus.INVALID_CONFIGURATION;
+        logger.logUserException(Level.WARNING, e, "Skipping one analysis because the configuration file " + configFile.toString() + " is invalid");
+      } catch (IOException e) {
+        status = PortfolioStatus.INVALID_CONFIGURATION;
+        logger.logUserException(Level.WARNING, e, "Skipping one analysis because the configuration file " + configFile.toString() + " could not be read");
+      } catch (CPAException e) {
+        status = PortfolioStatus.FAILED;
+        failure = e;
+        logger.logUserException(Level.WARNING, e, "Analysis " + index + " not completed");
+      } catch (InterruptedException e) {
+        status = PortfolioStatus.STOPPED;
+        logger.logDebugException(e, "Analysis " + index + " stopped");
+
+      } finally {
+        singleShutdownNotifier.requestShutdown("Analysis terminated"); // shutdown any remaining components
+        if (reached == null) {
+          // otherwise the reached set may still be used as result
+          close();
+          if (currentReached != null) {
+            CPAs.closeReachedSetIfPossible(currentReached, logger);
+          }
+        }
+        if (startCpuTime >= 0) {
+          cpuTime = getCurrentThreadCpuTime() - startCpuTime;
+        }
+        wallTime = System.nanoTime() - startTime;
+      }
+      return this;
+    }
+
+    /**
+     * Close the CPA, the algorithm, and the reached set of this analysis.
+     * Must not be called while the analysis is still running.
+     */
+    private void close() {
+      if (cpa != null) {
+        CPAs.closeCpaIfPossible(cpa, logger);
+        cpa = null;
+      }
+      if (algorithm != null) {
+        CPAs.closeIfPossible(algorithm, logger);
+        algorithm = null;
+      }
+      if (reached != null) {
+        CPAs.closeReachedSetIfPossible(reached, logger);
+        reached = null;
+      }
+    }
+  }
+
+  private boolean runParallel(ForwardingReachedSet pReached, CFANode mainFunction)
+      throws CPAException, InterruptedException {
+
+    List<PortfolioAnalysis> analyses = new ArrayList<>(configFiles.size());
+    for (Path configFile : configFiles) {
+      List<String> parts = CONFIG_FILE_CONDITION_SPLITTER.splitToList(configFile.toString());
+      if (parts.size() == 2) {
+        logger.logf(Level.WARNING, "Ignoring restart condition '%s' of configuration '%s' because all configurations run in parallel.", parts.get(1), parts.get(0));
+      }
+      analyses.add(new PortfolioAnalysis(analyses.size() + 1, Paths.get(parts.get(0)), mainFunction));
+    }
+    stats.portfolio = analyses;
+
+    int threads = parallelThreads > 0 ? parallelThreads : Runtime.getRuntime().availableProcessors();
+    threads = Math.min(threads, analyses.size());
+    logger.log(Level.INFO, "Running", analyses.size(), "analyses with", threads, "threads in parallel.");
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads,
+        Threads.threadFactoryBuilder().setDaemon(true).setNameFormat("RestartAlgorithm analysis %d").build());
+    CompletionService<PortfolioAnalysis> completionService = new ExecutorCompletionService<>(executor);
+
+    // the analysis whose reached set is used as result
+    PortfolioAnalysis result = null;
+
+    stats.totalTime.start();
+    try {
+      for (PortfolioAnalysis analysis : analyses) {
+        completionService.submit(analysis);
+      }
+      stats.noOfAlgorithmsUsed = analyses.size();
+
+      PortfolioAnalysis lastFinished = null;
+      for (int i = 0; i < analyses.size(); i++) {
+        PortfolioAnalysis finished;
+        try {
+          finished = completionService.take().get();
+        } catch (ExecutionException e) {
+          Throwable t = e.getCause();
+          Throwables.propagateIfPossible(t, CPAException.class, InterruptedException.class);
+          throw new UnexpectedCheckedException("parallel analysis", t);
+        }
+
+        if (finished.status == PortfolioStatus.CONCLUSIVE) {
+          logger.log(Level.INFO, "Analysis", finished.index, "with configuration", finished.configFile,
+              "finished first with a conclusive result, stopping the other analyses.");
+          stats.winner = finished;
+          stats.getSubStatistics().addAll(finished.subStats);
+          pReached.setDelegate(finished.reached);
+          result = finished;
+          return finished.sound;
+        }
+
+        if (finished.reached != null) {
+          lastFinished = finished;
+        }
+        logger.log(Level.INFO, "Analysis", finished.index, "finished without conclusive result.");
+      }
+
+      shutdownNotifier.shutdownIfNecessary();
+
+      if (lastFinished != null) {
+        stats.getSubStatistics().addAll(lastFinished.subStats);
+        pReached.setDelegate(lastFinished.reached);
+        result = lastFinished;
+
+      } else {
+        // as in sequential mode, report the failure if there is no other result
+        for (PortfolioAnalysis analysis : analyses) {
+          if (analysis.failure != null) {
+            throw analysis.failure;
+          }
+        }
+      }
+
+      // no analysis has finished with a conclusive result
+      logger.log(Level.INFO, "No configuration finished with a conclusive result.");
+      return false;
+
+    } finally {
+      for (PortfolioAnalysis analysis : analyses) {
+        analysis.singleShutdownNotifier.requestShutdown("Another analysis finished first");
+      }
+      executor.shutdownNow();
+
+      // the remaining analyses share global state with us, so we need to wait for them
+      boolean terminated = awaitTermination(executor);
+
+      if (terminated) {
+        for (PortfolioAnalysis analysis : analyses) {
+          if (analysis != result) {
+            analysis.close();
+          }
+        }
+      }
+      stats.totalTime.stop();
+    }
+  }
+
+  private boolean awaitTermination(ExecutorService executor) {
+    try {
+      while (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+        logger.log(Level.INFO, "Waiting for remaining analyses to stop.");
+      }
+      return true;
+    } catch (InterruptedException e) {
+      // keep the interrupt for our caller, the analyses may still run
+      Thread.currentThread().interrupt();
+      logger.log(Level.WARNING, "Interrupted while waiting for remaining analyses to stop.");
+      return false;
+    }
+  }
+
+  private static long getCurrentThreadCpuTime() {
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    if (!threadBean.isCurrentThreadCpuTimeSupported()) {
+      return -1;
+    }
+    return threadBean.getCurrentThreadCpuTime();
+  }
+
   @Options
   private static class RestartAlgorithmOptions {
 
@@ -348,7 +643,7 @@ public class RestartAlgorithm implements Algorithm, StatisticsProvider {
 
   }
 
-  private Triple<Algorithm, ConfigurableProgramAnalysis, ReachedSet> createNextAlgorithm(Path singleConfigFileName, CFANode mainFunction, ShutdownNotifier singleShutdownNotifier) throws InvalidConfigurationException, CPAException, InterruptedException, IOException {
+  private Triple<Algorithm, ConfigurableProgramAnalysis, ReachedSet> createNextAlgorithm(Path singleConfigFileName, CFANode mainFunction, ShutdownNotifier singleShutdownNotifier, Collection<Statistics> pStatsCollection) throws InvalidConfigurationException, CPAException, InterruptedException, IOException {
 
     ReachedSet reached;
     ConfigurableProgramAnalysis cpa;
@@ -367,7 +662,10 @@ public class RestartAlgorithm implements Algorithm, StatisticsProvider {
     RestartAlgorithmOptions singleOptions = new RestartAlgorithmOptions();
     singleConfig.inject(singleOptions);
 
-    ResourceLimitChecker singleLimits = ResourceLimitChecker.fromConfiguration(singleConfig, logger, singleShutdownNotifier);
+    // in parallel mode, the cpu time of the process is shared by all analyses
+    ResourceLimitChecker singleLimits = runInParallel
+        ? ResourceLimitChecker.fromConfigurationForCurrentThread(singleConfig, logger, singleShutdownNotifier)
+        : ResourceLimitChecker.fromConfiguration(singleConfig, logger, singleShutdownNotifier);
     singleLimits.start();
 
     if (singleOptions.runCBMCasExternalTool) {
@@ -376,8 +674,8 @@ public class RestartAlgorithm implements Algorithm, StatisticsProvider {
       reached = new ReachedSetFactory(singleConfig, logger).create();
     } else {
       ReachedSetFactory singleReachedSetFactory = new ReachedSetFactory(singleConfig, logger);
-      cpa = createCPA(singleReachedSetFactory, singleConfig, singleShutdownNotifier, stats);
-      algorithm = createAlgorithm(cpa, singleConfig, singleShutdownNotifier, stats, singleReachedSetFactory, singleOptions);
+      cpa = createCPA(singleReachedSetFactory, singleConfig, singleShutdownNotifier, pStatsCollection);
+      algorithm = createAlgorithm(cpa, singleConfig, singleShutdownNotifier, singleReachedSetFactory, singleOptions);
       reached = createInitialReachedSetForRestart(cpa, mainFunction, singleReachedSetFactory);
     }
 
@@ -400,22 +698,21 @@ public class RestartAlgorithm implements Algorithm, StatisticsProvider {
 
   private ConfigurableProgramAnalysis createCPA(ReachedSetFactory pReachedSetFactory,
       Configuration pConfig, ShutdownNotifier singleShutdownNotifier,
-      RestartAlgorithmStatistics stats) throws InvalidConfigurationException, CPAException {
+      Collection<Statistics> pStatsCollection) throws InvalidConfigurationException, CPAException {
     logger.log(Level.FINE, "Creating CPAs");
 
     CPABuilder builder = new CPABuilder(pConfig, logger, singleShutdownNotifier, pReachedSetFactory);
     ConfigurableProgramAnalysis cpa = builder.buildCPAs(cfa);
 
     if (cpa instanceof StatisticsProvider) {
-      ((StatisticsProvider)cpa).collectStatistics(stats.getSubStatistics());
+      ((StatisticsProvider)cpa).collectStatistics(pStatsCollection);
     }
     return cpa;
   }
 
   private Algorithm createAlgorithm(
       final ConfigurableProgramAnalysis cpa, Configuration pConfig,
-      final ShutdownNotifier singleShutdownNotifier,
-      final RestartAlgorithmStatistics stats, ReachedSetFactory singleReachedSetFactory,
+      final ShutdownNotifier singleShutdownNotifier, ReachedSetFactory singleReachedSetFactory,
       RestartAlgorithmOptions pOptions)
   throws InvalidConfigurationException, CPAException {
     logger.log(Level.FINE, "Creating algorithms");
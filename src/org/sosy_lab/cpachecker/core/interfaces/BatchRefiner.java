@@ -0,0 +1,63 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.core.interfaces;
+
+import org.sosy_lab.cpachecker.core.reachedset.ReachedSet;
+import org.sosy_lab.cpachecker.exceptions.CPAException;
+
+/**
+ * Interface for refiners that can refine several target states at once.
+ * If batching is enabled, the CEGAR algorithm continues the exploration
+ * after a target state was found until the refiner reports that its batch
+ * is complete, and then hands all target states in the reached set
+ * to {@link #performBatchRefinement(ReachedSet)}.
+ */
+public interface BatchRefiner extends Refiner {
+
+  /**
+   * Whether target states should be collected in batches at all.
+   * If this returns false, the refiner is used like a normal {@link Refiner}.
+   */
+  public boolean isBatchingEnabled();
+
+  /**
+   * Check whether enough target states have been collected
+   * such that the refinement should be started.
+   * This is called once for each newly found target state.
+   *
+   * @param pReached The reached set, its last state is the newly found target state.
+   * @return Whether the current batch is complete.
+   */
+  public boolean isBatchComplete(ReachedSet pReached);
+
+  /**
+   * Perform refinement of all target states in the reached set.
+   *
+   * @param pReached The reached set.
+   * @return Whether the refinement was successful, i.e., all counterexamples were spurious.
+   * @throws CPAException If an error occured during refinement.
+   * @throws InterruptedException
+   */
+  public boolean performBatchRefinement(ReachedSet pReached) throws CPAException, InterruptedException;
+}
@@ -0,0 +1,235 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.core.reachedset;
+
+import java.io.PrintStream;
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.sosy_lab.common.Pair;
+import org.sosy_lab.cpachecker.cfa.model.CFANode;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.interfaces.Precision;
+import org.sosy_lab.cpachecker.core.waitlist.Waitlist.WaitlistFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Thread-safe variant of {@link PartitionedReachedSet}.
+ *
+ * All single operations on the reached set and the waitlist are atomic.
+ * Additionally, there is one lock object per partition
+ * (see {@link #getPartitionLock(AbstractState)}), which clients can hold
+ * while they execute a sequence of operations on one partition
+ * (e.g., merge, stop, and add for a new successor).
+ * This way, operations on different partitions can run in parallel,
+ * while operations on the same partition are serialized.
+ * Lock ordering: a thread holding the lock of the reached set itself
+ * must never try to acquire a partition lock.
+ *
+ * All collections and iterators returned by this class
+ * (e.g., by {@link #asCollection()}, {@link #iterator()}, {@link #getWaitlist()},
+ * and the getReached methods) are snapshots that are taken atomically
+ * and do not reflect later changes.
+ * They can safely be used while other threads modify this reached set,
+ * but each call copies the respective collection,
+ * so such methods should not be called in hot loops.
+ */
+public class ConcurrentPartitionedReachedSet extends PartitionedReachedSet {
+
+  private final ConcurrentMap<Object, Object> partitionLocks = new ConcurrentHashMap<>();
+
+  public ConcurrentPartitionedReachedSet(WaitlistFactory waitlistFactory) {
+    super(waitlistFactory);
+  }
+
+  /**
+   * Get the lock object that guards the partition of a given state.
+   * The returned object is the same for all states in the same partition.
+   */
+  public Object getPartitionLock(AbstractState pState) {
+    Object key = getPartitionKey(pState);
+    Object lock = partitionLocks.get(key);
+    if (lock == null) {
+      Object newLock = new Object();
+      lock = partitionLocks.putIfAbsent(key, newLock);
+      if (lock == null) {
+        lock = newLock;
+      }
+    }
+    return lock;
+  }
+
+  @Override
+  public synchronized void add(AbstractState pState, Precision pPrecision) {
+    super.add(pState, pPrecision);
+  }
+
+  @Override
+  public synchronized void addAll(Iterable<Pair<AbstractState, Precision>> pToAdd) {
+    super.addAll(pToAdd);
+  }
+
+  @Override
+  public synchronized void reAddToWaitlist(AbstractState pState) {
+    super.reAddToWaitlist(pState);
+  }
+
+  @Override
+  public synchronized void updatePrecision(AbstractState pState, Precision pNewPrecision) {
+    super.updatePrecision(pState, pNewPrecision);
+  }
+
+  @Override
+  public synchronized void remove(AbstractState pState) {
+    super.remove(pState);
+  }
+
+  @Override
+  public synchronized void removeAll(Iterable<? extends AbstractState> pToRemove) {
+    super.removeAll(pToRemove);
+  }
+
+  @Override
+  public synchronized void removeOnlyFromWaitlist(AbstractState pState) {
+    super.removeOnlyFromWaitlist(pState);
+  }
+
+  @Override
+  public synchronized void clear() {
+    super.clear();
+    partitionLocks.clear();
+  }
+
+  @Override
+  public synchronized AbstractState popFromWaitlist() {
+    return super.popFromWaitlist();
+  }
+
+  @Override
+  public synchronized Collection<AbstractState> getReached(AbstractState pState) {
+    return ImmutableList.copyOf(super.getReached(pState));
+  }
+
+  @Override
+  public synchronized Collection<AbstractState> getReached(CFANode pLocation) {
+    return ImmutableList.copyOf(super.getReached(pLocation));
+  }
+
+  @Override
+  public synchronized Set<AbstractState> asCollection() {
+    return ImmutableSet.copyOf(super.asCollection());
+  }
+
+  @Override
+  public Iterator<AbstractState> iterator() {
+    return asCollection().iterator();
+  }
+
+  @Override
+  public synchronized Collection<Precision> getPrecisions() {
+    return ImmutableList.copyOf(super.getPrecisions());
+  }
+
+  @Override
+  public synchronized Collection<AbstractState> getWaitlist() {
+    return ImmutableList.copyOf(super.getWaitlist());
+  }
+
+  @Override
+  public synchronized Map.Entry<Object, Collection<AbstractState>> getMaxPartition() {
+    Map.Entry<Object, Collection<AbstractState>> maxPartition = super.getMaxPartition();
+    if (maxPartition == null) {
+      return null;
+    }
+    return new AbstractMap.SimpleImmutableEntry<Object, Collection<AbstractState>>(
+        maxPartition.getKey(), ImmutableList.copyOf(maxPartition.getValue()));
+  }
+
+  @Override
+  protected synchronized Set<?> getKeySet() {
+    return ImmutableSet.copyOf(super.getKeySet());
+  }
+
+  @Override
+  public synchronized void printCoverageIndexStatistics(PrintStream pOut) {
+    super.printCoverageIndexStatistics(pOut);
+  }
+
+  @Override
+  public synchronized AbstractState getFirstState() {
+    return super.getFirstState();
+  }
+
+  @Override
+  public synchronized AbstractState getLastState() {
+    return super.getLastState();
+  }
+
+  @Override
+  public synchronized boolean hasWaitingState() {
+    return super.hasWaitingState();
+  }
+
+  @Override
+  public synchronized int getWaitlistSize() {
+    return super.getWaitlistSize();
+  }
+
+  @Override
+  public synchronized Precision getPrecision(AbstractState pState) {
+    return super.getPrecision(pState);
+  }
+
+  @Override
+  public synchronized boolean contains(AbstractState pState) {
+    return super.contains(pState);
+  }
+
+  @Override
+  public synchronized int size() {
+    return super.size();
+  }
+
+  @Override
+  public synchronized boolean isEmpty() {
+    return super.isEmpty();
+  }
+
+  @Override
+  public synchronized int getNumberOfPartitions() {
+    return super.getNumberOfPartitions();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return super.toString();
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.core.reachedset;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.interfaces.Partitionable;
+import org.sosy_lab.cpachecker.core.interfaces.Precision;
+import org.sosy_lab.cpachecker.core.waitlist.Waitlist.TraversalMethod;
+
+import com.google.common.collect.ImmutableSet;
+
+public class ConcurrentPartitionedReachedSetTest {
+
+  private static class TestState implements AbstractState, Partitionable {
+
+    private final int partition;
+    private final int value;
+
+    private TestState(int pPartition, int pValue) {
+      partition = pPartition;
+      value = pValue;
+    }
+
+    @Override
+    public Object getPartitionKey() {
+      return partition;
+    }
+
+    @Override
+    public boolean equals(Object pObj) {
+      if (!(pObj instanceof TestState)) {
+        return false;
+      }
+      TestState other = (TestState)pObj;
+      return partition == other.partition && value == other.value;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(partition, value);
+    }
+
+    @Override
+    public String toString() {
+      return partition + ":" + value;
+    }
+  }
+
+  private static final int THREADS = 4;
+  private static final int STATES_PER_THREAD = 1000;
+
+  private final Precision precision = mock(Precision.class);
+  private ConcurrentPartitionedReachedSet reached;
+
+  @Before
+  public void setUp() {
+    reached = new ConcurrentPartitionedReachedSet(TraversalMethod.BFS);
+  }
+
+  @Test
+  public void testPartitionLocks() {
+    Object lock = reached.getPartitionLock(new TestState(0, 0));
+    Assert.assertSame(lock, reached.getPartitionLock(new TestState(0, 1)));
+    Assert.assertNotSame(lock, reached.getPartitionLock(new TestState(1, 0)));
+  }
+
+  @Test
+  public void testIterationIsSnapshot() {
+    reached.add(new TestState(0, 0), precision);
+    reached.add(new TestState(0, 1), precision);
+
+    int count = 0;
+    for (AbstractState state : reached) {
+      // would throw a ConcurrentModificationException for a live view
+      reached.add(new TestState(1, ((TestState)state).value), precision);
+      count++;
+    }
+    Assert.assertEquals(2, count);
+    Assert.assertEquals(4, reached.size());
+
+    Set<AbstractState> partition = ImmutableSet.copyOf(reached.getReached(new TestState(0, 5)));
+    reached.add(new TestState(0, 2), precision);
+    Assert.assertEquals(ImmutableSet.of(new TestState(0, 0), new TestState(0, 1)), partition);
+  }
+
+  @Test
+  public void testConcurrentAddAndPop() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<Set<AbstractState>>> results = new ArrayList<>(THREADS);
+      for (int i = 0; i < THREADS; i++) {
+        final int thread = i;
+        results.add(executor.submit(new Callable<Set<AbstractState>>() {
+          @Override
+          public Set<AbstractState> call() {
+            Set<AbstractState> popped = new HashSet<>();
+            for (int j = 0; j < STATES_PER_THREAD; j++) {
+              // all threads use the same partitions
+              reached.add(new TestState(j % 10, thread * STATES_PER_THREAD + j), precision);
+              synchronized (reached) {
+                if (reached.hasWaitingState()) {
+                  popped.add(reached.popFromWaitlist());
+                }
+              }
+            }
+            return popped;
+          }
+        }));
+      }
+
+      Set<AbstractState> allPopped = new HashSet<>();
+      int numPopped = 0;
+      for (Future<Set<AbstractState>> result : results) {
+        Set<AbstractState> popped = result.get();
+        numPopped += popped.size();
+        allPopped.addAll(popped);
+      }
+
+      // no state was lost and no state was popped twice
+      Assert.assertEquals(THREADS * STATES_PER_THREAD, reached.size());
+      Assert.assertEquals(numPopped, allPopped.size());
+      Assert.assertEquals(THREADS * STATES_PER_THREAD, numPopped + reached.getWaitlistSize());
+      Assert.assertEquals(THREADS * STATES_PER_THREAD / 10, reached.getReached(new TestState(3, 0)).size());
+
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
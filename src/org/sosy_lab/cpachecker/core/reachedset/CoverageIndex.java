@@ -0,0 +1,58 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.core.reachedset;
+
+import java.util.Collection;
+
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+
+/**
+ * An index over the states of one partition of the reached set
+ * that allows to find the states that may cover a given state
+ * without checking each state of the partition.
+ *
+ * Stop operators that check whether a state is covered by any single
+ * state of the partition (stop-sep) can use
+ * {@link PartitionedReachedSet#getCoveringCandidates(Collection, AbstractState)}
+ * to retrieve the candidates from the collection returned by
+ * {@link ReachedSet#getReached(AbstractState)}.
+ */
+public interface CoverageIndex {
+
+  void add(AbstractState pState);
+
+  void remove(AbstractState pState);
+
+  /**
+   * Return the states of the partition that may cover the given state.
+   * This needs to be a superset of all states that cover the given state,
+   * and it needs to be in a deterministic order.
+   */
+  Collection<AbstractState> getCoveringCandidates(AbstractState pState);
+
+  public static interface CoverageIndexFactory {
+
+    CoverageIndex createCoverageIndex();
+  }
+}
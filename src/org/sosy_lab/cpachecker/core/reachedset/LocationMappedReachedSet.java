@@ -26,8 +26,11 @@ package org.sosy_lab.cpachecker.core.reachedset;
 import java.util.Collection;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import org.sosy_lab.cpachecker.cfa.model.CFANode;
 import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.reachedset.CoverageIndex.CoverageIndexFactory;
 import org.sosy_lab.cpachecker.core.waitlist.Waitlist.WaitlistFactory;
 import org.sosy_lab.cpachecker.util.AbstractStates;
 
@@ -42,6 +45,11 @@ public class LocationMappedReachedSet extends PartitionedReachedSet {
     super(waitlistFactory);
   }
 
+  public LocationMappedReachedSet(WaitlistFactory waitlistFactory,
+      @Nullable CoverageIndexFactory pCoverageIndexFactory) {
+    super(waitlistFactory, pCoverageIndexFactory);
+  }
+
   @Override
   public Collection<AbstractState> getReached(CFANode location) {
     return getReachedForKey(location);
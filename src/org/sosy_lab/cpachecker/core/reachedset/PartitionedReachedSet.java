@@ -23,16 +23,23 @@
  */
 package org.sosy_lab.cpachecker.core.reachedset;
 
+import java.io.PrintStream;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
+import org.sosy_lab.common.time.Timer;
 import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
 import org.sosy_lab.cpachecker.core.interfaces.Partitionable;
 import org.sosy_lab.cpachecker.core.interfaces.Precision;
+import org.sosy_lab.cpachecker.core.reachedset.CoverageIndex.CoverageIndexFactory;
 import org.sosy_lab.cpachecker.core.waitlist.Waitlist.WaitlistFactory;
 
+import com.google.common.collect.ForwardingCollection;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
 
@@ -55,22 +62,56 @@ public class PartitionedReachedSet extends DefaultReachedSet {
 
   private final Multimap<Object, AbstractState> partitionedReached = LinkedHashMultimap.create(100, 1);
 
+  // null if no coverage index is used
+  private final @Nullable CoverageIndexFactory coverageIndexFactory;
+  private final Map<Object, CoverageIndex> coverageIndices = new HashMap<>();
+
+  private final Timer coverageIndexTimer = new Timer();
+  private long coverageIndexQueries = 0;
+  private long coverageIndexCandidates = 0;
+  private long coverageIndexPartitionSizes = 0;
+
   public PartitionedReachedSet(WaitlistFactory waitlistFactory) {
+    this(waitlistFactory, null);
+  }
+
+  public PartitionedReachedSet(WaitlistFactory waitlistFactory,
+      @Nullable CoverageIndexFactory pCoverageIndexFactory) {
     super(waitlistFactory);
+    coverageIndexFactory = pCoverageIndexFactory;
   }
 
   @Override
   public void add(AbstractState pState, Precision pPrecision) {
     super.add(pState, pPrecision);
 
-    partitionedReached.put(getPartitionKey(pState), pState);
+    Object key = getPartitionKey(pState);
+    boolean added = partitionedReached.put(key, pState);
+
+    if (coverageIndexFactory != null && added) {
+      CoverageIndex index = coverageIndices.get(key);
+      if (index == null) {
+        index = coverageIndexFactory.createCoverageIndex();
+        coverageIndices.put(key, index);
+      }
+      index.add(pState);
+    }
   }
 
   @Override
   public void remove(AbstractState pState) {
     super.remove(pState);
 
-    partitionedReached.remove(getPartitionKey(pState), pState);
+    Object key = getPartitionKey(pState);
+    boolean removed = partitionedReached.remove(key, pState);
+
+    if (coverageIndexFactory != null && removed) {
+      if (partitionedReached.containsKey(key)) {
+        coverageIndices.get(key).remove(pState);
+      } else {
+        coverageIndices.remove(key);
+      }
+    }
   }
 
   @Override
@@ -78,6 +119,7 @@ public class PartitionedReachedSet extends DefaultReachedSet {
     super.clear();
 
     partitionedReached.clear();
+    coverageIndices.clear();
   }
 
   @Override
@@ -109,10 +151,83 @@ public class PartitionedReachedSet extends DefaultReachedSet {
   }
 
   protected Collection<AbstractState> getReachedForKey(Object key) {
-    return Collections.unmodifiableCollection(partitionedReached.get(key));
+    Collection<AbstractState> partition = Collections.unmodifiableCollection(partitionedReached.get(key));
+    if (coverageIndexFactory != null) {
+      CoverageIndex index = coverageIndices.get(key);
+      if (index != null) {
+        return new IndexedPartition(partition, index);
+      }
+    }
+    return partition;
   }
 
   protected Set<?> getKeySet() {
     return Collections.unmodifiableSet(partitionedReached.keySet());
   }
+
+  /**
+   * Get the states of a partition that may cover a given state.
+   * If the partition was returned by a PartitionedReachedSet with a coverage index,
+   * the index is used, otherwise the partition itself is returned.
+   *
+   * @param pPartition A collection returned by {@link ReachedSet#getReached(AbstractState)}.
+   * @param pState The state for which coverage should be checked.
+   * @return A subset of the partition that contains all states that may cover the given state.
+   */
+  public static Collection<AbstractState> getCoveringCandidates(
+      Collection<AbstractState> pPartition, AbstractState pState) {
+    if (pPartition instanceof IndexedPartition) {
+      return ((IndexedPartition)pPartition).getCoveringCandidates(pState);
+    }
+    return pPartition;
+  }
+
+  public boolean hasCoverageIndex() {
+    return coverageIndexFactory != null;
+  }
+
+  public void printCoverageIndexStatistics(PrintStream out) {
+    out.println("  Number of coverage-index queries: " + coverageIndexQueries);
+    if (coverageIndexQueries > 0) {
+      out.println("    Avg checks with index:       " + div(coverageIndexCandidates, coverageIndexQueries));
+      out.println("    Avg checks without index:    " + div(coverageIndexPartitionSizes, coverageIndexQueries));
+      out.println("    Time for index queries:      " + coverageIndexTimer);
+    }
+  }
+
+  private static String div(long l1, long l2) {
+    return String.format("%.2f", (double)l1 / l2);
+  }
+
+  /**
+   * View of a partition that carries the coverage index of this partition.
+   */
+  private class IndexedPartition extends ForwardingCollection<AbstractState> {
+
+    private final Collection<AbstractState> delegate;
+    private final CoverageIndex index;
+
+    private IndexedPartition(Collection<AbstractState> pDelegate, CoverageIndex pIndex) {
+      delegate = pDelegate;
+      index = pIndex;
+    }
+
+    @Override
+    protected Collection<AbstractState> delegate() {
+      return delegate;
+    }
+
+    private Collection<AbstractState> getCoveringCandidates(AbstractState pState) {
+      coverageIndexTimer.start();
+      try {
+        Collection<AbstractState> candidates = index.getCoveringCandidates(pState);
+        coverageIndexQueries++;
+        coverageIndexCandidates += candidates.size();
+        coverageIndexPartitionSizes += delegate.size();
+        return candidates;
+      } finally {
+        coverageIndexTimer.stop();
+      }
+    }
+  }
 }
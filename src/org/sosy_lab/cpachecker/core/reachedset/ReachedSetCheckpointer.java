@@ -0,0 +1,395 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.core.reachedset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.Nullable;
+
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.FileOption;
+import org.sosy_lab.common.configuration.IntegerOption;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.configuration.Option;
+import org.sosy_lab.common.configuration.Options;
+import org.sosy_lab.common.configuration.TimeSpanOption;
+import org.sosy_lab.common.io.Path;
+import org.sosy_lab.common.io.Paths;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.common.time.TimeSpan;
+import org.sosy_lab.common.time.Timer;
+import org.sosy_lab.cpachecker.core.CPAcheckerResult.Result;
+import org.sosy_lab.cpachecker.core.algorithm.Algorithm;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.interfaces.AlgorithmIterationListener;
+import org.sosy_lab.cpachecker.core.interfaces.Precision;
+import org.sosy_lab.cpachecker.core.interfaces.Statistics;
+import org.sosy_lab.cpachecker.cpa.arg.ARGState;
+import org.sosy_lab.cpachecker.util.AbstractStates;
+import org.sosy_lab.cpachecker.util.globalinfo.GlobalInfo;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Writes snapshots of the reached set (states, waitlist, and precisions)
+ * to a file while the analysis is running, and restores a reached set
+ * from such a snapshot.
+ *
+ * The ARG is part of the snapshot because all ARG states are written
+ * into the same object stream and thus keep their references to each other.
+ * The file layout follows the one used for proofs
+ * (cf. {@link org.sosy_lab.cpachecker.pcc.strategy.AbstractStrategy}):
+ * a zip file with an entry for the reached set and an entry for the
+ * helper storages of {@link GlobalInfo}.
+ *
+ * Snapshots are written after an iteration of the CPA algorithm
+ * if the configured number of iterations or the configured wall time
+ * since the last snapshot has passed.
+ */
+@Options(prefix="analysis.checkpoint")
+public class ReachedSetCheckpointer implements AlgorithmIterationListener, Statistics {
+
+  private static final String REACHED_ENTRY = "Reached";
+  private static final String HELPER_ENTRY = "Helper";
+
+  @Option(description="file to which snapshots of the reached set are written")
+  @FileOption(FileOption.Type.OUTPUT_FILE)
+  private Path file = Paths.get("reached.checkpoint");
+
+  @Option(name="interval.iterations",
+      description="write a snapshot of the reached set every n iterations of the CPA algorithm"
+      + " (0 to disable)")
+  @IntegerOption(min=0)
+  private int iterationInterval = 0;
+
+  @Option(name="interval.walltime",
+      description="write a snapshot of the reached set if this much wall time has passed"
+      + " since the last snapshot (use seconds or specify a unit; 0 to disable)")
+  @TimeSpanOption(codeUnit=TimeUnit.NANOSECONDS,
+      defaultUserUnit=TimeUnit.SECONDS,
+      min=0)
+  private TimeSpan wallTimeInterval = TimeSpan.ofNanos(0);
+
+  @Option(description="continue the analysis from a snapshot of the reached set"
+      + " that was written by a previous run with the same program and configuration")
+  @FileOption(FileOption.Type.REQUIRED_INPUT_FILE)
+  private @Nullable Path resume = null;
+
+  private final LogManager logger;
+
+  private boolean enabled;
+  private int iterationsSinceCheckpoint = 0;
+  private long lastCheckpoint = System.nanoTime();
+
+  private final Timer writeTimer = new Timer();
+  private final Timer readTimer = new Timer();
+  private int lastCheckpointSize = 0;
+
+  public ReachedSetCheckpointer(Configuration pConfig, LogManager pLogger)
+      throws InvalidConfigurationException {
+    pConfig.inject(this);
+    logger = pLogger;
+    enabled = file != null && (iterationInterval > 0 || wallTimeInterval.asNanos() > 0);
+  }
+
+  /**
+   * Whether snapshots should be written during the analysis.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Whether the analysis should be resumed from a snapshot
+   * with {@link #restore(ReachedSet)} instead of starting from the initial state.
+   */
+  public boolean shouldResume() {
+    return resume != null;
+  }
+
+  /**
+   * Check whether snapshots can be written for the given reached set,
+   * which needs to contain the initial state already.
+   * This fails if the reached set is explored in parallel,
+   * or if the initial state or its precision cannot be serialized.
+   * States or precisions that are created later and cannot be serialized
+   * are only detected when the next snapshot is written,
+   * which disables all further snapshots.
+   */
+  public void checkCompatibility(UnmodifiableReachedSet pReached)
+      throws InvalidConfigurationException {
+    UnmodifiableReachedSet reached = pReached;
+    while (reached instanceof ForwardingReachedSet) {
+      reached = ((ForwardingReachedSet)reached).getDelegate();
+    }
+    if (reached instanceof ConcurrentPartitionedReachedSet) {
+      // other workers may modify the ARG while it is written
+      throw new InvalidConfigurationException("Snapshots of the reached set"
+          + " are not supported with parallel exploration of the reached set.");
+    }
+
+    AbstractState firstState = pReached.getFirstState();
+    if (firstState == null) {
+      return;
+    }
+    try (ObjectOutputStream o = new ObjectOutputStream(ByteStreams.nullOutputStream())) {
+      o.writeObject(firstState);
+      o.writeObject(pReached.getPrecision(firstState));
+    } catch (NotSerializableException e) {
+      throw new InvalidConfigurationException("Snapshots of the reached set need serializable"
+          + " states and precisions, but class " + e.getMessage() + " does not implement"
+          + " the Serializable interface.", e);
+    } catch (IOException e) {
+      throw new AssertionError("Writing to a null stream should not fail", e);
+    }
+  }
+
+  @Override
+  public void afterAlgorithmIteration(Algorithm pAlg, ReachedSet pReached) {
+    if (!enabled) {
+      return;
+    }
+
+    iterationsSinceCheckpoint++;
+    if ((iterationInterval > 0 && iterationsSinceCheckpoint >= iterationInterval)
+        || (wallTimeInterval.asNanos() > 0
+            && System.nanoTime() - lastCheckpoint >= wallTimeInterval.asNanos())) {
+
+      checkpoint(pReached);
+      iterationsSinceCheckpoint = 0;
+      lastCheckpoint = System.nanoTime();
+    }
+  }
+
+  /**
+   * Write a snapshot of the reached set.
+   * The snapshot is first written to a temporary file, which then replaces
+   * the previous snapshot, such that there is always one complete snapshot.
+   * If some state or precision cannot be serialized,
+   * a warning is logged once and no further snapshots are attempted.
+   */
+  public void checkpoint(UnmodifiableReachedSet pReached) {
+    java.nio.file.Path target = file.toFile().toPath().toAbsolutePath();
+    java.nio.file.Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+
+    writeTimer.start();
+    try {
+      Files.createDirectories(target.getParent());
+      try (OutputStream fos = Files.newOutputStream(tmp);
+           ZipOutputStream zos = new ZipOutputStream(fos)) {
+
+        // helper storages are written first, because states may need them when they are read
+        zos.putNextEntry(new ZipEntry(HELPER_ENTRY));
+        ObjectOutputStream o = new ObjectOutputStream(zos);
+        GlobalInfo.getInstance().writeHelperStorages(o);
+        o.flush();
+        zos.closeEntry();
+
+        zos.putNextEntry(new ZipEntry(REACHED_ENTRY));
+        o = new ObjectOutputStream(zos);
+        writeReachedSet(o, pReached);
+        o.flush();
+        zos.closeEntry();
+      }
+
+      try {
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+      lastCheckpointSize = pReached.size();
+      logger.log(Level.FINE, "Wrote snapshot of reached set with", lastCheckpointSize, "states to", target);
+
+    } catch (NotSerializableException e) {
+      logger.log(Level.WARNING, "Snapshot of reached set cannot be written because class",
+          e.getMessage(), "does not implement the Serializable interface, disabling snapshots.");
+      enabled = false;
+    } catch (IOException e) {
+      logger.logUserException(Level.WARNING, e, "Could not write snapshot of reached set");
+    } finally {
+      writeTimer.stop();
+    }
+  }
+
+  /*
+   * Format of the reached entry:
+   * the number of distinct precisions, the precisions,
+   * the number of states, and for each state the state itself and the index of its precision,
+   * starting with the first state,
+   * and finally the number of waiting states and the waiting states in waitlist order.
+   */
+  private static void writeReachedSet(ObjectOutputStream o, UnmodifiableReachedSet pReached)
+      throws IOException {
+    Map<Precision, Integer> precisionIds = new IdentityHashMap<>();
+    List<Precision> precisions = new ArrayList<>();
+    for (AbstractState state : pReached) {
+      Precision precision = pReached.getPrecision(state);
+      if (!precisionIds.containsKey(precision)) {
+        precisionIds.put(precision, precisions.size());
+        precisions.add(precision);
+      }
+    }
+
+    o.writeInt(precisions.size());
+    for (Precision precision : precisions) {
+      o.writeObject(precision);
+    }
+
+    o.writeInt(pReached.size());
+    AbstractState firstState = pReached.getFirstState();
+    if (firstState != null) {
+      o.writeObject(firstState);
+      o.writeInt(precisionIds.get(pReached.getPrecision(firstState)));
+    }
+    for (AbstractState state : pReached) {
+      if (state != firstState) {
+        o.writeObject(state);
+        o.writeInt(precisionIds.get(pReached.getPrecision(state)));
+      }
+    }
+
+    o.writeInt(pReached.getWaitlist().size());
+    for (AbstractState state : pReached.getWaitlist()) {
+      o.writeObject(state);
+    }
+  }
+
+  /**
+   * Fill an empty reached set with the content of the snapshot
+   * given by the option analysis.checkpoint.resume.
+   * The CFA, the CPA, and the automata of the specification need to be present
+   * in {@link GlobalInfo} already, because deserialized states refer to them.
+   */
+  public void restore(ReachedSet pReached) throws IOException, InvalidConfigurationException {
+    if (!pReached.isEmpty()) {
+      throw new IllegalArgumentException("Snapshot can only be restored into an empty reached set");
+    }
+    logger.log(Level.INFO, "Resuming analysis from snapshot", resume);
+
+    readTimer.start();
+    try (InputStream fis = resume.asByteSource().openStream();
+         ZipInputStream zis = new ZipInputStream(fis)) {
+
+      // read helper storages first, like PCC does, because states may need them while being read
+      ZipEntry entry = zis.getNextEntry();
+      if (entry == null || !entry.getName().equals(HELPER_ENTRY)) {
+        throw new InvalidConfigurationException(resume + " is not a snapshot of a reached set.");
+      }
+      ObjectInputStream o = new ObjectInputStream(zis);
+      GlobalInfo.getInstance().readHelperStorages(o);
+      zis.closeEntry();
+
+      entry = zis.getNextEntry();
+      if (entry == null || !entry.getName().equals(REACHED_ENTRY)) {
+        throw new InvalidConfigurationException(resume + " is not a snapshot of a reached set.");
+      }
+      o = new ObjectInputStream(zis);
+      readReachedSet(o, pReached);
+      zis.closeEntry();
+
+    } catch (ClassNotFoundException | ClassCastException e) {
+      throw new InvalidConfigurationException("Snapshot " + resume + " does not fit to this version"
+          + " or configuration of CPAchecker (" + e.getMessage() + ")", e);
+    } finally {
+      readTimer.stop();
+    }
+
+    // new ARGStates must not get the ids of restored ones, ids define the order of states
+    ARGState root = AbstractStates.extractStateByType(pReached.getFirstState(), ARGState.class);
+    if (root != null) {
+      int maxStateId = -1;
+      for (ARGState state : root.getSubgraph()) {
+        maxStateId = Math.max(maxStateId, state.getStateId());
+      }
+      ARGState.skipStateIdsPast(maxStateId);
+    }
+
+    logger.log(Level.INFO, "Restored", pReached.size(), "states,",
+        pReached.getWaitlistSize(), "of them waiting.");
+  }
+
+  private static void readReachedSet(ObjectInputStream o, ReachedSet pReached)
+      throws IOException, ClassNotFoundException {
+    int numberOfPrecisions = o.readInt();
+    List<Precision> precisions = new ArrayList<>(numberOfPrecisions);
+    for (int i = 0; i < numberOfPrecisions; i++) {
+      precisions.add((Precision) o.readObject());
+    }
+
+    int numberOfStates = o.readInt();
+    for (int i = 0; i < numberOfStates; i++) {
+      AbstractState state = (AbstractState) o.readObject();
+      pReached.add(state, precisions.get(o.readInt()));
+    }
+
+    // restore the waitlist in its original order
+    int numberOfWaitingStates = o.readInt();
+    List<AbstractState> waiting = new ArrayList<>(numberOfWaitingStates);
+    for (int i = 0; i < numberOfWaitingStates; i++) {
+      waiting.add((AbstractState) o.readObject());
+    }
+    for (AbstractState state : new ArrayList<>(pReached.getWaitlist())) {
+      pReached.removeOnlyFromWaitlist(state);
+    }
+    for (AbstractState state : waiting) {
+      pReached.reAddToWaitlist(state);
+    }
+  }
+
+  @Override
+  public void printStatistics(PrintStream out, Result pResult, ReachedSet pReached) {
+    if (resume != null) {
+      out.println("Time for restoring snapshot:        " + readTimer);
+    }
+    if (writeTimer.getNumberOfIntervals() > 0) {
+      out.println("Number of written snapshots:        " + writeTimer.getNumberOfIntervals());
+      out.println("Size of last snapshot:              " + lastCheckpointSize + " states");
+      out.println("Time for writing snapshots:         " + writeTimer
+          + " (max: " + writeTimer.getMaxTime().formatAs(TimeUnit.SECONDS) + ")");
+    }
+  }
+
+  @Override
+  public String getName() {
+    return "Reached-set snapshots";
+  }
+}
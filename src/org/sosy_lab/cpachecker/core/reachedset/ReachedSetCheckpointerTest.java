@@ -0,0 +1,200 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.core.reachedset;
+
+import static org.junit.Assert.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.FileOption;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.configuration.converters.FileTypeConverter;
+import org.sosy_lab.common.io.Files;
+import org.sosy_lab.common.io.Files.DeleteOnCloseFile;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.common.log.TestLogManager;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.interfaces.Precision;
+import org.sosy_lab.cpachecker.cpa.arg.ARGState;
+
+public class ReachedSetCheckpointerTest {
+
+  private static class TestState implements AbstractState, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int value;
+
+    private TestState(int pValue) {
+      value = pValue;
+    }
+  }
+
+  private static class TestPrecision implements Precision, Serializable {
+
+    private static final long serialVersionUID = 1L;
+  }
+
+  private static class NonSerializableState implements AbstractState { }
+
+  private final LogManager logger = TestLogManager.getInstance();
+  private DeleteOnCloseFile tempFile;
+  private String snapshot;
+
+  @Before
+  public void setup() throws Exception {
+    tempFile = Files.createTempFile("reached", ".checkpoint");
+    snapshot = tempFile.toPath().toFile().getAbsolutePath();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    tempFile.close();
+  }
+
+  private Configuration config(String option, String value) throws InvalidConfigurationException {
+    return Configuration.builder()
+        .setOption(option, value)
+        .setOption("analysis.checkpoint.interval.iterations", "1")
+        .addConverter(FileOption.class, new FileTypeConverter(Configuration.defaultConfiguration()))
+        .build();
+  }
+
+  private ReachedSet createReachedSet() throws InvalidConfigurationException {
+    return new ReachedSetFactory(Configuration.defaultConfiguration(), logger).create();
+  }
+
+  private static List<Integer> stateIds(Iterable<AbstractState> states) {
+    List<Integer> result = new ArrayList<>();
+    for (AbstractState state : states) {
+      result.add(((ARGState)state).getStateId());
+    }
+    return result;
+  }
+
+  @Test
+  public void testCheckpointAndRestore() throws Exception {
+    Precision precision1 = new TestPrecision();
+    Precision precision2 = new TestPrecision();
+    ARGState root = new ARGState(new TestState(0), null);
+    ARGState child1 = new ARGState(new TestState(1), root);
+    ARGState child2 = new ARGState(new TestState(2), root);
+    ARGState grandChild = new ARGState(new TestState(3), child1);
+    grandChild.addParent(child2);
+
+    ReachedSet reached = createReachedSet();
+    reached.add(root, precision1);
+    reached.add(child1, precision1);
+    reached.add(child2, precision2);
+    reached.add(grandChild, precision2);
+    reached.removeOnlyFromWaitlist(root);
+    reached.removeOnlyFromWaitlist(child1);
+
+    ReachedSetCheckpointer writer =
+        new ReachedSetCheckpointer(config("analysis.checkpoint.file", snapshot), logger);
+    assertTrue(writer.isEnabled());
+    writer.checkCompatibility(reached);
+    writer.checkpoint(reached);
+    assertTrue(writer.isEnabled());
+
+    ReachedSetCheckpointer reader =
+        new ReachedSetCheckpointer(config("analysis.checkpoint.resume", snapshot), logger);
+    assertTrue(reader.shouldResume());
+    ReachedSet restored = createReachedSet();
+    reader.restore(restored);
+
+    assertEquals(reached.size(), restored.size());
+    assertEquals(stateIds(reached), stateIds(restored));
+    assertEquals(stateIds(reached.getWaitlist()), stateIds(restored.getWaitlist()));
+
+    // the ARG is restored with its structure
+    ARGState restoredRoot = (ARGState)restored.getFirstState();
+    assertEquals(root.getStateId(), restoredRoot.getStateId());
+    assertEquals(0, ((TestState)restoredRoot.getWrappedState()).value);
+    assertEquals(2, restoredRoot.getChildren().size());
+    assertTrue(restoredRoot.getParents().isEmpty());
+    for (ARGState child : restoredRoot.getChildren()) {
+      assertEquals(1, child.getChildren().size());
+      ARGState restoredGrandChild = child.getChildren().iterator().next();
+      assertEquals(grandChild.getStateId(), restoredGrandChild.getStateId());
+      assertEquals(2, restoredGrandChild.getParents().size());
+    }
+
+    // states that shared a precision still share it
+    ARGState restoredGrandChild = restoredRoot.getChildren().iterator().next()
+        .getChildren().iterator().next();
+    for (AbstractState state : restored) {
+      int id = ((ARGState)state).getStateId();
+      AbstractState sameAs = (id == root.getStateId() || id == child1.getStateId())
+          ? restoredRoot : restoredGrandChild;
+      assertSame(restored.getPrecision(sameAs), restored.getPrecision(state));
+    }
+    assertNotSame(restored.getPrecision(restoredRoot), restored.getPrecision(restoredGrandChild));
+
+    // new states do not get the ids of restored states
+    int newId = new ARGState(null, null).getStateId();
+    for (ARGState state : restoredRoot.getSubgraph()) {
+      assertTrue(newId > state.getStateId());
+    }
+  }
+
+  @Test
+  public void testSkipStateIdsPast() {
+    int id = new ARGState(null, null).getStateId();
+    ARGState.skipStateIdsPast(id + 1000);
+    assertEquals(id + 1001, new ARGState(null, null).getStateId());
+
+    // skipping to a smaller id has no effect
+    ARGState.skipStateIdsPast(id);
+    assertEquals(id + 1002, new ARGState(null, null).getStateId());
+  }
+
+  @Test(expected=InvalidConfigurationException.class)
+  public void testNonSerializableStateIsRejected() throws Exception {
+    ReachedSet reached = createReachedSet();
+    reached.add(new ARGState(new NonSerializableState(), null), new TestPrecision());
+
+    ReachedSetCheckpointer checkpointer =
+        new ReachedSetCheckpointer(config("analysis.checkpoint.file", snapshot), logger);
+    checkpointer.checkCompatibility(reached);
+  }
+
+  @Test(expected=InvalidConfigurationException.class)
+  public void testConcurrentReachedSetIsRejected() throws Exception {
+    Configuration config = Configuration.builder()
+        .setOption("analysis.reachedSet", "CONCURRENTPARTITIONED")
+        .build();
+    ReachedSet reached = new ForwardingReachedSet(new ReachedSetFactory(config, logger).create());
+
+    ReachedSetCheckpointer checkpointer =
+        new ReachedSetCheckpointer(config("analysis.checkpoint.file", snapshot), logger);
+    checkpointer.checkCompatibility(reached);
+  }
+}
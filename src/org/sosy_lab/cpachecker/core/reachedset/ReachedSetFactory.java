@@ -24,10 +24,14 @@
 package org.sosy_lab.cpachecker.core.reachedset;
 
 import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.IntegerOption;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.configuration.Option;
 import org.sosy_lab.common.configuration.Options;
 import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.cpachecker.core.interfaces.ConfigurableProgramAnalysis;
+import org.sosy_lab.cpachecker.core.interfaces.WrapperCPA;
+import org.sosy_lab.cpachecker.core.reachedset.CoverageIndex.CoverageIndexFactory;
 import org.sosy_lab.cpachecker.core.waitlist.AutomatonFailedMatchesWaitlist;
 import org.sosy_lab.cpachecker.core.waitlist.AutomatonMatchesWaitlist;
 import org.sosy_lab.cpachecker.core.waitlist.CallstackSortedWaitlist;
@@ -36,12 +40,14 @@ import org.sosy_lab.cpachecker.core.waitlist.PostorderSortedWaitlist;
 import org.sosy_lab.cpachecker.core.waitlist.ReversePostorderSortedWaitlist;
 import org.sosy_lab.cpachecker.core.waitlist.Waitlist;
 import org.sosy_lab.cpachecker.core.waitlist.Waitlist.WaitlistFactory;
+import org.sosy_lab.cpachecker.cpa.arg.ARGCPA;
+import org.sosy_lab.cpachecker.cpa.value.ValueAnalysisCoverageIndex;
 
 @Options(prefix="analysis")
 public class ReachedSetFactory {
 
   private static enum ReachedSetType {
-    NORMAL, LOCATIONMAPPED, PARTITIONED
+    NORMAL, LOCATIONMAPPED, PARTITIONED, CONCURRENTPARTITIONED, SPILLING
   }
 
   @Option(name="traversal.order",
@@ -78,11 +84,59 @@ public class ReachedSetFactory {
       + "\nNORMAL: just a simple set"
       + "\nLOCATIONMAPPED: a different set per location "
       + "(faster, states with different locations cannot be merged)"
-      + "\nPARTITIONED: partitioning depending on CPAs (e.g Location, Callstack etc.)")
+      + "\nPARTITIONED: partitioning depending on CPAs (e.g Location, Callstack etc.)"
+      + "\nCONCURRENTPARTITIONED: like PARTITIONED, but thread-safe (for experimental parallel exploration)"
+      + "\nSPILLING: like PARTITIONED, but partitions without waiting states are written to disk "
+      + "if there are too many states in memory (needs serializable states with value-based equals(), "
+      + "not possible with ARGCPA)")
   ReachedSetType reachedSet = ReachedSetType.PARTITIONED;
 
+  @Option(name = "reachedSet.spilling.maxStatesInMemory",
+      description = "maximal number of states the SPILLING reached set keeps in memory "
+      + "(partitions with waiting states are always kept in memory)")
+  @IntegerOption(min=1)
+  int spillingMaxStatesInMemory = 500000;
+
+  @Option(name = "reachedSet.coverageIndex",
+      description = "which index to use for finding covering states in a partition "
+      + "(only for PARTITIONED and LOCATIONMAPPED reached sets)"
+      + "\nNONE: check all states of the partition"
+      + "\nVALUE: use the assignments of the ValueAnalysisCPA")
+  CoverageIndexType coverageIndex = CoverageIndexType.NONE;
+
+  private static enum CoverageIndexType {
+    NONE, VALUE
+  }
+
+  private final LogManager logger;
+
   public ReachedSetFactory(Configuration config, LogManager logger) throws InvalidConfigurationException {
     config.inject(this);
+    this.logger = logger;
+  }
+
+  /**
+   * Check whether the configured reached set can be used with the given CPA.
+   * @param pCpa The CPA whose states will be stored in reached sets created by this factory.
+   * @throws InvalidConfigurationException If the reached set is not compatible with the CPA
+   * or with the other options of this factory.
+   */
+  public void checkCompatibility(ConfigurableProgramAnalysis pCpa) throws InvalidConfigurationException {
+    if (coverageIndex != CoverageIndexType.NONE
+        && reachedSet != ReachedSetType.PARTITIONED && reachedSet != ReachedSetType.LOCATIONMAPPED) {
+      throw new InvalidConfigurationException("Coverage index " + coverageIndex
+          + " can only be used with the reached set types PARTITIONED and LOCATIONMAPPED, not with "
+          + reachedSet + ".");
+    }
+    if (reachedSet == ReachedSetType.SPILLING) {
+      boolean hasArg = (pCpa instanceof ARGCPA)
+          || ((pCpa instanceof WrapperCPA) && ((WrapperCPA)pCpa).retrieveWrappedCpa(ARGCPA.class) != null);
+      if (hasArg) {
+        // spilled states would be read back as copies that are not linked into the ARG
+        throw new InvalidConfigurationException("Reached set type SPILLING cannot be used together with ARGCPA, "
+            + "because spilled states lose their identity.");
+      }
+    }
   }
 
   public ReachedSet create() {
@@ -105,12 +159,23 @@ public class ReachedSetFactory {
       waitlistFactory = ExplicitSortedWaitlist.factory(waitlistFactory);
     }
 
+    CoverageIndexFactory coverageIndexFactory = null;
+    if (coverageIndex == CoverageIndexType.VALUE) {
+      coverageIndexFactory = ValueAnalysisCoverageIndex.FACTORY;
+    }
+
     switch (reachedSet) {
     case PARTITIONED:
-      return new PartitionedReachedSet(waitlistFactory);
+      return new PartitionedReachedSet(waitlistFactory, coverageIndexFactory);
+
+    case CONCURRENTPARTITIONED:
+      return new ConcurrentPartitionedReachedSet(waitlistFactory);
+
+    case SPILLING:
+      return new SpillingPartitionedReachedSet(waitlistFactory, spillingMaxStatesInMemory, logger);
 
     case LOCATIONMAPPED:
-      return new LocationMappedReachedSet(waitlistFactory);
+      return new LocationMappedReachedSet(waitlistFactory, coverageIndexFactory);
 
     case NORMAL:
     default:
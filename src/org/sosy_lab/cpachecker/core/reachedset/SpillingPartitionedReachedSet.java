@@ -0,0 +1,628 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.core.reachedset;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+import javax.annotation.Nullable;
+
+import org.sosy_lab.common.Pair;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.common.time.Timer;
+import org.sosy_lab.cpachecker.cfa.model.CFANode;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.interfaces.Partitionable;
+import org.sosy_lab.cpachecker.core.interfaces.Precision;
+import org.sosy_lab.cpachecker.core.waitlist.Waitlist;
+import org.sosy_lab.cpachecker.core.waitlist.Waitlist.WaitlistFactory;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+
+/**
+ * A partitioned reached set that keeps only a bounded number of states on the heap.
+ *
+ * Partitions that contain states from the waitlist ("hot" partitions) are always
+ * kept in memory. If there are more states in memory than the configured limit,
+ * the least recently used partitions without waiting states ("cold" partitions)
+ * are serialized into a spill file and dropped from the heap.
+ * They are read back transparently as soon as they are accessed
+ * (e.g., by {@link #getReached(AbstractState)}).
+ *
+ * This requires that all states and precisions are {@link java.io.Serializable},
+ * and that states have value-based equals() and hashCode() methods,
+ * because a spilled and re-read state is a new object.
+ * Precisions keep their identity, they are never written to disk.
+ * Analyses that link their states to each other (like the ARGCPA)
+ * cannot use this reached set, because a re-read state would not be linked
+ * to the other states anymore ({@link ReachedSetFactory#checkCompatibility}
+ * rejects this combination).
+ *
+ * Collections returned by {@link #getReached(AbstractState)} are views
+ * that are not updated anymore after their partition was spilled.
+ * Iterating over the whole reached set reads the spilled partitions,
+ * but does not keep them in memory.
+ *
+ * The spill file is deleted by {@link #close()},
+ * which should be called as soon as the reached set is not used anymore
+ * (cf. {@link org.sosy_lab.cpachecker.util.CPAs#closeReachedSetIfPossible}).
+ */
+public class SpillingPartitionedReachedSet implements ReachedSet, AutoCloseable {
+
+  private static class Partition {
+
+    // null if the partition is currently spilled
+    private @Nullable LinkedHashMap<AbstractState, Precision> states = new LinkedHashMap<>();
+
+    private int size = 0;
+    private int waiting = 0;
+
+    // position of the latest copy of this partition in the spill file,
+    // -1 if this copy is outdated because the partition was changed afterwards
+    private long spillPosition = -1;
+    private int spillLength = 0;
+
+    private boolean isSpilled() {
+      return states == null;
+    }
+
+    private void markDirty() {
+      spillPosition = -1;
+    }
+  }
+
+  /**
+   * Partitions in access order (least recently used first).
+   */
+  private final LinkedHashMap<Object, Partition> partitions = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final Set<AbstractState> unmodifiableReached = new AbstractSet<AbstractState>() {
+      @Override
+      public Iterator<AbstractState> iterator() {
+        return Iterators.transform(entryIterator(), new Function<Map.Entry<AbstractState, Precision>, AbstractState>() {
+            @Override
+            public AbstractState apply(Map.Entry<AbstractState, Precision> pInput) {
+              return pInput.getKey();
+            }
+          });
+      }
+
+      @Override
+      public boolean contains(Object pObj) {
+        return (pObj instanceof AbstractState) && SpillingPartitionedReachedSet.this.contains((AbstractState)pObj);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+
+  private final Waitlist waitlist;
+  private final LogManager logger;
+  private final int maxStatesInMemory;
+
+  // precisions are stored in the spill file as indices into this list
+  private final List<Precision> precisions = new ArrayList<>();
+  private final Map<Precision, Integer> precisionIds = new IdentityHashMap<>();
+
+  private @Nullable FileChannel spillFile = null;
+  private long spillFileSize = 0;
+  private boolean spillingFailed = false;
+
+  private AbstractState firstState = null;
+  private AbstractState lastState = null;
+  private int size = 0;
+  private int statesInMemory = 0;
+
+  // statistics
+  private final Timer spillTimer = new Timer();
+  private final Timer faultTimer = new Timer();
+  private int spilledPartitions = 0;
+  private long spilledStates = 0;
+  private int reusedSpills = 0;
+  private int faults = 0;
+  private long faultedStates = 0;
+  private int maxStatesInMemorySeen = 0;
+
+  public SpillingPartitionedReachedSet(WaitlistFactory waitlistFactory, int pMaxStatesInMemory,
+      LogManager pLogger) {
+    Preconditions.checkArgument(pMaxStatesInMemory > 0);
+    waitlist = waitlistFactory.createWaitlistInstance();
+    maxStatesInMemory = pMaxStatesInMemory;
+    logger = pLogger;
+  }
+
+  private static Object getPartitionKey(AbstractState pState) {
+    assert pState instanceof Partitionable : "Partitionable states necessary for SpillingPartitionedReachedSet";
+    return ((Partitionable)pState).getPartitionKey();
+  }
+
+  /**
+   * Get the partition of a state and read it from the spill file if necessary.
+   * @return The partition or null if there is no such partition.
+   */
+  private @Nullable Partition getLoadedPartition(AbstractState pState) {
+    Partition p = partitions.get(getPartitionKey(pState));
+    if (p != null && p.isSpilled()) {
+      faultTimer.start();
+      try {
+        p.states = readPartition(p);
+      } finally {
+        faultTimer.stop();
+      }
+      faults++;
+      faultedStates += p.size;
+      statesInMemory += p.size;
+      maxStatesInMemorySeen = Math.max(maxStatesInMemorySeen, statesInMemory);
+    }
+    return p;
+  }
+
+  @Override
+  public void add(AbstractState state, Precision precision) throws IllegalArgumentException {
+    checkNotNull(state);
+    checkNotNull(precision);
+
+    Object key = getPartitionKey(state);
+    Partition p = getLoadedPartition(state);
+    if (p == null) {
+      p = new Partition();
+      partitions.put(key, p);
+    }
+
+    Precision previousPrecision = p.states.get(state);
+    if (previousPrecision == null) {
+      p.states.put(state, precision);
+      p.markDirty();
+      if (size == 0) {
+        firstState = state;
+      }
+      size++;
+      p.size++;
+      statesInMemory++;
+      maxStatesInMemorySeen = Math.max(maxStatesInMemorySeen, statesInMemory);
+
+      waitlist.add(state);
+      p.waiting++;
+      lastState = state;
+
+      spillIfNecessary();
+
+    } else if (!precision.equals(previousPrecision)) {
+      // see DefaultReachedSet.add() for the reason of this check
+      throw new IllegalArgumentException("State added to reached set which is already contained, but with a different precision");
+    }
+  }
+
+  @Override
+  public void addAll(Iterable<Pair<AbstractState, Precision>> toAdd) {
+    for (Pair<AbstractState, Precision> pair : toAdd) {
+      add(pair.getFirst(), pair.getSecond());
+    }
+  }
+
+  @Override
+  public void reAddToWaitlist(AbstractState s) {
+    checkNotNull(s);
+    Partition p = getLoadedPartition(s);
+    Preconditions.checkArgument(p != null && p.states.containsKey(s), "State has to be in the reached set");
+
+    if (!waitlist.contains(s)) {
+      waitlist.add(s);
+      p.waiting++;
+    }
+  }
+
+  @Override
+  public void updatePrecision(AbstractState s, Precision newPrecision) {
+    checkNotNull(s);
+    checkNotNull(newPrecision);
+
+    Partition p = getLoadedPartition(s);
+    if (p == null || !p.states.containsKey(s)) {
+      throw new IllegalArgumentException("State needs to be in the reached set in order to change the precision.");
+    }
+    p.states.put(s, newPrecision);
+    p.markDirty();
+  }
+
+  @Override
+  public void remove(AbstractState state) {
+    checkNotNull(state);
+    Object key = getPartitionKey(state);
+    Partition p = getLoadedPartition(state);
+    if (p == null || p.states.remove(state) == null) {
+      waitlist.remove(state);
+      return;
+    }
+
+    if (state.equals(firstState)) {
+      firstState = null;
+    }
+    if (state.equals(lastState)) {
+      lastState = null;
+    }
+    if (waitlist.remove(state)) {
+      p.waiting--;
+    }
+    p.markDirty();
+    p.size--;
+    size--;
+    statesInMemory--;
+    if (p.size == 0) {
+      partitions.remove(key);
+    }
+  }
+
+  @Override
+  public void removeAll(Iterable<? extends AbstractState> toRemove) {
+    for (AbstractState state : toRemove) {
+      remove(state);
+    }
+    assert firstState != null || size == 0 : "firstState may only be removed if the whole reached set is cleared";
+  }
+
+  @Override
+  public void removeOnlyFromWaitlist(AbstractState state) {
+    checkNotNull(state);
+    if (waitlist.remove(state)) {
+      partitions.get(getPartitionKey(state)).waiting--;
+    }
+  }
+
+  @Override
+  public void clear() {
+    firstState = null;
+    lastState = null;
+    waitlist.clear();
+    partitions.clear();
+    precisions.clear();
+    precisionIds.clear();
+    size = 0;
+    statesInMemory = 0;
+
+    // the spill file contains only garbage now
+    spillFileSize = 0;
+    if (spillFile != null) {
+      try {
+        spillFile.truncate(0);
+      } catch (IOException e) {
+        logger.logDebugException(e, "Could not truncate spill file of reached set");
+      }
+    }
+  }
+
+  /**
+   * Remove all states from this reached set and delete the spill file.
+   */
+  @Override
+  public void close() throws IOException {
+    clear();
+    if (spillFile != null) {
+      FileChannel file = spillFile;
+      spillFile = null;
+      file.close(); // deletes the file
+    }
+  }
+
+  @Override
+  public Set<AbstractState> asCollection() {
+    return unmodifiableReached;
+  }
+
+  @Override
+  public Iterator<AbstractState> iterator() {
+    return unmodifiableReached.iterator();
+  }
+
+  @Override
+  public Collection<Precision> getPrecisions() {
+    return new AbstractCollection<Precision>() {
+      @Override
+      public Iterator<Precision> iterator() {
+        return Iterators.transform(entryIterator(), new Function<Map.Entry<AbstractState, Precision>, Precision>() {
+            @Override
+            public Precision apply(Map.Entry<AbstractState, Precision> pInput) {
+              return pInput.getValue();
+            }
+          });
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Iterate over all states and their precisions.
+   * Spilled partitions are read from disk, but not kept in memory.
+   * Note that iterating over partitions does not change the access order.
+   */
+  private Iterator<Map.Entry<AbstractState, Precision>> entryIterator() {
+    final Iterator<Partition> partitionIt = partitions.values().iterator();
+    return Iterators.concat(new Iterator<Iterator<Map.Entry<AbstractState, Precision>>>() {
+        @Override
+        public boolean hasNext() {
+          return partitionIt.hasNext();
+        }
+
+        @Override
+        public Iterator<Map.Entry<AbstractState, Precision>> next() {
+          Partition p = partitionIt.next();
+          Map<AbstractState, Precision> states = p.isSpilled() ? readPartition(p) : p.states;
+          return Iterators.unmodifiableIterator(states.entrySet().iterator());
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      });
+  }
+
+  @Override
+  public Collection<AbstractState> getReached(AbstractState state) {
+    Partition p = getLoadedPartition(state);
+    if (p == null) {
+      return Collections.emptySet();
+    }
+    return Collections.unmodifiableSet(p.states.keySet());
+  }
+
+  @Override
+  public Collection<AbstractState> getReached(CFANode location) {
+    return asCollection();
+  }
+
+  @Override
+  public AbstractState getFirstState() {
+    Preconditions.checkState(firstState != null);
+    return firstState;
+  }
+
+  @Override
+  public AbstractState getLastState() {
+    return lastState;
+  }
+
+  @Override
+  public boolean hasWaitingState() {
+    return !waitlist.isEmpty();
+  }
+
+  @Override
+  public Collection<AbstractState> getWaitlist() {
+    return new AbstractCollection<AbstractState>() {
+
+      @Override
+      public Iterator<AbstractState> iterator() {
+        return Iterators.unmodifiableIterator(waitlist.iterator());
+      }
+
+      @Override
+      public boolean contains(Object obj) {
+        if (!(obj instanceof AbstractState)) {
+          return false;
+        }
+        return waitlist.contains((AbstractState)obj);
+      }
+
+      @Override
+      public int size() {
+        return waitlist.size();
+      }
+    };
+  }
+
+  @Override
+  public AbstractState popFromWaitlist() {
+    AbstractState state = waitlist.pop();
+    partitions.get(getPartitionKey(state)).waiting--;
+    return state;
+  }
+
+  @Override
+  public int getWaitlistSize() {
+    return waitlist.size();
+  }
+
+  @Override
+  public Precision getPrecision(AbstractState state) {
+    checkNotNull(state);
+    Partition p = getLoadedPartition(state);
+    Precision prec = (p == null) ? null : p.states.get(state);
+    Preconditions.checkArgument(prec != null, "State not in reached set:\n%s", state);
+    return prec;
+  }
+
+  @Override
+  public boolean contains(AbstractState state) {
+    checkNotNull(state);
+    Partition p = getLoadedPartition(state);
+    return p != null && p.states.containsKey(state);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int getNumberOfPartitions() {
+    return partitions.size();
+  }
+
+  /**
+   * Write cold partitions to the spill file until we are below the limit.
+   * In order to amortize the cost of searching for cold partitions,
+   * we spill until only 3/4 of the limit are used.
+   */
+  private void spillIfNecessary() {
+    if (statesInMemory <= maxStatesInMemory || spillingFailed) {
+      return;
+    }
+
+    spillTimer.start();
+    try {
+      final int target = maxStatesInMemory - maxStatesInMemory / 4;
+      for (Partition p : partitions.values()) {
+        if (statesInMemory <= target) {
+          break;
+        }
+        if (!p.isSpilled() && p.waiting == 0) {
+          if (p.spillPosition < 0) {
+            writePartition(p);
+            spilledPartitions++;
+            spilledStates += p.size;
+          } else {
+            // unchanged since it was read, the copy on disk is still valid
+            reusedSpills++;
+          }
+          p.states = null;
+          statesInMemory -= p.size;
+        }
+      }
+
+    } catch (IOException e) {
+      logger.logUserException(Level.WARNING, e,
+          "Could not write to spill file of reached set, keeping all states in memory");
+      spillingFailed = true;
+
+    } finally {
+      spillTimer.stop();
+    }
+  }
+
+  private void writePartition(Partition p) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeInt(p.states.size());
+      for (Map.Entry<AbstractState, Precision> entry : p.states.entrySet()) {
+        out.writeObject(entry.getKey());
+        out.writeInt(getPrecisionId(entry.getValue()));
+      }
+    }
+
+    if (spillFile == null) {
+      Path file = Files.createTempFile("cpachecker-reached", ".spill");
+      spillFile = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+          StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+    long position = spillFileSize;
+    while (buffer.hasRemaining()) {
+      position += spillFile.write(buffer, position);
+    }
+    p.spillPosition = spillFileSize;
+    p.spillLength = bytes.size();
+    spillFileSize = position;
+  }
+
+  private int getPrecisionId(Precision pPrecision) {
+    Integer id = precisionIds.get(pPrecision);
+    if (id == null) {
+      id = precisions.size();
+      precisions.add(pPrecision);
+      precisionIds.put(pPrecision, id);
+    }
+    return id;
+  }
+
+  private LinkedHashMap<AbstractState, Precision> readPartition(Partition p) {
+    assert p.spillPosition >= 0;
+    ByteBuffer buffer = ByteBuffer.allocate(p.spillLength);
+    try {
+      long position = p.spillPosition;
+      while (buffer.hasRemaining()) {
+        int read = spillFile.read(buffer, position);
+        if (read < 0) {
+          throw new IOException("Unexpected end of spill file");
+        }
+        position += read;
+      }
+
+      LinkedHashMap<AbstractState, Precision> states = new LinkedHashMap<>();
+      try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buffer.array()))) {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+          AbstractState state = (AbstractState)in.readObject();
+          states.put(state, precisions.get(in.readInt()));
+        }
+      }
+      return states;
+
+    } catch (IOException | ClassNotFoundException e) {
+      // We cannot continue without the states of this partition.
+      throw new IllegalStateException("Could not read spilled partition of reached set", e);
+    }
+  }
+
+  public void printStatistics(PrintStream out) {
+    out.println("  Max states in memory:          " + maxStatesInMemorySeen + " (limit: " + maxStatesInMemory + ")");
+    out.println("  Number of spilled partitions:  " + spilledPartitions + " (" + spilledStates + " states)");
+    out.println("  Number of reused spills:       " + reusedSpills);
+    out.println("  Size of spill file:            " + (spillFileSize >> 10) + " KB");
+    out.println("  Number of partition faults:    " + faults + " (" + faultedStates + " states)");
+    out.println("  Time for spilling:             " + spillTimer);
+    out.println("  Time for reading spilled data: " + faultTimer);
+  }
+
+  @Override
+  public String toString() {
+    return "SpillingPartitionedReachedSet with " + size + " states (" + statesInMemory + " in memory)";
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.core.reachedset;
+
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Objects;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.interfaces.Partitionable;
+import org.sosy_lab.cpachecker.core.interfaces.Precision;
+import org.sosy_lab.cpachecker.core.waitlist.Waitlist.TraversalMethod;
+
+import com.google.common.collect.ImmutableSet;
+
+public class SpillingPartitionedReachedSetTest {
+
+  private static class TestState implements AbstractState, Partitionable, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int partition;
+    private final int value;
+
+    private TestState(int pPartition, int pValue) {
+      partition = pPartition;
+      value = pValue;
+    }
+
+    @Override
+    public Object getPartitionKey() {
+      return partition;
+    }
+
+    @Override
+    public boolean equals(Object pObj) {
+      if (!(pObj instanceof TestState)) {
+        return false;
+      }
+      TestState other = (TestState)pObj;
+      return partition == other.partition && value == other.value;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(partition, value);
+    }
+
+    @Override
+    public String toString() {
+      return partition + ":" + value;
+    }
+  }
+
+  private final Precision precision = mock(Precision.class);
+  private SpillingPartitionedReachedSet reached;
+
+  @Before
+  public void setUp() {
+    reached = new SpillingPartitionedReachedSet(TraversalMethod.BFS, 4, mock(LogManager.class));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    reached.close();
+  }
+
+  private void addAndPop(TestState... states) {
+    for (TestState state : states) {
+      reached.add(state, precision);
+    }
+    while (reached.hasWaitingState()) {
+      reached.popFromWaitlist();
+    }
+  }
+
+  @Test
+  public void testSpilledPartitionIsReadBack() {
+    addAndPop(new TestState(0, 0), new TestState(0, 1), new TestState(0, 2));
+    // partition 1 is hot and triggers spilling of partition 0
+    reached.add(new TestState(1, 0), precision);
+    reached.add(new TestState(1, 1), precision);
+
+    Assert.assertEquals(5, reached.size());
+    Assert.assertEquals(
+        ImmutableSet.of(new TestState(0, 0), new TestState(0, 1), new TestState(0, 2)),
+        ImmutableSet.copyOf(reached.getReached(new TestState(0, 5))));
+    Assert.assertSame(precision, reached.getPrecision(new TestState(0, 1)));
+  }
+
+  @Test
+  public void testIterationIncludesSpilledStates() {
+    addAndPop(new TestState(0, 0), new TestState(0, 1), new TestState(0, 2));
+    reached.add(new TestState(1, 0), precision);
+    reached.add(new TestState(1, 1), precision);
+
+    Assert.assertEquals(
+        ImmutableSet.of(new TestState(0, 0), new TestState(0, 1), new TestState(0, 2),
+            new TestState(1, 0), new TestState(1, 1)),
+        ImmutableSet.copyOf(reached));
+    Assert.assertEquals(2, reached.getWaitlistSize());
+  }
+
+  @Test
+  public void testRemoveFromSpilledPartition() {
+    addAndPop(new TestState(0, 0), new TestState(0, 1), new TestState(0, 2));
+    reached.add(new TestState(1, 0), precision);
+    reached.add(new TestState(1, 1), precision);
+
+    reached.remove(new TestState(0, 1));
+    Assert.assertEquals(4, reached.size());
+    Assert.assertFalse(reached.contains(new TestState(0, 1)));
+    Assert.assertTrue(reached.contains(new TestState(0, 2)));
+  }
+
+  @Test
+  public void testHotPartitionsAreNotSpilled() {
+    for (int i = 0; i < 10; i++) {
+      reached.add(new TestState(i, 0), precision);
+    }
+    Assert.assertEquals(10, reached.size());
+    Assert.assertEquals(10, reached.getWaitlistSize());
+    for (int i = 0; i < 10; i++) {
+      Assert.assertTrue(reached.getWaitlist().contains(new TestState(i, 0)));
+    }
+  }
+
+  @Test
+  public void testCloseRemovesStatesAndKeepsReachedSetUsable() throws Exception {
+    addAndPop(new TestState(0, 0), new TestState(0, 1), new TestState(0, 2));
+    reached.add(new TestState(1, 0), precision);
+    reached.add(new TestState(1, 1), precision);
+
+    reached.close();
+    Assert.assertEquals(0, reached.size());
+    Assert.assertFalse(reached.hasWaitingState());
+
+    // a new spill file is created when necessary
+    addAndPop(new TestState(2, 0), new TestState(2, 1), new TestState(2, 2));
+    reached.add(new TestState(3, 0), precision);
+    reached.add(new TestState(3, 1), precision);
+    Assert.assertEquals(5, reached.size());
+    Assert.assertTrue(reached.contains(new TestState(2, 1)));
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.core.waitlist;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Iterables;
+
+/**
+ * Implementation of a sorted waitlist for sorting keys of type int
+ * (like {@link AbstractSortedWaitlist}, which should be preferred for other key types).
+ *
+ * The states are kept in an array of buckets indexed by the key
+ * (a bucket queue), so no boxing and no tree operations are necessary.
+ * All operations except pop() are O(1) (plus the cost of the secondary waitlist),
+ * pop() needs to search the next non-empty bucket if the current highest bucket
+ * got empty, which is amortized O(1) for the usual cases of keys that
+ * come from a small range (like reverse postorder ids or callstack depths).
+ * The memory usage is linear in the range of keys that were used.
+ *
+ * There may be several abstract states with the same key, so this class
+ * delegates the decision which of those should be chosen to a second waitlist
+ * implementation. A factory for this implementation needs to be given to the
+ * constructor.
+ *
+ * The iterators created by this class are unmodifiable.
+ */
+public abstract class AbstractIntSortedWaitlist implements Waitlist {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final WaitlistFactory wrappedWaitlist;
+
+  // buckets[i] contains the states with key i+offset,
+  // buckets are created lazily and kept when they get empty
+  private Waitlist[] buckets = new Waitlist[0];
+  private int offset = 0;
+
+  // invariant: if size > 0, buckets[highest] is non-empty
+  // and all buckets with a higher index are empty
+  private int highest = -1;
+
+  private int size = 0;
+
+  /**
+   * Constructor that needs a factory for the waitlist implementation that
+   * should be used to store states with the same sorting key.
+   */
+  protected AbstractIntSortedWaitlist(WaitlistFactory pSecondaryStrategy) {
+    wrappedWaitlist = Preconditions.checkNotNull(pSecondaryStrategy);
+  }
+
+  /**
+   * Method that generates the sorting key for any abstract state.
+   * If this method throws an exception, no guarantees about the state of the
+   * current instance of this class are made.
+   */
+  protected abstract int getSortKey(AbstractState pState);
+
+  /**
+   * Return the bucket for a key, creating it if necessary.
+   */
+  private Waitlist getOrCreateBucket(int key) {
+    if (buckets.length == 0) {
+      buckets = new Waitlist[INITIAL_CAPACITY];
+      offset = key;
+
+    } else if (key < offset) {
+      // grow at the front
+      int shift = Math.max(offset - key, buckets.length);
+      Waitlist[] newBuckets = new Waitlist[buckets.length + shift];
+      System.arraycopy(buckets, 0, newBuckets, shift, buckets.length);
+      buckets = newBuckets;
+      offset -= shift;
+      if (highest >= 0) {
+        highest += shift;
+      }
+
+    } else if (key - offset >= buckets.length) {
+      // grow at the end
+      int newLength = Math.max(buckets.length * 2, key - offset + 1);
+      buckets = Arrays.copyOf(buckets, newLength);
+    }
+
+    int index = key - offset;
+    Waitlist bucket = buckets[index];
+    if (bucket == null) {
+      bucket = wrappedWaitlist.createWaitlistInstance();
+      buckets[index] = bucket;
+    }
+    return bucket;
+  }
+
+  private Waitlist getBucket(int key) {
+    int index = key - offset;
+    if (index < 0 || index >= buckets.length) {
+      return null;
+    }
+    return buckets[index];
+  }
+
+  @Override
+  public void add(AbstractState pState) {
+    int key = getSortKey(pState);
+    getOrCreateBucket(key).add(pState);
+    highest = Math.max(highest, key - offset);
+    size++;
+  }
+
+  @Override
+  public boolean contains(AbstractState pState) {
+    Waitlist bucket = getBucket(getSortKey(pState));
+    return bucket != null && bucket.contains(pState);
+  }
+
+  @Override
+  public void clear() {
+    buckets = new Waitlist[0];
+    offset = 0;
+    highest = -1;
+    size = 0;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public Iterator<AbstractState> iterator() {
+    return Iterables.concat(Iterables.filter(Arrays.asList(buckets), Predicates.notNull())).iterator();
+  }
+
+  @Override
+  public final AbstractState pop() {
+    Preconditions.checkState(size > 0);
+    Waitlist bucket = buckets[highest];
+    assert !bucket.isEmpty();
+    AbstractState result = bucket.pop();
+    size--;
+    if (bucket.isEmpty()) {
+      updateHighest();
+    }
+    return result;
+  }
+
+  /**
+   * Search the highest non-empty bucket at or below the current highest bucket.
+   */
+  private void updateHighest() {
+    if (size == 0) {
+      highest = -1;
+      return;
+    }
+    while (buckets[highest] == null || buckets[highest].isEmpty()) {
+      highest--;
+    }
+  }
+
+  @Override
+  public boolean remove(AbstractState pState) {
+    int key = getSortKey(pState);
+    Waitlist bucket = getBucket(key);
+    if (bucket == null) {
+      return false;
+    }
+    boolean result = bucket.remove(pState);
+    if (result) {
+      size--;
+      if (key - offset == highest && bucket.isEmpty()) {
+        updateHighest();
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return Iterables.toString(this);
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.core.waitlist;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.waitlist.Waitlist.TraversalMethod;
+
+import com.google.common.collect.ImmutableSet;
+
+public class AbstractIntSortedWaitlistTest {
+
+  private final Map<AbstractState, Integer> keys = new HashMap<>();
+
+  private class TestWaitlist extends AbstractIntSortedWaitlist {
+
+    private TestWaitlist() {
+      super(TraversalMethod.DFS);
+    }
+
+    @Override
+    protected int getSortKey(AbstractState pState) {
+      return keys.get(pState);
+    }
+  }
+
+  private AbstractState state(int key) {
+    AbstractState state = mock(AbstractState.class);
+    keys.put(state, key);
+    return state;
+  }
+
+  @Test
+  public void testPopOrder() {
+    Waitlist waitlist = new TestWaitlist();
+    AbstractState s5 = state(5);
+    AbstractState sMinus3 = state(-3);
+    AbstractState s100 = state(100);
+    AbstractState s5b = state(5);
+    waitlist.add(s5);
+    waitlist.add(sMinus3);
+    waitlist.add(s100);
+    waitlist.add(s5b);
+
+    Assert.assertEquals(4, waitlist.size());
+    Assert.assertEquals(ImmutableSet.of(s5, sMinus3, s100, s5b), ImmutableSet.copyOf(waitlist));
+    Assert.assertSame(s100, waitlist.pop());
+    Assert.assertSame(s5b, waitlist.pop()); // secondary strategy is DFS
+    Assert.assertSame(s5, waitlist.pop());
+    Assert.assertSame(sMinus3, waitlist.pop());
+    Assert.assertTrue(waitlist.isEmpty());
+  }
+
+  @Test
+  public void testRemove() {
+    Waitlist waitlist = new TestWaitlist();
+    AbstractState s1 = state(1);
+    AbstractState s2 = state(2);
+    AbstractState s3 = state(3);
+    waitlist.add(s1);
+    waitlist.add(s2);
+    waitlist.add(s3);
+
+    Assert.assertTrue(waitlist.remove(s3));
+    Assert.assertFalse(waitlist.remove(s3));
+    Assert.assertFalse(waitlist.contains(s3));
+    Assert.assertTrue(waitlist.contains(s1));
+    Assert.assertSame(s2, waitlist.pop());
+    Assert.assertSame(s1, waitlist.pop());
+    Assert.assertTrue(waitlist.isEmpty());
+  }
+
+  @Test
+  public void testSameOrderAsTreeMapBasedWaitlist() {
+    Waitlist reference = new AbstractSortedWaitlist<Integer>(TraversalMethod.BFS) {
+        @Override
+        protected Integer getSortKey(AbstractState pState) {
+          return keys.get(pState);
+        }
+      };
+    Waitlist waitlist = new AbstractIntSortedWaitlist(TraversalMethod.BFS) {
+        @Override
+        protected int getSortKey(AbstractState pState) {
+          return keys.get(pState);
+        }
+      };
+
+    Random random = new Random(0);
+    List<AbstractState> popped = new ArrayList<>();
+    List<AbstractState> expected = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      if (random.nextInt(3) == 0 && !reference.isEmpty()) {
+        expected.add(reference.pop());
+        popped.add(waitlist.pop());
+      } else {
+        AbstractState state = state(random.nextInt(200) - 100);
+        reference.add(state);
+        waitlist.add(state);
+      }
+      Assert.assertEquals(reference.size(), waitlist.size());
+    }
+    while (!reference.isEmpty()) {
+      expected.add(reference.pop());
+      popped.add(waitlist.pop());
+    }
+    Assert.assertEquals(expected, popped);
+  }
+}
@@ -26,7 +26,7 @@ package org.sosy_lab.cpachecker.core.waitlist;
 import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
 import org.sosy_lab.cpachecker.util.AbstractStates;
 
-public class ReversePostorderSortedWaitlist extends AbstractSortedWaitlist<Integer> {
+public class ReversePostorderSortedWaitlist extends AbstractIntSortedWaitlist {
 
   protected ReversePostorderSortedWaitlist(WaitlistFactory pSecondaryStrategy) {
     super(pSecondaryStrategy);
@@ -39,7 +39,7 @@ public class ReversePostorderSortedWaitlist extends AbstractSortedWaitlist<Integ
   }
 
   @Override
-  protected Integer getSortKey(AbstractState pState) {
+  protected int getSortKey(AbstractState pState) {
     return AbstractStates.extractLocation(pState).getReversePostorderId();
   }
 
@@ -80,7 +80,7 @@ import com.google.common.collect.Sets;
  * and if this fails, optionally delegates also to {@link PredicateCPARefiner}.
  */
 @Options(prefix="cpa.apron.refiner")
-public class ApronDelegatingRefiner extends AbstractARGBasedRefiner implements Statistics, StatisticsProvider {
+public class ApronDelegatingRefiner extends AbstractARGBasedRefiner implements Statistics, StatisticsProvider, AutoCloseable {
 
   /**
    * refiner used for value-analysis interpolation refinement
@@ -301,6 +301,14 @@ public class ApronDelegatingRefiner extends AbstractARGBasedRefiner implements S
     return success;
   }
 
+  /**
+   * Stop the threads of the interpolator, if any.
+   */
+  @Override
+  public void close() {
+    interpolatingRefiner.close();
+  }
+
   @Override
   public void collectStatistics(Collection<Statistics> pStatsCollection) {
     pStatsCollection.add(this);
@@ -28,7 +28,7 @@ import static com.google.common.collect.FluentIterable.from;
 import static org.sosy_lab.cpachecker.util.AbstractStates.extractLocation;
 
 import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
@@ -55,12 +55,15 @@ public class ARGState extends AbstractSingleWrapperState implements Comparable<A
 
   private static final long serialVersionUID = 2608287648397165040L;
 
-  // We use a List here although we would like to have a Set
-  // because ArrayList is much more memory efficient than e.g. LinkedHashSet.
-  // Also these collections are small and so a slow contains() method won't hurt.
-  // To enforce set semantics, do not add elements except through addparent()!
-  private final Collection<ARGState> children = new ArrayList<>(1);
-  private final Collection<ARGState> parents = new ArrayList<>(1);
+  // Parents and children are stored in a compact form because ARGs can have millions of states,
+  // and most states have exactly one parent and only few children:
+  // null if there is no such state, the state itself if there is one,
+  // and an ARGState[] without duplicates otherwise.
+  // The arrays are never modified but replaced (copy-on-write).
+  // These collections are small and so a slow contains() method won't hurt.
+  // To enforce set semantics, do not add elements except through addParent()!
+  private Object children = null;
+  private Object parents = null;
 
   private ARGState mCoveredBy = null;
   private Set<ARGState> mCoveredByThis = null; // lazy initialization because rarely needed
@@ -89,10 +92,12 @@ public class ARGState extends AbstractSingleWrapperState implements Comparable<A
 
   /**
    * Get the parent elements of this state.
+   * The returned collection is a snapshot that does not reflect later changes to the ARG,
+   * so it is safe to modify the ARG while iterating over it.
    * @return A unmodifiable collection of ARGStates without duplicates.
    */
   public Collection<ARGState> getParents() {
-    return Collections.unmodifiableCollection(parents);
+    return asCollection(parents);
   }
 
   public void addParent(ARGState pOtherParent) {
@@ -100,22 +105,24 @@ public class ARGState extends AbstractSingleWrapperState implements Comparable<A
     assert !destroyed : "Don't use destroyed ARGState " + this;
 
     // Manually enforce set semantics.
-    if (!parents.contains(pOtherParent)) {
-      assert !pOtherParent.children.contains(this);
-      parents.add(pOtherParent);
-      pOtherParent.children.add(this);
+    if (!contains(parents, pOtherParent)) {
+      assert !contains(pOtherParent.children, this);
+      parents = add(parents, pOtherParent);
+      pOtherParent.children = add(pOtherParent.children, this);
     } else {
-      assert pOtherParent.children.contains(this);
+      assert contains(pOtherParent.children, this);
     }
   }
 
   /**
    * Get the child elements of this state.
+   * The returned collection is a snapshot that does not reflect later changes to the ARG,
+   * so it is safe to modify the ARG while iterating over it.
    * @return An unmodifiable collection of ARGStates without duplicates.
    */
   public Collection<ARGState> getChildren() {
     assert !destroyed : "Don't use destroyed ARGState " + this;
-    return Collections.unmodifiableCollection(children);
+    return asCollection(children);
   }
 
   /**
@@ -124,7 +131,7 @@ public class ARGState extends AbstractSingleWrapperState implements Comparable<A
    */
   @Nullable
   public CFAEdge getEdgeToChild(ARGState pChild) {
-    checkArgument(children.contains(pChild));
+    checkArgument(contains(children, pChild));
 
     CFANode currentLoc = extractLocation(this);
     CFANode childLoc = extractLocation(pChild);
@@ -159,7 +166,7 @@ public class ARGState extends AbstractSingleWrapperState implements Comparable<A
       ARGState currentElement = workList.removeFirst();
       if (result.add(currentElement)) {
         // currentElement was not in result
-        workList.addAll(currentElement.children);
+        workList.addAll(currentElement.getChildren());
       }
     }
     return result;
@@ -245,9 +252,69 @@ public class ARGState extends AbstractSingleWrapperState implements Comparable<A
   }
 
   void deleteChild(ARGState child) {
-    assert (children.contains(child));
-    children.remove(child);
-    child.parents.remove(this);
+    assert contains(children, child);
+    children = remove(children, child);
+    child.parents = remove(child.parents, this);
+  }
+
+  // compact representation of parents and children
+
+  private static Collection<ARGState> asCollection(@Nullable Object states) {
+    if (states == null) {
+      return Collections.emptyList();
+    } else if (states instanceof ARGState) {
+      return Collections.singletonList((ARGState)states);
+    } else {
+      return Collections.unmodifiableList(Arrays.asList((ARGState[])states));
+    }
+  }
+
+  private static boolean contains(@Nullable Object states, ARGState state) {
+    if (states == null) {
+      return false;
+    } else if (states instanceof ARGState) {
+      return states == state;
+    } else {
+      for (ARGState s : (ARGState[])states) {
+        if (s == state) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static Object add(@Nullable Object states, ARGState state) {
+    if (states == null) {
+      return state;
+    } else if (states instanceof ARGState) {
+      return new ARGState[] { (ARGState)states, state };
+    } else {
+      ARGState[] oldStates = (ARGState[])states;
+      ARGState[] newStates = Arrays.copyOf(oldStates, oldStates.length + 1);
+      newStates[oldStates.length] = state;
+      return newStates;
+    }
+  }
+
+  private static @Nullable Object remove(@Nullable Object states, ARGState state) {
+    if (states == state) {
+      return null;
+    } else if (states instanceof ARGState[]) {
+      ARGState[] oldStates = (ARGState[])states;
+      int index = Arrays.asList(oldStates).indexOf(state);
+      if (index < 0) {
+        return states;
+      } else if (oldStates.length == 2) {
+        return oldStates[1 - index];
+      }
+      ARGState[] newStates = new ARGState[oldStates.length - 1];
+      System.arraycopy(oldStates, 0, newStates, 0, index);
+      System.arraycopy(oldStates, index + 1, newStates, index, newStates.length - index);
+      return newStates;
+    } else {
+      return states;
+    }
   }
 
   // small and less important stuff
@@ -256,6 +323,15 @@ public class ARGState extends AbstractSingleWrapperState implements Comparable<A
     return stateId;
   }
 
+  /**
+   * Make sure that states created from now on get ids greater than the given id.
+   * This needs to be called after ARGStates from a previous run were deserialized,
+   * because ids determine the order of states.
+   */
+  public static void skipStateIdsPast(int pStateId) {
+    idGenerator.skipPast(pStateId);
+  }
+
   public boolean isDestroyed() {
     return destroyed;
   }
@@ -304,9 +380,9 @@ public class ARGState extends AbstractSingleWrapperState implements Comparable<A
     sb.append(stateId);
     if (!destroyed) {
       sb.append(", Parents: ");
-      sb.append(stateIdsOf(parents));
+      sb.append(stateIdsOf(getParents()));
       sb.append(", Children: ");
-      sb.append(stateIdsOf(children));
+      sb.append(stateIdsOf(getChildren()));
 
       if (mCoveredBy != null) {
         sb.append(", Covered by: ");
@@ -349,18 +425,18 @@ public class ARGState extends AbstractSingleWrapperState implements Comparable<A
     assert !destroyed : "Don't use destroyed ARGState " + this;
 
     // clear children
-    for (ARGState child : children) {
-      assert (child.parents.contains(this));
-      child.parents.remove(this);
+    for (ARGState child : asCollection(children)) {
+      assert contains(child.parents, this);
+      child.parents = remove(child.parents, this);
     }
-    children.clear();
+    children = null;
 
     // clear parents
-    for (ARGState parent : parents) {
-      assert (parent.children.contains(this));
-      parent.children.remove(this);
+    for (ARGState parent : asCollection(parents)) {
+      assert contains(parent.children, this);
+      parent.children = remove(parent.children, this);
     }
-    parents.clear();
+    parents = null;
 
     // clear coverage relation
     if (isCovered()) {
@@ -397,19 +473,19 @@ public class ARGState extends AbstractSingleWrapperState implements Comparable<A
     assert !replacement.isCovered() : "Cannot replace with covered element " + replacement;
 
     // copy children
-    for (ARGState child : children) {
-      assert (child.parents.contains(this)) : "Inconsistent ARG at " + this;
-      child.parents.remove(this);
+    for (ARGState child : asCollection(children)) {
+      assert contains(child.parents, this) : "Inconsistent ARG at " + this;
+      child.parents = remove(child.parents, this);
       child.addParent(replacement);
     }
-    children.clear();
+    children = null;
 
-    for (ARGState parent : parents) {
-      assert (parent.children.contains(this)) : "Inconsistent ARG at " + this;
-      parent.children.remove(this);
+    for (ARGState parent : asCollection(parents)) {
+      assert contains(parent.children, this) : "Inconsistent ARG at " + this;
+      parent.children = remove(parent.children, this);
       replacement.addParent(parent);
     }
-    parents.clear();
+    parents = null;
 
     if (mCoveredByThis != null) {
       if (replacement.mCoveredByThis == null) {
@@ -0,0 +1,114 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.arg;
+
+import static org.junit.Assert.*;
+
+import java.util.Collection;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+public class ARGStateTest {
+
+  @Test
+  public void testAddParent() {
+    ARGState root = new ARGState(null, null);
+    ARGState child1 = new ARGState(null, root);
+    ARGState child2 = new ARGState(null, root);
+    ARGState child3 = new ARGState(null, root);
+
+    assertEquals(ImmutableSet.of(child1, child2, child3), ImmutableSet.copyOf(root.getChildren()));
+    assertEquals(3, root.getChildren().size());
+    assertTrue(root.getParents().isEmpty());
+    assertEquals(ImmutableSet.of(root), ImmutableSet.copyOf(child2.getParents()));
+
+    // set semantics
+    child2.addParent(root);
+    assertEquals(3, root.getChildren().size());
+    assertEquals(1, child2.getParents().size());
+  }
+
+  @Test
+  public void testRemoveFromARG() {
+    ARGState root = new ARGState(null, null);
+    ARGState child1 = new ARGState(null, root);
+    ARGState child2 = new ARGState(null, root);
+    ARGState grandChild = new ARGState(null, child1);
+    grandChild.addParent(child2);
+
+    child1.removeFromARG();
+    assertTrue(child1.isDestroyed());
+    assertEquals(ImmutableSet.of(child2), ImmutableSet.copyOf(root.getChildren()));
+    assertEquals(ImmutableSet.of(child2), ImmutableSet.copyOf(grandChild.getParents()));
+
+    child2.removeFromARG();
+    assertTrue(root.getChildren().isEmpty());
+    assertTrue(grandChild.getParents().isEmpty());
+  }
+
+  @Test
+  public void testRemoveChildrenWhileIterating() {
+    ARGState root = new ARGState(null, null);
+    for (int i = 0; i < 5; i++) {
+      new ARGState(null, root);
+    }
+
+    for (ARGState child : root.getChildren()) {
+      child.removeFromARG();
+    }
+    assertTrue(root.getChildren().isEmpty());
+  }
+
+  @Test
+  public void testChildrenAndParentsAreSnapshots() {
+    ARGState root = new ARGState(null, null);
+    ARGState child1 = new ARGState(null, root);
+    Collection<ARGState> children = root.getChildren();
+    Collection<ARGState> parents = child1.getParents();
+
+    ARGState child2 = new ARGState(null, root);
+    child1.removeFromARG();
+    assertEquals(ImmutableSet.of(child1), ImmutableSet.copyOf(children));
+    assertEquals(ImmutableSet.of(root), ImmutableSet.copyOf(parents));
+    assertEquals(ImmutableSet.of(child2), ImmutableSet.copyOf(root.getChildren()));
+  }
+
+  @Test
+  public void testReplaceInARGWith() {
+    ARGState root = new ARGState(null, null);
+    ARGState state = new ARGState(null, root);
+    ARGState child1 = new ARGState(null, state);
+    ARGState child2 = new ARGState(null, state);
+    ARGState replacement = new ARGState(null, null);
+
+    state.replaceInARGWith(replacement);
+    assertTrue(state.isDestroyed());
+    assertEquals(ImmutableSet.of(replacement), ImmutableSet.copyOf(root.getChildren()));
+    assertEquals(ImmutableSet.of(root), ImmutableSet.copyOf(replacement.getParents()));
+    assertEquals(ImmutableSet.of(child1, child2), ImmutableSet.copyOf(replacement.getChildren()));
+    assertEquals(ImmutableSet.of(replacement), ImmutableSet.copyOf(child1.getParents()));
+  }
+}
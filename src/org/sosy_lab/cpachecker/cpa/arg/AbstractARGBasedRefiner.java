@@ -91,7 +91,7 @@ public abstract class AbstractARGBasedRefiner implements Refiner {
 
     final ARGState lastElement = (ARGState)pReached.getLastState();
     assert lastElement.isTarget() : "Last element in reached is not a target state before refinement";
-    ARGReachedSet reached = new ARGReachedSet(pReached, argCpa, refinementNumber++);
+    ARGReachedSet reached = createARGReachedSetForRefinement(pReached);
 
     final @Nullable ARGPath path = computePath(lastElement, reached);
 
@@ -126,13 +126,7 @@ public abstract class AbstractARGBasedRefiner implements Refiner {
         assert targetPath.getLastState()  == path.getLastState() : "Target path from refiner does not contain target state";
       }
 
-      argCpa.addCounterexample(lastElement, counterexample);
-
-      logger.log(Level.FINEST, "Counterexample", counterexamplesCounter, "has been found.");
-
-      // Print error trace if cpa.arg.printErrorPath = true
-      argCpa.exportCounterexampleOnTheFly(lastElement, counterexample, counterexamplesCounter);
-      counterexamplesCounter++;
+      addCounterexample(lastElement, counterexample);
     }
 
     logger.log(Level.FINEST, "ARG based refinement finished, result is", counterexample.isSpurious());
@@ -140,6 +134,31 @@ public abstract class AbstractARGBasedRefiner implements Refiner {
     return counterexample.isSpurious();
   }
 
+  /**
+   * Create the {@link ARGReachedSet} for the next refinement,
+   * such that refinements are numbered consistently (e.g., in the refinement graph).
+   */
+  protected final ARGReachedSet createARGReachedSetForRefinement(ReachedSet pReached) {
+    return new ARGReachedSet(pReached, argCpa, refinementNumber++);
+  }
+
+  /**
+   * Register a feasible counterexample for a target state with the ARGCPA
+   * and export it if requested.
+   * @param pTargetState The target state at the end of the counterexample.
+   * @param pCounterexample The feasible counterexample.
+   * @throws InterruptedException
+   */
+  protected final void addCounterexample(ARGState pTargetState, CounterexampleInfo pCounterexample)
+      throws InterruptedException {
+    argCpa.addCounterexample(pTargetState, pCounterexample);
+
+    logger.log(Level.FINEST, "Counterexample", counterexamplesCounter, "has been found.");
+
+    // Print error trace if cpa.arg.printErrorPath = true
+    argCpa.exportCounterexampleOnTheFly(pTargetState, pCounterexample, counterexamplesCounter);
+    counterexamplesCounter++;
+  }
 
   /**
    * Perform refinement.
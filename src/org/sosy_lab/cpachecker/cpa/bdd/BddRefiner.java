@@ -62,7 +62,7 @@ import com.google.common.collect.Multimap;
 /**
  * Refiner implementation that delegates to {@link ValueAnalysisInterpolationBasedRefiner}.
  */
-public class BddRefiner extends AbstractARGBasedRefiner implements Statistics, StatisticsProvider {
+public class BddRefiner extends AbstractARGBasedRefiner implements Statistics, StatisticsProvider, AutoCloseable {
 
   /**
    * refiner used for value-analysis interpolation refinement
@@ -178,6 +178,14 @@ public class BddRefiner extends AbstractARGBasedRefiner implements Statistics, S
     return true;
   }
 
+  /**
+   * Stop the threads of the interpolator, if any.
+   */
+  @Override
+  public void close() {
+    interpolatingRefiner.close();
+  }
+
   @Override
   public void collectStatistics(Collection<Statistics> pStatsCollection) {
     pStatsCollection.add(this);
@@ -35,6 +35,7 @@ import org.sosy_lab.cpachecker.core.interfaces.ForcedCoveringStopOperator;
 import org.sosy_lab.cpachecker.core.interfaces.Precision;
 import org.sosy_lab.cpachecker.core.interfaces.StopOperator;
 import org.sosy_lab.cpachecker.core.interfaces.pcc.ProofChecker;
+import org.sosy_lab.cpachecker.core.reachedset.PartitionedReachedSet;
 import org.sosy_lab.cpachecker.exceptions.CPAException;
 
 import com.google.common.collect.ImmutableList;
@@ -52,7 +53,7 @@ public class CompositeStopOperator implements StopOperator, ForcedCoveringStopOp
     CompositeState compositeState = (CompositeState) element;
     CompositePrecision compositePrecision = (CompositePrecision) precision;
 
-    for (AbstractState e : reached) {
+    for (AbstractState e : PartitionedReachedSet.getCoveringCandidates(reached, element)) {
       if (stop(compositeState, (CompositeState)e, compositePrecision)) {
         return true;
       }
@@ -27,6 +27,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static org.sosy_lab.cpachecker.util.AbstractStates.extractStateByType;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -110,130 +111,194 @@ public class CompositeTransferRelation implements TransferRelation {
       Collection<CompositeState> compositeSuccessors) throws CPATransferException, InterruptedException {
     assert cfaEdge != null;
 
-    // first, call all the post operators
-    int resultCount = 1;
     List<AbstractState> componentElements = compositeState.getWrappedStates();
     checkArgument(componentElements.size() == size, "State with wrong number of component states given");
-    List<Collection<? extends AbstractState>> allComponentsSuccessors = new ArrayList<>(size);
-
-    for (int i = 0; i < size; i++) {
-      TransferRelation lCurrentTransfer = transferRelations.get(i);
-      AbstractState lCurrentElement = componentElements.get(i);
-      Precision lCurrentPrecision = compositePrecision.get(i);
-
-      Collection<? extends AbstractState> componentSuccessors =
-          lCurrentTransfer.getAbstractSuccessorsForEdge(lCurrentElement, lCurrentPrecision, cfaEdge);
-      resultCount *= componentSuccessors.size();
 
-      if (resultCount == 0) {
-        // shortcut
-        break;
-      }
-
-      allComponentsSuccessors.add(componentSuccessors);
+    Scratch scratch = scratchSpace.get();
+    if (scratch.inUse) {
+      // recursive call from within a component
+      scratch = new Scratch(size);
     }
-
-    // create cartesian product of all elements we got
-    Collection<List<AbstractState>> allResultingElements
-        = createCartesianProduct(allComponentsSuccessors, resultCount);
-
-    // second, call strengthen for each result of the cartesian product
-    for (List<AbstractState> lReachedState : allResultingElements) {
-
-      List<Collection<? extends AbstractState>> lStrengthenResults = new ArrayList<>(size);
-
-      resultCount = 1;
-
+    scratch.inUse = true;
+    try {
+      // first, call all the post operators
       for (int i = 0; i < size; i++) {
-
         TransferRelation lCurrentTransfer = transferRelations.get(i);
-        AbstractState lCurrentElement = lReachedState.get(i);
+        AbstractState lCurrentElement = componentElements.get(i);
         Precision lCurrentPrecision = compositePrecision.get(i);
 
-        Collection<? extends AbstractState> lResultsList = lCurrentTransfer.strengthen(lCurrentElement, lReachedState, cfaEdge, lCurrentPrecision);
-
-        if (lResultsList == null) {
-          lStrengthenResults.add(Collections.singleton(lCurrentElement));
-        } else {
-          resultCount *= lResultsList.size();
-
-          if (resultCount == 0) {
-            // shortcut
-            break;
-          }
+        Collection<? extends AbstractState> componentSuccessors =
+            lCurrentTransfer.getAbstractSuccessorsForEdge(lCurrentElement, lCurrentPrecision, cfaEdge);
 
-          lStrengthenResults.add(lResultsList);
+        if (componentSuccessors.isEmpty()) {
+          // shortcut, there is no successor and the remaining post operators need not be called
+          return;
         }
+        scratch.successors.set(i, componentSuccessors);
       }
 
-      // special case handling if we have predicate and assumption cpas
-      if (predicatesIndex >= 0 && assumptionIndex >= 0 && resultCount > 0) {
-        AbstractState predElement = Iterables.getOnlyElement(lStrengthenResults.get(predicatesIndex));
-        AbstractState assumptionElement = Iterables.getOnlyElement(lStrengthenResults.get(assumptionIndex));
-        Precision predPrecision = compositePrecision.get(predicatesIndex);
-        TransferRelation predTransfer = transferRelations.get(predicatesIndex);
+      // second, call strengthen for each element of the cartesian product
+      scratch.successors.reset();
+      do {
+        strengthenAndAddSuccessors(scratch, compositePrecision, cfaEdge, compositeSuccessors);
+      } while (scratch.successors.next());
+
+    } finally {
+      scratch.successors.clear();
+      scratch.strengthened.clear();
+      scratch.inUse = false;
+    }
+  }
 
-        Collection<? extends AbstractState> predResult = predTransfer.strengthen(predElement, Collections.singletonList(assumptionElement), cfaEdge, predPrecision);
-        resultCount *= predResult.size();
+  private void strengthenAndAddSuccessors(Scratch scratch, CompositePrecision compositePrecision, CFAEdge cfaEdge,
+      Collection<CompositeState> compositeSuccessors) throws CPATransferException, InterruptedException {
+    List<AbstractState> lReachedState = scratch.successors.view;
 
-        lStrengthenResults.set(predicatesIndex, predResult);
-      }
+    for (int i = 0; i < size; i++) {
+      TransferRelation lCurrentTransfer = transferRelations.get(i);
+      AbstractState lCurrentElement = lReachedState.get(i);
+      Precision lCurrentPrecision = compositePrecision.get(i);
 
-      // create cartesian product again
-      Collection<List<AbstractState>> lResultingElements
-          = createCartesianProduct(lStrengthenResults, resultCount);
+      Collection<? extends AbstractState> lResultsList = lCurrentTransfer.strengthen(lCurrentElement, lReachedState, cfaEdge, lCurrentPrecision);
 
-      // finally, create a CompositeState for each result of the cartesian product
-      for (List<AbstractState> lList : lResultingElements) {
-        compositeSuccessors.add(new CompositeState(lList));
+      if (lResultsList == null) {
+        scratch.strengthened.set(i, lCurrentElement);
+      } else if (lResultsList.isEmpty()) {
+        // shortcut
+        return;
+      } else {
+        scratch.strengthened.set(i, lResultsList);
       }
     }
-  }
 
-  protected static Collection<List<AbstractState>> createCartesianProduct(
-      List<Collection<? extends AbstractState>> allComponentsSuccessors, int resultCount) {
-    Collection<List<AbstractState>> allResultingElements;
-    switch (resultCount) {
-    case 0:
-      // at least one CPA decided that there is no successor
-      allResultingElements = Collections.emptySet();
-      break;
-
-    case 1:
-      List<AbstractState> resultingElements = new ArrayList<>(allComponentsSuccessors.size());
-      for (Collection<? extends AbstractState> componentSuccessors : allComponentsSuccessors) {
-        resultingElements.add(Iterables.getOnlyElement(componentSuccessors));
+    // special case handling if we have predicate and assumption cpas
+    if (predicatesIndex >= 0 && assumptionIndex >= 0) {
+      AbstractState predElement = scratch.strengthened.getOnlyElement(predicatesIndex);
+      AbstractState assumptionElement = scratch.strengthened.getOnlyElement(assumptionIndex);
+      Precision predPrecision = compositePrecision.get(predicatesIndex);
+      TransferRelation predTransfer = transferRelations.get(predicatesIndex);
+
+      Collection<? extends AbstractState> predResult = predTransfer.strengthen(predElement, Collections.singletonList(assumptionElement), cfaEdge, predPrecision);
+      if (predResult.isEmpty()) {
+        return;
       }
-      allResultingElements = Collections.singleton(resultingElements);
-      break;
-
-    default:
-      // create cartesian product of all componentSuccessors and store the result in allResultingElements
-      List<AbstractState> initialPrefix = Collections.emptyList();
-      allResultingElements = new ArrayList<>(resultCount);
-      createCartesianProduct0(allComponentsSuccessors, initialPrefix, allResultingElements);
+      scratch.strengthened.set(predicatesIndex, predResult);
     }
 
-    assert resultCount == allResultingElements.size();
-    return allResultingElements;
+    // finally, create a CompositeState for each element of the cartesian product
+    scratch.strengthened.reset();
+    do {
+      compositeSuccessors.add(new CompositeState(scratch.strengthened.view));
+    } while (scratch.strengthened.next());
   }
 
-  private static void createCartesianProduct0(List<Collection<? extends AbstractState>> allComponentsSuccessors,
-      List<AbstractState> prefix, Collection<List<AbstractState>> allResultingElements) {
+  /**
+   * Scratch space for computing the successors of a composite state.
+   * It is reused for all computations in the same thread,
+   * such that no intermediate lists need to be allocated for each successor.
+   */
+  private static final class Scratch {
+    // successors of each component, and after strengthening
+    private final Product successors;
+    private final Product strengthened;
+    private boolean inUse = false;
+
+    private Scratch(int size) {
+      successors = new Product(size);
+      strengthened = new Product(size);
+    }
+  }
 
-    if (prefix.size() == allComponentsSuccessors.size()) {
-      allResultingElements.add(prefix);
+  private final ThreadLocal<Scratch> scratchSpace = new ThreadLocal<Scratch>() {
+      @Override
+      protected Scratch initialValue() {
+        return new Scratch(size);
+      }
+    };
+
+  /**
+   * Enumerates the cartesian product of one collection of states per component
+   * in place, without creating a list for each element of the product.
+   * The current element is visible through {@link #view},
+   * which changes when {@link #next()} is called.
+   */
+  private static final class Product {
+
+    private final AbstractState[] current;
+    private final List<AbstractState> view;
+
+    // null for components with exactly one state (only current is used then)
+    private final List<? extends AbstractState>[] choices;
+    private final int[] positions;
+
+    @SuppressWarnings("unchecked")
+    private Product(int size) {
+      current = new AbstractState[size];
+      view = Arrays.asList(current);
+      choices = new List[size];
+      positions = new int[size];
+    }
 
-    } else {
-      int depth = prefix.size();
-      Collection<? extends AbstractState> myComponentsSuccessors = allComponentsSuccessors.get(depth);
+    private void set(int i, AbstractState state) {
+      current[i] = state;
+      choices[i] = null;
+    }
 
-      for (AbstractState currentComponent : myComponentsSuccessors) {
-        List<AbstractState> newPrefix = new ArrayList<>(prefix);
-        newPrefix.add(currentComponent);
+    private void set(int i, Collection<? extends AbstractState> states) {
+      if (states.size() == 1) {
+        set(i, Iterables.getOnlyElement(states));
+      } else {
+        List<? extends AbstractState> list = (states instanceof List)
+            ? (List<? extends AbstractState>)states
+            : new ArrayList<>(states);
+        current[i] = list.get(0);
+        choices[i] = list;
+      }
+    }
+
+    private AbstractState getOnlyElement(int i) {
+      return choices[i] == null ? current[i] : Iterables.getOnlyElement(choices[i]);
+    }
+
+    /**
+     * Go to the first element of the product.
+     */
+    private void reset() {
+      for (int i = 0; i < current.length; i++) {
+        if (choices[i] != null) {
+          positions[i] = 0;
+          current[i] = choices[i].get(0);
+        }
+      }
+    }
 
-        createCartesianProduct0(allComponentsSuccessors, newPrefix, allResultingElements);
+    /**
+     * Go to the next element of the product,
+     * in the same order as nested loops with the first component outermost.
+     * @return false if there is no next element
+     */
+    private boolean next() {
+      for (int i = current.length - 1; i >= 0; i--) {
+        List<? extends AbstractState> list = choices[i];
+        if (list != null) {
+          if (positions[i] + 1 < list.size()) {
+            positions[i]++;
+            current[i] = list.get(positions[i]);
+            return true;
+          }
+          positions[i] = 0;
+          current[i] = list.get(0);
+        }
       }
+      return false;
+    }
+
+    /**
+     * Drop all references to states.
+     */
+    private void clear() {
+      Arrays.fill(current, null);
+      Arrays.fill(choices, null);
     }
   }
 
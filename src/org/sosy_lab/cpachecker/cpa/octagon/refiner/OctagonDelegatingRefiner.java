@@ -79,7 +79,7 @@ import com.google.common.collect.Sets;
  * and if this fails, optionally delegates also to {@link PredicateCPARefiner}.
  */
 @Options(prefix="cpa.octagon.refiner")
-public class OctagonDelegatingRefiner extends AbstractARGBasedRefiner implements Statistics, StatisticsProvider {
+public class OctagonDelegatingRefiner extends AbstractARGBasedRefiner implements Statistics, StatisticsProvider, AutoCloseable {
 
   /**
    * refiner used for value-analysis interpolation refinement
@@ -295,6 +295,14 @@ public class OctagonDelegatingRefiner extends AbstractARGBasedRefiner implements
     return success;
   }
 
+  /**
+   * Stop the threads of the interpolator, if any.
+   */
+  @Override
+  public void close() {
+    interpolatingRefiner.close();
+  }
+
   @Override
   public void collectStatistics(Collection<Statistics> pStatsCollection) {
     pStatsCollection.add(this);
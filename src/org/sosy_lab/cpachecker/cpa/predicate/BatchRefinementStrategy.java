@@ -0,0 +1,56 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.predicate;
+
+import java.util.List;
+
+import org.sosy_lab.cpachecker.cpa.arg.ARGReachedSet;
+import org.sosy_lab.cpachecker.exceptions.CPAException;
+
+/**
+ * Interface for refinement strategies that can collect the refinements
+ * of several paths and apply them together.
+ */
+public interface BatchRefinementStrategy {
+
+  /**
+   * Start a batch of refinements. Until {@link #finishBatch(ARGReachedSet)}
+   * or {@link #abortBatch()} is called, all calls to
+   * {@link RefinementStrategy#performRefinement(ARGReachedSet, List, List, boolean)}
+   * only collect the new precision and the states where the ARG needs
+   * to be cut, without modifying the reached set.
+   */
+  void startBatch();
+
+  /**
+   * Apply all refinements collected since the last call to {@link #startBatch()}
+   * with one precision update.
+   */
+  void finishBatch(ARGReachedSet pReached) throws CPAException, InterruptedException;
+
+  /**
+   * Discard all refinements collected since the last call to {@link #startBatch()}.
+   */
+  void abortBatch();
+}
@@ -0,0 +1,198 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.predicate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.sosy_lab.common.Classes.UnexpectedCheckedException;
+import org.sosy_lab.common.concurrency.Threads;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.cpachecker.core.ShutdownNotifier;
+import org.sosy_lab.cpachecker.util.predicates.SolverContexts;
+import org.sosy_lab.cpachecker.util.predicates.SolverContexts.Context;
+import org.sosy_lab.cpachecker.util.predicates.SolverContexts.SharedFormula;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormulaManager;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.ProverEnvironment;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.view.FormulaManagerView;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+/**
+ * Computes the truth values of predicates for cartesian abstraction in parallel.
+ *
+ * Each thread has its own solver context (cf. {@link SolverContexts}),
+ * because solver instances cannot be shared between threads.
+ * The predicates are split into one chunk per thread,
+ * and each chunk is checked with push/pop on a single prover environment.
+ */
+class ParallelCartesianAbstraction implements AutoCloseable {
+
+  private final ShutdownNotifier shutdownNotifier;
+
+  private final SolverContexts contexts;
+  private final ExecutorService executor;
+
+  // sum of the time the threads spent on their chunks
+  private long workTime = 0;
+
+  ParallelCartesianAbstraction(int pThreads, FormulaManagerView pFmgr,
+      Configuration config, LogManager logger, ShutdownNotifier pShutdownNotifier)
+          throws InvalidConfigurationException {
+    shutdownNotifier = pShutdownNotifier;
+
+    contexts = new SolverContexts(pThreads, pFmgr, config, logger, pShutdownNotifier);
+    executor = Executors.newFixedThreadPool(pThreads, contexts.newWorkerThreadFactory(
+        Threads.threadFactoryBuilder().setDaemon(true).setNameFormat("Cartesian abstraction %d").build()));
+  }
+
+  /**
+   * Compute the truth value of each predicate in the models of a formula.
+   * The values are encoded as in the cache for cartesian abstraction:
+   * 1 if the predicate is implied by the formula,
+   * -1 if its negation is implied by the formula,
+   * and 0 otherwise.
+   *
+   * @param f A satisfiable formula.
+   * @param predicates The predicates, already instantiated with the indices of f.
+   * @return An array with the value of each predicate, in the same order.
+   * @throws IllegalStateException If called by another thread than the one that created this object.
+   */
+  byte[] computePredicateValues(BooleanFormula f, List<BooleanFormula> predicates)
+      throws InterruptedException {
+    Context mainContext = contexts.getMainContext();
+    final SharedFormula sharedFormula = mainContext.shareOnce(f);
+    List<SharedFormula> sharedPredicates = new ArrayList<>(predicates.size());
+    for (BooleanFormula predicate : predicates) {
+      sharedPredicates.add(mainContext.share(predicate));
+    }
+
+    int threads = contexts.getNumberOfWorkerContexts();
+    int chunkSize = (sharedPredicates.size() + threads - 1) / threads;
+    List<List<SharedFormula>> chunks = Lists.partition(sharedPredicates, chunkSize);
+
+    List<Future<byte[]>> results = new ArrayList<>(chunks.size());
+    try {
+      for (List<SharedFormula> chunk : chunks) {
+        results.add(executor.submit(new ChunkCheck(sharedFormula, chunk)));
+      }
+
+      byte[] values = new byte[predicates.size()];
+      int pos = 0;
+      for (Future<byte[]> result : results) {
+        byte[] chunkValues = result.get();
+        System.arraycopy(chunkValues, 0, values, pos, chunkValues.length);
+        pos += chunkValues.length;
+      }
+      return values;
+
+    } catch (ExecutionException e) {
+      Throwable t = e.getCause();
+      Throwables.propagateIfPossible(t, InterruptedException.class);
+      throw new UnexpectedCheckedException("parallel cartesian abstraction", t);
+
+    } finally {
+      for (Future<byte[]> result : results) {
+        result.cancel(true);
+      }
+    }
+  }
+
+  private class ChunkCheck implements Callable<byte[]> {
+
+    private final SharedFormula formula;
+    private final List<SharedFormula> predicates;
+
+    private ChunkCheck(SharedFormula pFormula, List<SharedFormula> pPredicates) {
+      formula = pFormula;
+      predicates = pPredicates;
+    }
+
+    @Override
+    public byte[] call() throws InterruptedException {
+      long start = System.nanoTime();
+      Context context = contexts.getCurrentContext();
+      BooleanFormulaManager bmgr = context.getFormulaManager().getBooleanFormulaManager();
+      byte[] values = new byte[predicates.size()];
+
+      try (ProverEnvironment prover = context.newProverEnvironment()) {
+        prover.push(context.get(formula));
+
+        for (int i = 0; i < values.length; i++) {
+          shutdownNotifier.shutdownIfNecessary();
+          BooleanFormula predTrue = context.get(predicates.get(i));
+
+          prover.push(bmgr.not(predTrue));
+          boolean isTrue = prover.isUnsat();
+          prover.pop();
+
+          if (isTrue) {
+            values[i] = 1;
+          } else {
+            prover.push(predTrue);
+            boolean isFalse = prover.isUnsat();
+            prover.pop();
+
+            if (isFalse) {
+              values[i] = -1;
+            }
+          }
+        }
+      }
+
+      addWorkTime(System.nanoTime() - start);
+      return values;
+    }
+  }
+
+  private synchronized void addWorkTime(long nanos) {
+    workTime += nanos;
+  }
+
+  /**
+   * Return the sum of the times (in nanoseconds) that the threads spent
+   * on checking predicates.
+   */
+  synchronized long getWorkTime() {
+    return workTime;
+  }
+
+  @Override
+  public void close() throws Exception {
+    executor.shutdownNow();
+    // the solvers must not be closed while a thread still uses them
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    contexts.close();
+  }
+}
@@ -35,25 +35,32 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
+import javax.annotation.Nullable;
+
 import org.sosy_lab.common.Pair;
 import org.sosy_lab.common.configuration.Configuration;
 import org.sosy_lab.common.configuration.FileOption;
+import org.sosy_lab.common.configuration.IntegerOption;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.configuration.Option;
 import org.sosy_lab.common.configuration.Options;
+import org.sosy_lab.common.configuration.TimeSpanOption;
 import org.sosy_lab.common.io.Path;
 import org.sosy_lab.common.log.LogManager;
 import org.sosy_lab.common.time.NestedTimer;
 import org.sosy_lab.common.time.TimeSpan;
 import org.sosy_lab.common.time.Timer;
 import org.sosy_lab.cpachecker.cfa.model.CFANode;
+import org.sosy_lab.cpachecker.cfa.types.MachineModel;
+import org.sosy_lab.cpachecker.core.ShutdownNotifier;
+import org.sosy_lab.cpachecker.cpa.predicate.persistence.PersistentAbstractionCache;
 import org.sosy_lab.cpachecker.cpa.predicate.persistence.PredicateAbstractionsStorage;
 import org.sosy_lab.cpachecker.cpa.predicate.persistence.PredicateAbstractionsStorage.AbstractionNode;
 import org.sosy_lab.cpachecker.cpa.predicate.persistence.PredicatePersistenceUtils.PredicateParsingFailedException;
@@ -61,27 +68,38 @@ import org.sosy_lab.cpachecker.util.predicates.AbstractionFormula;
 import org.sosy_lab.cpachecker.util.predicates.AbstractionManager;
 import org.sosy_lab.cpachecker.util.predicates.AbstractionManager.RegionCreator;
 import org.sosy_lab.cpachecker.util.predicates.AbstractionPredicate;
+import org.sosy_lab.cpachecker.util.predicates.FormulaCache;
 import org.sosy_lab.cpachecker.util.predicates.Solver;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.PathFormulaManager;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.ProverEnvironment;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.ProverEnvironment.AllSatCallback;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.ProverEnvironment.AllSatResult;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.Region;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.RegionManager.RegionBuilder;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.view.BooleanFormulaManagerView;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.view.FormulaManagerView;
 import org.sosy_lab.cpachecker.util.predicates.pathformula.PathFormula;
 import org.sosy_lab.cpachecker.util.predicates.pathformula.SSAMap;
 import org.sosy_lab.cpachecker.util.statistics.StatTimer;
+import org.sosy_lab.cpachecker.util.statistics.Telemetry;
 
+import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
 
 @Options(prefix = "cpa.predicate")
 public class PredicateAbstractionManager {
 
+  // live counters, in addition to the statistics printed at the end
+  private static final Telemetry.Counter ABSTRACTIONS = Telemetry.getCounter("predicate.abstractions");
+  private static final Telemetry.Counter ABSTRACTIONS_CACHED = Telemetry.getCounter("predicate.abstractions.cached");
+
   static class Stats {
 
     public int numCallsAbstraction = 0; // total calls
@@ -102,12 +120,15 @@ public class PredicateAbstractionManager {
     public final StatTimer abstractionReuseImplicationTime = new StatTimer("Time for checking reusability of abstractions");
     public final Timer trivialPredicatesTime = new Timer();
     public final Timer cartesianAbstractionTime = new Timer();
+    public final Timer cartesianParallelTime = new Timer(); // wall time of parallel predicate checks
+    public long cartesianParallelWorkTime = 0; // sum of time of all threads in parallel predicate checks (ns)
     public final Timer booleanAbstractionTime = new Timer();
     public final NestedTimer abstractionEnumTime = new NestedTimer(); // outer: solver time, inner: bdd time
     public final Timer abstractionSolveTime = new Timer(); // only the time for solving, not for model enumeration
 
     public long allSatCount = 0;
     public int maxAllSatCount = 0;
+    public int numAllSatBudgetExceeded = 0; // fallback to cartesian abstraction
 
     public int numPathFormulaCoverageChecks = 0;
     public int numEqualPathFormulae = 0;
@@ -118,6 +139,7 @@ public class PredicateAbstractionManager {
   final Stats stats = new Stats();
 
   private final LogManager logger;
+  private final ShutdownNotifier shutdownNotifier;
   private final FormulaManagerView fmgr;
   private final AbstractionManager amgr;
   private final RegionCreator rmgr;
@@ -157,43 +179,97 @@ public class PredicateAbstractionManager {
   @Option(name = "abs.useCache", description = "use caching of abstractions")
   private boolean useCache = true;
 
+  @Option(name = "abs.cacheMaxWeight",
+      description = "maximal total size of the formulas in each of the abstraction caches,"
+      + " measured in DAG nodes. Least-recently used entries are evicted above this limit"
+      + " (0 for unbounded caches).")
+  @IntegerOption(min=0)
+  private int cacheMaxWeight = 0;
+
+  @Option(name = "abs.persistentCache",
+      description = "file with a cache of abstractions that is reused and extended by later runs"
+      + " (none if not set). Its content is discarded if the solver, the machine model,"
+      + " or the type of abstraction changes. Abstractions that fell back to cartesian abstraction"
+      + " because the budget for allsat was exceeded are not stored.")
+  @FileOption(FileOption.Type.OPTIONAL_INPUT_FILE)
+  private Path persistentCacheFile = null;
+
   @Option(name="refinement.splitItpAtoms",
       description="split each arithmetic equality into two inequalities when extracting predicates from interpolants")
   private boolean splitItpAtoms = false;
 
+  @Option(name = "abstraction.cartesian.threads",
+      description = "number of threads for checking predicates in cartesian abstraction."
+      + " Each thread uses its own solver instance, formulas are transferred"
+      + " to these instances by dumping and parsing them.")
+  @IntegerOption(min=1)
+  private int cartesianAbstractionThreads = 1;
+
+  @Option(name = "abstraction.allSat.maxModels",
+      description = "maximal number of models that are enumerated for a boolean abstraction"
+      + " (0 for no limit). If the limit is reached, cartesian abstraction is used"
+      + " for the predicates of this abstraction instead.")
+  @IntegerOption(min=0)
+  private int allSatMaxModels = 0;
+
+  @Option(name = "abstraction.allSat.timelimit",
+      description = "maximal time for enumerating the models for a boolean abstraction"
+      + " (use milliseconds or specify a unit; 0 for no limit). If the limit is reached,"
+      + " cartesian abstraction is used for the predicates of this abstraction instead.")
+  @TimeSpanOption(codeUnit=TimeUnit.NANOSECONDS,
+      defaultUserUnit=TimeUnit.MILLISECONDS,
+      min=0)
+  private TimeSpan allSatTimeLimit = TimeSpan.ofNanos(0);
+
   @Option(name = "abstraction.identifyTrivialPredicates",
       description="Identify those predicates where the result is trivially known before abstraction computation and omit them.")
   private boolean identifyTrivialPredicates = false;
 
+  private static final Function<Pair<BooleanFormula, ?>, BooleanFormula> CACHE_KEY_FORMULA =
+      new Function<Pair<BooleanFormula, ?>, BooleanFormula>() {
+        @Override
+        public BooleanFormula apply(Pair<BooleanFormula, ?> pKey) {
+          return pKey.getFirst();
+        }
+      };
+
   private boolean warnedOfCartesianAbstraction = false;
 
   private boolean abstractionReuseDisabledBecauseOfAmbiguity = false;
 
-  private final Map<Pair<BooleanFormula, ImmutableSet<AbstractionPredicate>>, AbstractionFormula> abstractionCache;
+  private final FormulaCache<Pair<BooleanFormula, ImmutableSet<AbstractionPredicate>>, AbstractionFormula> abstractionCache;
 
   // Cache for satisfiability queries: if formula is contained, it is unsat
-  private final Set<BooleanFormula> unsatisfiabilityCache;
+  private final FormulaCache<BooleanFormula, Boolean> unsatisfiabilityCache;
 
   //cache for cartesian abstraction queries. For each predicate, the values
   // are -1: predicate is false, 0: predicate is don't care,
   // 1: predicate is true
-  private final Map<Pair<BooleanFormula, AbstractionPredicate>, Byte> cartesianAbstractionCache;
+  private final FormulaCache<Pair<BooleanFormula, AbstractionPredicate>, Byte> cartesianAbstractionCache;
 
   private final BooleanFormulaManagerView bfmgr;
 
   private final PredicateAbstractionsStorage abstractionStorage;
 
+  private final @Nullable PersistentAbstractionCache persistentCache;
+
+  // null if predicates are checked sequentially
+  private @Nullable ParallelCartesianAbstraction parallelCartesianAbstraction = null;
+
   public PredicateAbstractionManager(
       AbstractionManager pAmgr,
       FormulaManagerView pFmgr,
       PathFormulaManager pPfmgr,
       Solver pSolver,
+      MachineModel pMachineModel,
       Configuration config,
-      LogManager pLogger) throws InvalidConfigurationException, PredicateParsingFailedException {
+      LogManager pLogger,
+      ShutdownNotifier pShutdownNotifier) throws InvalidConfigurationException, PredicateParsingFailedException {
 
     config.inject(this, PredicateAbstractionManager.class);
 
     logger = pLogger;
+    shutdownNotifier = pShutdownNotifier;
     fmgr = pFmgr;
     bfmgr = fmgr.getBooleanFormulaManager();
     amgr = pAmgr;
@@ -209,15 +285,17 @@ public class PredicateAbstractionManager {
     }
 
     if (useCache) {
-      abstractionCache = new HashMap<>();
-      unsatisfiabilityCache = new HashSet<>();
+      abstractionCache = FormulaCache.create(cacheMaxWeight, fmgr,
+          CACHE_KEY_FORMULA);
+      unsatisfiabilityCache = FormulaCache.create(cacheMaxWeight, fmgr);
     } else {
       abstractionCache = null;
       unsatisfiabilityCache = null;
     }
 
-    if (useCache && (abstractionType != AbstractionType.BOOLEAN)) {
-      cartesianAbstractionCache = new HashMap<>();
+    if (useCache && (abstractionType != AbstractionType.BOOLEAN || hasAllSatBudget())) {
+      cartesianAbstractionCache = FormulaCache.create(cacheMaxWeight, fmgr,
+          CACHE_KEY_FORMULA);
     } else {
       cartesianAbstractionCache = null;
     }
@@ -228,6 +306,22 @@ public class PredicateAbstractionManager {
       BooleanFormula instanceFm = fmgr.instantiate(an.getFormula(), extractionSsa);
       extractPredicates(instanceFm);
     }
+
+    PersistentAbstractionCache cache = null;
+    if (persistentCacheFile != null) {
+      try {
+        cache = new PersistentAbstractionCache(persistentCacheFile, pMachineModel,
+            abstractionType.name(), fmgr, logger);
+      } catch (IOException e) {
+        logger.logUserException(Level.WARNING, e, "Could not open persistent abstraction cache");
+      }
+    }
+    persistentCache = cache;
+
+    if (cartesianAbstractionThreads > 1 && abstractionType != AbstractionType.BOOLEAN) {
+      parallelCartesianAbstraction = new ParallelCartesianAbstraction(cartesianAbstractionThreads,
+          fmgr, config, logger, pShutdownNotifier);
+    }
   }
 
   /**
@@ -246,6 +340,7 @@ public class PredicateAbstractionManager {
       Collection<AbstractionPredicate> pPredicates) throws InterruptedException {
 
     stats.numCallsAbstraction++;
+    ABSTRACTIONS.inc();
 
     logger.log(Level.FINEST, "Computing abstraction", stats.numCallsAbstraction, "with", pPredicates.size(), "predicates");
     logger.log(Level.ALL, "Old abstraction:", abstractionFormula.asFormula());
@@ -374,21 +469,43 @@ public class PredicateAbstractionManager {
         logger.log(Level.FINEST, "Abstraction", stats.numCallsAbstraction, "was cached");
         logger.log(Level.ALL, "Abstraction result is", result.asFormula());
         stats.numCallsAbstractionCached++;
+        ABSTRACTIONS_CACHED.inc();
         return result;
       }
 
-      boolean unsatisfiable = unsatisfiabilityCache.contains(symbFormula)
-                            || unsatisfiabilityCache.contains(f);
+      // only conjunctions f are put into this cache,
+      // and f is symbFormula itself if the abstraction is true
+      boolean unsatisfiable = unsatisfiabilityCache.get(f) != null;
       if (unsatisfiable) {
         // block is infeasible
         logger.log(Level.FINEST, "Block feasibility of abstraction", stats.numCallsAbstraction, "was cached and is false.");
         stats.numCallsAbstractionCached++;
+        ABSTRACTIONS_CACHED.inc();
         return new AbstractionFormula(fmgr, rmgr.makeFalse(),
             bfmgr.makeBoolean(false), bfmgr.makeBoolean(false),
             pathFormula, noAbstractionReuse);
       }
     }
 
+    HashCode persistentKey = null;
+    if (persistentCache != null) {
+      persistentKey = persistentCache.computeKey(f, predicates);
+      BooleanFormula cachedAbs = persistentCache.get(persistentKey);
+
+      if (cachedAbs != null) {
+        AbstractionFormula result = makeAbstractionFormula(amgr.buildRegionFromFormula(cachedAbs), ssa, pathFormula);
+        logger.log(Level.FINEST, "Abstraction", stats.numCallsAbstraction, "was in persistent cache");
+        logger.log(Level.ALL, "Abstraction result is", result.asFormula());
+        stats.numCallsAbstractionCached++;
+        ABSTRACTIONS_CACHED.inc();
+
+        if (useCache) {
+          abstractionCache.put(absKey, result);
+        }
+        return result;
+      }
+    }
+
 
 
     // We update statistics here because we want to ignore calls
@@ -411,6 +528,11 @@ public class PredicateAbstractionManager {
       stats.trivialPredicatesTime.stop();
     }
 
+    // the result of the fallback to cartesian abstraction is weaker than the boolean abstraction
+    // and depends on the budget for allsat (and on the speed of the machine),
+    // so it must not be stored persistently
+    final int numAllSatBudgetExceededBefore = stats.numAllSatBudgetExceeded;
+
     try (ProverEnvironment thmProver = solver.newProverEnvironment()) {
       thmProver.push(f);
 
@@ -455,7 +577,7 @@ public class PredicateAbstractionManager {
           stats.booleanAbstractionTime.start();
           try {
             abs = rmgr.makeAnd(abs,
-                buildBooleanAbstraction(ssa, thmProver, predicates));
+                buildBooleanAbstraction(f, ssa, thmProver, predicates));
           } finally {
             stats.booleanAbstractionTime.stop();
           }
@@ -472,9 +594,12 @@ public class PredicateAbstractionManager {
       abstractionCache.put(absKey, result);
 
       if (result.isFalse()) {
-        unsatisfiabilityCache.add(f);
+        unsatisfiabilityCache.put(f, Boolean.TRUE);
       }
     }
+    if (persistentCache != null && stats.numAllSatBudgetExceeded == numAllSatBudgetExceededBefore) {
+      persistentCache.put(persistentKey, result.asFormula());
+    }
 
     long abstractionTime = TimeSpan.sum(stats.abstractionSolveTime.getLengthOfLastInterval(),
                                         stats.abstractionEnumTime.getLengthOfLastOuterInterval())
@@ -678,13 +803,27 @@ public class PredicateAbstractionManager {
     try {
       Region absbdd = rmgr.makeTrue();
 
+      Map<AbstractionPredicate, Byte> parallelPredVals = ImmutableMap.of();
+      if (parallelCartesianAbstraction != null) {
+        parallelPredVals = checkPredicatesInParallel(f, ssa, predicates);
+      }
+
       // check whether each of the predicate is implied in the next state...
 
       for (AbstractionPredicate p : predicates) {
         Pair<BooleanFormula, AbstractionPredicate> cacheKey = Pair.of(f, p);
-        if (useCache && cartesianAbstractionCache.containsKey(cacheKey)) {
-          byte predVal = cartesianAbstractionCache.get(cacheKey);
+        Byte knownPredVal = useCache ? cartesianAbstractionCache.get(cacheKey) : null;
+        if (knownPredVal != null) {
           stats.numCartesianAbsPredicatesCached++;
+        } else {
+          knownPredVal = parallelPredVals.get(p);
+          if (knownPredVal != null && useCache) {
+            cartesianAbstractionCache.put(cacheKey, knownPredVal);
+          }
+        }
+
+        if (knownPredVal != null) {
+          byte predVal = knownPredVal;
 
           stats.abstractionEnumTime.getCurentInnerTimer().start();
           Region v = p.getAbstractVariable();
@@ -755,6 +894,56 @@ public class PredicateAbstractionManager {
     }
   }
 
+  /**
+   * Check the predicates that are not in the cache for cartesian abstraction
+   * with several solver instances in parallel.
+   * @return The value of each checked predicate, encoded as in the cache.
+   */
+  private Map<AbstractionPredicate, Byte> checkPredicatesInParallel(final BooleanFormula f,
+      final SSAMap ssa, Collection<AbstractionPredicate> predicates) throws InterruptedException {
+    List<AbstractionPredicate> toCheck = new ArrayList<>(predicates.size());
+    List<BooleanFormula> instantiatedPredicates = new ArrayList<>(predicates.size());
+    for (AbstractionPredicate p : predicates) {
+      if (!useCache || !cartesianAbstractionCache.containsKey(Pair.of(f, p))) {
+        toCheck.add(p);
+        instantiatedPredicates.add(fmgr.instantiate(p.getSymbolicAtom(), ssa));
+      }
+    }
+    if (toCheck.size() < 2) {
+      return ImmutableMap.of();
+    }
+
+    byte[] predVals;
+    stats.cartesianParallelTime.start();
+    try {
+      predVals = parallelCartesianAbstraction.computePredicateValues(f, instantiatedPredicates);
+    } catch (IllegalArgumentException | UnsupportedOperationException e) {
+      // the solver cannot parse its own formulas
+      logger.logUserException(Level.WARNING, e,
+          "Parallel cartesian abstraction failed, continuing with sequential cartesian abstraction");
+      closeParallelCartesianAbstraction();
+      return ImmutableMap.of();
+    } finally {
+      stats.cartesianParallelTime.stop();
+    }
+    stats.cartesianParallelWorkTime = parallelCartesianAbstraction.getWorkTime();
+
+    Map<AbstractionPredicate, Byte> result = new HashMap<>(toCheck.size());
+    for (int i = 0; i < predVals.length; i++) {
+      result.put(toCheck.get(i), predVals[i]);
+    }
+    return result;
+  }
+
+  private void closeParallelCartesianAbstraction() {
+    try {
+      parallelCartesianAbstraction.close();
+    } catch (Exception e) {
+      logger.logUserException(Level.FINE, e, "Could not close solver instances for parallel cartesian abstraction");
+    }
+    parallelCartesianAbstraction = null;
+  }
+
   private BooleanFormula buildFormula(BooleanFormula symbFormula) {
 
     if (fmgr.useBitwiseAxioms()) {
@@ -769,7 +958,7 @@ public class PredicateAbstractionManager {
     return symbFormula;
   }
 
-  private Region buildBooleanAbstraction(SSAMap ssa,
+  private Region buildBooleanAbstraction(final BooleanFormula f, SSAMap ssa,
       ProverEnvironment thmProver, Collection<AbstractionPredicate> predicates) throws InterruptedException {
 
     // build the definition of the predicates, and instantiate them
@@ -794,6 +983,19 @@ public class PredicateAbstractionManager {
 
     // the formula is (abstractionFormula & pathFormula & predDef)
     thmProver.push(predDef);
+
+    if (hasAllSatBudget()) {
+      Region result = buildBooleanAbstractionWithBudget(thmProver, predVars);
+      if (result == null) {
+        // too many models, thmProver still contains f (and predDef, which does not matter)
+        stats.numAllSatBudgetExceeded++;
+        logger.log(Level.FINEST, "Abstraction", stats.numCallsAbstraction,
+            "exceeded the budget for allsat, using cartesian abstraction");
+        return buildCartesianAbstraction(f, ssa, thmProver, predicates);
+      }
+      return result;
+    }
+
     AllSatResult allSatResult = thmProver.allSat(predVars, rmgr,
         stats.abstractionSolveTime, stats.abstractionEnumTime);
 
@@ -810,6 +1012,82 @@ public class PredicateAbstractionManager {
     return allSatResult.getResult();
   }
 
+  private boolean hasAllSatBudget() {
+    return allSatMaxModels > 0 || allSatTimeLimit.asNanos() > 0;
+  }
+
+  /**
+   * Enumerate the models of the formula on the prover stack
+   * until all models are found or the budget for allsat is exhausted.
+   * @return A region representing all models, or null if the budget was exhausted.
+   */
+  private @Nullable Region buildBooleanAbstractionWithBudget(ProverEnvironment thmProver,
+      List<BooleanFormula> predVars) throws InterruptedException {
+    final long deadline = allSatTimeLimit.asNanos() > 0
+        ? System.nanoTime() + allSatTimeLimit.asNanos()
+        : 0;
+    final RegionBuilder builder = rmgr.newRegionBuilder(shutdownNotifier);
+
+    class BoundedAllSatCallback implements AllSatCallback {
+      private int count = 0;
+
+      @Override
+      public boolean apply(List<BooleanFormula> positive, List<BooleanFormula> negative) {
+        if (count == 0) {
+          stats.abstractionSolveTime.stop();
+          stats.abstractionEnumTime.startOuter();
+        }
+        Timer regionTime = stats.abstractionEnumTime.getCurentInnerTimer();
+        regionTime.start();
+        builder.startNewConjunction();
+        for (BooleanFormula var : positive) {
+          builder.addPositiveRegion(rmgr.getPredicate(var));
+        }
+        for (BooleanFormula var : negative) {
+          builder.addNegativeRegion(rmgr.getPredicate(var));
+        }
+        builder.finishConjunction();
+        regionTime.stop();
+        count++;
+
+        return (allSatMaxModels == 0 || count < allSatMaxModels)
+            && (deadline == 0 || System.nanoTime() < deadline);
+      }
+    }
+    BoundedAllSatCallback callback = new BoundedAllSatCallback();
+
+    try {
+      boolean complete;
+      stats.abstractionSolveTime.start();
+      try {
+        complete = thmProver.allSat(predVars, callback);
+      } finally {
+        if (stats.abstractionSolveTime.isRunning()) {
+          stats.abstractionSolveTime.stop();
+        } else {
+          stats.abstractionEnumTime.stopOuter();
+        }
+      }
+
+      if (!complete) {
+        return null;
+      }
+
+      stats.maxAllSatCount = Math.max(callback.count, stats.maxAllSatCount);
+      stats.allSatCount += callback.count;
+
+      stats.abstractionEnumTime.startBoth();
+      try {
+        return builder.getResult();
+      } finally {
+        stats.abstractionEnumTime.stopBoth();
+      }
+    } finally {
+      builder.close();
+    }
+  }
+
+
   /**
    * Checks if a1 => a2
    */
@@ -882,10 +1160,10 @@ public class PredicateAbstractionManager {
   public boolean unsat(AbstractionFormula abstractionFormula, PathFormula pathFormula) throws InterruptedException {
     BooleanFormula absFormula = abstractionFormula.asInstantiatedFormula();
     BooleanFormula symbFormula = buildFormula(pathFormula.getFormula());
-    BooleanFormula f = bfmgr.and(absFormula, symbFormula);
-    logger.log(Level.ALL, "Checking satisfiability of formula", f);
+    logger.log(Level.ALL, "Checking satisfiability of formula", absFormula, "and", symbFormula);
 
-    return solver.isUnsat(f);
+    // abstraction first, because it is shared by all successors of an abstraction state
+    return solver.isUnsat(ImmutableList.of(absFormula, symbFormula));
   }
 
   public AbstractionFormula makeTrueAbstractionFormula(PathFormula pPreviousBlockFormula) {
@@ -1032,6 +1310,39 @@ public class PredicateAbstractionManager {
     }
   }
 
+  /**
+   * Return the persistent abstraction cache (for statistics),
+   * or null if there is none.
+   */
+  @Nullable PersistentAbstractionCache getPersistentCache() {
+    return persistentCache;
+  }
+
+  public void close() throws IOException {
+    if (persistentCache != null) {
+      persistentCache.close();
+    }
+    if (parallelCartesianAbstraction != null) {
+      closeParallelCartesianAbstraction();
+    }
+  }
+
+  /**
+   * Return the caches of this instance by name (for statistics).
+   * Disabled caches are omitted.
+   */
+  ImmutableMap<String, FormulaCache<?, ?>> getCaches() {
+    ImmutableMap.Builder<String, FormulaCache<?, ?>> result = ImmutableMap.builder();
+    if (abstractionCache != null) {
+      result.put("abstraction", abstractionCache);
+      result.put("unsatisfiability", unsatisfiabilityCache);
+    }
+    if (cartesianAbstractionCache != null) {
+      result.put("cartesian abstraction", cartesianAbstractionCache);
+    }
+    return result.build();
+  }
+
   private Set<AbstractionNode> getSuccessorsInAbstractionTree(int pIdOfLastAbstractionReused) {
     Preconditions.checkNotNull(reuseAbstractionsFrom);
     return abstractionStorage.getSuccessorAbstractions(pIdOfLastAbstractionReused);
@@ -0,0 +1,156 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.predicate;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.common.log.TestLogManager;
+import org.sosy_lab.cpachecker.cfa.model.CFANode;
+import org.sosy_lab.cpachecker.cfa.types.MachineModel;
+import org.sosy_lab.cpachecker.core.ShutdownNotifier;
+import org.sosy_lab.cpachecker.util.VariableClassification;
+import org.sosy_lab.cpachecker.util.predicates.AbstractionFormula;
+import org.sosy_lab.cpachecker.util.predicates.AbstractionManager;
+import org.sosy_lab.cpachecker.util.predicates.AbstractionPredicate;
+import org.sosy_lab.cpachecker.util.predicates.FormulaManagerFactory;
+import org.sosy_lab.cpachecker.util.predicates.Solver;
+import org.sosy_lab.cpachecker.util.predicates.bdd.BDDManagerFactory;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.FormulaManager;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.NumeralFormula.IntegerFormula;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.PathFormulaManager;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.Region;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.RegionManager;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.view.BooleanFormulaManagerView;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.view.FormulaManagerView;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.view.NumeralFormulaManagerView;
+import org.sosy_lab.cpachecker.util.predicates.pathformula.PathFormula;
+import org.sosy_lab.cpachecker.util.predicates.pathformula.PathFormulaManagerImpl;
+import org.sosy_lab.cpachecker.util.predicates.pathformula.SSAMap;
+import org.sosy_lab.cpachecker.util.predicates.pathformula.pointeraliasing.PointerTargetSet;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+public class PredicateAbstractionManagerTest {
+
+  private final LogManager logger = TestLogManager.getInstance();
+
+  private Configuration config;
+  private FormulaManagerFactory factory;
+  private FormulaManager __formulaManager;
+  private FormulaManagerView fmgr;
+  private RegionManager rmgr;
+  private AbstractionManager amgr;
+  private PathFormulaManager pfmgr;
+  private Solver solver;
+
+  @Before
+  public void setup() throws Exception {
+    config = Configuration.builder()
+        .setOption("cpa.predicate.solver", "smtinterpol") // only solver guaranteed on all platforms
+        .setOption("cpa.predicate.abstraction.computation", "CARTESIAN")
+        .build();
+
+    factory = new FormulaManagerFactory(config, logger, ShutdownNotifier.create());
+    __formulaManager = factory.getFormulaManager();
+    fmgr = new FormulaManagerView(__formulaManager, config, logger);
+    solver = new Solver(fmgr, factory);
+    rmgr = new BDDManagerFactory(config, logger).createRegionManager();
+    amgr = new AbstractionManager(rmgr, fmgr, config, logger);
+    pfmgr = new PathFormulaManagerImpl(fmgr, config, logger, ShutdownNotifier.create(),
+        MachineModel.LINUX32, Optional.<VariableClassification>absent(), false);
+  }
+
+  @After
+  public void closeFormulaManager() throws Exception {
+    if (__formulaManager instanceof AutoCloseable) {
+      ((AutoCloseable)__formulaManager).close();
+    }
+  }
+
+  private PredicateAbstractionManager createAbstractionManager(int threads) throws Exception {
+    Configuration abstractionConfig = Configuration.builder()
+        .copyFrom(config)
+        .setOption("cpa.predicate.abstraction.cartesian.threads", Integer.toString(threads))
+        .build();
+    return new PredicateAbstractionManager(amgr, fmgr, pfmgr, solver, MachineModel.LINUX32,
+        abstractionConfig, logger, ShutdownNotifier.create());
+  }
+
+  @Test
+  public void testParallelCartesianAbstraction() throws Exception {
+    BooleanFormulaManagerView bfmgr = fmgr.getBooleanFormulaManager();
+    NumeralFormulaManagerView<IntegerFormula, IntegerFormula> imgr = fmgr.getIntegerFormulaManager();
+    IntegerFormula x = imgr.makeVariable("x");
+    IntegerFormula y = imgr.makeVariable("y");
+    IntegerFormula z = imgr.makeVariable("z");
+
+    // x > 0 & y = x + 1 & z = 5
+    SSAMap ssa = SSAMap.emptySSAMap().withDefault(1);
+    BooleanFormula block = fmgr.instantiate(bfmgr.and(ImmutableList.of(
+        imgr.greaterThan(x, imgr.makeNumber(0)),
+        imgr.equal(y, imgr.add(x, imgr.makeNumber(1))),
+        imgr.equal(z, imgr.makeNumber(5)))), ssa);
+    PathFormula pathFormula = new PathFormula(block, ssa,
+        PointerTargetSet.emptyPointerTargetSet(), 1);
+
+    AbstractionPredicate xNonNegative = amgr.makePredicate(imgr.greaterOrEquals(x, imgr.makeNumber(0)));
+    AbstractionPredicate yGreaterOne = amgr.makePredicate(imgr.greaterThan(y, imgr.makeNumber(1)));
+    AbstractionPredicate xGreaterThree = amgr.makePredicate(imgr.greaterThan(x, imgr.makeNumber(3)));
+    AbstractionPredicate zNegative = amgr.makePredicate(imgr.lessThan(z, imgr.makeNumber(0)));
+    AbstractionPredicate yLessX = amgr.makePredicate(imgr.lessThan(y, x));
+    List<AbstractionPredicate> predicates = ImmutableList.of(
+        xNonNegative, yGreaterOne, xGreaterThree, zNegative, yLessX);
+
+    Region expected = rmgr.makeAnd(
+        rmgr.makeAnd(xNonNegative.getAbstractVariable(), yGreaterOne.getAbstractVariable()),
+        rmgr.makeAnd(rmgr.makeNot(zNegative.getAbstractVariable()),
+                     rmgr.makeNot(yLessX.getAbstractVariable())));
+
+    PredicateAbstractionManager sequential = createAbstractionManager(1);
+    PredicateAbstractionManager parallel = createAbstractionManager(3);
+    try {
+      CFANode location = new CFANode("main");
+      AbstractionFormula sequentialResult = sequential.buildAbstraction(location,
+          sequential.makeTrueAbstractionFormula(null), pathFormula, predicates);
+      AbstractionFormula parallelResult = parallel.buildAbstraction(location,
+          parallel.makeTrueAbstractionFormula(null), pathFormula, predicates);
+
+      assertEquals(expected, sequentialResult.asRegion());
+      assertEquals(sequentialResult.asRegion(), parallelResult.asRegion());
+      assertTrue(parallel.stats.cartesianParallelTime.getNumberOfIntervals() > 0);
+    } finally {
+      sequential.close();
+      parallel.close();
+    }
+  }
+}
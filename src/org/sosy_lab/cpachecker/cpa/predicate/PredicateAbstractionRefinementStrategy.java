@@ -31,6 +31,7 @@ import static org.sosy_lab.cpachecker.util.AbstractStates.extractLocation;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -91,7 +92,8 @@ import com.google.common.collect.Sets;
  * and removing the relevant parts of the ARG).
  */
 @Options(prefix="cpa.predicate")
-public class PredicateAbstractionRefinementStrategy extends RefinementStrategy {
+public class PredicateAbstractionRefinementStrategy extends RefinementStrategy
+    implements BatchRefinementStrategy {
 
   @Option(name="refinement.atomicPredicates",
       description="use only the atoms from the interpolants as predicates, "
@@ -234,6 +236,14 @@ public class PredicateAbstractionRefinementStrategy extends RefinementStrategy {
 
   private ListMultimap<Pair<CFANode, Integer>, AbstractionPredicate> newPredicates;
 
+  // the target state of the path that is currently refined
+  private ARGState targetState = null;
+
+  // state of the current batch (null if no batch is active):
+  // the roots of the subtrees to remove and the joined precision of all refined paths
+  private List<ARGState> batchRefinementRoots = null;
+  private PredicatePrecision batchPrecision = null;
+
 
   @Override
   public boolean needsInterpolants() {
@@ -244,11 +254,55 @@ public class PredicateAbstractionRefinementStrategy extends RefinementStrategy {
     return (staticRefiner != null) && (heuristicsCount == 0);
   }
 
+  @Override
+  protected boolean isBatchActive() {
+    return batchRefinementRoots != null;
+  }
+
+  @Override
+  public void startBatch() {
+    checkState(batchRefinementRoots == null);
+    batchRefinementRoots = new ArrayList<>();
+    batchPrecision = PredicatePrecision.empty();
+  }
+
+  @Override
+  public void abortBatch() {
+    batchRefinementRoots = null;
+    batchPrecision = null;
+  }
+
+  @Override
+  public void finishBatch(ARGReachedSet pReached) throws InterruptedException {
+    checkState(batchRefinementRoots != null);
+    logger.log(Level.FINEST, "Applying batch refinement of", batchRefinementRoots.size(), "paths");
+
+    argUpdate.start();
+    try {
+      for (ARGState refinementRoot : batchRefinementRoots) {
+        shutdownNotifier.shutdownIfNecessary();
+        // the root may be part of a subtree that was already removed
+        if (!refinementRoot.isDestroyed()) {
+          logger.log(Level.FINEST, "Removing everything below", refinementRoot, "from ARG.");
+          pReached.removeSubtree(refinementRoot, batchPrecision, PredicatePrecision.class);
+        }
+      }
+
+      if (sharePredicates) {
+        pReached.updatePrecisionGlobally(batchPrecision, PredicatePrecision.class);
+      }
+    } finally {
+      argUpdate.stop();
+      abortBatch();
+    }
+  }
+
   @Override
   public void performRefinement(ARGReachedSet pReached, List<ARGState> abstractionStatesTrace,
       List<BooleanFormula> pInterpolants, boolean pRepeatedCounterexample) throws CPAException, InterruptedException {
 
     pRepeatedCounterexample = !lastRefinementUsedHeuristics && pRepeatedCounterexample;
+    targetState = Iterables.getLast(abstractionStatesTrace);
 
     if (useStaticRefinement()) {
       UnmodifiableReachedSet reached = pReached.asReachedSet();
@@ -258,7 +312,12 @@ public class PredicateAbstractionRefinementStrategy extends RefinementStrategy {
       PredicatePrecision heuristicPrecision = staticRefiner.extractPrecisionFromCfa(pReached.asReachedSet(), abstractionStatesTrace, atomicPredicates);
 
       shutdownNotifier.shutdownIfNecessary();
-      pReached.removeSubtree(refinementRoot, heuristicPrecision, PredicatePrecision.class);
+      if (isBatchActive()) {
+        batchRefinementRoots.add(refinementRoot);
+        batchPrecision = batchPrecision.mergeWith(heuristicPrecision);
+      } else {
+        pReached.removeSubtree(refinementRoot, heuristicPrecision, PredicatePrecision.class);
+      }
 
       heuristicsCount++;
       lastRefinementUsedHeuristics = true;
@@ -371,7 +430,9 @@ public class PredicateAbstractionRefinementStrategy extends RefinementStrategy {
 
     // get previous precision
     UnmodifiableReachedSet reached = pReached.asReachedSet();
-    PredicatePrecision targetStatePrecision = extractPredicatePrecision(reached.getPrecision(reached.getLastState()));
+    // (in a batch, the last state of the reached set need not be the target state of this path)
+    ARGState target = isBatchActive() ? targetState : reached.getLastState();
+    PredicatePrecision targetStatePrecision = extractPredicatePrecision(reached.getPrecision(target));
 
     ARGState refinementRoot = getRefinementRoot(pAffectedStates, targetStatePrecision, pRepeatedCounterexample);
 
@@ -440,6 +501,13 @@ public class PredicateAbstractionRefinementStrategy extends RefinementStrategy {
 
     precisionUpdate.stop();
 
+    if (isBatchActive()) {
+      // the ARG is updated for all paths together in finishBatch()
+      batchRefinementRoots.add(refinementRoot);
+      batchPrecision = batchPrecision.mergeWith(newPrecision);
+      newPredicates = null;
+      return;
+    }
 
     argUpdate.start();
 
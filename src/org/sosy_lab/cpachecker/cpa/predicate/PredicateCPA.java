@@ -151,11 +151,11 @@ public class PredicateCPA implements ConfigurableProgramAnalysis, StatisticsProv
 
     PathFormulaManager pfMgr = new PathFormulaManagerImpl(formulaManager, config, logger, shutdownNotifier, cfa, backwards);
     if (useCache) {
-      pfMgr = new CachingPathFormulaManager(pfMgr);
+      pfMgr = new CachingPathFormulaManager(pfMgr, config);
     }
     pathFormulaManager = pfMgr;
 
-    solver = new Solver(formulaManager, formulaManagerFactory);
+    solver = new Solver(formulaManager, formulaManagerFactory, config);
 
     RegionManager regionManager;
     if (abstractionType.equals("FORMULA")) {
@@ -169,7 +169,7 @@ public class PredicateCPA implements ConfigurableProgramAnalysis, StatisticsProv
 
     AbstractionManager abstractionManager = new AbstractionManager(regionManager, formulaManager, config, logger);
 
-    predicateManager = new PredicateAbstractionManager(abstractionManager, formulaManager, pathFormulaManager, solver, config, logger);
+    predicateManager = new PredicateAbstractionManager(abstractionManager, formulaManager, pathFormulaManager, solver, cfa.getMachineModel(), config, logger, shutdownNotifier);
     transfer = new PredicateTransferRelation(this, blk, config, backwards);
 
     topState = PredicateAbstractState.mkAbstractionState(
@@ -297,6 +297,8 @@ public class PredicateCPA implements ConfigurableProgramAnalysis, StatisticsProv
 
   @Override
   public void close() throws Exception {
+    predicateManager.close();
+    solver.close();
     if (realFormulaManager instanceof AutoCloseable) {
       ((AutoCloseable)realFormulaManager).close();
     }
@@ -24,7 +24,7 @@
 package org.sosy_lab.cpachecker.cpa.predicate;
 
 import static com.google.common.collect.FluentIterable.from;
-import static org.sosy_lab.cpachecker.util.AbstractStates.toState;
+import static org.sosy_lab.cpachecker.util.AbstractStates.*;
 import static org.sosy_lab.cpachecker.util.statistics.StatisticsWriter.writingStatisticsTo;
 
 import java.io.PrintStream;
@@ -39,6 +39,7 @@ import java.util.logging.Level;
 import org.sosy_lab.common.Pair;
 import org.sosy_lab.common.configuration.Configuration;
 import org.sosy_lab.common.configuration.FileOption;
+import org.sosy_lab.common.configuration.IntegerOption;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.configuration.Option;
 import org.sosy_lab.common.configuration.Options;
@@ -51,6 +52,7 @@ import org.sosy_lab.cpachecker.core.counterexample.CFAPathWithAssignments;
 import org.sosy_lab.cpachecker.core.counterexample.Model;
 import org.sosy_lab.cpachecker.core.counterexample.Model.AssignableTerm;
 import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.interfaces.BatchRefiner;
 import org.sosy_lab.cpachecker.core.interfaces.ConfigurableProgramAnalysis;
 import org.sosy_lab.cpachecker.core.interfaces.Statistics;
 import org.sosy_lab.cpachecker.core.interfaces.StatisticsProvider;
@@ -63,6 +65,7 @@ import org.sosy_lab.cpachecker.cpa.arg.ARGUtils;
 import org.sosy_lab.cpachecker.cpa.arg.AbstractARGBasedRefiner;
 import org.sosy_lab.cpachecker.exceptions.CPAException;
 import org.sosy_lab.cpachecker.exceptions.CPATransferException;
+import org.sosy_lab.cpachecker.exceptions.RefinementFailedException;
 import org.sosy_lab.cpachecker.util.predicates.PathChecker;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.PathFormulaManager;
@@ -80,6 +83,7 @@ import org.sosy_lab.cpachecker.util.statistics.StatisticsWriter;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 
@@ -92,9 +96,13 @@ import com.google.common.collect.Multimap;
  * abstraction, this is left to an instance of {@link RefinementStrategy}.
  *
  * It does, however, produce a nice error path in case of a feasible counterexample.
+ *
+ * If batching is enabled, the CEGAR algorithm collects several target states
+ * before calling this refiner, and the spurious counterexamples of all of them
+ * are refined together with one precision update and one pass over the ARG.
  */
 @Options(prefix="cpa.predicate.refinement")
-public class PredicateCPARefiner extends AbstractARGBasedRefiner implements StatisticsProvider {
+public class PredicateCPARefiner extends AbstractARGBasedRefiner implements BatchRefiner, StatisticsProvider, AutoCloseable {
 
   @Option(description="slice block formulas, experimental feature!")
   private boolean sliceBlockFormulas = false;
@@ -104,6 +112,17 @@ public class PredicateCPARefiner extends AbstractARGBasedRefiner implements Stat
   @FileOption(FileOption.Type.OUTPUT_FILE)
   private PathTemplate dumpCounterexampleFile = PathTemplate.ofFormatString("ErrorPath.%d.smt2");
 
+  @Option(name="batch.maxTargets",
+      description="Continue the analysis after a target state was found "
+          + "until this many target states are in the reached set, "
+          + "and refine all of them together with one precision update. "
+          + "1 disables batching.")
+  @IntegerOption(min=1)
+  private int batchMaxTargets = 1;
+
+  // number of target states found for the current batch
+  private int batchTargetsFound = 0;
+
   // the previously analyzed counterexample to detect repeated counterexamples
   private List<BooleanFormula> lastErrorPath = null;
   // needed for refinement in predicated analysis due to relink of elements during merge
@@ -116,6 +135,7 @@ public class PredicateCPARefiner extends AbstractARGBasedRefiner implements Stat
   private final StatTimer getFormulasForPathTime = new StatTimer("Path-formulas extraction");
   private final StatTimer buildCounterexampeTraceTime = new StatTimer("Building the counterexample trace");
   private final StatTimer preciseCouterexampleTime = new StatTimer("Extracting precise counterexample");
+  private final StatInt batchSize = new StatInt(StatKind.AVG, "Avg. number of target states per batch");
 
   class Stats extends AbstractStatistics {
 
@@ -137,6 +157,10 @@ public class PredicateCPARefiner extends AbstractARGBasedRefiner implements Stat
         w0.beginLevel().put(getFormulasForPathTime);
         w0.beginLevel().put(buildCounterexampeTraceTime);
         w0.beginLevel().put(preciseCouterexampleTime);
+
+        if (isBatchingEnabled()) {
+          w0.put(batchSize);
+        }
       }
 
       statistics.printStatistics(out, result, reached);
@@ -182,9 +206,84 @@ public class PredicateCPARefiner extends AbstractARGBasedRefiner implements Stat
       recomputePathFormulae = false;
     }
 
+    if (isBatchingEnabled() && !(strategy instanceof BatchRefinementStrategy)) {
+      throw new InvalidConfigurationException("Batch refinement is not supported by "
+          + strategy.getClass().getSimpleName() + " strategy.");
+    }
+
     logger.log(Level.INFO, "Using refinement for predicate analysis with " + strategy.getClass().getSimpleName() + " strategy.");
   }
 
+  @Override
+  public boolean isBatchingEnabled() {
+    return batchMaxTargets > 1;
+  }
+
+  @Override
+  public boolean isBatchComplete(ReachedSet pReached) {
+    batchTargetsFound++;
+    return batchTargetsFound >= batchMaxTargets;
+  }
+
+  @Override
+  public boolean performBatchRefinement(ReachedSet pReached) throws CPAException, InterruptedException {
+    batchTargetsFound = 0;
+
+    final List<ARGState> targets = from(pReached).filter(IS_TARGET_STATE).filter(ARGState.class).toList();
+    batchSize.setNextValue(targets.size());
+
+    if (targets.size() == 1 && targets.get(0) == pReached.getLastState()) {
+      // nothing to batch
+      return performRefinement(pReached);
+    }
+
+    logger.log(Level.FINEST, "Starting batch refinement of", targets.size(), "target states");
+    assert ARGUtils.checkARG(pReached) : "ARG and reached set do not match before refinement";
+
+    ARGReachedSet reached = createARGReachedSetForRefinement(pReached);
+    BatchRefinementStrategy batchStrategy = (BatchRefinementStrategy)strategy;
+    batchStrategy.startBatch();
+    boolean finished = false;
+    try {
+      for (ARGState target : targets) {
+        ARGPath path = computePath(target, reached);
+
+        CounterexampleInfo counterexample;
+        try {
+          counterexample = performRefinement(reached, path);
+        } catch (RefinementFailedException e) {
+          if (e.getErrorPath() == null) {
+            e.setErrorPath(path);
+          }
+          removeOtherTargets(reached, targets, target);
+          getArgCpa().addCounterexample(target, CounterexampleInfo.feasible(e.getErrorPath(), Model.empty()));
+          throw e;
+        }
+
+        if (!counterexample.isSpurious()) {
+          // A real error. The refinements collected so far cannot be applied,
+          // because they might remove this target state.
+          // Instead, we remove all other target states, which are either spurious
+          // or were not checked, such that they are not reported as errors.
+          removeOtherTargets(reached, targets, target);
+          addCounterexample(target, counterexample);
+          logger.log(Level.FINEST, "Batch refinement found a feasible counterexample");
+          return false;
+        }
+      }
+
+      batchStrategy.finishBatch(reached);
+      finished = true;
+    } finally {
+      if (!finished) {
+        batchStrategy.abortBatch();
+      }
+    }
+
+    assert ARGUtils.checkARG(pReached) : "ARG and reached set do not match after refinement";
+    return true;
+  }
+
   @Override
   public final CounterexampleInfo performRefinement(final ARGReachedSet pReached, final ARGPath allStatesTrace) throws CPAException, InterruptedException {
     totalRefinement.start();
@@ -279,6 +378,15 @@ public class PredicateCPARefiner extends AbstractARGBasedRefiner implements Stat
     }
   }
 
+  private void removeOtherTargets(ARGReachedSet pReached, List<ARGState> pTargets, ARGState pRemainingTarget) {
+    for (ARGState target : pTargets) {
+      if (target != pRemainingTarget && !target.isDestroyed()) {
+        pReached.removeSubtree(target);
+      }
+    }
+    assert from(pReached.asReachedSet()).filter(IS_TARGET_STATE).toList().equals(ImmutableList.of(pRemainingTarget));
+  }
+
   static List<ARGState> transformPath(ARGPath pPath) {
     List<ARGState> result = from(pPath.asStatesList())
       .skip(1)
@@ -424,6 +532,11 @@ public class PredicateCPARefiner extends AbstractARGBasedRefiner implements Stat
     return CounterexampleTraceInfo.feasible(counterexample.getCounterExampleFormulas(), model, counterexample.getBranchingPredicates());
   }
 
+  @Override
+  public void close() {
+    formulaManager.close();
+  }
+
   @Override
   public void collectStatistics(Collection<Statistics> pStatsCollection) {
     pStatsCollection.add(new Stats());
@@ -0,0 +1,99 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.predicate;
+
+import static com.google.common.collect.FluentIterable.from;
+import static org.sosy_lab.cpachecker.util.AbstractStates.IS_TARGET_STATE;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sosy_lab.cpachecker.cfa.model.CFAEdge;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.cpa.arg.ARGState;
+import org.sosy_lab.cpachecker.cpa.arg.ARGUtils;
+import org.sosy_lab.cpachecker.util.AbstractStates;
+import org.sosy_lab.cpachecker.util.test.CPATestRunner;
+import org.sosy_lab.cpachecker.util.test.TestResults;
+
+import com.google.common.collect.ImmutableMap;
+
+public class PredicateCPARefinerTest {
+
+  // two spurious error locations are reached before the feasible one
+  private static final String PROGRAM = "test/programs/simple/batchRefinement.c";
+
+  private static TestResults runWithBatchSize(int maxTargets) throws Exception {
+    ImmutableMap<String, String> prop = ImmutableMap.<String, String>builder()
+        .put("cpa", "cpa.arg.ARGCPA")
+        .put("ARGCPA.cpa", "cpa.composite.CompositeCPA")
+        .put("CompositeCPA.cpas", "cpa.location.LocationCPA, cpa.callstack.CallstackCPA, cpa.predicate.PredicateCPA")
+        .put("specification", "config/specification/default.spc")
+        .put("analysis.algorithm.CEGAR", "true")
+        .put("cegar.refiner", "cpa.predicate.PredicateRefiner")
+        .put("cpa.predicate.solver", "SMTINTERPOL")
+        .put("cpa.predicate.refinement.batch.maxTargets", Integer.toString(maxTargets))
+        .build();
+
+    return CPATestRunner.run(prop, PROGRAM);
+  }
+
+  private static void assertOnlyFeasibleTargetReported(TestResults results) {
+    Assert.assertTrue(results.isUnsafe());
+
+    List<AbstractState> targets = from(results.getCheckerResult().getReached())
+        .filter(IS_TARGET_STATE).toList();
+    Assert.assertEquals(1, targets.size());
+
+    ARGState target = (ARGState)targets.get(0);
+    Assert.assertEquals("check_small", AbstractStates.extractLocation(target).getFunctionName());
+
+    // the reported path has to pass the two spurious checks without entering their error branch
+    List<CFAEdge> path = ARGUtils.getOnePathTo(target).asEdgesList();
+    int calls = 0;
+    for (CFAEdge edge : path) {
+      if (edge != null && edge.getSuccessor().getFunctionName().startsWith("check_")
+          && !edge.getPredecessor().getFunctionName().equals(edge.getSuccessor().getFunctionName())) {
+        calls++;
+      }
+    }
+    Assert.assertEquals(3, calls);
+  }
+
+  @Test
+  public void testBatchWithSpuriousAndFeasibleTargets() throws Exception {
+    assertOnlyFeasibleTargetReported(runWithBatchSize(3));
+  }
+
+  @Test
+  public void testBatchLargerThanNumberOfTargets() throws Exception {
+    assertOnlyFeasibleTargetReported(runWithBatchSize(10));
+  }
+
+  @Test
+  public void testWithoutBatching() throws Exception {
+    assertOnlyFeasibleTargetReported(runWithBatchSize(1));
+  }
+}
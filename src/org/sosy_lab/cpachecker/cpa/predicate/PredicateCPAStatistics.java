@@ -33,8 +33,10 @@ import java.io.Writer;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import org.sosy_lab.common.Pair;
@@ -56,10 +58,12 @@ import org.sosy_lab.cpachecker.core.interfaces.Precision;
 import org.sosy_lab.cpachecker.core.interfaces.WrapperPrecision;
 import org.sosy_lab.cpachecker.core.reachedset.ReachedSet;
 import org.sosy_lab.cpachecker.cpa.predicate.persistence.LoopInvariantsWriter;
+import org.sosy_lab.cpachecker.cpa.predicate.persistence.PersistentAbstractionCache;
 import org.sosy_lab.cpachecker.cpa.predicate.persistence.PredicateAbstractionsWriter;
 import org.sosy_lab.cpachecker.cpa.predicate.persistence.PredicateMapWriter;
 import org.sosy_lab.cpachecker.util.predicates.AbstractionManager;
 import org.sosy_lab.cpachecker.util.predicates.AbstractionPredicate;
+import org.sosy_lab.cpachecker.util.predicates.FormulaCache;
 import org.sosy_lab.cpachecker.util.predicates.Solver;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.RegionManager;
 import org.sosy_lab.cpachecker.util.predicates.pathformula.CachingPathFormulaManager;
@@ -295,6 +299,24 @@ class PredicateCPAStatistics extends AbstractStatistics {
     out.println("Number of SMT sat checks:          " + solver.satChecks);
     out.println("  trivial:                         " + solver.trivialSatChecks);
     out.println("  cached:                          " + solver.cachedSatChecks);
+    if (solver.proverPoolHits + solver.proverPoolMisses > 0) {
+      out.println("  with reused prover:              " + solver.proverPoolHits + " (" + toPercent(solver.proverPoolHits, solver.proverPoolHits + solver.proverPoolMisses) + ")");
+      out.println("  with common prefix on stack:     " + solver.proverPrefixHits + " (" + toPercent(solver.proverPrefixHits, solver.proverPoolHits + solver.proverPoolMisses) + ")");
+      out.println("  reused formulas on prover stack: " + solver.reusedAssertions);
+    }
+    if (solver.solverTime.getNumberOfIntervals() > 0) {
+      out.println("  avg time per solver query:       " + solver.solverTime.getAvgTime().formatAs(SECONDS) + " (max: " + solver.solverTime.getMaxTime().formatAs(SECONDS) + ")");
+    }
+    write(out, 1, 34, "sat-check cache", solver.getUnsatCache());
+    for (Map.Entry<String, FormulaCache<?, ?>> cache : amgr.getCaches().entrySet()) {
+      write(out, 1, 34, cache.getKey() + " cache", cache.getValue());
+    }
+    PersistentAbstractionCache persistentCache = amgr.getPersistentCache();
+    if (persistentCache != null) {
+      write(out, 1, 34, "persistent abstraction cache", persistentCache.size() + " entries ("
+          + persistentCache.getHits() + " hits, " + persistentCache.getMisses() + " misses, "
+          + persistentCache.getNumberOfStoredAbstractions() + " new)");
+    }
     out.println();
     out.println("Max ABE block size:                       " + prec.maxBlockSize);
     out.println("Number of predicates discovered:          " + allDistinctPreds);
@@ -322,13 +344,19 @@ class PredicateCPAStatistics extends AbstractStatistics {
         out.println("  Total number of models for allsat:      " + as.allSatCount);
         out.println("  Max number of models for allsat:        " + as.maxAllSatCount);
         out.println("  Avg number of models for allsat:        " + div(as.allSatCount, as.booleanAbstractionTime.getNumberOfIntervals()));
+        if (as.numAllSatBudgetExceeded > 0) {
+          out.println("  Times allsat budget was exceeded:       " + valueWithPercentage(as.numAllSatBudgetExceeded, as.booleanAbstractionTime.getNumberOfIntervals()));
+        }
       }
     }
     out.println();
     if (pfMgr != null) {
-      int pathFormulaCacheHits = pfMgr.pathFormulaCacheHits;
-      int totalPathFormulaComputations = pfMgr.pathFormulaComputationTimer.getNumberOfIntervals() + pathFormulaCacheHits;
+      int pathFormulaCacheHits = pfMgr.getNumberOfCacheHits();
+      int totalPathFormulaComputations = pfMgr.getNumberOfComputations() + pathFormulaCacheHits;
       out.println("Number of path formula cache hits:   " + pathFormulaCacheHits + " (" + toPercent(pathFormulaCacheHits, totalPathFormulaComputations) + ")");
+      if (pfMgr.isBounded()) {
+        out.println("Number of path formula cache evictions: " + pfMgr.getNumberOfEvictions());
+      }
     }
 
     out.println();
@@ -336,7 +364,8 @@ class PredicateCPAStatistics extends AbstractStatistics {
     out.println("Time for post operator:              " + trans.postTimer);
     out.println("  Time for path formula creation:    " + trans.pathFormulaTimer);
     if (pfMgr != null) {
-      out.println("    Actual computation:              " + pfMgr.pathFormulaComputationTimer);
+      out.println("    Actual computation:              " + pfMgr.getComputationTime().formatAs(TimeUnit.SECONDS)
+          + " (Calls: " + pfMgr.getNumberOfComputations() + ")");
     }
     if (trans.satCheckTimer.getNumberOfIntervals() > 0) {
       out.println("  Time for satisfiability checks:    " + trans.satCheckTimer);
@@ -357,6 +386,9 @@ class PredicateCPAStatistics extends AbstractStatistics {
       }
       if (as.cartesianAbstractionTime.getNumberOfIntervals() > 0) {
         out.println("    Cartesian abstraction:           " + as.cartesianAbstractionTime);
+        if (as.cartesianParallelTime.getNumberOfIntervals() > 0) {
+          out.println("      Parallel predicate checks:     " + as.cartesianParallelTime + " (Speedup: " + div(as.cartesianParallelWorkTime, as.cartesianParallelTime.getSumTime().asNanos()) + ")");
+        }
       }
       if (as.booleanAbstractionTime.getNumberOfIntervals() > 0) {
         out.println("    Boolean abstraction:             " + as.booleanAbstractionTime);
@@ -223,7 +223,16 @@ public abstract class RefinementStrategy {
     equalNontrivialInterpolants.setNextValue(equalNontrivialItps);
     totalPathLengthToInfeasibility.setNextValue(pathLengthToInfeasibility);
 
-    assert !pReached.asReachedSet().contains(lastElement);
+    assert isBatchActive() || !pReached.asReachedSet().contains(lastElement);
+  }
+
+  /**
+   * Whether refinements are currently collected in a batch
+   * instead of being applied immediately.
+   * This can only be the case for implementations of {@link BatchRefinementStrategy}.
+   */
+  protected boolean isBatchActive() {
+    return false;
   }
 
   protected abstract void startRefinementOfPath();
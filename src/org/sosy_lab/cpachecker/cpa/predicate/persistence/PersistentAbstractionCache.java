@@ -0,0 +1,368 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.predicate.persistence;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import javax.annotation.Nullable;
+
+import org.sosy_lab.common.Appenders;
+import org.sosy_lab.common.io.Path;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.cpachecker.cfa.types.MachineModel;
+import org.sosy_lab.cpachecker.util.predicates.AbstractionPredicate;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.view.FormulaManagerView;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * A cache of predicate abstractions that is stored in a file
+ * and can be reused by later runs of CPAchecker.
+ *
+ * The key of an abstraction is a hash of the SMTLIB2 representation
+ * of the block formula and of the (sorted) set of predicates,
+ * so it does not depend on anything else than the structure of the formulas.
+ * The value is the SMTLIB2 representation of the abstraction formula.
+ *
+ * The file starts with a header that contains the version of the solver,
+ * the machine model, and the configuration of the abstraction computation
+ * (e.g., Boolean or Cartesian abstraction), because all of them influence
+ * the stored abstractions. If these do not match the current run,
+ * the whole content is discarded.
+ * The header is followed by a sequence of records, each consisting of
+ * the key, the length of the value, and the value (UTF-8).
+ * Existing records are memory-mapped when the file is opened,
+ * new records are appended to the file immediately.
+ * A truncated record at the end of the file (e.g., from a killed run) is ignored.
+ *
+ * Only one process extends the file at a time,
+ * other processes that use the same file concurrently only read from it.
+ */
+public class PersistentAbstractionCache implements AutoCloseable {
+
+  private static final int MAGIC = 0x43504143; // "CPAC"
+  private static final int FORMAT_VERSION = 1;
+
+  private static final HashFunction HASH_FUNCTION = Hashing.sha256();
+  private static final int KEY_SIZE = HASH_FUNCTION.bits() / Byte.SIZE;
+
+  private final FormulaManagerView fmgr;
+  private final LogManager logger;
+  private final Path file;
+
+  private final FileChannel channel;
+  private final @Nullable FileLock lock;
+  private boolean writable;
+
+  // content of the file when it was opened (without the header)
+  private @Nullable MappedByteBuffer content = null;
+  private long endOfFile;
+
+  // position of the length field of the record for each key
+  private final Map<HashCode, Long> index = new HashMap<>();
+
+  private final Map<AbstractionPredicate, String> predicateStrings = new HashMap<>();
+
+  // stats
+  private int hits = 0;
+  private int misses = 0;
+  private int stored = 0;
+
+  /**
+   * Open a persistent abstraction cache, creating the file if necessary.
+   * @param pFile The file of the cache.
+   * @param pMachineModel The machine model of the current run.
+   * @param pAbstractionConfiguration A description of all settings that influence
+   * the result of an abstraction computation. If it differs from the description
+   * in the file, the content of the file is discarded.
+   */
+  public PersistentAbstractionCache(Path pFile, MachineModel pMachineModel,
+      String pAbstractionConfiguration,
+      FormulaManagerView pFmgr, LogManager pLogger) throws IOException {
+    fmgr = pFmgr;
+    logger = pLogger;
+    file = pFile;
+
+    byte[] header = createHeader(pMachineModel, pAbstractionConfiguration);
+
+    channel = FileChannel.open(file.toFile().toPath(), StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+    try {
+      lock = tryLock(channel);
+      writable = (lock != null);
+      if (!writable) {
+        logger.log(Level.WARNING, "Persistent abstraction cache", file,
+            "is in use by another process, it will not be extended by this run.");
+      }
+
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Persistent abstraction cache " + file + " is too large");
+      }
+
+      if (size > 0) {
+        content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (!hasHeader(content, header)) {
+          logger.log(Level.INFO, "Discarding persistent abstraction cache", file,
+              "because it was created with a different solver, machine model, or abstraction configuration.");
+          content = null;
+        }
+      }
+
+      if (content != null) {
+        endOfFile = readIndex(content, header.length);
+        if (writable && endOfFile < size) {
+          channel.truncate(endOfFile);
+        }
+        logger.log(Level.FINE, "Read", index.size(), "abstractions from persistent cache", file);
+
+      } else if (writable) {
+        channel.truncate(0);
+        write(ByteBuffer.wrap(header), 0);
+        endOfFile = header.length;
+      }
+
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private static @Nullable FileLock tryLock(FileChannel pChannel) throws IOException {
+    try {
+      return pChannel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      // locked by this process
+      return null;
+    }
+  }
+
+  private byte[] createHeader(MachineModel pMachineModel, String pAbstractionConfiguration) {
+    byte[] fingerprint = ("solver=" + fmgr.getVersion() + ",machineModel=" + pMachineModel
+        + ",abstraction=" + pAbstractionConfiguration)
+        .getBytes(UTF_8);
+    ByteBuffer header = ByteBuffer.allocate(3 * Integer.SIZE / Byte.SIZE + fingerprint.length);
+    header.putInt(MAGIC);
+    header.putInt(FORMAT_VERSION);
+    header.putInt(fingerprint.length);
+    header.put(fingerprint);
+    return header.array();
+  }
+
+  private static boolean hasHeader(ByteBuffer pContent, byte[] pHeader) {
+    if (pContent.limit() < pHeader.length) {
+      return false;
+    }
+    for (int i = 0; i < pHeader.length; i++) {
+      if (pContent.get(i) != pHeader[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Fill the index with all complete records in the file content.
+   * @return The position after the last complete record.
+   */
+  private long readIndex(ByteBuffer pContent, int start) {
+    int position = start;
+    byte[] key = new byte[KEY_SIZE];
+    while (pContent.limit() - position >= KEY_SIZE + Integer.SIZE / Byte.SIZE) {
+      pContent.position(position);
+      pContent.get(key);
+      int length = pContent.getInt();
+      int next = pContent.position() + length;
+      if (length < 0 || next > pContent.limit() || next < 0) {
+        break;
+      }
+      index.put(HashCode.fromBytes(key.clone()), (long)(position + KEY_SIZE));
+      position = next;
+    }
+    return position;
+  }
+
+  /**
+   * Compute the key for an abstraction.
+   * @param blockFormula The formula of the block for which the abstraction is computed.
+   * @param predicates The predicates that are used for the abstraction.
+   */
+  public HashCode computeKey(BooleanFormula blockFormula, Collection<AbstractionPredicate> predicates) {
+    List<String> predicateDumps = new ArrayList<>(predicates.size());
+    for (AbstractionPredicate predicate : predicates) {
+      String dump = predicateStrings.get(predicate);
+      if (dump == null) {
+        dump = dump(predicate.getSymbolicAtom());
+        predicateStrings.put(predicate, dump);
+      }
+      predicateDumps.add(dump);
+    }
+    Collections.sort(predicateDumps);
+
+    Hasher hasher = HASH_FUNCTION.newHasher();
+    hasher.putString(dump(blockFormula), UTF_8);
+    for (String predicateDump : predicateDumps) {
+      hasher.putByte((byte)0);
+      hasher.putString(predicateDump, UTF_8);
+    }
+    return hasher.hash();
+  }
+
+  private String dump(BooleanFormula f) {
+    StringBuilder result = new StringBuilder();
+    Appenders.appendTo(result, fmgr.dumpFormula(f));
+    return result.toString();
+  }
+
+  /**
+   * Return the abstraction formula (without SSA indices) that is stored for a key,
+   * or null if there is none.
+   */
+  public @Nullable BooleanFormula get(HashCode key) {
+    Long position = index.get(key);
+    if (position == null) {
+      misses++;
+      return null;
+    }
+
+    try {
+      BooleanFormula result = fmgr.parse(readValue(position));
+      hits++;
+      return result;
+
+    } catch (IOException | IllegalArgumentException e) {
+      logger.logUserException(Level.WARNING, e, "Could not read abstraction from persistent cache");
+      index.remove(key);
+      misses++;
+      return null;
+    }
+  }
+
+  private String readValue(long position) throws IOException {
+    if (content != null && position < content.limit()) {
+      ByteBuffer buffer = content.duplicate();
+      buffer.position((int)position);
+      byte[] value = new byte[buffer.getInt()];
+      buffer.get(value);
+      return new String(value, UTF_8);
+    }
+
+    ByteBuffer length = ByteBuffer.allocate(Integer.SIZE / Byte.SIZE);
+    read(length, position);
+    ByteBuffer value = ByteBuffer.allocate(length.getInt(0));
+    read(value, position + length.capacity());
+    return new String(value.array(), UTF_8);
+  }
+
+  /**
+   * Store an abstraction formula (without SSA indices) for a key.
+   * Nothing happens if there is already an entry for this key
+   * or if the file cannot be written.
+   */
+  public void put(HashCode key, BooleanFormula abstraction) {
+    if (!writable || index.containsKey(key)) {
+      return;
+    }
+
+    byte[] value = dump(abstraction).getBytes(UTF_8);
+    ByteBuffer record = ByteBuffer.allocate(KEY_SIZE + Integer.SIZE / Byte.SIZE + value.length);
+    record.put(key.asBytes());
+    record.putInt(value.length);
+    record.put(value);
+    record.flip();
+
+    try {
+      write(record, endOfFile);
+    } catch (IOException e) {
+      logger.logUserException(Level.WARNING, e,
+          "Could not write to persistent abstraction cache, it will not be extended further");
+      writable = false;
+      return;
+    }
+
+    index.put(key, endOfFile + KEY_SIZE);
+    endOfFile += record.capacity();
+    stored++;
+  }
+
+  private void write(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  private void read(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException("Unexpected end of persistent abstraction cache " + file);
+      }
+      position += read;
+    }
+  }
+
+  public int getHits() {
+    return hits;
+  }
+
+  public int getMisses() {
+    return misses;
+  }
+
+  public int getNumberOfStoredAbstractions() {
+    return stored;
+  }
+
+  public int size() {
+    return index.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    content = null;
+    if (lock != null) {
+      lock.release();
+    }
+    channel.close();
+  }
+}
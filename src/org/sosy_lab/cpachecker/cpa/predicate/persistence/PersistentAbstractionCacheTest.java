@@ -0,0 +1,204 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.predicate.persistence;
+
+import static org.junit.Assert.*;
+
+import java.io.RandomAccessFile;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sosy_lab.common.Appenders;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.io.Files;
+import org.sosy_lab.common.io.Files.DeleteOnCloseFile;
+import org.sosy_lab.common.io.Path;
+import org.sosy_lab.common.log.TestLogManager;
+import org.sosy_lab.cpachecker.cfa.types.MachineModel;
+import org.sosy_lab.cpachecker.core.ShutdownNotifier;
+import org.sosy_lab.cpachecker.util.predicates.AbstractionPredicate;
+import org.sosy_lab.cpachecker.util.predicates.FormulaManagerFactory;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.FormulaManager;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.view.BooleanFormulaManagerView;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.view.FormulaManagerView;
+
+import com.google.common.hash.HashCode;
+
+public class PersistentAbstractionCacheTest {
+
+  private FormulaManager __formulaManager;
+  private FormulaManagerView fmgr;
+  private BooleanFormulaManagerView bfmgr;
+  private DeleteOnCloseFile tempFile;
+  private Path file;
+
+  @Before
+  public void setup() throws Exception {
+    Configuration config = Configuration
+        .builder()
+        .setOption("cpa.predicate.solver", "smtinterpol") // only solver guaranteed on all platforms
+        .build();
+
+    FormulaManagerFactory factory = new FormulaManagerFactory(
+        config, TestLogManager.getInstance(), ShutdownNotifier.create());
+    __formulaManager = factory.getFormulaManager();
+    fmgr = new FormulaManagerView(__formulaManager,
+        config, TestLogManager.getInstance());
+    bfmgr = fmgr.getBooleanFormulaManager();
+
+    tempFile = Files.createTempFile("abstractions", ".cache");
+    file = tempFile.toPath();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    tempFile.close();
+    if (__formulaManager instanceof AutoCloseable) {
+      ((AutoCloseable)__formulaManager).close();
+    }
+  }
+
+  private PersistentAbstractionCache open(MachineModel machineModel, String abstractionConfiguration)
+      throws Exception {
+    return new PersistentAbstractionCache(file, machineModel, abstractionConfiguration,
+        fmgr, TestLogManager.getInstance());
+  }
+
+  private PersistentAbstractionCache open() throws Exception {
+    return open(MachineModel.LINUX32, "BOOLEAN");
+  }
+
+  private HashCode key(PersistentAbstractionCache cache, BooleanFormula blockFormula) {
+    return cache.computeKey(blockFormula, Collections.<AbstractionPredicate>emptySet());
+  }
+
+  private String dump(BooleanFormula f) {
+    StringBuilder result = new StringBuilder();
+    Appenders.appendTo(result, fmgr.dumpFormula(f));
+    return result.toString();
+  }
+
+  private void assertStored(BooleanFormula expected, PersistentAbstractionCache cache, HashCode key) {
+    BooleanFormula stored = cache.get(key);
+    assertNotNull(stored);
+    assertEquals(dump(expected), dump(stored));
+  }
+
+  @Test
+  public void testRoundtrip() throws Exception {
+    BooleanFormula block1 = bfmgr.and(bfmgr.makeVariable("a"), bfmgr.makeVariable("b"));
+    BooleanFormula block2 = bfmgr.or(bfmgr.makeVariable("a"), bfmgr.makeVariable("b"));
+    BooleanFormula abs1 = bfmgr.makeVariable("a");
+    BooleanFormula abs2 = bfmgr.not(bfmgr.makeVariable("c"));
+
+    HashCode key1;
+    HashCode key2;
+    try (PersistentAbstractionCache cache = open()) {
+      key1 = key(cache, block1);
+      key2 = key(cache, block2);
+      assertFalse(key1.equals(key2));
+      assertNull(cache.get(key1));
+
+      cache.put(key1, abs1);
+      cache.put(key2, abs2);
+      assertEquals(2, cache.getNumberOfStoredAbstractions());
+      assertStored(abs1, cache, key1);
+    }
+
+    try (PersistentAbstractionCache cache = open()) {
+      assertEquals(2, cache.size());
+      assertEquals(key1, key(cache, block1));
+      assertStored(abs1, cache, key1);
+      assertStored(abs2, cache, key2);
+      assertEquals(2, cache.getHits());
+    }
+  }
+
+  @Test
+  public void testTruncatedRecordIsIgnored() throws Exception {
+    BooleanFormula block1 = bfmgr.makeVariable("a");
+    BooleanFormula block2 = bfmgr.makeVariable("b");
+    BooleanFormula abs1 = bfmgr.makeVariable("c");
+    BooleanFormula abs2 = bfmgr.makeVariable("d");
+
+    HashCode key1;
+    HashCode key2;
+    try (PersistentAbstractionCache cache = open()) {
+      key1 = key(cache, block1);
+      key2 = key(cache, block2);
+      cache.put(key1, abs1);
+      cache.put(key2, abs2);
+    }
+
+    // simulate a run that was killed while writing the second record
+    try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+      raf.setLength(raf.length() - 3);
+    }
+
+    try (PersistentAbstractionCache cache = open()) {
+      assertEquals(1, cache.size());
+      assertStored(abs1, cache, key1);
+      assertNull(cache.get(key2));
+
+      // the truncated record was removed, so the file can be extended again
+      cache.put(key2, abs2);
+    }
+
+    try (PersistentAbstractionCache cache = open()) {
+      assertEquals(2, cache.size());
+      assertStored(abs1, cache, key1);
+      assertStored(abs2, cache, key2);
+    }
+  }
+
+  @Test
+  public void testHeaderMismatchDiscardsContent() throws Exception {
+    BooleanFormula block = bfmgr.makeVariable("a");
+    BooleanFormula abs = bfmgr.makeVariable("b");
+
+    HashCode key;
+    try (PersistentAbstractionCache cache = open(MachineModel.LINUX32, "BOOLEAN")) {
+      key = key(cache, block);
+      cache.put(key, abs);
+    }
+
+    try (PersistentAbstractionCache cache = open(MachineModel.LINUX32, "CARTESIAN")) {
+      assertEquals(0, cache.size());
+      assertNull(cache.get(key));
+      cache.put(key, abs);
+    }
+
+    // the file was overwritten for the cartesian abstraction
+    try (PersistentAbstractionCache cache = open(MachineModel.LINUX32, "BOOLEAN")) {
+      assertEquals(0, cache.size());
+    }
+
+    try (PersistentAbstractionCache cache = open(MachineModel.LINUX64, "BOOLEAN")) {
+      assertEquals(0, cache.size());
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.value;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sosy_lab.common.Pair;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.reachedset.CoverageIndex;
+import org.sosy_lab.cpachecker.cpa.value.ValueAnalysisState.MemoryLocation;
+import org.sosy_lab.cpachecker.cpa.value.type.Value;
+import org.sosy_lab.cpachecker.util.AbstractStates;
+
+/**
+ * Coverage index for partitions of states that contain a {@link ValueAnalysisState}.
+ *
+ * A state e is less or equal than a state r in the value analysis
+ * if all assignments of r are also present in e.
+ * So for each assignment, the index stores the states that contain it,
+ * and a query for e counts for each indexed state how many of its assignments
+ * occur in e. Only states for which all assignments were found are candidates.
+ * The cost of a query thus depends on the number of states sharing assignments with e,
+ * not on the size of the partition.
+ */
+public class ValueAnalysisCoverageIndex implements CoverageIndex {
+
+  public static final CoverageIndexFactory FACTORY = new CoverageIndexFactory() {
+      @Override
+      public CoverageIndex createCoverageIndex() {
+        return new ValueAnalysisCoverageIndex();
+      }
+    };
+
+  private static class Entry {
+    private final int id;
+    private final List<Pair<MemoryLocation, Value>> assignments;
+
+    private Entry(int pId, List<Pair<MemoryLocation, Value>> pAssignments) {
+      id = pId;
+      assignments = pAssignments;
+    }
+  }
+
+  private static final Comparator<Pair<AbstractState, Entry>> BY_ID = new Comparator<Pair<AbstractState, Entry>>() {
+      @Override
+      public int compare(Pair<AbstractState, Entry> pO1, Pair<AbstractState, Entry> pO2) {
+        return Integer.compare(pO1.getSecond().id, pO2.getSecond().id);
+      }
+    };
+
+  private int nextId = 0;
+
+  // all indexed states in insertion order
+  private final Map<AbstractState, Entry> entries = new LinkedHashMap<>();
+
+  // states without any assignment (they cover every state)
+  private final Set<AbstractState> emptyStates = new LinkedHashSet<>();
+
+  private final Map<Pair<MemoryLocation, Value>, Set<AbstractState>> statesByAssignment = new HashMap<>();
+
+  private ValueAnalysisCoverageIndex() { }
+
+  private static List<Pair<MemoryLocation, Value>> getAssignments(ValueAnalysisState pState) {
+    Map<MemoryLocation, Value> values = pState.getConstantsMapView();
+    List<Pair<MemoryLocation, Value>> result = new ArrayList<>(values.size());
+    for (Map.Entry<MemoryLocation, Value> value : values.entrySet()) {
+      result.add(Pair.of(value.getKey(), value.getValue()));
+    }
+    return result;
+  }
+
+  @Override
+  public void add(AbstractState pState) {
+    ValueAnalysisState valueState = AbstractStates.extractStateByType(pState, ValueAnalysisState.class);
+    List<Pair<MemoryLocation, Value>> assignments = (valueState == null)
+        ? Collections.<Pair<MemoryLocation, Value>>emptyList()
+        : getAssignments(valueState);
+
+    Entry entry = new Entry(nextId++, assignments);
+    if (entries.put(pState, entry) != null) {
+      throw new IllegalArgumentException("State is already indexed: " + pState);
+    }
+
+    if (assignments.isEmpty()) {
+      emptyStates.add(pState);
+    }
+    for (Pair<MemoryLocation, Value> assignment : assignments) {
+      Set<AbstractState> states = statesByAssignment.get(assignment);
+      if (states == null) {
+        states = new LinkedHashSet<>();
+        statesByAssignment.put(assignment, states);
+      }
+      states.add(pState);
+    }
+  }
+
+  @Override
+  public void remove(AbstractState pState) {
+    Entry entry = entries.remove(pState);
+    if (entry == null) {
+      return;
+    }
+
+    emptyStates.remove(pState);
+    for (Pair<MemoryLocation, Value> assignment : entry.assignments) {
+      Set<AbstractState> states = statesByAssignment.get(assignment);
+      states.remove(pState);
+      if (states.isEmpty()) {
+        statesByAssignment.remove(assignment);
+      }
+    }
+  }
+
+  @Override
+  public Collection<AbstractState> getCoveringCandidates(AbstractState pState) {
+    ValueAnalysisState valueState = AbstractStates.extractStateByType(pState, ValueAnalysisState.class);
+    if (valueState == null) {
+      return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    Map<AbstractState, Integer> matches = new HashMap<>();
+    for (Map.Entry<MemoryLocation, Value> value : valueState.getConstantsMapView().entrySet()) {
+      Set<AbstractState> states = statesByAssignment.get(Pair.of(value.getKey(), value.getValue()));
+      if (states != null) {
+        for (AbstractState state : states) {
+          Integer count = matches.get(state);
+          matches.put(state, (count == null) ? 1 : count + 1);
+        }
+      }
+    }
+
+    List<Pair<AbstractState, Entry>> candidates = new ArrayList<>();
+    for (AbstractState state : emptyStates) {
+      candidates.add(Pair.of(state, entries.get(state)));
+    }
+    for (Map.Entry<AbstractState, Integer> match : matches.entrySet()) {
+      Entry entry = entries.get(match.getKey());
+      if (match.getValue() == entry.assignments.size()) {
+        candidates.add(Pair.of(match.getKey(), entry));
+      }
+    }
+
+    // keep the order of the reached set to be deterministic
+    Collections.sort(candidates, BY_ID);
+    List<AbstractState> result = new ArrayList<>(candidates.size());
+    for (Pair<AbstractState, Entry> candidate : candidates) {
+      result.add(candidate.getFirst());
+    }
+    return result;
+  }
+}
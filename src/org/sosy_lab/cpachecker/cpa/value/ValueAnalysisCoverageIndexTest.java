@@ -0,0 +1,82 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.value;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.reachedset.CoverageIndex;
+import org.sosy_lab.cpachecker.cpa.value.ValueAnalysisState.MemoryLocation;
+import org.sosy_lab.cpachecker.cpa.value.type.NumericValue;
+
+import com.google.common.collect.ImmutableList;
+
+public class ValueAnalysisCoverageIndexTest {
+
+  private static final MemoryLocation X = MemoryLocation.valueOf("main::x");
+  private static final MemoryLocation Y = MemoryLocation.valueOf("main::y");
+
+  private static ValueAnalysisState state(Object... assignments) {
+    ValueAnalysisState result = new ValueAnalysisState();
+    for (int i = 0; i < assignments.length; i += 2) {
+      result.assignConstant((MemoryLocation)assignments[i], new NumericValue((Integer)assignments[i+1]));
+    }
+    return result;
+  }
+
+  @Test
+  public void testCandidatesAreExactlyCoveringStates() {
+    CoverageIndex index = ValueAnalysisCoverageIndex.FACTORY.createCoverageIndex();
+    ValueAnalysisState empty = state();
+    ValueAnalysisState x1 = state(X, 1);
+    ValueAnalysisState x2 = state(X, 2);
+    ValueAnalysisState x1y1 = state(X, 1, Y, 1);
+    ValueAnalysisState y1 = state(Y, 1);
+    for (ValueAnalysisState s : ImmutableList.of(empty, x1, x2, x1y1, y1)) {
+      index.add(s);
+    }
+
+    List<AbstractState> expected = ImmutableList.<AbstractState>of(empty, x1, x1y1, y1);
+    Assert.assertEquals(expected, ImmutableList.copyOf(index.getCoveringCandidates(state(X, 1, Y, 1))));
+
+    expected = ImmutableList.<AbstractState>of(empty, x2);
+    Assert.assertEquals(expected, ImmutableList.copyOf(index.getCoveringCandidates(state(X, 2, Y, 2))));
+  }
+
+  @Test
+  public void testRemove() {
+    CoverageIndex index = ValueAnalysisCoverageIndex.FACTORY.createCoverageIndex();
+    ValueAnalysisState x1 = state(X, 1);
+    ValueAnalysisState x1y1 = state(X, 1, Y, 1);
+    index.add(x1);
+    index.add(x1y1);
+
+    index.remove(x1);
+    Assert.assertEquals(ImmutableList.<AbstractState>of(x1y1),
+        ImmutableList.copyOf(index.getCoveringCandidates(state(X, 1, Y, 1))));
+    Assert.assertTrue(index.getCoveringCandidates(state(X, 1)).isEmpty());
+  }
+}
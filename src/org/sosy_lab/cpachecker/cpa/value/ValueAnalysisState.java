@@ -62,6 +62,7 @@ import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 import com.google.common.primitives.Longs;
 
 public class ValueAnalysisState implements AbstractQueryableState, FormulaReportingState, Serializable,
@@ -69,7 +70,8 @@ public class ValueAnalysisState implements AbstractQueryableState, FormulaReport
 
   private static final long serialVersionUID = -3152134511524554357L;
 
-  private static final Set<MemoryLocation> blacklist = new HashSet<>();
+  // shared by all transfer relations, which may run in different threads (cf. ValueAnalysisInterpolator)
+  private static final Set<MemoryLocation> blacklist = Sets.newConcurrentHashSet();
 
   static void addToBlacklist(MemoryLocation var) {
     blacklist.add(checkNotNull(var));
@@ -83,7 +83,7 @@ import com.google.common.collect.Multimap;
  * and if this fails, optionally delegates also to {@link PredicateCPARefiner}.
  */
 @Options(prefix="cpa.value.refiner")
-public class ValueAnalysisDelegatingRefiner extends AbstractARGBasedRefiner implements Statistics, StatisticsProvider {
+public class ValueAnalysisDelegatingRefiner extends AbstractARGBasedRefiner implements Statistics, StatisticsProvider, AutoCloseable {
 
   private ShutdownNotifier shutDownNotifier;
 
@@ -365,6 +365,14 @@ public class ValueAnalysisDelegatingRefiner extends AbstractARGBasedRefiner impl
     return success;
   }
 
+  /**
+   * Stop the threads of the interpolator, if any.
+   */
+  @Override
+  public void close() {
+    interpolatingRefiner.close();
+  }
+
   @Override
   public void collectStatistics(Collection<Statistics> pStatsCollection) {
     pStatsCollection.add(this);
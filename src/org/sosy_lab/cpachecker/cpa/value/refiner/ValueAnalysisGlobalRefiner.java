@@ -41,16 +41,23 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import org.sosy_lab.common.Pair;
 import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.IntegerOption;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.configuration.Option;
 import org.sosy_lab.common.configuration.Options;
 import org.sosy_lab.common.io.Files;
 import org.sosy_lab.common.io.Paths;
 import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.common.time.TimeSpan;
 import org.sosy_lab.common.time.Timer;
 import org.sosy_lab.cpachecker.cfa.CFA;
 import org.sosy_lab.cpachecker.cfa.model.CFANode;
@@ -76,15 +83,17 @@ import org.sosy_lab.cpachecker.util.CFAUtils;
 import org.sosy_lab.cpachecker.util.CPAs;
 import org.sosy_lab.cpachecker.util.Precisions;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
 
 @Options(prefix="cpa.value.refinement")
-public class ValueAnalysisGlobalRefiner implements Refiner, StatisticsProvider {
+public class ValueAnalysisGlobalRefiner implements Refiner, StatisticsProvider, AutoCloseable {
 
   @Option(description="whether or not to do lazy-abstraction", name="restart", toUppercase = true)
   private RestartStrategy restartStrategy = RestartStrategy.TOP;
@@ -99,16 +108,38 @@ public class ValueAnalysisGlobalRefiner implements Refiner, StatisticsProvider {
       values={"NEVER", "FINAL", "ALWAYS"})
   private String exportInterpolationTree = "NEVER";
 
+  @Option(description="number of threads for interpolating sibling branches of the interpolation tree"
+      + " concurrently (fork/join, starting from the top like the top-down interpolation strategy)."
+      + " With 1 thread, the chosen interpolation strategy is used."
+      + " The resulting precision does not depend on the thread schedule,"
+      + " but it may differ from the one of the sequential top-down strategy,"
+      + " because each branch starts with the interpolant computed by the branch on which it was found.")
+  @IntegerOption(min=1)
+  private int interpolationThreads = 1;
+
   ValueAnalysisInterpolationBasedRefiner interpolatingRefiner;
   ValueAnalysisFeasibilityChecker checker;
 
   private final LogManager logger;
+  private final ShutdownNotifier shutdownNotifier;
+
+  /**
+   * the interpolation workers, each one with its own refiner and checker,
+   * only used for fork/join interpolation
+   */
+  private final BlockingQueue<InterpolationWorker> interpolationWorkers;
+  private final ForkJoinPool interpolationPool;
 
   // statistics
   private int totalRefinements  = 0;
   private int totalTargetsFound = 0;
   private final Timer totalTime = new Timer();
 
+  // statistics for fork/join interpolation, updated by the worker threads
+  private int totalBranches = 0;
+  private long totalBranchTime = 0;
+  private long maxBranchTime = 0;
+
   public static ValueAnalysisGlobalRefiner create(final ConfigurableProgramAnalysis pCpa) throws InvalidConfigurationException {
     final ValueAnalysisCPA valueAnalysisCpa = CPAs.retrieveCPA(pCpa, ValueAnalysisCPA.class);
     if (valueAnalysisCpa == null) {
@@ -135,8 +166,22 @@ public class ValueAnalysisGlobalRefiner implements Refiner, StatisticsProvider {
     pConfig.inject(this);
 
     logger                = pLogger;
+    shutdownNotifier      = pShutdownNotifier;
     interpolatingRefiner  = new ValueAnalysisInterpolationBasedRefiner(pConfig, pLogger, pShutdownNotifier, pCfa);
     checker               = new ValueAnalysisFeasibilityChecker(pLogger, pCfa);
+
+    if (interpolationThreads > 1) {
+      interpolationWorkers = new LinkedBlockingQueue<>();
+      while (interpolationWorkers.size() < interpolationThreads) {
+        interpolationWorkers.add(new InterpolationWorker(
+            new ValueAnalysisInterpolationBasedRefiner(pConfig, pLogger, pShutdownNotifier, pCfa),
+            new ValueAnalysisFeasibilityChecker(pLogger, pCfa)));
+      }
+      interpolationPool = new ForkJoinPool(interpolationThreads);
+    } else {
+      interpolationWorkers = null;
+      interpolationPool = null;
+    }
   }
 
   @Override
@@ -157,32 +202,30 @@ public class ValueAnalysisGlobalRefiner implements Refiner, StatisticsProvider {
     InterpolationTree interpolationTree = new InterpolationTree(logger, targets, useTopDownInterpolationStrategy);
 
     int i = 0;
-    while (interpolationTree.hasNextPathForInterpolation()) {
-      i++;
+    if (interpolationPool != null) {
+      i = interpolateBranchesConcurrently(interpolationTree);
 
-      MutableARGPath errorPath = interpolationTree.getNextPathForInterpolation();
+    } else {
+      while (interpolationTree.hasNextPathForInterpolation()) {
+        i++;
 
-      if (errorPath.isEmpty()) {
-        logger.log(Level.FINEST, "skipping interpolation, error path is empty, because initial interpolant is already false");
-        continue;
-      }
+        MutableARGPath errorPath = interpolationTree.getNextPathForInterpolation();
 
-      ValueAnalysisInterpolant initialItp = interpolationTree.getInitialInterpolantForPath(errorPath);
+        if (errorPath.isEmpty()) {
+          logger.log(Level.FINEST, "skipping interpolation, error path is empty, because initial interpolant is already false");
+          continue;
+        }
 
-      if (initialInterpolantIsTooWeak(interpolationTree.root, initialItp, errorPath)) {
-        errorPath   = ARGUtils.getOneMutablePathTo(errorPath.getLast().getFirst());
-        initialItp  = ValueAnalysisInterpolant.createInitial();
-      }
+        ValueAnalysisInterpolant initialItp = interpolationTree.getInitialInterpolantForPath(errorPath);
 
-      logger.log(Level.FINEST, "performing interpolation, starting at ", errorPath.getFirst().getFirst().getStateId(), ", using interpolant ", initialItp);
+        interpolationTree.addInterpolants(interpolate(interpolatingRefiner, checker, interpolationTree.root, errorPath, initialItp));
 
-      interpolationTree.addInterpolants(interpolatingRefiner.performInterpolation(errorPath, initialItp));
+        if (exportInterpolationTree.equals("ALWAYS")) {
+          interpolationTree.exportToDot(totalRefinements, i);
+        }
 
-      if (exportInterpolationTree.equals("ALWAYS")) {
-        interpolationTree.exportToDot(totalRefinements, i);
+        logger.log(Level.FINEST, "finished interpolation #", i);
       }
-
-      logger.log(Level.FINEST, "finished interpolation #", i);
     }
 
     if (exportInterpolationTree.equals("FINAL") && !exportInterpolationTree.equals("ALWAYS")) {
@@ -208,7 +251,234 @@ public class ValueAnalysisGlobalRefiner implements Refiner, StatisticsProvider {
     return true;
   }
 
-  private boolean initialInterpolantIsTooWeak(ARGState root, ValueAnalysisInterpolant initialItp, MutableARGPath errorPath)
+  /**
+   * This method interpolates the given error path, starting with the given initial interpolant,
+   * or, if this interpolant is too weak, the whole path from the root to the target state.
+   */
+  private Map<ARGState, ValueAnalysisInterpolant> interpolate(ValueAnalysisInterpolationBasedRefiner pRefiner,
+      ValueAnalysisFeasibilityChecker pChecker, ARGState root, MutableARGPath errorPath, ValueAnalysisInterpolant initialItp)
+          throws CPAException, InterruptedException {
+
+    if (initialInterpolantIsTooWeak(pChecker, root, initialItp, errorPath)) {
+      errorPath   = ARGUtils.getOneMutablePathTo(errorPath.getLast().getFirst());
+      initialItp  = ValueAnalysisInterpolant.createInitial();
+    }
+
+    logger.log(Level.FINEST, "performing interpolation, starting at ", errorPath.getFirst().getFirst().getStateId(), ", using interpolant ", initialItp);
+
+    return pRefiner.performInterpolation(errorPath, initialItp);
+  }
+
+  /**
+   * This method interpolates all branches of the interpolation tree on the fork/join pool.
+   * Each branch is interpolated once the interpolant of its branching state is known,
+   * and the sibling branches found on its path are then interpolated concurrently.
+   * The interpolants are added to the tree after all branches are done,
+   * in the order of the branches in the tree, so the resulting precision does not depend on the scheduling.
+   *
+   * The initial interpolant of a sibling branch is always the interpolant of its branching state
+   * that was computed by the branch on which the sibling was found.
+   * The sequential top-down strategy instead takes it from the tree, which contains the interpolants
+   * of all previous paths, and a path that is re-interpolated from the root
+   * (because its initial interpolant is too weak) overwrites the interpolants
+   * that later paths start with.
+   * Thus the resulting precision is deterministic, but may differ from the sequential one.
+   *
+   * @return The number of interpolated branches.
+   */
+  private int interpolateBranchesConcurrently(InterpolationTree interpolationTree)
+      throws CPAException, InterruptedException {
+
+    BranchInterpolation rootTask = new BranchInterpolation(interpolationTree, interpolationTree.root,
+        ValueAnalysisInterpolant.createInitial());
+
+    BranchResult result;
+    try {
+      result = interpolationPool.invoke(rootTask);
+    } catch (BranchInterpolationException e) {
+      // the pool may wrap the exception of a worker thread in another instance
+      Throwable t = e;
+      while (t instanceof BranchInterpolationException) {
+        t = t.getCause();
+      }
+      Throwables.propagateIfPossible(t, CPAException.class, InterruptedException.class);
+      throw new AssertionError(t);
+    }
+
+    int i = 0;
+    Deque<BranchResult> todo = new ArrayDeque<>(Collections.singleton(result));
+    while (!todo.isEmpty()) {
+      i++;
+      BranchResult current = todo.removeFirst();
+      interpolationTree.addInterpolants(current.interpolants);
+
+      if (exportInterpolationTree.equals("ALWAYS")) {
+        interpolationTree.exportToDot(totalRefinements, i);
+      }
+
+      // pre-order, siblings in the order in which they appear on the path
+      for (BranchResult child : Lists.reverse(current.children)) {
+        todo.addFirst(child);
+      }
+    }
+    return i;
+  }
+
+  /**
+   * The interpolation of a branch of the interpolation tree, from its first state down to a target state,
+   * followed by the concurrent interpolation of the sibling branches found on the way.
+   */
+  private class BranchInterpolation extends RecursiveTask<BranchResult> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final InterpolationTree tree;
+    private final ARGState source;
+    private final ValueAnalysisInterpolant initialItp;
+
+    private BranchInterpolation(InterpolationTree pTree, ARGState pSource, ValueAnalysisInterpolant pInitialItp) {
+      tree = pTree;
+      source = pSource;
+      initialItp = pInitialItp;
+    }
+
+    @Override
+    protected BranchResult compute() {
+      try {
+        return interpolateBranch();
+      } catch (CPAException | InterruptedException e) {
+        throw new BranchInterpolationException(e);
+      }
+    }
+
+    private BranchResult interpolateBranch() throws CPAException, InterruptedException {
+      shutdownNotifier.shutdownIfNecessary();
+
+      List<ARGState> siblings = new ArrayList<>();
+      MutableARGPath errorPath = tree.getPathFromSource(source, siblings);
+
+      long start = System.nanoTime();
+      Map<ARGState, ValueAnalysisInterpolant> itps;
+
+      // the refiner and the checker are not thread-safe, so each branch borrows a worker,
+      // but only while interpolating, and not while waiting for the sibling branches
+      InterpolationWorker worker = takeInterpolationWorker();
+      try {
+        itps = interpolate(worker.refiner, worker.checker, tree.root, errorPath, initialItp);
+      } finally {
+        interpolationWorkers.add(worker);
+      }
+
+      long branchTime = System.nanoTime() - start;
+      addBranchTime(branchTime);
+      logger.log(Level.FINEST, "interpolated branch starting at ", source.getStateId(), " in ",
+          TimeSpan.ofNanos(branchTime).formatAs(TimeUnit.SECONDS));
+
+      List<BranchInterpolation> siblingTasks = new ArrayList<>(siblings.size());
+      for (ARGState sibling : siblings) {
+        ValueAnalysisInterpolant siblingItp = itps.get(tree.predecessorRelation.get(sibling));
+
+        if (siblingItp == null) {
+          siblingItp = ValueAnalysisInterpolant.createInitial();
+
+        } else if (siblingItp.isFalse()) {
+          logger.log(Level.FINEST, "skipping interpolation of branch starting at ", sibling.getStateId(),
+              ", because initial interpolant is already false");
+          continue;
+        }
+
+        siblingTasks.add(new BranchInterpolation(tree, sibling, siblingItp));
+      }
+
+      List<BranchResult> children = new ArrayList<>(siblingTasks.size());
+      for (BranchInterpolation siblingTask : invokeAll(siblingTasks)) {
+        children.add(siblingTask.join());
+      }
+
+      return new BranchResult(itps, children);
+    }
+  }
+
+  /**
+   * Take an idle worker, and wait for one if all are busy.
+   * The pool may run more threads than there are workers (it adds threads for tasks waiting in a join),
+   * so waiting is announced to the pool, which can then compensate for the blocked thread.
+   */
+  private InterpolationWorker takeInterpolationWorker() throws InterruptedException {
+    WorkerBlocker blocker = new WorkerBlocker();
+    ForkJoinPool.managedBlock(blocker);
+    return blocker.worker;
+  }
+
+  private class WorkerBlocker implements ForkJoinPool.ManagedBlocker {
+
+    private InterpolationWorker worker = null;
+
+    @Override
+    public boolean block() throws InterruptedException {
+      if (worker == null) {
+        worker = interpolationWorkers.take();
+      }
+      return true;
+    }
+
+    @Override
+    public boolean isReleasable() {
+      if (worker == null) {
+        worker = interpolationWorkers.poll();
+      }
+      return worker != null;
+    }
+  }
+
+  /**
+   * The interpolants of a branch of the interpolation tree, and the results of its sibling branches.
+   */
+  private static class BranchResult {
+
+    private final Map<ARGState, ValueAnalysisInterpolant> interpolants;
+    private final List<BranchResult> children;
+
+    private BranchResult(Map<ARGState, ValueAnalysisInterpolant> pInterpolants, List<BranchResult> pChildren) {
+      interpolants = pInterpolants;
+      children = pChildren;
+    }
+  }
+
+  /**
+   * An unchecked wrapper for the exceptions thrown while interpolating a branch on the fork/join pool.
+   */
+  private static class BranchInterpolationException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private BranchInterpolationException(Exception pCause) {
+      super(pCause);
+    }
+  }
+
+  /**
+   * A refiner and a checker for exclusive use by one thread at a time.
+   */
+  private static class InterpolationWorker {
+
+    private final ValueAnalysisInterpolationBasedRefiner refiner;
+    private final ValueAnalysisFeasibilityChecker checker;
+
+    private InterpolationWorker(ValueAnalysisInterpolationBasedRefiner pRefiner, ValueAnalysisFeasibilityChecker pChecker) {
+      refiner = pRefiner;
+      checker = pChecker;
+    }
+  }
+
+  private synchronized void addBranchTime(long nanos) {
+    totalBranches++;
+    totalBranchTime += nanos;
+    maxBranchTime = Math.max(maxBranchTime, nanos);
+  }
+
+  private boolean initialInterpolantIsTooWeak(ValueAnalysisFeasibilityChecker pChecker, ARGState root,
+      ValueAnalysisInterpolant initialItp, MutableARGPath errorPath)
       throws CPAException, InterruptedException {
 
     // if the first state of the error path is the root, the interpolant cannot be to weak
@@ -217,7 +487,7 @@ public class ValueAnalysisGlobalRefiner implements Refiner, StatisticsProvider {
     }
 
     // for all other cases, check if the path is feasible when using the interpolant as initial state
-    return checker.isFeasible(errorPath, initialItp.createValueAnalysisState());
+    return pChecker.isFeasible(errorPath, initialItp.createValueAnalysisState());
   }
 
   private ValueAnalysisPrecision joinSubtreePrecisions(final ReachedSet pReached,
@@ -305,6 +575,20 @@ public class ValueAnalysisGlobalRefiner implements Refiner, StatisticsProvider {
     return targets;
   }
 
+  /**
+   * Stop the threads for fork/join interpolation and the threads of the interpolators.
+   */
+  @Override
+  public void close() {
+    if (interpolationPool != null) {
+      interpolationPool.shutdownNow();
+      for (InterpolationWorker worker : interpolationWorkers) {
+        worker.refiner.close();
+      }
+    }
+    interpolatingRefiner.close();
+  }
+
   @Override
   public void collectStatistics(final Collection<Statistics> pStatsCollection) {
     pStatsCollection.add(new Statistics() {
@@ -327,6 +611,15 @@ public class ValueAnalysisGlobalRefiner implements Refiner, StatisticsProvider {
       out.println("Total number of targets found:    " + String.format(Locale.US, "%9d", totalTargetsFound));
       out.println("Total time for global refinement:     " + totalTime);
 
+      if (interpolationPool != null) {
+        synchronized (this) {
+          out.println("Number of interpolated branches:  " + String.format(Locale.US, "%9d", totalBranches));
+          out.println("Time for interpolating branches:      "
+              + TimeSpan.ofNanos(totalBranchTime).formatAs(TimeUnit.SECONDS)
+              + " (Max: " + TimeSpan.ofNanos(maxBranchTime).formatAs(TimeUnit.SECONDS) + ")");
+        }
+      }
+
       interpolatingRefiner.printStatistics(out, pResult, pReached);
     }
   }
@@ -492,6 +785,45 @@ public class ValueAnalysisGlobalRefiner implements Refiner, StatisticsProvider {
       return strategy.getNextPathForInterpolation();
     }
 
+    /**
+     * This method returns the path from the given source down to a target state, always following the first child.
+     * If the source is not the root, the path starts at the predecessor of the source.
+     *
+     * @param source the state where the path starts, i.e., the root or a child of a branching state
+     * @param siblings the list to which the second children of the branching states on the path are added
+     * @return the path from the given source to a target state
+     */
+    private MutableARGPath getPathFromSource(ARGState source, List<ARGState> siblings) {
+      MutableARGPath errorPath = new MutableARGPath();
+      ARGState current = source;
+
+      // if the current state is not the root, it is a child of a branch , however, the path should not start with the
+      // child, but with the branching node (children are stored on the stack because this needs less book-keeping)
+      if (current != root) {
+        errorPath.add(Pair.of(predecessorRelation.get(current), predecessorRelation.get(current).getEdgeToChild(current)));
+      }
+
+      while (successorRelation.get(current).iterator().hasNext()) {
+        Iterator<ARGState> children = successorRelation.get(current).iterator();
+        ARGState child = children.next();
+        errorPath.add(Pair.of(current, current.getEdgeToChild(child)));
+
+        // collect the other child of the current state, if any, for later interpolations
+        if (children.hasNext()) {
+          siblings.add(children.next());
+        }
+
+        current = child;
+
+        // add out-going edges of final state, too (just for compatibility reasons to compare to DelegatingRefiner)
+        if (!successorRelation.get(current).iterator().hasNext()) {
+          errorPath.add(Pair.of(current, CFAUtils.leavingEdges(AbstractStates.extractLocation(current)).first().orNull()));
+        }
+      }
+
+      return errorPath;
+    }
+
     /**
      * This method returns the interpolant to be used for interpolation of the given path.
      *
@@ -646,39 +978,20 @@ public class ValueAnalysisGlobalRefiner implements Refiner, StatisticsProvider {
 
       @Override
       public MutableARGPath getNextPathForInterpolation() {
-        MutableARGPath errorPath = new MutableARGPath();
-
         ARGState current = sources.pop();
 
         if (!isValidInterpolationRoot(predecessorRelation.get(current))) {
           logger.log(Level.FINEST, "interpolant of predecessor of ", current.getStateId(), " is already false ... return empty path");
-          return errorPath;
-        }
-
-        // if the current state is not the root, it is a child of a branch , however, the path should not start with the
-        // child, but with the branching node (children are stored on the stack because this needs less book-keeping)
-        if (current != root) {
-          errorPath.add(Pair.of(predecessorRelation.get(current), predecessorRelation.get(current).getEdgeToChild(current)));
+          return new MutableARGPath();
         }
 
-        while (successorRelation.get(current).iterator().hasNext()) {
-          Iterator<ARGState> children = successorRelation.get(current).iterator();
-          ARGState child = children.next();
-          errorPath.add(Pair.of(current, current.getEdgeToChild(child)));
+        List<ARGState> siblings = new ArrayList<>();
+        MutableARGPath errorPath = getPathFromSource(current, siblings);
 
-          // push all other children of the current state, if any, onto the stack for later interpolations
-          if (children.hasNext()) {
-            ARGState sibling = children.next();
-            logger.log(Level.FINEST, "\tpush new root ", sibling.getStateId(), " onto stack for parent ", predecessorRelation.get(sibling).getStateId());
-            sources.push(sibling);
-          }
-
-          current = child;
-
-          // add out-going edges of final state, too (just for compatibility reasons to compare to DelegatingRefiner)
-          if (!successorRelation.get(current).iterator().hasNext()) {
-            errorPath.add(Pair.of(current, CFAUtils.leavingEdges(AbstractStates.extractLocation(current)).first().orNull()));
-          }
+        // push all siblings onto the stack for later interpolations
+        for (ARGState sibling : siblings) {
+          logger.log(Level.FINEST, "\tpush new root ", sibling.getStateId(), " onto stack for parent ", predecessorRelation.get(sibling).getStateId());
+          sources.push(sibling);
         }
 
         return errorPath;
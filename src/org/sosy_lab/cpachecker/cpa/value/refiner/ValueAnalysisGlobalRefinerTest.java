@@ -0,0 +1,82 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.cpa.value.refiner;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sosy_lab.cpachecker.core.interfaces.AbstractState;
+import org.sosy_lab.cpachecker.core.reachedset.UnmodifiableReachedSet;
+import org.sosy_lab.cpachecker.cpa.value.ValueAnalysisPrecision;
+import org.sosy_lab.cpachecker.util.Precisions;
+import org.sosy_lab.cpachecker.util.test.CPATestRunner;
+import org.sosy_lab.cpachecker.util.test.TestResults;
+
+import com.google.common.collect.ImmutableMap;
+
+public class ValueAnalysisGlobalRefinerTest {
+
+  // both branches of the first if statement reach the error location,
+  // so the interpolation tree has two branches
+  private static final String PROGRAM = "test/programs/simple/explicit/explicitInterpolationModes.c";
+
+  /**
+   * Run the value analysis with global refinement and return the precisions of the final reached set,
+   * which are derived from the interpolants of all refinements.
+   */
+  private static Set<String> runWithThreads(int threads) throws Exception {
+    ImmutableMap<String, String> prop = ImmutableMap.<String, String>builder()
+        .put("cpa", "cpa.arg.ARGCPA")
+        .put("ARGCPA.cpa", "cpa.composite.CompositeCPA")
+        .put("CompositeCPA.cpas", "cpa.location.LocationCPA, cpa.callstack.CallstackCPA, cpa.value.ValueAnalysisCPA")
+        .put("cpa.composite.precAdjust", "COMPONENT")
+        .put("specification", "config/specification/default.spc")
+        .put("cpa.automaton.breakOnTargetState", "0")
+        .put("analysis.algorithm.CEGAR", "true")
+        .put("cegar.refiner", "cpa.value.refiner.ValueAnalysisGlobalRefiner")
+        .put("cpa.value.refinement.interpolationThreads", Integer.toString(threads))
+        .build();
+
+    TestResults results = CPATestRunner.run(prop, PROGRAM);
+    Assert.assertTrue(results.isSafe());
+
+    UnmodifiableReachedSet reached = results.getCheckerResult().getReached();
+    Set<String> precisions = new TreeSet<>();
+    for (AbstractState state : reached) {
+      ValueAnalysisPrecision precision =
+          Precisions.extractPrecisionByType(reached.getPrecision(state), ValueAnalysisPrecision.class);
+      precisions.add(precision.toString());
+    }
+    return precisions;
+  }
+
+  @Test
+  public void testForkJoinInterpolationYieldsSamePrecisionAsTopDown() throws Exception {
+    Set<String> sequential = runWithThreads(1);
+    Assert.assertTrue(sequential.toString().contains("main::c"));
+    Assert.assertEquals(sequential, runWithThreads(3));
+  }
+}
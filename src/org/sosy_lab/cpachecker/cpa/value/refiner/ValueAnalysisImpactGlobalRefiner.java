@@ -89,7 +89,7 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
 
 @Options(prefix="cpa.value.refinement")
-public class ValueAnalysisImpactGlobalRefiner implements UnsoundRefiner, StatisticsProvider {
+public class ValueAnalysisImpactGlobalRefiner implements UnsoundRefiner, StatisticsProvider, AutoCloseable {
 
   @Option(description="whether or not to do lazy-abstraction", name="restart", toUppercase = true)
   private RestartStrategy restartStrategy = RestartStrategy.TOP;
@@ -516,6 +516,14 @@ public class ValueAnalysisImpactGlobalRefiner implements UnsoundRefiner, Statist
     return targets;
   }
 
+  /**
+   * Stop the threads of the interpolator, if any.
+   */
+  @Override
+  public void close() {
+    interpolatingRefiner.close();
+  }
+
   @Override
   public void collectStatistics(final Collection<Statistics> pStatsCollection) {
     pStatsCollection.add(new Statistics() {
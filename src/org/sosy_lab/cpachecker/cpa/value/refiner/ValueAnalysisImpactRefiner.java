@@ -88,7 +88,7 @@ import com.google.common.collect.SetMultimap;
 
 
 @Options(prefix="cpa.value.refinement")
-public class ValueAnalysisImpactRefiner implements UnsoundRefiner, StatisticsProvider {
+public class ValueAnalysisImpactRefiner implements UnsoundRefiner, StatisticsProvider, AutoCloseable {
 
   @Option(description="whether or not to do lazy-abstraction", name="restart", toUppercase = true)
   private RestartStrategy restartStrategy = RestartStrategy.TOP;
@@ -464,6 +464,14 @@ public class ValueAnalysisImpactRefiner implements UnsoundRefiner, StatisticsPro
     return targets;
   }
 
+  /**
+   * Stop the threads of the interpolator, if any.
+   */
+  @Override
+  public void close() {
+    interpolatingRefiner.close();
+  }
+
   @Override
   public void collectStatistics(final Collection<Statistics> pStatsCollection) {
     pStatsCollection.add(new Statistics() {
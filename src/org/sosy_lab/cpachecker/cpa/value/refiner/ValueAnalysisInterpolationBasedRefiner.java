@@ -88,7 +88,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 
 @Options(prefix="cpa.value.refiner")
-public class ValueAnalysisInterpolationBasedRefiner implements Statistics {
+public class ValueAnalysisInterpolationBasedRefiner implements Statistics, AutoCloseable {
   /**
    * whether or not to do lazy-abstraction, i.e., when true, the re-starting node
    * for the re-exploration of the ARG will be the node closest to the root
@@ -383,6 +383,14 @@ public class ValueAnalysisInterpolationBasedRefiner implements Statistics {
     return false;
   }
 
+  /**
+   * Stop the threads of the interpolator, if any.
+   */
+  @Override
+  public void close() {
+    interpolator.close();
+  }
+
   @Override
   public String getName() {
     return "ValueAnalysisInterpolationBasedRefiner";
@@ -26,13 +26,26 @@ package org.sosy_lab.cpachecker.cpa.value.refiner.utils;
 
 import static com.google.common.collect.Iterables.skip;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
-
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.sosy_lab.common.Classes.UnexpectedCheckedException;
 import org.sosy_lab.common.Pair;
+import org.sosy_lab.common.concurrency.Threads;
 import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.IntegerOption;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.configuration.Option;
+import org.sosy_lab.common.configuration.Options;
 import org.sosy_lab.common.log.LogManager;
 import org.sosy_lab.cpachecker.cfa.CFA;
 import org.sosy_lab.cpachecker.cfa.model.CFAEdge;
@@ -49,9 +62,31 @@ import org.sosy_lab.cpachecker.cpa.value.type.Value;
 import org.sosy_lab.cpachecker.exceptions.CPAException;
 import org.sosy_lab.cpachecker.exceptions.CPATransferException;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 
-public class ValueAnalysisInterpolator {
+@Options(prefix="cpa.value.interpolation")
+public class ValueAnalysisInterpolator implements AutoCloseable {
+
+  public static enum InterpolationMode {
+    SEQUENTIAL,
+    PARALLEL,
+    INCREMENTAL
+  }
+
+  @Option(description="how to determine the memory locations that are needed in an interpolant:"
+      + "\nSEQUENTIAL: check one memory location after the other on the whole remaining path"
+      + "\nPARALLEL: check each memory location on its own on a thread pool,"
+      + " then check the remaining ones sequentially (same result as SEQUENTIAL)"
+      + "\nINCREMENTAL: like SEQUENTIAL, but re-execute the remaining path only"
+      + " from the first edge that may use the memory location")
+  private InterpolationMode mode = InterpolationMode.SEQUENTIAL;
+
+  @Option(description="number of threads for parallel interpolation")
+  @IntegerOption(min=1)
+  private int threads = 2;
+
   /**
    * the shutdownNotifier in use
    */
@@ -82,24 +117,60 @@ public class ValueAnalysisInterpolator {
    */
   private static final ValueAnalysisState NO_SUCCESSOR = null;
 
+  /**
+   * the feasibility checkers for the worker threads, each one with its own transfer relation
+   * (only used for parallel interpolation)
+   */
+  private final BlockingQueue<ValueAnalysisFeasibilityChecker> workerCheckers;
+
+  /**
+   * the thread pool for parallel interpolation
+   */
+  private final ExecutorService executor;
+
   /**
    * This method acts as the constructor of the class.
    */
   public ValueAnalysisInterpolator(final Configuration pConfig,final LogManager pLogger,
       final ShutdownNotifier pShutdownNotifier, final CFA pCfa)
           throws InvalidConfigurationException {
+    pConfig.inject(this);
 
     try {
       shutdownNotifier  = pShutdownNotifier;
       checker           = new ValueAnalysisFeasibilityChecker(pLogger, pCfa);
       transfer          = new ValueAnalysisTransferRelation(Configuration.builder().build(), pLogger, pCfa);
       precision         = ValueAnalysisPrecision.createDefaultPrecision();
+
+      if (mode == InterpolationMode.PARALLEL) {
+        workerCheckers = new LinkedBlockingQueue<>();
+        for (int i = 0; i < threads; i++) {
+          workerCheckers.add(new ValueAnalysisFeasibilityChecker(pLogger, pCfa));
+        }
+        // daemon threads, because close() is not called if the analysis is aborted
+        executor = Executors.newFixedThreadPool(threads,
+            Threads.threadFactoryBuilder().setDaemon(true).setNameFormat("Value interpolation %d").build());
+      } else {
+        workerCheckers = null;
+        executor = null;
+      }
     }
     catch (InvalidConfigurationException e) {
       throw new InvalidConfigurationException("Invalid configuration for checking path: " + e.getMessage(), e);
     }
   }
 
+  /**
+   * Stop the threads for parallel interpolation.
+   * This instance may not be used for interpolation afterwards.
+   */
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
   /**
    * This method derives an interpolant for the given error path and interpolation state.
    *
@@ -151,19 +222,265 @@ public class ValueAnalysisInterpolator {
       return ValueAnalysisInterpolant.TRUE;
     }
 
-    for (MemoryLocation currentMemoryLocation : initialSuccessor.getTrackedMemoryLocations()) {
+    switch (mode) {
+    case SEQUENTIAL:
+      interpolateSequentially(remainingErrorPath, initialSuccessor, initialSuccessor.getTrackedMemoryLocations());
+      break;
+    case PARALLEL:
+      interpolateInParallel(remainingErrorPath, initialSuccessor);
+      break;
+    case INCREMENTAL:
+      interpolateIncrementally(pErrorPath.subList(pOffset + 1, pErrorPath.size()), initialSuccessor);
+      break;
+    default:
+      throw new AssertionError("unhandled interpolation mode " + mode);
+    }
+
+    return initialSuccessor.createInterpolant();
+  }
+
+  /**
+   * This method removes all given memory locations from the candidate interpolant
+   * that are not needed for the infeasibility of the remaining path,
+   * checking one memory location after the other.
+   *
+   * @param remainingErrorPath the remaining error path
+   * @param candidate the candidate interpolant, which is modified
+   * @param memoryLocations the memory locations to check, in this order
+   */
+  private void interpolateSequentially(Iterable<CFAEdge> remainingErrorPath, ValueAnalysisState candidate,
+      Iterable<MemoryLocation> memoryLocations) throws CPAException, InterruptedException {
+
+    for (MemoryLocation currentMemoryLocation : memoryLocations) {
       shutdownNotifier.shutdownIfNecessary();
 
       // temporarily remove the value of the current memory location from the candidate interpolant
-      Value value = initialSuccessor.forget(currentMemoryLocation);
+      Value value = candidate.forget(currentMemoryLocation);
 
       // check if the remaining path now becomes feasible
-      if (isRemainingPathFeasible(remainingErrorPath, initialSuccessor)) {
-        initialSuccessor.assignConstant(currentMemoryLocation, value);
+      if (isRemainingPathFeasible(remainingErrorPath, candidate)) {
+        candidate.assignConstant(currentMemoryLocation, value);
       }
     }
+  }
 
-    return initialSuccessor.createInterpolant();
+  /**
+   * This method computes the same interpolant as {@link #interpolateSequentially},
+   * but checks the memory locations on a thread pool first.
+   *
+   * Each worker checks whether the remaining path becomes feasible
+   * if only one memory location is removed from the candidate interpolant.
+   * Such a memory location is also kept by the sequential interpolation,
+   * because removing more values from the candidate only makes more paths feasible.
+   * If the candidate restricted to these memory locations already makes the path infeasible,
+   * the sequential interpolation would remove all others, too.
+   * Otherwise, the other memory locations are checked sequentially, in the original order.
+   *
+   * @param remainingErrorPath the remaining error path
+   * @param candidate the candidate interpolant, which is modified
+   */
+  private void interpolateInParallel(Iterable<CFAEdge> remainingErrorPath, ValueAnalysisState candidate)
+      throws CPAException, InterruptedException {
+
+    final MutableARGPath argErrorPath = toARGPath(remainingErrorPath);
+    List<MemoryLocation> memoryLocations = ImmutableList.copyOf(candidate.getTrackedMemoryLocations());
+
+    List<Future<Boolean>> results = new ArrayList<>(memoryLocations.size());
+    List<MemoryLocation> neededMemoryLocations = new ArrayList<>();
+    List<MemoryLocation> otherMemoryLocations = new ArrayList<>();
+    try {
+      for (MemoryLocation memoryLocation : memoryLocations) {
+        ValueAnalysisState state = ValueAnalysisState.copyOf(candidate);
+        state.forget(memoryLocation);
+        results.add(executor.submit(new RemainingPathCheck(argErrorPath, state)));
+      }
+      numberOfInterpolationQueries += memoryLocations.size();
+
+      // merge the results in the order of the memory locations, not in the order of completion
+      for (int i = 0; i < memoryLocations.size(); i++) {
+        if (results.get(i).get()) {
+          neededMemoryLocations.add(memoryLocations.get(i));
+        } else {
+          otherMemoryLocations.add(memoryLocations.get(i));
+        }
+      }
+
+    } catch (ExecutionException e) {
+      Throwable t = e.getCause();
+      Throwables.propagateIfPossible(t, CPAException.class, InterruptedException.class);
+      throw new UnexpectedCheckedException("parallel interpolation", t);
+
+    } finally {
+      for (Future<Boolean> result : results) {
+        result.cancel(true);
+      }
+    }
+
+    if (otherMemoryLocations.isEmpty()) {
+      return;
+    }
+
+    ValueAnalysisState restrictedCandidate = ValueAnalysisState.copyOf(candidate);
+    for (MemoryLocation memoryLocation : otherMemoryLocations) {
+      restrictedCandidate.forget(memoryLocation);
+    }
+
+    if (isRemainingPathFeasible(remainingErrorPath, restrictedCandidate)) {
+      interpolateSequentially(remainingErrorPath, candidate, otherMemoryLocations);
+    } else {
+      for (MemoryLocation memoryLocation : otherMemoryLocations) {
+        candidate.forget(memoryLocation);
+      }
+    }
+  }
+
+  /**
+   * A feasibility check of the remaining error path, executed by a worker thread.
+   */
+  private class RemainingPathCheck implements Callable<Boolean> {
+
+    private final MutableARGPath remainingErrorPath;
+    private final ValueAnalysisState state;
+
+    private RemainingPathCheck(MutableARGPath pRemainingErrorPath, ValueAnalysisState pState) {
+      remainingErrorPath = pRemainingErrorPath;
+      state = pState;
+    }
+
+    @Override
+    public Boolean call() throws CPAException, InterruptedException {
+      shutdownNotifier.shutdownIfNecessary();
+
+      // the transfer relation is not thread-safe, so each check borrows one of the worker checkers
+      ValueAnalysisFeasibilityChecker workerChecker = workerCheckers.take();
+      try {
+        return workerChecker.isFeasible(remainingErrorPath, state);
+      } finally {
+        workerCheckers.add(workerChecker);
+      }
+    }
+  }
+
+  /**
+   * This method computes the same interpolant as {@link #interpolateSequentially},
+   * but re-uses the states of the last execution of the remaining path.
+   *
+   * Until the first edge that may use a memory location, the execution without this memory location
+   * only differs from the last execution by the missing value,
+   * so the check for this memory location starts at that edge.
+   *
+   * @param remainingErrorPath the remaining error path
+   * @param candidate the candidate interpolant, which is modified
+   */
+  private void interpolateIncrementally(List<CFAEdge> remainingErrorPath, ValueAnalysisState candidate)
+      throws CPAException, InterruptedException {
+
+    // the states before each edge of the last execution, until the first edge without successor
+    List<ValueAnalysisState> states = new ArrayList<>(remainingErrorPath.size());
+
+    numberOfInterpolationQueries++;
+    if (executeRemainingPath(remainingErrorPath, 0, ValueAnalysisState.copyOf(candidate), states)) {
+      // removing values cannot make the path infeasible, so all memory locations are needed
+      return;
+    }
+
+    for (MemoryLocation currentMemoryLocation : ImmutableList.copyOf(candidate.getTrackedMemoryLocations())) {
+      shutdownNotifier.shutdownIfNecessary();
+
+      int firstUse = getFirstPossibleUse(remainingErrorPath, states.size(), currentMemoryLocation);
+
+      List<ValueAnalysisState> newStates = new ArrayList<>(remainingErrorPath.size());
+      if (firstUse != -1) {
+        ValueAnalysisState state = ValueAnalysisState.copyOf(states.get(firstUse));
+        state.forget(currentMemoryLocation);
+
+        numberOfInterpolationQueries++;
+        if (executeRemainingPath(remainingErrorPath, firstUse, state, newStates)) {
+          // the memory location is needed
+          continue;
+        }
+      } else {
+        // the memory location is not used before the path becomes infeasible
+        firstUse = states.size();
+      }
+
+      candidate.forget(currentMemoryLocation);
+
+      List<ValueAnalysisState> updatedStates = new ArrayList<>(firstUse + newStates.size());
+      for (ValueAnalysisState state : states.subList(0, firstUse)) {
+        ValueAnalysisState updatedState = ValueAnalysisState.copyOf(state);
+        updatedState.forget(currentMemoryLocation);
+        updatedStates.add(updatedState);
+      }
+      updatedStates.addAll(newStates);
+      states = updatedStates;
+    }
+  }
+
+  /**
+   * This method executes the remaining error path from the given edge on,
+   * and records the state before each executed edge.
+   * As in {@link ValueAnalysisFeasibilityChecker#isFeasible}, the path only counts as infeasible
+   * if an edge before the last one does not yield a successor.
+   *
+   * @param remainingErrorPath the remaining error path
+   * @param start the index of the first edge to execute
+   * @param state the state before the first edge to execute
+   * @param states the list to which the states before each executed edge are added
+   * @return true, if the path is feasible, else false
+   */
+  private boolean executeRemainingPath(List<CFAEdge> remainingErrorPath, int start, ValueAnalysisState state,
+      List<ValueAnalysisState> states) throws CPAException, InterruptedException {
+
+    ValueAnalysisState next = state;
+    for (int i = start; i < remainingErrorPath.size(); i++) {
+      states.add(next);
+
+      Collection<ValueAnalysisState> successors =
+          transfer.getAbstractSuccessorsForEdge(next, precision, remainingErrorPath.get(i));
+
+      if (successors.isEmpty()) {
+        return i == remainingErrorPath.size() - 1;
+      }
+      next = Iterables.getOnlyElement(successors);
+    }
+    return true;
+  }
+
+  /**
+   * This method returns the index of the first edge that may read or write the given memory location,
+   * or -1 if none of the first edges of the path does.
+   * Edges that may access memory through pointers or that change the function scope
+   * are conservatively assumed to use every memory location.
+   *
+   * @param path the path
+   * @param length the number of edges at the beginning of the path to consider
+   * @param memoryLocation the memory location
+   * @return the index of the first edge that may use the memory location, or -1
+   */
+  private int getFirstPossibleUse(List<CFAEdge> path, int length, MemoryLocation memoryLocation) {
+    for (int i = 0; i < length; i++) {
+      CFAEdge edge = path.get(i);
+
+      switch (edge.getEdgeType()) {
+      case BlankEdge:
+        break;
+
+      case AssumeEdge:
+      case StatementEdge:
+      case DeclarationEdge:
+        String code = edge.getCode();
+        if (code.contains(memoryLocation.getIdentifier())
+            || code.contains("*") || code.contains("&") || code.contains("[") || code.contains("->")) {
+          return i;
+        }
+        break;
+
+      default:
+        return i;
+      }
+    }
+    return -1;
   }
 
   /**
@@ -219,13 +536,23 @@ public class ValueAnalysisInterpolator {
       throws CPAException, InterruptedException {
     numberOfInterpolationQueries++;
 
+    return checker.isFeasible(toARGPath(remainingErrorPath), state);
+  }
+
+  /**
+   * This method converts the (remaining) error path to an ARG path without states, as needed by the feasibility checker.
+   *
+   * @param remainingErrorPath the error path to convert
+   * @return the ARG path with the edges of the given error path
+   */
+  private MutableARGPath toARGPath(Iterable<CFAEdge> remainingErrorPath) {
     MutableARGPath argErrorPath = new MutableARGPath();
 
     for (CFAEdge edge : remainingErrorPath) {
       argErrorPath.add(Pair.<ARGState, CFAEdge>of(null, edge));
     }
 
-    return checker.isFeasible(argErrorPath, state);
+    return argErrorPath;
   }
 
 
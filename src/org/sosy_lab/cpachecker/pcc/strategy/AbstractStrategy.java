@@ -30,7 +30,6 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.logging.Level;
@@ -120,11 +119,7 @@ public abstract class AbstractStrategy implements PCCStrategy, StatisticsProvide
       zos.putNextEntry(ze);
       //write helper storages
       o = new ObjectOutputStream(zos);
-      int numberOfStorages = GlobalInfo.getInstance().getNumberOfHelperStorages();
-      o.writeInt(numberOfStorages);
-      for (int i = 0; i < numberOfStorages; ++i) {
-        o.writeObject(GlobalInfo.getInstance().getHelperStorage(i));
-      }
+      GlobalInfo.getInstance().writeHelperStorages(o);
 
       o.flush();
       zos.closeEntry();
@@ -169,11 +164,7 @@ public abstract class AbstractStrategy implements PCCStrategy, StatisticsProvide
       assert entry.getName().equals("Helper");
       ObjectInputStream o = new ObjectInputStream(zis);
       //read helper storages
-      int numberOfStorages = o.readInt();
-      for (int i = 0; i < numberOfStorages; ++i) {
-        Serializable storage = (Serializable) o.readObject();
-        GlobalInfo.getInstance().addHelperStorage(storage);
-      }
+      GlobalInfo.getInstance().readHelperStorages(o);
       zis.closeEntry();
 
       o.close();
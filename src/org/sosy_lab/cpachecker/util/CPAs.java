@@ -28,6 +28,8 @@ import java.util.logging.Level;
 import org.sosy_lab.common.log.LogManager;
 import org.sosy_lab.cpachecker.core.interfaces.ConfigurableProgramAnalysis;
 import org.sosy_lab.cpachecker.core.interfaces.WrapperCPA;
+import org.sosy_lab.cpachecker.core.reachedset.ForwardingReachedSet;
+import org.sosy_lab.cpachecker.core.reachedset.UnmodifiableReachedSet;
 
 import com.google.common.base.Throwables;
 import com.google.common.collect.FluentIterable;
@@ -85,6 +87,22 @@ public class CPAs {
     }
   }
 
+  /**
+   * Close a reached set that is not used anymore if it
+   * (or the reached set a {@link ForwardingReachedSet} delegates to)
+   * implements {@link AutoCloseable}, e.g., to delete the spill file of a
+   * {@link org.sosy_lab.cpachecker.core.reachedset.SpillingPartitionedReachedSet}.
+   * Checked exceptions are logged but not re-thrown.
+   * @param pReached A reached set.
+   */
+  public static void closeReachedSetIfPossible(UnmodifiableReachedSet pReached, LogManager logger) {
+    UnmodifiableReachedSet reached = pReached;
+    while (reached instanceof ForwardingReachedSet) {
+      reached = ((ForwardingReachedSet)reached).getDelegate();
+    }
+    closeIfPossible(reached, logger);
+  }
+
   /**
    * Call {@link AutoCloseable#close()} on an supplied object if it implements
    * {@link AutoCloseable}. Checked exceptions are logged but not re-thrown.
@@ -42,4 +42,20 @@ public final class UniqueIdGenerator {
     checkState(id >= 0, "Overflow for unique ID");
     return id;
   }
+
+  /**
+   * Make sure that all ids given out from now on are greater than the given id.
+   * This is necessary if objects with ids from a previous run
+   * (e.g., deserialized objects) are used together with new objects.
+   */
+  public void skipPast(int pId) {
+    checkState(pId < Integer.MAX_VALUE, "Overflow for unique ID");
+    int current;
+    do {
+      current = nextId.get();
+      if (current > pId) {
+        return;
+      }
+    } while (!nextId.compareAndSet(current, pId + 1));
+  }
 }
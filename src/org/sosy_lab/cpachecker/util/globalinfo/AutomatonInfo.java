@@ -23,8 +23,8 @@
  */
 package org.sosy_lab.cpachecker.util.globalinfo;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.sosy_lab.cpachecker.cpa.automaton.Automaton;
 import org.sosy_lab.cpachecker.cpa.automaton.AutomatonInternalState;
@@ -34,7 +34,7 @@ public class AutomatonInfo {
   private final Map<Integer, AutomatonInternalState> idToState;
 
   AutomatonInfo() {
-    idToState= new HashMap<>();
+    idToState= new ConcurrentHashMap<>();
 
   }
 
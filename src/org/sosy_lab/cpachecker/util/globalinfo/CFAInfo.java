@@ -33,7 +33,7 @@ import org.sosy_lab.cpachecker.cpa.location.LocationState.LocationStateFactory;
 
 public class CFAInfo {
   private final Map<Integer, CFANode> nodeNumberToNode;
-  private LocationStateFactory locationStateFactory;
+  private volatile LocationStateFactory locationStateFactory;
 
   CFAInfo(CFA cfa) {
     HashMap<Integer, CFANode> nodeNumberToNode = new HashMap<>();
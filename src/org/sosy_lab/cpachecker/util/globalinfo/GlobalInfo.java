@@ -23,6 +23,9 @@
  */
 package org.sosy_lab.cpachecker.util.globalinfo;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 
@@ -35,6 +38,14 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 
 
+/**
+ * Global storage for information that is needed to deserialize abstract states.
+ *
+ * All methods are synchronized, because several analyses may create
+ * their CPAs concurrently (e.g., in the parallel mode of the RestartAlgorithm).
+ * Information that exists once per analysis (the CPA and the formula manager)
+ * is the one stored last in this case.
+ */
 public class GlobalInfo {
   private static GlobalInfo instance;
   private CFAInfo cfaInfo;
@@ -47,57 +58,79 @@ public class GlobalInfo {
 
   }
 
-  public static GlobalInfo getInstance() {
+  public static synchronized GlobalInfo getInstance() {
     if (instance == null) {
       instance = new GlobalInfo();
     }
     return instance;
   }
 
-  public void storeCFA(CFA cfa) {
+  public synchronized void storeCFA(CFA cfa) {
     cfaInfo = new CFAInfo(cfa);
   }
 
-  public Optional<CFAInfo> getCFAInfo() {
+  public synchronized Optional<CFAInfo> getCFAInfo() {
     return Optional.fromNullable(cfaInfo);
   }
 
-  public void storeAutomaton(Automaton automaton) {
+  public synchronized void storeAutomaton(Automaton automaton) {
     automatonInfo.register(automaton);
   }
 
-  public AutomatonInfo getAutomatonInfo() {
+  public synchronized AutomatonInfo getAutomatonInfo() {
     Preconditions.checkState(automatonInfo != null);
     return automatonInfo;
   }
 
-  public void storeCPA(ConfigurableProgramAnalysis cpa) {
+  public synchronized void storeCPA(ConfigurableProgramAnalysis cpa) {
     this.cpa = cpa;
   }
 
-  public Optional<ConfigurableProgramAnalysis> getCPA() {
+  public synchronized Optional<ConfigurableProgramAnalysis> getCPA() {
     return Optional.fromNullable(cpa);
   }
 
-  public void storeFormulaManager(FormulaManagerView formulaManager) {
+  public synchronized void storeFormulaManager(FormulaManagerView formulaManager) {
     this.formulaManager = formulaManager;
   }
 
-  public FormulaManagerView getFormulaManager() {
+  public synchronized FormulaManagerView getFormulaManager() {
     Preconditions.checkState(formulaManager != null);
     return formulaManager;
   }
 
-  public int addHelperStorage(Serializable e) {
+  public synchronized int addHelperStorage(Serializable e) {
     helperStorages.add(e);
     return helperStorages.size() - 1;
   }
 
-  public Serializable getHelperStorage(int index) {
+  public synchronized Serializable getHelperStorage(int index) {
     return helperStorages.get(index);
   }
 
-  public int getNumberOfHelperStorages() {
+  public synchronized int getNumberOfHelperStorages() {
     return helperStorages.size();
   }
+
+  /**
+   * Write all helper storages to a stream,
+   * such that they can be restored with {@link #readHelperStorages(ObjectInputStream)}.
+   */
+  public synchronized void writeHelperStorages(ObjectOutputStream out) throws IOException {
+    out.writeInt(helperStorages.size());
+    for (Serializable storage : helperStorages) {
+      out.writeObject(storage);
+    }
+  }
+
+  /**
+   * Read helper storages that were written by {@link #writeHelperStorages(ObjectOutputStream)}
+   * and add them to the current helper storages.
+   */
+  public synchronized void readHelperStorages(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    int numberOfStorages = in.readInt();
+    for (int i = 0; i < numberOfStorages; ++i) {
+      addHelperStorage((Serializable) in.readObject());
+    }
+  }
 }
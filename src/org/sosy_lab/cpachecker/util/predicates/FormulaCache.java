@@ -0,0 +1,180 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.sosy_lab.cpachecker.util.predicates.interfaces.Formula;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.view.FormulaManagerView;
+
+import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ * A cache for the results of operations on formulas.
+ *
+ * If no limit is given, this is a simple unbounded map.
+ * Otherwise, the least-recently used entries are evicted
+ * as soon as the total weight of all entries exceeds the limit.
+ * The weight of an entry is the size of the formula DAG of its key,
+ * such that the limit bounds the amount of formulas kept alive by the cache
+ * instead of only the number of entries.
+ *
+ * This class is not thread-safe.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the cached values.
+ */
+public final class FormulaCache<K, V> {
+
+  // exactly one of these two fields is non-null
+  private final @Nullable Map<K, V> map;
+  private final @Nullable Cache<K, V> cache;
+
+  private long hits = 0;
+  private long misses = 0;
+
+  private FormulaCache(@Nullable Map<K, V> pMap, @Nullable Cache<K, V> pCache) {
+    map = pMap;
+    cache = pCache;
+  }
+
+  /**
+   * Create a cache that never evicts entries.
+   */
+  public static <K, V> FormulaCache<K, V> unbounded() {
+    return new FormulaCache<>(new HashMap<K, V>(), null);
+  }
+
+  /**
+   * Create a cache whose entries are evicted in least-recently-used order
+   * if the sum of the DAG sizes of the formulas of all keys exceeds a limit.
+   *
+   * @param maxWeight The limit for the sum of the DAG sizes, or 0 for an unbounded cache.
+   * @param fmgr The formula manager used to compute the size of the formulas.
+   * @param formulaOfKey A function that returns the formula that is part of a key.
+   */
+  public static <K, V> FormulaCache<K, V> create(long maxWeight,
+      final FormulaManagerView fmgr, final Function<? super K, ? extends Formula> formulaOfKey) {
+    checkArgument(maxWeight >= 0);
+    checkNotNull(fmgr);
+    checkNotNull(formulaOfKey);
+    if (maxWeight == 0) {
+      return unbounded();
+    }
+
+    Cache<K, V> cache = CacheBuilder.newBuilder()
+        .concurrencyLevel(1) // only one segment, this gives a global LRU order
+        .maximumWeight(maxWeight)
+        .weigher(new Weigher<K, V>() {
+            @Override
+            public int weigh(K pKey, V pValue) {
+              return fmgr.getDagSize(formulaOfKey.apply(pKey));
+            }
+          })
+        .recordStats()
+        .build();
+    return new FormulaCache<>(null, cache);
+  }
+
+  /**
+   * Create a cache whose keys are formulas, as described in
+   * {@link #create(long, FormulaManagerView, Function)}.
+   */
+  public static <K extends Formula, V> FormulaCache<K, V> create(long maxWeight,
+      FormulaManagerView fmgr) {
+    return create(maxWeight, fmgr, new Function<K, Formula>() {
+        @Override
+        public Formula apply(K pInput) {
+          return pInput;
+        }
+      });
+  }
+
+  /**
+   * Return the cached value for a key, or null if there is none.
+   */
+  public @Nullable V get(K key) {
+    if (map != null) {
+      V result = map.get(key);
+      if (result != null) {
+        hits++;
+      } else {
+        misses++;
+      }
+      return result;
+    } else {
+      return cache.getIfPresent(key);
+    }
+  }
+
+  /**
+   * Check whether there is a cached value for a key,
+   * without counting this as a hit or miss and without updating the LRU order.
+   */
+  public boolean containsKey(K key) {
+    return map != null ? map.containsKey(key) : cache.asMap().containsKey(key);
+  }
+
+  public void put(K key, V value) {
+    if (map != null) {
+      map.put(key, value);
+    } else {
+      cache.put(key, value);
+    }
+  }
+
+  public long size() {
+    return map != null ? map.size() : cache.size();
+  }
+
+  public boolean isBounded() {
+    return cache != null;
+  }
+
+  public long getHits() {
+    return map != null ? hits : cache.stats().hitCount();
+  }
+
+  public long getMisses() {
+    return map != null ? misses : cache.stats().missCount();
+  }
+
+  public long getEvictions() {
+    return map != null ? 0 : cache.stats().evictionCount();
+  }
+
+  @Override
+  public String toString() {
+    return size() + " entries (" + getHits() + " hits, " + getMisses() + " misses, "
+        + getEvictions() + " evictions)";
+  }
+}
@@ -26,6 +26,7 @@ package org.sosy_lab.cpachecker.util.predicates;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.FluentIterable.from;
 
+import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.net.URL;
@@ -46,6 +47,7 @@ import org.sosy_lab.common.configuration.FileOption.Type;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.configuration.Option;
 import org.sosy_lab.common.configuration.Options;
+import org.sosy_lab.common.io.Path;
 import org.sosy_lab.common.io.PathCounterTemplate;
 import org.sosy_lab.common.log.LogManager;
 import org.sosy_lab.cpachecker.core.ShutdownNotifier;
@@ -58,6 +60,9 @@ import org.sosy_lab.cpachecker.util.predicates.interpolation.SeparateInterpolati
 import org.sosy_lab.cpachecker.util.predicates.logging.LoggingInterpolatingProverEnvironment;
 import org.sosy_lab.cpachecker.util.predicates.logging.LoggingOptEnvironment;
 import org.sosy_lab.cpachecker.util.predicates.logging.LoggingProverEnvironment;
+import org.sosy_lab.cpachecker.util.predicates.logging.QueryRecorder;
+import org.sosy_lab.cpachecker.util.predicates.logging.RecordingInterpolatingProverEnvironment;
+import org.sosy_lab.cpachecker.util.predicates.logging.RecordingProverEnvironment;
 import org.sosy_lab.cpachecker.util.predicates.mathsat5.Mathsat5FormulaManager;
 import org.sosy_lab.cpachecker.util.predicates.mathsat5.Mathsat5InterpolatingProver;
 import org.sosy_lab.cpachecker.util.predicates.mathsat5.Mathsat5TheoremProver;
@@ -95,6 +100,13 @@ public class FormulaManagerFactory {
   @FileOption(Type.OUTPUT_FILE)
   private PathCounterTemplate logfile = PathCounterTemplate.ofFormatString("smtquery.%03d.smt2");
 
+  @Option(name="solver.recordQueries",
+      description="Record all satisfiability checks of the solver together with their"
+      + " result and time into this file, for replaying them later with"
+      + " org.sosy_lab.cpachecker.util.predicates.logging.QueryReplay.")
+  @FileOption(Type.OUTPUT_FILE)
+  private Path recordQueries = null;
+
   @Option(description="Whether to use MathSAT 5, SmtInterpol or Z3 as SMT solver (Z3 needs the FOCI library from http://www.kenmcmil.com/foci2/).")
   private Solvers solver = Solvers.MATHSAT5;
 
@@ -128,6 +140,16 @@ public class FormulaManagerFactory {
 
     fmgr = instantiateSolver(solver, config);
 
+    if (recordQueries != null) {
+      try {
+        // create the file now in order to report problems early
+        QueryRecorder.open(recordQueries, logger).release();
+      } catch (IOException e) {
+        logger.logUserException(Level.WARNING, e, "Could not create file for recording solver queries");
+        recordQueries = null;
+      }
+    }
+
     // Instantiate another SMT solver for interpolation if requested.
     if (interpolationSolver != null) {
       itpFmgr = instantiateSolver(interpolationSolver, config);
@@ -198,10 +220,15 @@ public class FormulaManagerFactory {
     }
 
     if (useLogger) {
-      return new LoggingProverEnvironment(logger, pe);
-    } else {
-      return pe;
+      pe = new LoggingProverEnvironment(logger, pe);
     }
+    if (recordQueries != null) {
+      QueryRecorder recorder = openQueryRecorder();
+      if (recorder != null) {
+        pe = new RecordingProverEnvironment(fmgr, recorder, pe);
+      }
+    }
+    return pe;
   }
 
   public OptEnvironment newOptEnvironment() {
@@ -233,6 +260,37 @@ public class FormulaManagerFactory {
   private InterpolatingProverEnvironment<?> newProverEnvironmentWithInterpolation(
           Solvers solver, FormulaManager fmgr, boolean shared) {
 
+    InterpolatingProverEnvironment<?> ipe = newRawProverEnvironmentWithInterpolation(solver, fmgr, shared);
+    if (recordQueries != null) {
+      QueryRecorder recorder = openQueryRecorder();
+      if (recorder != null) {
+        return recording(fmgr, recorder, ipe);
+      }
+    }
+    return ipe;
+  }
+
+  private static <T> InterpolatingProverEnvironment<T> recording(FormulaManager pFmgr,
+      QueryRecorder pRecorder, InterpolatingProverEnvironment<T> ipe) {
+    return new RecordingInterpolatingProverEnvironment<>(pFmgr, pRecorder, ipe);
+  }
+
+  /**
+   * Get the recorder for a new prover environment,
+   * which releases it when it is closed.
+   */
+  private @Nullable QueryRecorder openQueryRecorder() {
+    try {
+      return QueryRecorder.open(recordQueries, logger);
+    } catch (IOException e) {
+      logger.logUserException(Level.WARNING, e, "Could not open file for recording solver queries");
+      return null;
+    }
+  }
+
+  private InterpolatingProverEnvironment<?> newRawProverEnvironmentWithInterpolation(
+          Solvers solver, FormulaManager fmgr, boolean shared) {
+
     InterpolatingProverEnvironment<?> ipe;
     switch (solver) {
     case SMTINTERPOL:
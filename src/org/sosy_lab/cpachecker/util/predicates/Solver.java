@@ -23,37 +23,104 @@
  */
 package org.sosy_lab.cpachecker.util.predicates;
 
-import java.util.Map;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
 
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.IntegerOption;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.configuration.Option;
+import org.sosy_lab.common.configuration.Options;
 import org.sosy_lab.common.time.Timer;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.ProverEnvironment;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.view.BooleanFormulaManagerView;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.view.FormulaManagerView;
+import org.sosy_lab.cpachecker.util.statistics.Telemetry;
 
-import com.google.common.collect.Maps;
+import com.google.common.collect.ImmutableList;
 
 /**
  * Abstraction of an SMT solver that also provides some higher-level methods.
+ *
+ * Instances of this class are not thread-safe
+ * (the pool of incremental provers, the cache, and the statistics
+ * are not synchronized), so each instance may be used by only one thread.
  */
+@Options(prefix="cpa.predicate.solver")
 public class Solver {
 
+  @Option(name="incremental",
+      description="Reuse a pool of long-lived prover environments for satisfiability checks"
+      + " instead of creating a new environment for each check."
+      + " Checks of conjunctions that start with the same formulas as a previous check"
+      + " keep these formulas asserted on the prover stack.")
+  private boolean useIncrementalProvers = false;
+
+  @Option(name="incremental.poolSize",
+      description="maximal number of prover environments that are kept for reuse")
+  @IntegerOption(min=1)
+  private int proverPoolSize = 4;
+
+  @Option(name="cacheMaxWeight",
+      description="maximal total size of the formulas in the cache for satisfiability checks,"
+      + " measured in DAG nodes. Least-recently used entries are evicted above this limit"
+      + " (0 for an unbounded cache).")
+  @IntegerOption(min=0)
+  private int cacheMaxWeight = 0;
+
+  /**
+   * A prover environment that is used for several queries,
+   * together with the formulas that are currently pushed onto it.
+   */
+  private static class PooledProver {
+    private final ProverEnvironment prover;
+    private final List<BooleanFormula> stack = new ArrayList<>();
+
+    private PooledProver(ProverEnvironment pProver) {
+      prover = pProver;
+    }
+  }
+
+  // most recently used prover first
+  private final Deque<PooledProver> proverPool = new ArrayDeque<>();
+
   private final FormulaManagerView fmgr;
   private final BooleanFormulaManagerView bfmgr;
   private final FormulaManagerFactory factory;
 
-  private final Map<BooleanFormula, Boolean> unsatCache = Maps.newHashMap();
+  // replaced by the configured cache after the options are injected
+  private FormulaCache<BooleanFormula, Boolean> unsatCache;
+
+  // live counters, in addition to the statistics printed at the end
+  private static final Telemetry.Counter SAT_CHECKS = Telemetry.getCounter("solver.satChecks");
+  private static final Telemetry.Counter SAT_CHECKS_CACHED = Telemetry.getCounter("solver.satChecks.cached");
 
   // stats
   public final Timer solverTime = new Timer();
   public int satChecks = 0;
   public int trivialSatChecks = 0;
   public int cachedSatChecks = 0;
+  public int proverPoolHits = 0;
+  public int proverPoolMisses = 0;
+  public int proverPrefixHits = 0; // reused prover shares at least one formula with the check
+  public int reusedAssertions = 0; // each saves one pop and one push
 
   public Solver(FormulaManagerView pFmgr, FormulaManagerFactory pFactory) {
     fmgr = pFmgr;
     bfmgr = fmgr.getBooleanFormulaManager();
     factory = pFactory;
+    unsatCache = FormulaCache.unbounded();
+  }
+
+  public Solver(FormulaManagerView pFmgr, FormulaManagerFactory pFactory,
+      Configuration config) throws InvalidConfigurationException {
+    this(pFmgr, pFactory);
+    config.inject(this);
+    unsatCache = FormulaCache.create(cacheMaxWeight, fmgr);
   }
 
   /**
@@ -94,7 +161,22 @@ public class Solver {
    * Checks whether a formula is unsat.
    */
   public boolean isUnsat(BooleanFormula f) throws InterruptedException {
+    return isUnsat(f, Collections.singletonList(f));
+  }
+
+  /**
+   * Checks whether the conjunction of some formulas is unsat.
+   * With incremental provers, checks that start with the same formulas
+   * can reuse these formulas on the prover stack,
+   * so formulas that are shared by many checks should come first.
+   */
+  public boolean isUnsat(List<BooleanFormula> conjuncts) throws InterruptedException {
+    return isUnsat(bfmgr.and(conjuncts), conjuncts);
+  }
+
+  private boolean isUnsat(BooleanFormula f, List<BooleanFormula> conjuncts) throws InterruptedException {
     satChecks++;
+    SAT_CHECKS.inc();
 
     if (bfmgr.isTrue(f)) {
       trivialSatChecks++;
@@ -107,12 +189,17 @@ public class Solver {
     Boolean result = unsatCache.get(f);
     if (result != null) {
       cachedSatChecks++;
+      SAT_CHECKS_CACHED.inc();
       return result;
     }
 
     solverTime.start();
     try {
-      result = isUnsatUncached(f);
+      if (useIncrementalProvers) {
+        result = isUnsatIncremental(conjuncts);
+      } else {
+        result = isUnsatUncached(f);
+      }
 
       unsatCache.put(f, result);
       return result;
@@ -129,6 +216,90 @@ public class Solver {
     }
   }
 
+  private boolean isUnsatIncremental(List<BooleanFormula> conjuncts) throws InterruptedException {
+    PooledProver pooled = takeProver(conjuncts);
+    boolean success = false;
+    try {
+      // keep the common prefix on the stack, and replace the rest
+      int prefixLength = commonPrefixLength(pooled.stack, conjuncts);
+      reusedAssertions += prefixLength;
+      while (pooled.stack.size() > prefixLength) {
+        pooled.prover.pop();
+        pooled.stack.remove(pooled.stack.size() - 1);
+      }
+      for (BooleanFormula conjunct : conjuncts.subList(prefixLength, conjuncts.size())) {
+        pooled.prover.push(conjunct);
+        pooled.stack.add(conjunct);
+      }
+
+      boolean result = pooled.prover.isUnsat();
+      success = true;
+      return result;
+
+    } finally {
+      if (success) {
+        returnProver(pooled);
+      } else {
+        // the state of the prover is unknown
+        pooled.prover.close();
+      }
+    }
+  }
+
+  /**
+   * Get the prover from the pool whose stack has the longest common prefix
+   * with the given formulas, or a new one if the pool is empty.
+   */
+  private PooledProver takeProver(List<BooleanFormula> conjuncts) {
+    PooledProver best = null;
+    int bestPrefixLength = -1;
+    for (PooledProver pooled : proverPool) {
+      int prefixLength = commonPrefixLength(pooled.stack, conjuncts);
+      if (prefixLength > bestPrefixLength) {
+        best = pooled;
+        bestPrefixLength = prefixLength;
+      }
+    }
+
+    if (best != null) {
+      proverPool.remove(best);
+      proverPoolHits++;
+      if (bestPrefixLength > 0) {
+        proverPrefixHits++;
+      }
+      return best;
+    }
+    proverPoolMisses++;
+    return new PooledProver(newProverEnvironment());
+  }
+
+  private void returnProver(PooledProver pooled) {
+    proverPool.addFirst(pooled);
+    while (proverPool.size() > proverPoolSize) {
+      proverPool.removeLast().prover.close();
+    }
+  }
+
+  private static int commonPrefixLength(List<BooleanFormula> a, List<BooleanFormula> b) {
+    int length = Math.min(a.size(), b.size());
+    for (int i = 0; i < length; i++) {
+      if (!a.get(i).equals(b.get(i))) {
+        return i;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Close all prover environments that are kept for reuse.
+   */
+  public void close() {
+    for (PooledProver pooled : proverPool) {
+      pooled.prover.close();
+    }
+    proverPool.clear();
+  }
+
   /**
    * Checks whether a => b.
    * The result is cached.
@@ -145,6 +316,11 @@ public class Solver {
       return true;
     }
 
+    if (useIncrementalProvers) {
+      // a is often the same for several checks
+      return isUnsat(ImmutableList.of(a, bfmgr.not(b)));
+    }
+
     BooleanFormula f = bfmgr.not(bfmgr.implication(a, b));
 
     return isUnsat(f);
@@ -167,4 +343,11 @@ public class Solver {
 
     unsatCache.put(unsat, true);
   }
+
+  /**
+   * Return the cache for satisfiability checks (for statistics).
+   */
+  public FormulaCache<BooleanFormula, Boolean> getUnsatCache() {
+    return unsatCache;
+  }
 }
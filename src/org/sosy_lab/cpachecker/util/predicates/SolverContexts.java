@@ -0,0 +1,402 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+
+import javax.annotation.Nullable;
+
+import org.sosy_lab.common.Appenders;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.cpachecker.core.ShutdownNotifier;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.FormulaManager;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.InterpolatingProverEnvironment;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.ProverEnvironment;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.view.FormulaManagerView;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Solver contexts for analyses that use formulas in several threads.
+ *
+ * Ownership model:
+ * <ul>
+ * <li>Solvers (and their formula managers, formulas, and prover environments)
+ *     are not thread-safe. Each {@link Context} has its own solver instance
+ *     and is owned by exactly one thread.</li>
+ * <li>The main context wraps the formula manager of the analysis and is owned
+ *     by the thread that created this object ({@link #getMainContext()}).
+ *     Worker contexts may only be used by threads created by a thread factory
+ *     from {@link #newWorkerThreadFactory(ThreadFactory)}
+ *     or {@link #newWorkerThreadFactory(ThreadFactory, int)}.
+ *     Such a thread is assigned a worker context on its first call to
+ *     {@link #getCurrentContext()}, and the context is released when the thread terminates.
+ *     So there need to be as many worker contexts as there are worker threads
+ *     (e.g., the size of a fixed thread pool).
+ *     All other threads get an {@link IllegalStateException}.</li>
+ * <li>Each use of a context by a thread that does not own it fails
+ *     with an {@link IllegalStateException}. In particular, a worker thread
+ *     cannot accidentally share a formula of the main context.</li>
+ * <li>Formulas must never be passed to another thread directly.
+ *     Instead, {@link Context#share(BooleanFormula)} creates a {@link SharedFormula},
+ *     which may be passed to other threads, and {@link Context#get(SharedFormula)}
+ *     returns the instance of a shared formula in the context of the current thread.</li>
+ * <li>Formulas are transferred between contexts as SMT-LIB2 strings.
+ *     Formulas that are transferred repeatedly (e.g., predicates) should be shared
+ *     with {@link Context#share(BooleanFormula)}: such a shared formula remembers
+ *     its instance in each context, and each context remembers the shared formulas
+ *     it created recently, so they are dumped and parsed only once per context.
+ *     Formulas that are used only once (e.g., block formulas or the formulas of a trace)
+ *     should be shared with {@link Context#shareOnce(BooleanFormula)},
+ *     such that they do not stay in the memory of every solver.</li>
+ * <li>{@link #close()} may only be called after all threads stopped using their contexts.</li>
+ * </ul>
+ */
+public final class SolverContexts implements AutoCloseable {
+
+  // number of shared formulas that each context remembers
+  private static final int SHARED_FORMULA_CACHE_SIZE = 10000;
+
+  /**
+   * A formula that can be passed between threads,
+   * and that can be instantiated in each context.
+   */
+  public static final class SharedFormula {
+
+    private final String dump;
+
+    // The context that created this shared formula, and the instance in this context
+    // (only accessed by the owner of this context).
+    private final Context origin;
+    private final BooleanFormula originInstance;
+
+    // The instance for each other context, each value is only accessed by the owner of the key.
+    // Null for formulas that are not cached, these are parsed again for each use.
+    private final @Nullable ConcurrentMap<Context, BooleanFormula> instances;
+
+    private SharedFormula(String pDump, Context pOrigin, BooleanFormula pOriginInstance,
+        boolean pCached) {
+      dump = pDump;
+      origin = pOrigin;
+      originInstance = pOriginInstance;
+      instances = pCached ? new ConcurrentHashMap<Context, BooleanFormula>(4) : null;
+    }
+
+    @Override
+    public String toString() {
+      return dump;
+    }
+  }
+
+  /**
+   * A solver instance that is owned by a single thread.
+   */
+  public static final class Context {
+
+    private final FormulaManagerView fmgr;
+    private final @Nullable FormulaManagerFactory factory;
+    private volatile @Nullable Thread owner;
+
+    private final Cache<BooleanFormula, SharedFormula> sharedFormulas =
+        CacheBuilder.newBuilder().maximumSize(SHARED_FORMULA_CACHE_SIZE).build();
+
+    private Context(FormulaManagerView pFmgr, @Nullable FormulaManagerFactory pFactory) {
+      fmgr = pFmgr;
+      factory = pFactory;
+    }
+
+    private void checkOwner() {
+      Thread current = Thread.currentThread();
+      if (owner != current) {
+        throw new IllegalStateException("Solver context of thread " + owner
+            + " used by thread " + current.getName());
+      }
+    }
+
+    public FormulaManagerView getFormulaManager() {
+      checkOwner();
+      return fmgr;
+    }
+
+    /**
+     * Create a new prover environment of the solver of this context.
+     * The main context has no solver factory, its owner should use the
+     * {@link Solver} of the analysis instead.
+     */
+    public ProverEnvironment newProverEnvironment() {
+      checkOwner();
+      checkState(factory != null, "The main context does not provide prover environments");
+      return factory.newProverEnvironment(false, false);
+    }
+
+    /**
+     * Create a new interpolating prover environment of the solver of this context.
+     * @see #newProverEnvironment()
+     */
+    public InterpolatingProverEnvironment<?> newProverEnvironmentWithInterpolation() {
+      checkOwner();
+      checkState(factory != null, "The main context does not provide prover environments");
+      return factory.newProverEnvironmentWithInterpolation(false);
+    }
+
+    /**
+     * Make a formula of this context available for other contexts,
+     * and cache it in this context and in all contexts that use it.
+     * This should be used for formulas that are transferred repeatedly,
+     * like predicates.
+     */
+    public SharedFormula share(BooleanFormula f) {
+      checkOwner();
+      SharedFormula result = sharedFormulas.getIfPresent(f);
+      if (result == null) {
+        result = new SharedFormula(dump(f), this, f, true);
+        sharedFormulas.put(f, result);
+      }
+      return result;
+    }
+
+    /**
+     * Make a formula of this context available for other contexts without caching it,
+     * i.e., each call to {@link #get(SharedFormula)} in another context parses it again.
+     * This should be used for formulas that are transferred only once,
+     * like block formulas or the formulas of a trace.
+     */
+    public SharedFormula shareOnce(BooleanFormula f) {
+      checkOwner();
+      return new SharedFormula(dump(f), this, f, false);
+    }
+
+    private String dump(BooleanFormula f) {
+      StringBuilder dump = new StringBuilder();
+      Appenders.appendTo(dump, fmgr.dumpFormula(f));
+      return dump.toString();
+    }
+
+    /**
+     * Get the instance of a shared formula in this context.
+     * @throws IllegalArgumentException If the solver of this context cannot parse the formula.
+     */
+    public BooleanFormula get(SharedFormula f) {
+      checkOwner();
+      if (f.origin == this) {
+        return f.originInstance;
+      }
+      if (f.instances == null) {
+        return fmgr.parse(f.dump);
+      }
+      BooleanFormula result = f.instances.get(this);
+      if (result == null) {
+        result = fmgr.parse(f.dump);
+        f.instances.put(this, result);
+      }
+      return result;
+    }
+  }
+
+  // value of workerIndex for threads that may use any worker context
+  private static final int ANY_WORKER_CONTEXT = -1;
+
+  private final Context mainContext;
+  private final List<Context> workerContexts;
+  private final Deque<Context> freeContexts;
+  private final ThreadLocal<Context> currentContext = new ThreadLocal<>();
+
+  // The worker context that the current thread may use (or ANY_WORKER_CONTEXT),
+  // null for threads that were not created by one of our thread factories.
+  private final ThreadLocal<Integer> workerIndex = new ThreadLocal<>();
+
+  /**
+   * Create the contexts.
+   * The current thread becomes the owner of the main context.
+   *
+   * @param pWorkerContexts The number of contexts for other threads.
+   * @param pMainFmgr The formula manager of the analysis, used for the main context.
+   */
+  public SolverContexts(int pWorkerContexts, FormulaManagerView pMainFmgr,
+      Configuration config, LogManager logger, ShutdownNotifier pShutdownNotifier)
+          throws InvalidConfigurationException {
+    this(pMainFmgr, Collections.nCopies(pWorkerContexts, config), logger, pShutdownNotifier);
+  }
+
+  /**
+   * Create the contexts, with one worker context for each given configuration
+   * (e.g., in order to use different solvers).
+   * The current thread becomes the owner of the main context.
+   *
+   * @param pMainFmgr The formula manager of the analysis, used for the main context.
+   * @param pWorkerConfigs The configurations for the solvers of the worker contexts.
+   */
+  public SolverContexts(FormulaManagerView pMainFmgr, List<Configuration> pWorkerConfigs,
+      LogManager logger, ShutdownNotifier pShutdownNotifier)
+          throws InvalidConfigurationException {
+    mainContext = new Context(pMainFmgr, null);
+    mainContext.owner = Thread.currentThread();
+    currentContext.set(mainContext);
+
+    workerContexts = new ArrayList<>(pWorkerConfigs.size());
+    for (Configuration config : pWorkerConfigs) {
+      FormulaManagerFactory factory = new FormulaManagerFactory(config, logger, pShutdownNotifier);
+      FormulaManagerView fmgr = new FormulaManagerView(factory.getFormulaManager(), config, logger);
+      workerContexts.add(new Context(fmgr, factory));
+    }
+    freeContexts = new ArrayDeque<>(workerContexts);
+  }
+
+  /**
+   * Return the main context.
+   * @throws IllegalStateException If the current thread is not the owner of the main context.
+   */
+  public Context getMainContext() {
+    mainContext.checkOwner();
+    return mainContext;
+  }
+
+  /**
+   * Return the context of the current thread.
+   * For worker threads, a free worker context is assigned
+   * if the thread has none yet.
+   * @throws IllegalStateException If the current thread is neither the owner of the main context
+   * nor created by one of the thread factories of this object,
+   * or if the worker context for this thread is already assigned to other threads.
+   */
+  public Context getCurrentContext() {
+    Context context = currentContext.get();
+    if (context == null) {
+      Integer index = workerIndex.get();
+      checkState(index != null, "Thread %s is not allowed to use the solver contexts", Thread.currentThread().getName());
+
+      synchronized (freeContexts) {
+        if (index == ANY_WORKER_CONTEXT) {
+          context = freeContexts.poll();
+        } else {
+          context = workerContexts.get(index);
+          if (!freeContexts.remove(context)) {
+            context = null;
+          }
+        }
+      }
+      checkState(context != null, "No solver context left for thread %s", Thread.currentThread().getName());
+      context.owner = Thread.currentThread();
+      currentContext.set(context);
+    }
+    return context;
+  }
+
+  /**
+   * Create a thread factory for threads that may use any of the worker contexts.
+   * The context of a thread is returned to the free contexts when the thread terminates.
+   * @param pDelegate The factory that actually creates the threads.
+   */
+  public ThreadFactory newWorkerThreadFactory(ThreadFactory pDelegate) {
+    return new WorkerThreadFactory(pDelegate, ANY_WORKER_CONTEXT);
+  }
+
+  /**
+   * Create a thread factory for threads that use the worker context with the given index
+   * (for threads that need a specific solver).
+   * The context is released when the thread terminates,
+   * so this factory should be used for a single-thread executor.
+   * @param pDelegate The factory that actually creates the threads.
+   * @param pIndex The index of the worker context.
+   */
+  public ThreadFactory newWorkerThreadFactory(ThreadFactory pDelegate, int pIndex) {
+    checkElementIndex(pIndex, workerContexts.size());
+    return new WorkerThreadFactory(pDelegate, pIndex);
+  }
+
+  private void releaseCurrentContext() {
+    Context context = currentContext.get();
+    if (context != null) {
+      currentContext.remove();
+      context.owner = null;
+      synchronized (freeContexts) {
+        freeContexts.add(context);
+      }
+    }
+  }
+
+  private class WorkerThreadFactory implements ThreadFactory {
+
+    private final ThreadFactory delegate;
+    private final int index;
+
+    private WorkerThreadFactory(ThreadFactory pDelegate, int pIndex) {
+      delegate = pDelegate;
+      index = pIndex;
+    }
+
+    @Override
+    public Thread newThread(final Runnable pRunnable) {
+      return delegate.newThread(new Runnable() {
+        @Override
+        public void run() {
+          workerIndex.set(index);
+          try {
+            pRunnable.run();
+          } finally {
+            releaseCurrentContext();
+            workerIndex.remove();
+          }
+        }
+      });
+    }
+  }
+
+  public int getNumberOfWorkerContexts() {
+    return workerContexts.size();
+  }
+
+  /**
+   * Close the formula managers of the worker contexts
+   * (the main context belongs to the analysis and is not closed).
+   * Note that this only closes formula managers that implement {@link AutoCloseable}
+   * (currently only the one for MathSAT5). The instances of SMTInterpol, Z3, and Princess
+   * are not released by this method: the Java-based solvers are freed by the garbage collector
+   * once this object is not referenced anymore, but the native context of Z3 is never deleted,
+   * so worker contexts with Z3 keep their memory until the JVM terminates.
+   */
+  @Override
+  public void close() throws Exception {
+    for (Context context : workerContexts) {
+      FormulaManager mgr = context.factory.getFormulaManager();
+      if (mgr instanceof AutoCloseable) {
+        ((AutoCloseable)mgr).close();
+      }
+    }
+  }
+}
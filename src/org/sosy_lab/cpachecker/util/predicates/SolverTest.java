@@ -25,6 +25,8 @@ package org.sosy_lab.cpachecker.util.predicates;
 
 import static org.junit.Assert.*;
 
+import java.util.List;
+
 import org.junit.Test;
 import org.sosy_lab.common.configuration.Builder;
 import org.sosy_lab.common.configuration.Configuration;
@@ -44,6 +46,10 @@ import org.sosy_lab.cpachecker.util.predicates.interfaces.NumeralFormula.Integer
 import org.sosy_lab.cpachecker.util.predicates.interfaces.NumeralFormula.RationalFormula;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.NumeralFormulaManager;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.ProverEnvironment;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.view.FormulaManagerView;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.view.NumeralFormulaManagerView;
+
+import com.google.common.collect.ImmutableList;
 
 public class SolverTest {
 
@@ -342,4 +348,136 @@ public class SolverTest {
     assertFalse(stack2.isUnsat());
     assertFalse(stack1.isUnsat());
   }
+
+  @Test
+  public void incrementalSolverTestSMTINTERPOL() throws Exception {
+    incrementalSolverTest("SMTINTERPOL");
+  }
+
+  /**
+   * Check that {@link Solver} returns the same results with and without
+   * incremental provers for a sequence of checks with shared prefixes,
+   * as they occur when a path is extended and shortened again.
+   */
+  private void incrementalSolverTest(String solver) throws Exception {
+    Configuration config = Configuration.builder()
+        .setOption("cpa.predicate.solver", solver)
+        .setOption("cpa.predicate.solver.incremental.poolSize", "2")
+        .build();
+    factory = new FormulaManagerFactory(config, logger, ShutdownNotifier.create());
+    FormulaManagerView fmgr = new FormulaManagerView(factory.getFormulaManager(), config, logger);
+
+    Configuration incrementalConfig = Configuration.builder()
+        .copyFrom(config)
+        .setOption("cpa.predicate.solver.incremental", "true")
+        .build();
+    Solver incrementalSolver = new Solver(fmgr, factory, incrementalConfig);
+    Solver plainSolver = new Solver(fmgr, factory, config);
+
+    NumeralFormulaManagerView<IntegerFormula, IntegerFormula> nmgr = fmgr.getIntegerFormulaManager();
+    int i = index++;
+    IntegerFormula x = nmgr.makeVariable("x" + i);
+    IntegerFormula y = nmgr.makeVariable("y" + i);
+    IntegerFormula z = nmgr.makeVariable("z" + i);
+    IntegerFormula zero = nmgr.makeNumber(0);
+
+    BooleanFormula a = nmgr.greaterThan(x, zero);
+    BooleanFormula b = nmgr.greaterThan(y, x);
+    BooleanFormula c = nmgr.lessThan(y, zero);
+    BooleanFormula d = nmgr.equal(z, y);
+    BooleanFormula e = nmgr.lessThan(x, zero);
+
+    List<List<BooleanFormula>> checks = ImmutableList.<List<BooleanFormula>>of(
+        ImmutableList.of(a, b),
+        ImmutableList.of(a, b, c),
+        ImmutableList.of(a, b, d),
+        ImmutableList.of(a, b, d, c),
+        ImmutableList.of(a, e),
+        ImmutableList.of(a),
+        ImmutableList.of(e, b),
+        ImmutableList.of(e, b, c),
+        ImmutableList.of(a, b, d, e));
+    List<Boolean> expected = ImmutableList.of(
+        false, true, false, true, true, false, false, false, true);
+
+    try {
+      for (int j = 0; j < checks.size(); j++) {
+        List<BooleanFormula> conjuncts = checks.get(j);
+        assertEquals("check " + j, expected.get(j), plainSolver.isUnsat(conjuncts));
+        assertEquals("check " + j, expected.get(j), incrementalSolver.isUnsat(conjuncts));
+      }
+    } finally {
+      incrementalSolver.close();
+      plainSolver.close();
+    }
+
+    assertTrue(incrementalSolver.proverPrefixHits > 0);
+    assertTrue(incrementalSolver.reusedAssertions > 0);
+    assertEquals(0, plainSolver.proverPoolHits + plainSolver.proverPoolMisses);
+  }
+
+  @Test
+  public void streamingAllSatTestSMTINTERPOL() throws Exception {
+    streamingAllSatTest("SMTINTERPOL");
+  }
+
+  private void streamingAllSatTest(String solver) throws Exception {
+    init(solver);
+
+    int i = index++;
+    BooleanFormula a = bmgr.makeVariable("allsat_a" + i);
+    BooleanFormula b = bmgr.makeVariable("allsat_b" + i);
+    List<BooleanFormula> important = ImmutableList.of(a, b);
+
+    try (ProverEnvironment stack = factory.newProverEnvironment(true, true)) {
+      stack.push(bmgr.or(a, b));
+
+      // complete enumeration
+      ModelCollector all = new ModelCollector(Integer.MAX_VALUE);
+      assertTrue(stack.allSat(important, all));
+      assertEquals(3, all.models);
+
+      // early stop after the first model
+      ModelCollector first = new ModelCollector(1);
+      assertFalse(stack.allSat(important, first));
+      assertEquals(1, first.models);
+
+      // the models blocked during enumeration were removed from the stack again
+      assertFalse(stack.isUnsat());
+      stack.push(bmgr.and(a, b));
+      assertFalse(stack.isUnsat());
+      stack.pop();
+      stack.push(bmgr.not(b));
+      assertFalse(stack.isUnsat());
+      stack.pop();
+
+      ModelCollector again = new ModelCollector(Integer.MAX_VALUE);
+      assertTrue(stack.allSat(important, again));
+      assertEquals(3, again.models);
+
+      stack.push(bmgr.and(bmgr.not(a), bmgr.not(b)));
+      assertTrue(stack.isUnsat());
+      stack.pop();
+    }
+  }
+
+  /**
+   * Counts the models of an allSat call and stops after a given number of models.
+   */
+  private static class ModelCollector implements ProverEnvironment.AllSatCallback {
+
+    private final int maxModels;
+    private int models = 0;
+
+    private ModelCollector(int pMaxModels) {
+      maxModels = pMaxModels;
+    }
+
+    @Override
+    public boolean apply(List<BooleanFormula> pPositive, List<BooleanFormula> pNegative) {
+      assertEquals(2, pPositive.size() + pNegative.size());
+      models++;
+      return models < maxModels;
+    }
+  }
 }
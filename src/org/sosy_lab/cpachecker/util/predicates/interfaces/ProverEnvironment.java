@@ -86,9 +86,36 @@ public interface ProverEnvironment extends AutoCloseable {
   AllSatResult allSat(Collection<BooleanFormula> important,
                       RegionCreator mgr, Timer solveTime, NestedTimer enumTime) throws InterruptedException;
 
+  /**
+   * Enumerate the satisfying assignments of the current environment with regards
+   * to a subset of terms, and pass each of them to a callback as soon as it is found.
+   * The enumeration stops early if the callback returns <code>false</code>,
+   * so the caller can bound the effort for formulas with many models.
+   *
+   * @param important A set of variables appearing in f. Only these variables will appear in the models.
+   * @param callback The callback that receives the models.
+   * @return <code>true</code> if all models were enumerated,
+   *         <code>false</code> if the enumeration was stopped by the callback.
+   * @throws InterruptedException
+   */
+  boolean allSat(Collection<BooleanFormula> important, AllSatCallback callback) throws InterruptedException;
+
   @Override
   void close();
 
+  interface AllSatCallback {
+
+    /**
+     * Process one satisfying assignment of the important formulas.
+     * If the solver reports that there are infinitely many models,
+     * this is called once with two empty lists (i.e., with the model "true").
+     * @param positive The important formulas that are true in the model.
+     * @param negative The important formulas that are false in the model.
+     * @return Whether more models should be enumerated.
+     */
+    boolean apply(List<BooleanFormula> positive, List<BooleanFormula> negative) throws InterruptedException;
+  }
+
   interface AllSatResult {
 
     /**
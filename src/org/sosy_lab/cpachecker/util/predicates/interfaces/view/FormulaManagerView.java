@@ -39,6 +39,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 
+import javax.annotation.Nullable;
+
 import org.sosy_lab.common.Appender;
 import org.sosy_lab.common.Pair;
 import org.sosy_lab.common.configuration.Configuration;
@@ -936,6 +938,93 @@ public class FormulaManagerView {
     return unsafeManager.typeFormula(manager.getFormulaType(f), result);
   }
 
+  /**
+   * Add an offset to the SSA index of each instantiated variable
+   * (and each instantiated UF that can be an lvalue) in a formula.
+   * Variables without an entry in the map keep their index.
+   * This allows to re-use a formula that was created for some SSAMap
+   * for another SSAMap whose indices differ by a constant per variable.
+   */
+  public <T extends Formula> T shiftIndices(T pF, Map<String, Integer> pOffsets) {
+    return wrapInView(myShiftIndices(extractFromView(pF), pOffsets));
+  }
+
+  private <T extends Formula> T myShiftIndices(T f, Map<String, Integer> offsets) {
+    UnsafeFormulaManager unsafeManager = manager.getUnsafeFormulaManager();
+    Deque<Formula> toProcess = new ArrayDeque<>();
+    Map<Formula, Formula> cache = new HashMap<>();
+
+    toProcess.push(f);
+    while (!toProcess.isEmpty()) {
+      final Formula tt = toProcess.peek();
+      if (cache.containsKey(tt)) {
+        toProcess.pop();
+        continue;
+      }
+
+      if (unsafeManager.isVariable(tt)) {
+        toProcess.pop();
+        String newName = shiftIndex(unsafeManager.getName(tt), offsets);
+        cache.put(tt, newName == null ? tt : unsafeManager.replaceName(tt, newName));
+
+      } else {
+        boolean childrenDone = true;
+        int arity = unsafeManager.getArity(tt);
+        Formula[] newargs = new Formula[arity];
+        for (int i = 0; i < newargs.length; ++i) {
+          Formula c = unsafeManager.getArg(tt, i);
+          Formula newC = cache.get(c);
+          if (newC != null) {
+            newargs[i] = newC;
+          } else {
+            toProcess.push(c);
+            childrenDone = false;
+          }
+        }
+
+        if (childrenDone) {
+          toProcess.pop();
+          Formula newt;
+
+          String newName = null;
+          if (unsafeManager.isUF(tt)) {
+            String name = unsafeManager.getName(tt);
+            assert name != null;
+            if (ufCanBeLvalue(name)) {
+              newName = shiftIndex(name, offsets);
+            }
+          }
+
+          if (newName != null) {
+            newt = unsafeManager.replaceArgsAndName(tt, newName, newargs);
+          } else {
+            newt = unsafeManager.replaceArgs(tt, newargs);
+          }
+          cache.put(tt, newt);
+        }
+      }
+    }
+
+    Formula result = cache.get(f);
+    assert result != null;
+    return unsafeManager.typeFormula(manager.getFormulaType(f), result);
+  }
+
+  /**
+   * Return the name with shifted index, or null if the name does not change.
+   */
+  private static @Nullable String shiftIndex(String instantiatedName, Map<String, Integer> offsets) {
+    Pair<String, Integer> name = parseName(instantiatedName);
+    if (name.getSecond() == null) {
+      return null;
+    }
+    Integer offset = offsets.get(name.getFirst());
+    if (offset == null || offset == 0) {
+      return null;
+    }
+    return makeName(name.getFirst(), name.getSecond() + offset);
+  }
+
   public Collection<BooleanFormula> extractAtoms(BooleanFormula f, boolean splitArithEqualities, boolean conjunctionsOnly) {
     Collection<BooleanFormula> unwrapped = myExtractAtoms(extractFromView(f), splitArithEqualities, conjunctionsOnly);
 
@@ -1092,6 +1181,38 @@ public class FormulaManagerView {
     return manager.dumpFormula(extractFromView(pT));
   }
 
+  /**
+   * Compute the number of distinct nodes in the DAG of a formula
+   * (shared sub-formulas are counted only once).
+   */
+  public int getDagSize(Formula f) {
+    return myGetDagSize(extractFromView(f));
+  }
+
+  private int myGetDagSize(Formula f) {
+    UnsafeFormulaManager unsafeManager = manager.getUnsafeFormulaManager();
+    Deque<Formula> toProcess = new ArrayDeque<>();
+    Set<Formula> seen = new HashSet<>();
+
+    toProcess.push(f);
+    seen.add(f);
+    while (!toProcess.isEmpty()) {
+      final Formula t = toProcess.pop();
+
+      if (!unsafeManager.isVariable(t)) {
+        int args = unsafeManager.getArity(t);
+        for (int i = 0; i < args; ++i) {
+          Formula arg = unsafeManager.getArg(t, i);
+          if (seen.add(arg)) {
+            toProcess.push(arg);
+          }
+        }
+      }
+    }
+
+    return seen.size();
+  }
+
   public boolean checkSyntacticEntails(Formula leftFormula, Formula rightFormula) {
     return myCheckSyntacticEntails(extractFromView(leftFormula), extractFromView(rightFormula));
   }
@@ -0,0 +1,146 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates.interpolation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
+
+/**
+ * A prefix tree of the formulas of counterexample traces, in the order in which
+ * they are given to the solver. The edges of the tree are labeled with the ids
+ * of the abstraction states along the traces, and each node stores the formula
+ * of its state, so a node represents the conjunction of the formulas on its path.
+ *
+ * The tree remembers which prefixes were found to be satisfiable,
+ * such that an incremental feasibility check of a later trace
+ * does not need to check them again, even if another trace was checked in between.
+ *
+ * The tree is cleared when it grows larger than a given number of nodes.
+ */
+final class CounterexamplePrefixTree {
+
+  static final class Node {
+
+    private final @Nullable BooleanFormula formula;
+    private final Map<Integer, Node> children = new HashMap<>();
+
+    // the time of the satisfiability check that found this prefix to be satisfiable, or -1
+    private long satCheckTime = -1;
+
+    private Node(@Nullable BooleanFormula pFormula) {
+      formula = pFormula;
+    }
+
+    boolean isKnownSatisfiable() {
+      return satCheckTime >= 0;
+    }
+
+    /**
+     * Return the time (in nanoseconds) that was needed to find this prefix satisfiable.
+     */
+    long getSatCheckTime() {
+      checkArgument(isKnownSatisfiable());
+      return satCheckTime;
+    }
+
+    void setSatisfiable(long pSatCheckTime) {
+      satCheckTime = Math.max(pSatCheckTime, 0);
+    }
+  }
+
+  private final int maxSize;
+
+  private Node root = new Node(null);
+  private int size = 1;
+
+  CounterexamplePrefixTree(int pMaxSize) {
+    checkArgument(pMaxSize > 0);
+    maxSize = pMaxSize;
+  }
+
+  /**
+   * Return the node for the empty prefix.
+   * This may clear the tree if it has grown too large,
+   * so it should be called once at the beginning of each trace.
+   */
+  Node getRoot() {
+    if (size > maxSize) {
+      root = new Node(null);
+      size = 1;
+    }
+    return root;
+  }
+
+  /**
+   * Return the node for the prefix of the given node extended by the given formula,
+   * creating it if necessary.
+   * If the state was previously seen with a different formula,
+   * the old subtree is replaced (and no longer counted in {@link #size()}).
+   *
+   * @param parent The node of the prefix to extend.
+   * @param stateId The id of the abstraction state at the end of the formula.
+   * @param formula The formula of the block.
+   */
+  Node getChild(Node parent, int stateId, BooleanFormula formula) {
+    Node child = parent.children.get(stateId);
+    if (child == null || !formula.equals(child.formula)) {
+      if (child != null) {
+        size -= countNodes(child);
+      }
+      child = new Node(formula);
+      parent.children.put(stateId, child);
+      size++;
+    }
+    return child;
+  }
+
+  private static int countNodes(Node subtreeRoot) {
+    int count = 0;
+    Deque<Node> waitlist = new ArrayDeque<>();
+    waitlist.push(subtreeRoot);
+    while (!waitlist.isEmpty()) {
+      Node node = waitlist.pop();
+      count++;
+      for (Node child : node.children.values()) {
+        waitlist.push(child);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Return the number of nodes in the tree, including the root.
+   */
+  int size() {
+    return size;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates.interpolation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
+import org.sosy_lab.cpachecker.util.predicates.interpolation.CounterexamplePrefixTree.Node;
+
+public class CounterexamplePrefixTreeTest {
+
+  private CounterexamplePrefixTree tree;
+
+  // formulas are only compared with equals(), so distinct objects suffice
+  private final BooleanFormula f1 = new BooleanFormula() {};
+  private final BooleanFormula f2 = new BooleanFormula() {};
+  private final BooleanFormula f3 = new BooleanFormula() {};
+
+  @Before
+  public void setUp() {
+    tree = new CounterexamplePrefixTree(5);
+  }
+
+  @Test
+  public void testSharedPrefix() {
+    Node root = tree.getRoot();
+    Node a = tree.getChild(root, 1, f1);
+    Node b = tree.getChild(a, 2, f2);
+    assertEquals(3, tree.size());
+
+    // the same prefix again
+    assertSame(root, tree.getRoot());
+    assertSame(a, tree.getChild(root, 1, f1));
+    assertSame(b, tree.getChild(a, 2, f2));
+    assertEquals(3, tree.size());
+
+    // a different extension of the same prefix
+    Node c = tree.getChild(a, 3, f3);
+    assertNotSame(b, c);
+    assertEquals(4, tree.size());
+  }
+
+  @Test
+  public void testSatisfiablePrefix() {
+    Node a = tree.getChild(tree.getRoot(), 1, f1);
+    assertFalse(a.isKnownSatisfiable());
+
+    a.setSatisfiable(42);
+    assertTrue(a.isKnownSatisfiable());
+    assertEquals(42, a.getSatCheckTime());
+
+    // the information is kept for later traces
+    assertTrue(tree.getChild(tree.getRoot(), 1, f1).isKnownSatisfiable());
+  }
+
+  @Test
+  public void testReplacedSubtree() {
+    Node root = tree.getRoot();
+    Node a = tree.getChild(root, 1, f1);
+    a.setSatisfiable(0);
+    tree.getChild(tree.getChild(a, 2, f2), 3, f3);
+    assertEquals(4, tree.size());
+
+    // the state is seen with a different formula, so its whole subtree is replaced
+    Node newA = tree.getChild(root, 1, f2);
+    assertNotSame(a, newA);
+    assertFalse(newA.isKnownSatisfiable());
+    assertEquals(2, tree.size());
+    assertSame(newA, tree.getChild(root, 1, f2));
+  }
+
+  @Test
+  public void testClearedWhenTooLarge() {
+    Node root = tree.getRoot();
+    Node node = root;
+    for (int i = 0; i < 5; i++) {
+      node = tree.getChild(node, i, f1);
+      node.setSatisfiable(0);
+    }
+    assertEquals(6, tree.size());
+
+    // the tree is only cleared at the beginning of the next trace
+    Node newRoot = tree.getRoot();
+    assertNotSame(root, newRoot);
+    assertEquals(1, tree.size());
+    assertFalse(tree.getChild(newRoot, 0, f1).isKnownSatisfiable());
+  }
+}
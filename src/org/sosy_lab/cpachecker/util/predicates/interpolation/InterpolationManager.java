@@ -37,21 +37,27 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 
+import javax.annotation.Nullable;
+
 import org.sosy_lab.common.Appender;
 import org.sosy_lab.common.Classes.UnexpectedCheckedException;
 import org.sosy_lab.common.Pair;
 import org.sosy_lab.common.Triple;
 import org.sosy_lab.common.concurrency.Threads;
 import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.ConfigurationBuilder;
+import org.sosy_lab.common.configuration.IntegerOption;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.configuration.Option;
 import org.sosy_lab.common.configuration.Options;
@@ -77,6 +83,8 @@ import org.sosy_lab.cpachecker.exceptions.SolverException;
 import org.sosy_lab.cpachecker.util.AbstractStates;
 import org.sosy_lab.cpachecker.util.predicates.FormulaManagerFactory;
 import org.sosy_lab.cpachecker.util.predicates.Solver;
+import org.sosy_lab.cpachecker.util.predicates.SolverContexts;
+import org.sosy_lab.cpachecker.util.predicates.SolverContexts.SharedFormula;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.InterpolatingProverEnvironment;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.PathFormulaManager;
@@ -88,9 +96,12 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
+import com.google.common.collect.TreeMultiset;
 
 
 @Options(prefix="cpa.predicate.refinement")
@@ -102,6 +113,9 @@ public final class InterpolationManager {
   private final Timer cexAnalysisGetUsefulBlocksTimer = new Timer();
   private final Timer interpolantVerificationTimer = new Timer();
   private int reusedFormulasOnSolverStack = 0;
+  private int skippedPrefixSatChecks = 0;
+  private long savedPrefixSatCheckTime = 0;
+  private final Multiset<String> raceWinners = TreeMultiset.create(); // sorted for deterministic output
 
   public void printStatistics(PrintStream out, Result result, ReachedSet reached) {
     out.println("  Counterexample analysis:            " + cexAnalysisTimer + " (Max: " + cexAnalysisTimer.getMaxTime().formatAs(TimeUnit.SECONDS) + ", Calls: " + cexAnalysisTimer.getNumberOfIntervals() + ")");
@@ -112,10 +126,16 @@ public final class InterpolationManager {
     if (reuseInterpolationEnvironment && satCheckTimer.getNumberOfIntervals() > 0) {
       out.println("    Reused formulas on solver stack:  " + reusedFormulasOnSolverStack + " (Avg: " + div(reusedFormulasOnSolverStack, satCheckTimer.getNumberOfIntervals()) + ")");
     }
+    if (prefixTree != null) {
+      out.println("    Skipped sat checks of prefixes:   " + skippedPrefixSatChecks + " (saved solver time: " + TimeSpan.ofNanos(savedPrefixSatCheckTime).formatAs(TimeUnit.SECONDS) + ", cached prefixes: " + prefixTree.size() + ")");
+    }
     out.println("    Interpolant computation:          " + getInterpolantTimer);
     if (interpolantVerificationTimer.getNumberOfIntervals() > 0) {
       out.println("    Interpolant verification:         " + interpolantVerificationTimer);
     }
+    if (!raceWinners.isEmpty()) {
+      out.println("    Interpolation races won by:       " + raceWinners);
+    }
   }
 
 
@@ -128,6 +148,7 @@ public final class InterpolationManager {
 
   private final FormulaManagerFactory factory;
   private final Interpolator<?> interpolator;
+  private final @Nullable CounterexamplePrefixTree prefixTree;
 
   @Option(description="apply deletion-filter to the abstract counterexample, to get "
     + "a minimal set of blocks, before applying interpolation-based refinement")
@@ -175,8 +196,53 @@ public final class InterpolationManager {
   @Option(description="Use a single SMT solver environment for several interpolation queries")
   private boolean reuseInterpolationEnvironment = false;
 
+  @Option(name="cexPrefixCache",
+      description="Keep a prefix tree of the traces checked in counterexample analysis,"
+      + " keyed by the ids of the abstraction states, and skip the satisfiability checks"
+      + " of prefixes that are already known to be satisfiable (only with incrementalCexTraceCheck)."
+      + " This also enables reuseInterpolationEnvironment, such that only the formulas"
+      + " after the longest common prefix with the previous trace are pushed.")
+  private boolean usePrefixCache = false;
+
+  @Option(name="cexPrefixCache.maxSize",
+      description="maximum number of prefixes in the prefix tree, it is cleared when it grows larger")
+  @IntegerOption(min=1)
+  private int prefixCacheMaxSize = 100000;
+
+  @Option(name="race.directions",
+      description="Race several directions for counterexample analysis against each other"
+      + " (cf. cexTraceCheckDirection). Each direction is checked concurrently on its own"
+      + " solver instance, and the interpolants are selected according to race.selection.")
+  private Set<CexTraceAnalysisDirection> raceDirections = ImmutableSet.of();
+
+  @Option(name="race.solvers",
+      description="Race several solvers against each other for interpolation"
+      + " (e.g., MATHSAT5,SMTINTERPOL, default is the configured solver)."
+      + " Each solver is used with each direction from race.directions.")
+  private List<String> raceSolvers = ImmutableList.of();
+
+  @Option(name="race.selection",
+      description="Which interpolants to use from an interpolation race:"
+      + "\nFIRST: the interpolants of the first contender, the others are cancelled"
+      + "\nFEWEST_ATOMS: the interpolants with the fewest atoms of all contenders"
+      + "\nFEWEST_VARIABLES: the interpolants with the fewest variables of all contenders")
+  private RaceSelection raceSelection = RaceSelection.FIRST;
+  private static enum RaceSelection {
+    FIRST,
+    FEWEST_ATOMS,
+    FEWEST_VARIABLES,
+    ;
+  }
+
   private final ExecutorService executor;
 
+  private final List<RaceContender> raceContenders;
+
+  // Solver contexts and threads for the race contenders, created lazily by
+  // the thread that runs the counterexample analysis, which owns the main context.
+  private @Nullable SolverContexts raceContexts = null;
+  private @Nullable List<ExecutorService> raceExecutors = null;
+
 
   public InterpolationManager(
       FormulaManagerView pFmgr,
@@ -203,11 +269,58 @@ public final class InterpolationManager {
       executor = Executors.newSingleThreadExecutor(Threads.threadFactoryBuilder().setDaemon(true).build());
     }
 
+    if (usePrefixCache) {
+      reuseInterpolationEnvironment = true;
+      prefixTree = new CounterexamplePrefixTree(prefixCacheMaxSize);
+    } else {
+      prefixTree = null;
+    }
+
     if (reuseInterpolationEnvironment) {
       interpolator = new Interpolator<>();
     } else {
       interpolator = null;
     }
+
+    if (!raceDirections.isEmpty() || !raceSolvers.isEmpty()) {
+      if (getUsefulBlocks || wellScopedPredicates) {
+        throw new InvalidConfigurationException("Interpolation races cannot be used together with"
+            + " cpa.predicate.refinement.getUsefulBlocks or cpa.predicate.refinement.addWellScopedPredicates");
+      }
+      raceContenders = createRaceContenders(config);
+    } else {
+      raceContenders = ImmutableList.of();
+    }
+  }
+
+  /**
+   * Create one race contender for each combination of solver and direction.
+   */
+  private List<RaceContender> createRaceContenders(Configuration config) throws InvalidConfigurationException {
+    Set<CexTraceAnalysisDirection> directions = raceDirections.isEmpty() ? ImmutableSet.of(direction) : raceDirections;
+
+    ImmutableList.Builder<RaceContender> contenders = ImmutableList.builder();
+    if (raceSolvers.isEmpty()) {
+      for (CexTraceAnalysisDirection contenderDirection : directions) {
+        contenders.add(new RaceContender(contenderDirection.toString(), contenderDirection, config));
+      }
+
+    } else {
+      for (String raceSolver : raceSolvers) {
+        // each contender uses its solver also for interpolation,
+        // a separate interpolation solver would need formula translation
+        ConfigurationBuilder solverConfigBuilder = Configuration.builder()
+            .copyFrom(config)
+            .setOption("cpa.predicate.solver", raceSolver);
+        solverConfigBuilder.clearOption("cpa.predicate.interpolationSolver");
+        Configuration solverConfig = solverConfigBuilder.build();
+
+        for (CexTraceAnalysisDirection contenderDirection : directions) {
+          contenders.add(new RaceContender(contenderDirection + "/" + raceSolver, contenderDirection, solverConfig));
+        }
+      }
+    }
+    return contenders.build();
   }
 
   public Appender dumpCounterexample(CounterexampleTraceInfo cex) {
@@ -314,6 +427,14 @@ public final class InterpolationManager {
         }
       }
 
+      if (!raceContenders.isEmpty() && computeInterpolants) {
+        CounterexampleTraceInfo info = race(f);
+        if (info != null) {
+          return info;
+        }
+        // the trace is feasible, or all contenders failed
+      }
+
       final Interpolator<?> currentInterpolator;
       if (reuseInterpolationEnvironment) {
         currentInterpolator = checkNotNull(interpolator);
@@ -481,18 +602,20 @@ public final class InterpolationManager {
 
   /**
    * Put the list of formulas into the order in which they should be given to
-   * the solver, as defined by the {@link #direction} configuration option.
+   * the solver, as defined by the given direction
+   * (usually the {@link #direction} configuration option).
    * @param traceFormulas The list of formulas to check.
    * @return The same list of formulas in different order,
    *         and each formula has its position in the original list as third element of the pair.
    */
   private List<Triple<BooleanFormula, AbstractState, Integer>> orderFormulas(
-          final List<BooleanFormula> traceFormulas, final List<AbstractState> pAbstractionStates) {
+          final List<BooleanFormula> traceFormulas, final List<AbstractState> pAbstractionStates,
+          final CexTraceAnalysisDirection pDirection) {
 
     // In this list are all formulas together with their position in the original list
     ImmutableList.Builder<Triple<BooleanFormula, AbstractState, Integer>> orderedFormulas = ImmutableList.builder();
 
-    if (direction == CexTraceAnalysisDirection.ZIGZAG) {
+    if (pDirection == CexTraceAnalysisDirection.ZIGZAG) {
       int e = traceFormulas.size()-1;
       int s = 0;
       boolean fromStart = false;
@@ -504,7 +627,7 @@ public final class InterpolationManager {
       }
 
     } else {
-      final boolean backwards = direction == CexTraceAnalysisDirection.BACKWARDS;
+      final boolean backwards = pDirection == CexTraceAnalysisDirection.BACKWARDS;
       final int increment = backwards ? -1 : 1;
 
       for (int i = backwards ? traceFormulas.size()-1 : 0;
@@ -640,7 +763,7 @@ public final class InterpolationManager {
     return itp;
   }
 
-  private <T> void verifyInterpolants(List<BooleanFormula> interpolants, List<BooleanFormula> formulas, InterpolatingProverEnvironment<T> prover) throws SolverException, InterruptedException {
+  private void verifyInterpolants(List<BooleanFormula> interpolants, List<BooleanFormula> formulas) throws SolverException, InterruptedException {
     interpolantVerificationTimer.start();
     try {
 
@@ -784,6 +907,279 @@ public final class InterpolationManager {
     return fmgr.formatFormulaOutputFile("interpolation", cexAnalysisTimer.getNumberOfIntervals(), formula, index);
   }
 
+  /**
+   * Check a counterexample trace with all race contenders concurrently,
+   * each one on its own thread and solver instance.
+   * Depending on {@link #raceSelection}, the interpolants of the first contender
+   * or the best interpolants are returned, ties are broken by the order of the contenders.
+   * Contenders that are still running when the race is decided are cancelled
+   * before their next solver call.
+   *
+   * @param f The formulas of the trace.
+   * @return The interpolants for the trace, or null if the trace is feasible or all contenders failed.
+   */
+  private @Nullable CounterexampleTraceInfo race(List<BooleanFormula> f)
+      throws CPAException, InterruptedException {
+
+    if (raceContexts == null) {
+      startRaceContenders();
+    }
+
+    SolverContexts.Context mainContext = raceContexts.getMainContext();
+    List<SharedFormula> sharedFormulas = new ArrayList<>(f.size());
+    for (BooleanFormula formula : f) {
+      sharedFormulas.add(mainContext.shareOnce(formula));
+    }
+
+    Race race = new Race();
+    for (int i = 0; i < raceContenders.size(); i++) {
+      raceExecutors.get(i).execute(new RaceCheck(race, i, sharedFormulas));
+    }
+
+    RaceResult best = null;
+    try {
+      for (int i = 0; i < raceContenders.size(); i++) {
+        RaceResult result = race.results.take();
+        String name = raceContenders.get(result.contender).name;
+
+        if (result.failure instanceof Error) {
+          // as in the sequential interpolation, errors are not recovered from
+          throw (Error)result.failure;
+        }
+        if (result.failure != null) {
+          logger.logDebugException(result.failure, "Interpolation race contender " + name + " failed");
+          continue;
+        }
+
+        if (result.interpolants == null) {
+          logger.log(Level.FINEST, "Interpolation race contender", name, "found the trace to be feasible");
+          return null;
+        }
+
+        if (best == null
+            || result.metric < best.metric
+            || (result.metric == best.metric && result.contender < best.contender)) {
+          best = result;
+        }
+
+        if (raceSelection == RaceSelection.FIRST) {
+          break;
+        }
+      }
+    } finally {
+      race.finished = true;
+    }
+
+    shutdownNotifier.shutdownIfNecessary();
+
+    if (best == null) {
+      logger.log(Level.WARNING, "All contenders of the interpolation race failed, using the sequential interpolation.");
+      return null;
+    }
+
+    String winner = raceContenders.get(best.contender).name;
+    logger.log(Level.FINEST, "Interpolation race won by", winner);
+    raceWinners.add(winner);
+
+    List<BooleanFormula> interpolants = new ArrayList<>(best.interpolants.size());
+    for (SharedFormula itp : best.interpolants) {
+      interpolants.add(mainContext.get(itp));
+    }
+
+    if (verifyInterpolants) {
+      try {
+        verifyInterpolants(interpolants, f);
+      } catch (SolverException e) {
+        throw new CPAException("Interpolants of race contender " + winner + " are invalid: " + e.getMessage(), e);
+      }
+    }
+
+    return CounterexampleTraceInfo.infeasible(interpolants);
+  }
+
+  /**
+   * Release the solvers and threads of interpolation races.
+   * This instance may not be used for races afterwards.
+   */
+  public void close() {
+    if (raceExecutors != null) {
+      for (ExecutorService raceExecutor : raceExecutors) {
+        raceExecutor.shutdownNow();
+      }
+      try {
+        for (ExecutorService raceExecutor : raceExecutors) {
+          raceExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+      } catch (InterruptedException e) {
+        // solvers may still be in use, so we cannot close them
+        Thread.currentThread().interrupt();
+        return;
+      }
+      raceExecutors = null;
+    }
+
+    if (raceContexts != null) {
+      try {
+        raceContexts.close();
+      } catch (Exception e) {
+        Throwables.propagateIfPossible(e);
+        logger.logUserException(Level.WARNING, e, "Failed to close solvers of interpolation race");
+      }
+      raceContexts = null;
+    }
+  }
+
+  private void startRaceContenders() throws CPAException {
+    List<Configuration> configs = new ArrayList<>(raceContenders.size());
+    for (RaceContender contender : raceContenders) {
+      configs.add(contender.config);
+    }
+
+    try {
+      raceContexts = new SolverContexts(fmgr, configs, logger, shutdownNotifier);
+    } catch (InvalidConfigurationException e) {
+      throw new CPAException("Could not create solvers for interpolation race: " + e.getMessage(), e);
+    }
+
+    raceExecutors = new ArrayList<>(raceContenders.size());
+    for (int i = 0; i < raceContenders.size(); i++) {
+      // daemon threads, because close() is not called if the analysis is aborted
+      raceExecutors.add(Executors.newSingleThreadExecutor(raceContexts.newWorkerThreadFactory(
+          Threads.threadFactoryBuilder().setDaemon(true).setNameFormat("Interpolation race " + raceContenders.get(i).name).build(),
+          i)));
+    }
+  }
+
+  /**
+   * A combination of direction and solver configuration for interpolation races.
+   */
+  private static class RaceContender {
+
+    private final String name;
+    private final CexTraceAnalysisDirection direction;
+    private final Configuration config;
+
+    private RaceContender(String pName, CexTraceAnalysisDirection pDirection, Configuration pConfig) {
+      name = pName;
+      direction = pDirection;
+      config = pConfig;
+    }
+  }
+
+  /**
+   * The result of a race contender. The interpolants are null if the trace is feasible.
+   */
+  private static class RaceResult {
+
+    private final int contender;
+    private final @Nullable List<SharedFormula> interpolants;
+    private final int metric;
+    private final @Nullable Throwable failure;
+
+    private RaceResult(int pContender, @Nullable List<SharedFormula> pInterpolants, int pMetric,
+        @Nullable Throwable pFailure) {
+      contender = pContender;
+      interpolants = pInterpolants;
+      metric = pMetric;
+      failure = pFailure;
+    }
+  }
+
+  /**
+   * A single race, i.e., the check of one trace by all contenders.
+   */
+  private class Race {
+
+    private final BlockingQueue<RaceResult> results = new LinkedBlockingQueue<>();
+    private volatile boolean finished = false;
+
+    private void checkRunning() throws InterruptedException {
+      shutdownNotifier.shutdownIfNecessary();
+      if (finished) {
+        throw new InterruptedException("Interpolation race is already decided");
+      }
+    }
+  }
+
+  /**
+   * The check of a trace by one race contender, executed on the thread of this contender.
+   */
+  private class RaceCheck implements Runnable {
+
+    private final Race race;
+    private final int contender;
+    private final List<SharedFormula> sharedFormulas;
+
+    private RaceCheck(Race pRace, int pContender, List<SharedFormula> pSharedFormulas) {
+      race = pRace;
+      contender = pContender;
+      sharedFormulas = pSharedFormulas;
+    }
+
+    @Override
+    public void run() {
+      RaceResult result;
+      try {
+        race.checkRunning();
+        SolverContexts.Context context = raceContexts.getCurrentContext();
+
+        List<BooleanFormula> formulas = new ArrayList<>(sharedFormulas.size());
+        for (SharedFormula formula : sharedFormulas) {
+          formulas.add(context.get(formula));
+        }
+
+        try (InterpolatingProverEnvironment<?> itpProver = context.newProverEnvironmentWithInterpolation()) {
+          result = check(context, itpProver, formulas);
+        }
+
+      } catch (Throwable t) {
+        // always post a result, otherwise the main thread would wait forever
+        result = new RaceResult(contender, null, 0, t);
+      }
+      race.results.add(result);
+    }
+
+    private <T> RaceResult check(SolverContexts.Context context, InterpolatingProverEnvironment<T> itpProver,
+        List<BooleanFormula> formulas) throws InterruptedException {
+
+      List<Triple<BooleanFormula, AbstractState, Integer>> orderedFormulas = orderFormulas(formulas,
+          Collections.<AbstractState>nCopies(formulas.size(), null), raceContenders.get(contender).direction);
+
+      List<T> itpGroupsIds = new ArrayList<>(Collections.<T>nCopies(formulas.size(), null));
+      for (Triple<BooleanFormula, AbstractState, Integer> formula : orderedFormulas) {
+        race.checkRunning();
+        itpGroupsIds.set(formula.getThird(), itpProver.push(formula.getFirst()));
+      }
+
+      if (!itpProver.isUnsat()) {
+        return new RaceResult(contender, null, 0, null);
+      }
+
+      FormulaManagerView contextFmgr = context.getFormulaManager();
+      List<SharedFormula> interpolants = new ArrayList<>(itpGroupsIds.size() - 1);
+      int metric = 0;
+      for (int end_of_A = 0; end_of_A < itpGroupsIds.size() - 1; end_of_A++) {
+        race.checkRunning();
+        BooleanFormula itp = itpProver.getInterpolant(itpGroupsIds.subList(0, end_of_A + 1));
+
+        switch (raceSelection) {
+        case FEWEST_ATOMS:
+          metric += contextFmgr.extractAtoms(itp, false, false).size();
+          break;
+        case FEWEST_VARIABLES:
+          metric += contextFmgr.extractVariables(itp).size();
+          break;
+        default:
+          break;
+        }
+
+        interpolants.add(context.shareOnce(itp));
+      }
+
+      return new RaceResult(contender, interpolants, metric, null);
+    }
+  }
+
   /**
    * This class encapsulates the used SMT solver for interpolation,
    * and keeps track of the formulas that are currently on the solver stack.
@@ -802,6 +1198,9 @@ public final class InterpolationManager {
     private InterpolatingProverEnvironment<T> itpProver;
     private final List<Triple<BooleanFormula, AbstractState, T>> currentlyAssertedFormulas = new ArrayList<>();
 
+    // whether the last satisfiability check was skipped because of the prefix tree
+    private boolean lastPrefixCheckSkipped = false;
+
     Interpolator() {
       itpProver = newEnvironment();
     }
@@ -851,7 +1250,7 @@ public final class InterpolationManager {
         }
 
         // re-order formulas if needed
-        orderedFormulas = orderFormulas(f, pAbstractionStates);
+        orderedFormulas = orderFormulas(f, pAbstractionStates, direction);
         assert orderedFormulas.size() == f.size();
 
         // initialize all interpolation group ids with "null"
@@ -876,7 +1275,7 @@ public final class InterpolationManager {
         if (computeInterpolants) {
           List<BooleanFormula> interpolants = getInterpolants(itpProver, itpGroupsIds, orderedFormulas);
           if (verifyInterpolants) {
-            verifyInterpolants(interpolants, f, itpProver);
+            verifyInterpolants(interpolants, f);
           }
 
           if (logger.wouldBeLogged(Level.ALL)) {
@@ -924,6 +1323,10 @@ public final class InterpolationManager {
 
       int firstBadIndex = -1; // index of first mis-matching formula in both lists
 
+      // the node of the prefix tree for the formulas handled so far (null if not available)
+      CounterexamplePrefixTree.Node prefix = (prefixTree != null && incrementalCheck) ? prefixTree.getRoot() : null;
+      lastPrefixCheckSkipped = false;
+
       while (assertedIterator.hasNext()) {
         Triple<BooleanFormula, AbstractState, T> assertedFormula = assertedIterator.next();
 
@@ -939,6 +1342,7 @@ public final class InterpolationManager {
           @SuppressWarnings("unchecked")
           T itpGroupId = assertedFormula.getThird();
           itpGroupsIds.set(todoFormula.getThird(), itpGroupId);
+          prefix = getPrefix(prefix, todoFormula);
 
         } else {
           firstBadIndex = assertedIterator.previousIndex();
@@ -979,7 +1383,7 @@ public final class InterpolationManager {
       boolean isStillFeasible = true;
 
       if (incrementalCheck && !currentlyAssertedFormulas.isEmpty()) {
-        if (itpProver.isUnsat()) {
+        if (isPrefixUnsat(prefix)) {
           isStillFeasible = false;
         }
       }
@@ -995,9 +1399,10 @@ public final class InterpolationManager {
         T itpGroupId = itpProver.push(f);
         itpGroupsIds.set(index, itpGroupId);
         currentlyAssertedFormulas.add(Triple.of(f, state, itpGroupId));
+        prefix = getPrefix(prefix, p);
 
         if (incrementalCheck && isStillFeasible && !bfmgr.isTrue(f)) {
-          if (itpProver.isUnsat()) {
+          if (isPrefixUnsat(prefix)) {
             // We need to iterate through the full loop
             // to add all formulas, but this prevents us from doing further sat checks.
             isStillFeasible = false;
@@ -1010,12 +1415,49 @@ public final class InterpolationManager {
 
       if (incrementalCheck) {
         // we did unsat checks
+        if (isStillFeasible && lastPrefixCheckSkipped) {
+          // the solver needs a satisfiability check of the current stack, e.g., for the model
+          return itpProver.isUnsat();
+        }
         return !isStillFeasible;
       } else {
         return itpProver.isUnsat();
       }
     }
 
+    /**
+     * Return the node of the prefix tree for the given prefix extended by the given formula,
+     * or null if the prefix tree cannot be used for this trace.
+     */
+    private @Nullable CounterexamplePrefixTree.Node getPrefix(@Nullable CounterexamplePrefixTree.Node prefix,
+        Triple<BooleanFormula, AbstractState, Integer> formula) {
+      if (prefix == null || !(formula.getSecond() instanceof ARGState)) {
+        return null;
+      }
+      return prefixTree.getChild(prefix, ((ARGState)formula.getSecond()).getStateId(), formula.getFirst());
+    }
+
+    /**
+     * Check whether the formulas currently on the solver stack are unsatisfiable,
+     * unless the prefix tree already knows that they are satisfiable.
+     */
+    private boolean isPrefixUnsat(@Nullable CounterexamplePrefixTree.Node prefix) throws InterruptedException {
+      if (prefix != null && prefix.isKnownSatisfiable()) {
+        skippedPrefixSatChecks++;
+        savedPrefixSatCheckTime += prefix.getSatCheckTime();
+        lastPrefixCheckSkipped = true;
+        return false;
+      }
+
+      lastPrefixCheckSkipped = false;
+      long start = System.nanoTime();
+      boolean unsat = itpProver.isUnsat();
+      if (!unsat && prefix != null) {
+        prefix.setSatisfiable(System.nanoTime() - start);
+      }
+      return unsat;
+    }
+
     private void close() {
       itpProver.close();
       itpProver = null;
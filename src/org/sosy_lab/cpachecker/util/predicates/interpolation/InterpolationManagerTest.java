@@ -0,0 +1,188 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates.interpolation;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.common.log.TestLogManager;
+import org.sosy_lab.cpachecker.cfa.types.MachineModel;
+import org.sosy_lab.cpachecker.core.CPAcheckerResult.Result;
+import org.sosy_lab.cpachecker.core.ShutdownNotifier;
+import org.sosy_lab.cpachecker.util.VariableClassification;
+import org.sosy_lab.cpachecker.util.predicates.FormulaManagerFactory;
+import org.sosy_lab.cpachecker.util.predicates.Solver;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.FormulaManager;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.PathFormulaManager;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.view.BooleanFormulaManagerView;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.view.FormulaManagerView;
+import org.sosy_lab.cpachecker.util.predicates.pathformula.PathFormulaManagerImpl;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class InterpolationManagerTest {
+
+  private final LogManager logger = TestLogManager.getInstance();
+
+  private Configuration config;
+  private FormulaManagerFactory factory;
+  private FormulaManager __formulaManager;
+  private FormulaManagerView fmgr;
+  private BooleanFormulaManagerView bfmgr;
+  private PathFormulaManager pmgr;
+  private Solver solver;
+
+  // a -> b -> !b, the interpolants are unique up to equivalence: a, b
+  private List<BooleanFormula> infeasibleTrace;
+  private List<BooleanFormula> expectedInterpolants;
+
+  // a -> b -> b
+  private List<BooleanFormula> feasibleTrace;
+
+  @Before
+  public void setup() throws Exception {
+    config = Configuration.builder()
+        .setOption("cpa.predicate.solver", "smtinterpol") // only solver guaranteed on all platforms
+        .build();
+
+    factory = new FormulaManagerFactory(config, logger, ShutdownNotifier.create());
+    __formulaManager = factory.getFormulaManager();
+    fmgr = new FormulaManagerView(__formulaManager, config, logger);
+    bfmgr = fmgr.getBooleanFormulaManager();
+    solver = new Solver(fmgr, factory);
+    pmgr = new PathFormulaManagerImpl(fmgr, config, logger, ShutdownNotifier.create(),
+        MachineModel.LINUX32, Optional.<VariableClassification>absent(), false);
+
+    BooleanFormula a = bfmgr.makeVariable("a");
+    BooleanFormula b = bfmgr.makeVariable("b");
+    infeasibleTrace = ImmutableList.of(a, bfmgr.implication(a, b), bfmgr.not(b));
+    expectedInterpolants = ImmutableList.of(a, b);
+    feasibleTrace = ImmutableList.of(a, bfmgr.implication(a, b), b);
+  }
+
+  @After
+  public void closeFormulaManager() throws Exception {
+    if (__formulaManager instanceof AutoCloseable) {
+      ((AutoCloseable)__formulaManager).close();
+    }
+  }
+
+  private InterpolationManager createInterpolationManager(Map<String, String> options) throws Exception {
+    Configuration imgrConfig = Configuration.builder()
+        .copyFrom(config)
+        .setOptions(options)
+        .build();
+    return new InterpolationManager(fmgr, pmgr, solver, factory, imgrConfig,
+        ShutdownNotifier.create(), logger);
+  }
+
+  private void assertEquivalent(List<BooleanFormula> expected, List<BooleanFormula> actual) throws Exception {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertTrue("interpolant " + i + " is " + actual.get(i),
+          solver.isUnsat(bfmgr.not(bfmgr.equivalence(expected.get(i), actual.get(i)))));
+    }
+  }
+
+  private List<BooleanFormula> interpolateWithRace(InterpolationManager imgr) throws Exception {
+    try {
+      CounterexampleTraceInfo info = imgr.buildCounterexampleTrace(infeasibleTrace);
+      assertTrue(info.isSpurious());
+      return info.getInterpolants();
+    } finally {
+      imgr.close();
+    }
+  }
+
+  private static String getStatistics(InterpolationManager imgr) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    imgr.printStatistics(new PrintStream(out), Result.UNKNOWN, null);
+    return out.toString();
+  }
+
+  @Test
+  public void testSequential() throws Exception {
+    InterpolationManager imgr = createInterpolationManager(ImmutableMap.<String, String>of());
+    CounterexampleTraceInfo info = imgr.buildCounterexampleTrace(infeasibleTrace);
+    assertTrue(info.isSpurious());
+    assertEquivalent(expectedInterpolants, info.getInterpolants());
+  }
+
+  @Test
+  public void testRaceDirectionsFirst() throws Exception {
+    InterpolationManager imgr = createInterpolationManager(ImmutableMap.of(
+        "cpa.predicate.refinement.race.directions", "FORWARDS, BACKWARDS",
+        "cpa.predicate.refinement.race.selection", "FIRST"));
+    assertEquivalent(expectedInterpolants, interpolateWithRace(imgr));
+    assertTrue(getStatistics(imgr).contains("Interpolation races won by:"));
+  }
+
+  @Test
+  public void testRaceDirectionsFewestAtoms() throws Exception {
+    InterpolationManager imgr = createInterpolationManager(ImmutableMap.of(
+        "cpa.predicate.refinement.race.directions", "FORWARDS, BACKWARDS",
+        "cpa.predicate.refinement.race.selection", "FEWEST_ATOMS"));
+    assertEquivalent(expectedInterpolants, interpolateWithRace(imgr));
+    assertTrue(getStatistics(imgr).contains("Interpolation races won by:"));
+  }
+
+  @Test
+  public void testRaceContenderFailure() throws Exception {
+    // Princess cannot parse the formulas that are shared with it, so its contender fails
+    InterpolationManager imgr = createInterpolationManager(ImmutableMap.of(
+        "cpa.predicate.refinement.race.solvers", "SMTINTERPOL, PRINCESS",
+        "cpa.predicate.refinement.race.selection", "FEWEST_ATOMS"));
+    assertEquivalent(expectedInterpolants, interpolateWithRace(imgr));
+
+    String stats = getStatistics(imgr);
+    assertTrue(stats, stats.contains("FORWARDS/SMTINTERPOL"));
+    assertFalse(stats, stats.contains("FORWARDS/PRINCESS"));
+  }
+
+  @Test
+  public void testRaceFeasibleTrace() throws Exception {
+    InterpolationManager imgr = createInterpolationManager(ImmutableMap.of(
+        "cpa.predicate.refinement.race.directions", "FORWARDS, BACKWARDS",
+        "cpa.predicate.refinement.race.selection", "FEWEST_ATOMS"));
+    try {
+      CounterexampleTraceInfo info = imgr.buildCounterexampleTrace(feasibleTrace);
+      assertFalse(info.isSpurious());
+    } finally {
+      imgr.close();
+    }
+    assertFalse(getStatistics(imgr).contains("Interpolation races won by:"));
+  }
+}
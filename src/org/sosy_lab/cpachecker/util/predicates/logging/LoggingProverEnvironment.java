@@ -92,6 +92,14 @@ public class LoggingProverEnvironment implements ProverEnvironment {
     return asr;
   }
 
+  @Override
+  public boolean allSat(Collection<BooleanFormula> important, AllSatCallback callback)
+      throws InterruptedException {
+    boolean complete = wrapped.allSat(important, callback);
+    logger.log(Level.FINE, "allsat-complete:", complete);
+    return complete;
+  }
+
   @Override
   public void close() {
     wrapped.close();
@@ -0,0 +1,178 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.sosy_lab.common.io.Files;
+import org.sosy_lab.common.io.Path;
+import org.sosy_lab.common.log.LogManager;
+
+/**
+ * Records solver queries together with their result and run time in a file,
+ * such that they can be replayed later with {@link QueryReplay}.
+ *
+ * Each query starts with a line
+ * <code>; query &lt;number&gt; &lt;kind&gt; &lt;time in ns&gt; &lt;result&gt;</code>,
+ * followed by the formulas on the solver stack in the order in which they
+ * were pushed. Each formula is an SMT-LIB2 script (as dumped by the solver)
+ * and is preceded by a line <code>; formula</code>.
+ * For allSat queries, the result is unsat if there is no model,
+ * they are replayed as plain satisfiability checks.
+ *
+ * This class is thread-safe, the file is flushed after each query
+ * such that it is usable even if the analysis is killed.
+ * All prover environments of a run that record into the same file
+ * share one instance, which is obtained with {@link #open(Path, LogManager)}
+ * and has to be released with {@link #release()} when the prover environment is closed.
+ * The file is closed when the last user releases the recorder,
+ * and it is appended to (and the query numbers are continued)
+ * if it is opened again later.
+ */
+public class QueryRecorder {
+
+  static final String QUERY_PREFIX = "; query ";
+  static final String FORMULA_LINE = "; formula";
+
+  /** Satisfiability check in a {@link org.sosy_lab.cpachecker.util.predicates.interfaces.ProverEnvironment}. */
+  static final String KIND_SAT = "sat";
+
+  /** Satisfiability check in an {@link org.sosy_lab.cpachecker.util.predicates.interfaces.InterpolatingProverEnvironment}. */
+  static final String KIND_INTERPOLATION = "itp";
+
+  /** Model enumeration in a {@link org.sosy_lab.cpachecker.util.predicates.interfaces.ProverEnvironment}. */
+  static final String KIND_ALLSAT = "allsat";
+
+  static final String RESULT_UNSAT = "unsat";
+  static final String RESULT_SAT = "sat";
+
+  // the recorders that are currently in use, guarded by the class lock
+  private static final Map<File, QueryRecorder> recorders = new HashMap<>();
+
+  // number of recorded queries for each file that was opened before, guarded by the class lock
+  // (one entry per file, so this does not grow with the number of queries)
+  private static final Map<File, Integer> finishedFiles = new HashMap<>();
+
+  private final File file;
+  private final LogManager logger;
+  private Writer out;
+  private int queries;
+
+  // number of prover environments that use this recorder, guarded by the class lock
+  private int users = 0;
+
+  private QueryRecorder(File pFile, Writer pOut, int pQueries, LogManager pLogger) {
+    file = pFile;
+    out = pOut;
+    queries = pQueries;
+    logger = pLogger;
+  }
+
+  /**
+   * Get the recorder for a file for a new user.
+   * The file is created if it is opened for the first time,
+   * and appended to otherwise.
+   */
+  public static synchronized QueryRecorder open(Path pFile, LogManager pLogger) throws IOException {
+    File key = pFile.toFile().getAbsoluteFile();
+    QueryRecorder recorder = recorders.get(key);
+    if (recorder == null) {
+      Integer queries = finishedFiles.get(key);
+      Writer out;
+      if (queries == null) {
+        queries = 0;
+        out = Files.openOutputFile(pFile);
+      } else {
+        out = java.nio.file.Files.newBufferedWriter(key.toPath(), StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      }
+      recorder = new QueryRecorder(key, out, queries, pLogger);
+      recorders.put(key, recorder);
+    }
+    recorder.users++;
+    return recorder;
+  }
+
+  /**
+   * Signal that a user of this recorder does not record queries anymore.
+   * The file is closed after the last user released the recorder.
+   */
+  public void release() {
+    synchronized (QueryRecorder.class) {
+      assert users > 0;
+      users--;
+      if (users == 0) {
+        recorders.remove(file);
+        finishedFiles.put(file, getNumberOfQueries());
+        close();
+      }
+    }
+  }
+
+  synchronized void record(String kind, Iterable<String> formulas, long timeNanos, boolean unsat) {
+    if (out == null) {
+      return;
+    }
+    try {
+      out.append(QUERY_PREFIX).append(Integer.toString(queries++))
+         .append(' ').append(kind)
+         .append(' ').append(Long.toString(timeNanos))
+         .append(' ').append(unsat ? RESULT_UNSAT : RESULT_SAT)
+         .append('\n');
+      for (String formula : formulas) {
+        out.append(FORMULA_LINE).append('\n');
+        out.append(formula);
+        if (!formula.endsWith("\n")) {
+          out.append('\n');
+        }
+      }
+      out.flush();
+    } catch (IOException e) {
+      logger.logUserException(Level.WARNING, e, "Could not write solver query, recording is stopped");
+      close();
+    }
+  }
+
+  public synchronized int getNumberOfQueries() {
+    return queries;
+  }
+
+  private synchronized void close() {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        logger.logUserException(Level.WARNING, e, "Could not write solver queries");
+      }
+      out = null;
+    }
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates.logging;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.FileOption;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.configuration.converters.FileTypeConverter;
+import org.sosy_lab.common.log.BasicLogManager;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.cpachecker.core.ShutdownNotifier;
+import org.sosy_lab.cpachecker.util.predicates.FormulaManagerFactory;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.FormulaManager;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.InterpolatingProverEnvironment;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.ProverEnvironment;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Replays solver queries that were recorded with {@link QueryRecorder}
+ * (option cpa.predicate.solver.recordQueries) against one or more solvers,
+ * and reports the run time and the differences to the recorded results.
+ *
+ * Usage: <code>QueryReplay &lt;file&gt; [&lt;solver&gt; ...]</code>,
+ * where the solvers are given as for the option cpa.predicate.solver
+ * (default: all solvers).
+ */
+public class QueryReplay {
+
+  private static final List<String> ALL_SOLVERS = ImmutableList.of("MATHSAT5", "SMTINTERPOL", "Z3", "PRINCESS");
+
+  // queries that take longer than this factor times the recorded time are reported as slower
+  private static final int SLOWDOWN_FACTOR = 2;
+
+  private static class Query {
+    private final int number;
+    private final String kind;
+    private final long recordedTime;
+    private final boolean recordedUnsat;
+    private final List<String> formulas = new ArrayList<>();
+
+    private Query(int pNumber, String pKind, long pRecordedTime, boolean pRecordedUnsat) {
+      number = pNumber;
+      kind = pKind;
+      recordedTime = pRecordedTime;
+      recordedUnsat = pRecordedUnsat;
+    }
+  }
+
+  private static class SolverResult {
+    private long time = 0;
+    private long recordedTime = 0;
+    private int checked = 0;
+    private final List<Integer> differentResults = new ArrayList<>();
+    private final List<Integer> failed = new ArrayList<>();
+    private final List<Integer> slower = new ArrayList<>();
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Usage: QueryReplay <file> [<solver> ...]");
+      System.exit(1);
+    }
+
+    List<Query> queries = readQueries(new File(args[0]));
+    List<String> solvers = args.length > 1
+        ? Arrays.asList(args).subList(1, args.length)
+        : ALL_SOLVERS;
+
+    PrintStream out = System.out;
+    out.println("Replaying " + queries.size() + " queries from " + args[0]);
+    for (String solver : solvers) {
+      out.println();
+      out.println("Solver " + solver + ":");
+      SolverResult result;
+      try {
+        result = replay(solver, queries);
+      } catch (InvalidConfigurationException e) {
+        out.println("  not available: " + e.getMessage());
+        continue;
+      }
+      printResult(result, out);
+    }
+  }
+
+  private static List<Query> readQueries(File file) throws IOException {
+    List<Query> queries = new ArrayList<>();
+    Query current = null;
+    StringBuilder formula = null;
+
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(QueryRecorder.QUERY_PREFIX) || line.equals(QueryRecorder.FORMULA_LINE)) {
+          if (formula != null) {
+            current.formulas.add(formula.toString());
+            formula = null;
+          }
+          if (line.equals(QueryRecorder.FORMULA_LINE)) {
+            if (current == null) {
+              throw new IOException("Formula without query in " + file);
+            }
+            formula = new StringBuilder();
+          } else {
+            current = parseQueryLine(line);
+            queries.add(current);
+          }
+
+        } else if (formula != null) {
+          formula.append(line).append('\n');
+        }
+      }
+    }
+    if (formula != null) {
+      current.formulas.add(formula.toString());
+    }
+    return queries;
+  }
+
+  private static Query parseQueryLine(String line) throws IOException {
+    List<String> parts = Splitter.on(' ').splitToList(line.substring(QueryRecorder.QUERY_PREFIX.length()));
+    if (parts.size() != 4) {
+      throw new IOException("Invalid query line: " + line);
+    }
+    try {
+      return new Query(Integer.parseInt(parts.get(0)), parts.get(1),
+          Long.parseLong(parts.get(2)), parts.get(3).equals(QueryRecorder.RESULT_UNSAT));
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid query line: " + line, e);
+    }
+  }
+
+  private static SolverResult replay(String solver, List<Query> queries)
+      throws InvalidConfigurationException, InterruptedException {
+    Configuration outputConfig = Configuration.builder()
+        .setOption("output.disable", "true")
+        .build();
+    Configuration config = Configuration.builder()
+        .setOption("cpa.predicate.solver", solver)
+        .addConverter(FileOption.class, new FileTypeConverter(outputConfig))
+        .build();
+    LogManager logger = new BasicLogManager(config);
+
+    FormulaManagerFactory factory;
+    try {
+      factory = new FormulaManagerFactory(config, logger, ShutdownNotifier.create());
+    } catch (UnsatisfiedLinkError e) {
+      throw new InvalidConfigurationException(e.getMessage(), e);
+    }
+    FormulaManager fmgr = factory.getFormulaManager();
+
+    SolverResult result = new SolverResult();
+    for (Query query : queries) {
+      boolean interpolation = query.kind.equals(QueryRecorder.KIND_INTERPOLATION);
+      try (ProverEnvironment env = interpolation ? null : factory.newProverEnvironment(false, false);
+           InterpolatingProverEnvironment<?> itpEnv = interpolation ? factory.newProverEnvironmentWithInterpolation(false) : null) {
+
+        for (String formula : query.formulas) {
+          if (interpolation) {
+            itpEnv.push(fmgr.parse(formula));
+          } else {
+            env.push(fmgr.parse(formula));
+          }
+        }
+
+        long start = System.nanoTime();
+        boolean unsat = interpolation ? itpEnv.isUnsat() : env.isUnsat();
+        long time = System.nanoTime() - start;
+
+        result.checked++;
+        result.time += time;
+        result.recordedTime += query.recordedTime;
+        if (unsat != query.recordedUnsat) {
+          result.differentResults.add(query.number);
+        }
+        if (time > SLOWDOWN_FACTOR * query.recordedTime) {
+          result.slower.add(query.number);
+        }
+
+      } catch (IllegalArgumentException | UnsupportedOperationException e) {
+        // formula uses features that this solver cannot parse
+        result.failed.add(query.number);
+      }
+    }
+    return result;
+  }
+
+  private static void printResult(SolverResult result, PrintStream out) {
+    out.println("  Checked queries:          " + result.checked);
+    out.println("  Time for checks:          " + formatSeconds(result.time)
+        + " (recorded: " + formatSeconds(result.recordedTime) + ")");
+    out.println("  Different results:        " + describe(result.differentResults));
+    out.println("  Failed queries:           " + describe(result.failed));
+    out.println("  Slower by more than " + SLOWDOWN_FACTOR + "x:   " + describe(result.slower));
+  }
+
+  private static String formatSeconds(long nanos) {
+    return String.format("%.3fs", nanos / 1e9);
+  }
+
+  private static String describe(List<Integer> queryNumbers) {
+    if (queryNumbers.isEmpty()) {
+      return "0";
+    }
+    int shown = Math.min(queryNumbers.size(), 10);
+    return queryNumbers.size() + " (queries " + queryNumbers.subList(0, shown)
+        + (shown < queryNumbers.size() ? " ..." : "") + ")";
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates.logging;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import org.sosy_lab.cpachecker.core.counterexample.Model;
+import org.sosy_lab.cpachecker.exceptions.SolverException;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.FormulaManager;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.InterpolatingProverEnvironment;
+
+/**
+ * Wraps an interpolating prover environment and records all satisfiability checks
+ * with a {@link QueryRecorder}.
+ * The recorder needs to be obtained with {@link QueryRecorder#open}
+ * and is released when this prover environment is closed.
+ */
+public class RecordingInterpolatingProverEnvironment<T> implements InterpolatingProverEnvironment<T> {
+
+  private final InterpolatingProverEnvironment<T> wrapped;
+  private final FormulaManager fmgr;
+  private final QueryRecorder recorder;
+
+  // dumps of the formulas on the stack
+  private final Deque<String> stack = new ArrayDeque<>();
+
+  public RecordingInterpolatingProverEnvironment(FormulaManager pFmgr, QueryRecorder pRecorder,
+      InterpolatingProverEnvironment<T> ipe) {
+    wrapped = ipe;
+    fmgr = pFmgr;
+    recorder = pRecorder;
+  }
+
+  @Override
+  public T push(BooleanFormula f) {
+    stack.addLast(fmgr.dumpFormula(f).toString());
+    return wrapped.push(f);
+  }
+
+  @Override
+  public void pop() {
+    stack.removeLast();
+    wrapped.pop();
+  }
+
+  @Override
+  public boolean isUnsat() throws InterruptedException {
+    long start = System.nanoTime();
+    boolean result = wrapped.isUnsat();
+    recorder.record(QueryRecorder.KIND_INTERPOLATION, stack, System.nanoTime() - start, result);
+    return result;
+  }
+
+  @Override
+  public BooleanFormula getInterpolant(List<T> formulasOfA) {
+    return wrapped.getInterpolant(formulasOfA);
+  }
+
+  @Override
+  public Model getModel() throws SolverException {
+    return wrapped.getModel();
+  }
+
+  @Override
+  public void close() {
+    try {
+      wrapped.close();
+    } finally {
+      recorder.release();
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates.logging;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+import org.sosy_lab.common.time.NestedTimer;
+import org.sosy_lab.common.time.Timer;
+import org.sosy_lab.cpachecker.core.counterexample.Model;
+import org.sosy_lab.cpachecker.exceptions.SolverException;
+import org.sosy_lab.cpachecker.util.predicates.AbstractionManager.RegionCreator;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.FormulaManager;
+import org.sosy_lab.cpachecker.util.predicates.interfaces.ProverEnvironment;
+
+/**
+ * Wraps a prover environment and records all satisfiability checks and allSat calls
+ * with a {@link QueryRecorder}.
+ * The recorder needs to be obtained with {@link QueryRecorder#open}
+ * and is released when this prover environment is closed.
+ */
+public class RecordingProverEnvironment implements ProverEnvironment {
+
+  private final ProverEnvironment wrapped;
+  private final FormulaManager fmgr;
+  private final QueryRecorder recorder;
+
+  // dumps of the formulas on the stack
+  private final Deque<String> stack = new ArrayDeque<>();
+
+  public RecordingProverEnvironment(FormulaManager pFmgr, QueryRecorder pRecorder, ProverEnvironment pe) {
+    wrapped = pe;
+    fmgr = pFmgr;
+    recorder = pRecorder;
+  }
+
+  @Override
+  public void push(BooleanFormula f) {
+    stack.addLast(fmgr.dumpFormula(f).toString());
+    wrapped.push(f);
+  }
+
+  @Override
+  public void pop() {
+    stack.removeLast();
+    wrapped.pop();
+  }
+
+  @Override
+  public boolean isUnsat() throws InterruptedException {
+    long start = System.nanoTime();
+    boolean result = wrapped.isUnsat();
+    recorder.record(QueryRecorder.KIND_SAT, stack, System.nanoTime() - start, result);
+    return result;
+  }
+
+  @Override
+  public Model getModel() throws SolverException {
+    return wrapped.getModel();
+  }
+
+  @Override
+  public List<BooleanFormula> getUnsatCore() {
+    return wrapped.getUnsatCore();
+  }
+
+  @Override
+  public AllSatResult allSat(Collection<BooleanFormula> important,
+      RegionCreator mgr, Timer solveTime, NestedTimer enumTime) throws InterruptedException {
+    long start = System.nanoTime();
+    AllSatResult result = wrapped.allSat(important, mgr, solveTime, enumTime);
+    recorder.record(QueryRecorder.KIND_ALLSAT, stack, System.nanoTime() - start, result.getCount() == 0);
+    return result;
+  }
+
+  @Override
+  public boolean allSat(Collection<BooleanFormula> important, final AllSatCallback callback)
+      throws InterruptedException {
+    final int[] models = new int[1];
+    AllSatCallback countingCallback = new AllSatCallback() {
+      @Override
+      public boolean apply(List<BooleanFormula> pPositive, List<BooleanFormula> pNegative)
+          throws InterruptedException {
+        models[0]++;
+        return callback.apply(pPositive, pNegative);
+      }
+    };
+
+    long start = System.nanoTime();
+    boolean result = wrapped.allSat(important, countingCallback);
+    recorder.record(QueryRecorder.KIND_ALLSAT, stack, System.nanoTime() - start, models[0] == 0);
+    return result;
+  }
+
+  @Override
+  public void close() {
+    try {
+      wrapped.close();
+    } finally {
+      recorder.release();
+    }
+  }
+}
@@ -41,6 +41,7 @@ import org.sosy_lab.cpachecker.util.predicates.interfaces.Region;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.RegionManager.RegionBuilder;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 
 public class Mathsat5TheoremProver extends Mathsat5AbstractProver implements ProverEnvironment {
 
@@ -127,6 +128,70 @@ public class Mathsat5TheoremProver extends Mathsat5AbstractProver implements Pro
     return callback;
   }
 
+  @Override
+  public boolean allSat(Collection<BooleanFormula> important, final AllSatCallback callback)
+      throws InterruptedException {
+    checkNotNull(callback);
+    Preconditions.checkState(curEnv != 0);
+
+    if (important.isEmpty()) {
+      throw new RuntimeException("Error occurred during Mathsat allsat: all-sat should not be called with empty 'important'-Collection");
+    }
+
+    long[] imp = new long[important.size()];
+    int i = 0;
+    for (BooleanFormula impF : important) {
+      imp[i++] = getMsatTerm(impF);
+    }
+
+    final long env = curEnv;
+    final ShutdownNotifier shutdownNotifier = mgr.getShutdownNotifier();
+    Mathsat5NativeApi.AllSatModelCallback modelCallback = new Mathsat5NativeApi.AllSatModelCallback() {
+        @Override
+        public void callback(long[] model) throws InterruptedException {
+          shutdownNotifier.shutdownIfNecessary();
+
+          List<BooleanFormula> positive = new ArrayList<>(model.length);
+          List<BooleanFormula> negative = new ArrayList<>(model.length);
+          for (long t : model) {
+            if (msat_term_is_not(env, t)) {
+              negative.add(mgr.encapsulateBooleanFormula(msat_term_get_arg(t, 0)));
+            } else {
+              positive.add(mgr.encapsulateBooleanFormula(t));
+            }
+          }
+
+          if (!callback.apply(positive, negative)) {
+            throw new AllSatStoppedException();
+          }
+        }
+      };
+
+    int numModels;
+    try {
+      numModels = msat_all_sat(env, imp, modelCallback);
+    } catch (AllSatStoppedException e) {
+      return false;
+    }
+
+    if (numModels == -1) {
+      throw new RuntimeException("Error occurred during Mathsat allsat: " + msat_last_error_message(env));
+
+    } else if (numModels == -2) {
+      // infinite models
+      callback.apply(ImmutableList.<BooleanFormula>of(), ImmutableList.<BooleanFormula>of());
+    }
+    return true;
+  }
+
+  /**
+   * Thrown from the all-sat callback to stop the enumeration,
+   * because the only way to abort msat_all_sat from Java is an exception.
+   */
+  private static class AllSatStoppedException extends InterruptedException {
+    private static final long serialVersionUID = -4183416787405367227L;
+  }
+
   /**
    * callback used to build the predicate abstraction of a formula
    */
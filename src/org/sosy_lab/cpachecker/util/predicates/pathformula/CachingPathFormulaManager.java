@@ -23,12 +23,18 @@
  */
 package org.sosy_lab.cpachecker.util.predicates.pathformula;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.sosy_lab.common.Pair;
-import org.sosy_lab.common.time.Timer;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.IntegerOption;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.configuration.Option;
+import org.sosy_lab.common.configuration.Options;
+import org.sosy_lab.common.time.TimeSpan;
 import org.sosy_lab.cpachecker.cfa.model.CFAEdge;
 import org.sosy_lab.cpachecker.core.counterexample.Model;
 import org.sosy_lab.cpachecker.cpa.arg.ARGState;
@@ -36,49 +42,86 @@ import org.sosy_lab.cpachecker.exceptions.CPATransferException;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.PathFormulaManager;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * Implementation of {@link PathFormulaManager} that delegates to another
  * instance but caches results of some methods.
+ *
+ * The caches and statistics of this class are thread-safe,
+ * so an instance may be shared between threads if the delegate is thread-safe, too.
+ * Concurrent requests for the same uncached result may compute it more than once.
  */
+@Options(prefix="cpa.predicate.pathFormulaCache")
 public class CachingPathFormulaManager implements PathFormulaManager {
 
-  public final Timer pathFormulaComputationTimer = new Timer();
-  public int pathFormulaCacheHits = 0;
+  @Option(description="maximal number of entries in each of the path-formula caches."
+      + " Least-recently used entries are evicted above this limit (0 for unbounded caches).")
+  @IntegerOption(min=0)
+  private int maxSize = 0;
+
+  @Option(description="let the garbage collector evict cached path formulas"
+      + " when memory runs low (soft references to the cached values)")
+  private boolean softValues = false;
+
+  private final AtomicLong computationTime = new AtomicLong(); // ns
+  private final AtomicInteger computations = new AtomicInteger();
+  private final AtomicInteger cacheHits = new AtomicInteger();
 
   private final PathFormulaManager delegate;
 
-  private final Map<Pair<CFAEdge, PathFormula>, Pair<PathFormula, ErrorConditions>> andFormulaWithConditionsCache
-            = new HashMap<>();
-  private final Map<Pair<CFAEdge, PathFormula>, PathFormula> andFormulaCache
-            = new HashMap<>();
+  private final Cache<Pair<CFAEdge, PathFormula>, Pair<PathFormula, ErrorConditions>> andFormulaWithConditionsCache;
+  private final Cache<Pair<CFAEdge, PathFormula>, PathFormula> andFormulaCache;
 
-  private final Map<Pair<PathFormula, PathFormula>, PathFormula> orFormulaCache
-            = new HashMap<>();
+  private final Cache<Pair<PathFormula, PathFormula>, PathFormula> orFormulaCache;
 
-  private final Map<PathFormula, PathFormula> emptyFormulaCache
-            = new HashMap<>();
+  private final Cache<PathFormula, PathFormula> emptyFormulaCache;
 
   private final PathFormula emptyFormula;
 
-  public CachingPathFormulaManager(PathFormulaManager pDelegate) {
+  public CachingPathFormulaManager(PathFormulaManager pDelegate, Configuration config)
+      throws InvalidConfigurationException {
+    config.inject(this);
     delegate = pDelegate;
     emptyFormula = delegate.makeEmptyPathFormula();
+
+    andFormulaWithConditionsCache = newCache();
+    andFormulaCache = newCache();
+    orFormulaCache = newCache();
+    emptyFormulaCache = newCache();
+  }
+
+  private <K, V> Cache<K, V> newCache() {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+    if (maxSize > 0) {
+      builder.maximumSize(maxSize);
+    }
+    if (softValues) {
+      builder.softValues();
+    }
+    return builder.build();
+  }
+
+  private void addComputationTime(long start) {
+    computationTime.addAndGet(System.nanoTime() - start);
+    computations.incrementAndGet();
   }
 
   @Override
   public Pair<PathFormula, ErrorConditions> makeAndWithErrorConditions(PathFormula pOldFormula, CFAEdge pEdge) throws CPATransferException, InterruptedException {
 
     final Pair<CFAEdge, PathFormula> formulaCacheKey = Pair.of(pEdge, pOldFormula);
-    Pair<PathFormula, ErrorConditions> result = andFormulaWithConditionsCache.get(formulaCacheKey);
+    Pair<PathFormula, ErrorConditions> result = andFormulaWithConditionsCache.getIfPresent(formulaCacheKey);
     if (result == null) {
-      pathFormulaComputationTimer.start();
+      long start = System.nanoTime();
       // compute new pathFormula with the operation on the edge
       result = delegate.makeAndWithErrorConditions(pOldFormula, pEdge);
-      pathFormulaComputationTimer.stop();
+      addComputationTime(start);
       andFormulaWithConditionsCache.put(formulaCacheKey, result);
 
     } else {
-      pathFormulaCacheHits++;
+      cacheHits.incrementAndGet();
     }
     return result;
   }
@@ -86,16 +129,16 @@ public class CachingPathFormulaManager implements PathFormulaManager {
   @Override
   public PathFormula makeAnd(PathFormula pOldFormula, CFAEdge pEdge) throws CPATransferException, InterruptedException {
     final Pair<CFAEdge, PathFormula> formulaCacheKey = Pair.of(pEdge, pOldFormula);
-    PathFormula result = andFormulaCache.get(formulaCacheKey);
+    PathFormula result = andFormulaCache.getIfPresent(formulaCacheKey);
     if (result == null) {
-      pathFormulaComputationTimer.start();
+      long start = System.nanoTime();
       // compute new pathFormula with the operation on the edge
       result = delegate.makeAnd(pOldFormula, pEdge);
-      pathFormulaComputationTimer.stop();
+      addComputationTime(start);
       andFormulaCache.put(formulaCacheKey, result);
 
     } else {
-      pathFormulaCacheHits++;
+      cacheHits.incrementAndGet();
     }
     return result;
   }
@@ -104,17 +147,17 @@ public class CachingPathFormulaManager implements PathFormulaManager {
   public PathFormula makeOr(PathFormula pF1, PathFormula pF2) throws InterruptedException {
     final Pair<PathFormula, PathFormula> formulaCacheKey = Pair.of(pF1, pF2);
 
-    PathFormula result = orFormulaCache.get(formulaCacheKey);
+    PathFormula result = orFormulaCache.getIfPresent(formulaCacheKey);
     if (result == null) {
       // try again with other order
-      result = orFormulaCache.get(Pair.of(pF2, pF1));
+      result = orFormulaCache.getIfPresent(Pair.of(pF2, pF1));
     }
 
     if (result == null) {
       result = delegate.makeOr(pF1, pF2);
       orFormulaCache.put(formulaCacheKey, result);
     } else {
-      pathFormulaCacheHits++;
+      cacheHits.incrementAndGet();
     }
     return result;
   }
@@ -129,16 +172,49 @@ public class CachingPathFormulaManager implements PathFormulaManager {
     if (pOldFormula.getFormula() == null) {
       return delegate.makeEmptyPathFormula(pOldFormula);
     }
-    PathFormula result = emptyFormulaCache.get(pOldFormula);
+    PathFormula result = emptyFormulaCache.getIfPresent(pOldFormula);
     if (result == null) {
       result = delegate.makeEmptyPathFormula(pOldFormula);
       emptyFormulaCache.put(pOldFormula, result);
     } else {
-      pathFormulaCacheHits++;
+      cacheHits.incrementAndGet();
     }
     return result;
   }
 
+  public int getNumberOfCacheHits() {
+    return cacheHits.get();
+  }
+
+  /**
+   * Return the number of entries that were evicted from all caches.
+   */
+  public long getNumberOfEvictions() {
+    return andFormulaWithConditionsCache.stats().evictionCount()
+        + andFormulaCache.stats().evictionCount()
+        + orFormulaCache.stats().evictionCount()
+        + emptyFormulaCache.stats().evictionCount();
+  }
+
+  /**
+   * Return the number of path formulas that were computed by the delegate
+   * for makeAnd calls because they were not cached.
+   */
+  public int getNumberOfComputations() {
+    return computations.get();
+  }
+
+  /**
+   * Return the time spent in the delegate for makeAnd calls (summed over all threads).
+   */
+  public TimeSpan getComputationTime() {
+    return TimeSpan.ofNanos(computationTime.get());
+  }
+
+  public boolean isBounded() {
+    return maxSize > 0 || softValues;
+  }
+
   @Override
   public PathFormula makeAnd(PathFormula pPathFormula, BooleanFormula pOtherFormula) {
     return delegate.makeAnd(pPathFormula, pOtherFormula);
@@ -0,0 +1,94 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates.pathformula;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A table that assigns dense int ids (starting at 0) to objects.
+ * Ids are never released, so this should only be used for objects
+ * from a limited universe like variable names,
+ * such that the size of the table is bounded by the size of this universe.
+ *
+ * This class is thread-safe. Looking up an id does not need locking,
+ * only assigning a new id does.
+ */
+final class IdTable<T> {
+
+  private final ConcurrentMap<T, Integer> ids = new ConcurrentHashMap<>();
+
+  // Replaced (not modified) when it needs to grow,
+  // slots are written before the id is published in the map.
+  private volatile Object[] values = new Object[64];
+  private int nextId = 0;
+
+  /**
+   * Return the id of an object, assigning a new one if necessary.
+   */
+  int intern(T value) {
+    Integer id = ids.get(value);
+    if (id != null) {
+      return id;
+    }
+    checkNotNull(value);
+    synchronized (this) {
+      id = ids.get(value);
+      if (id == null) {
+        id = nextId++;
+        Object[] table = values;
+        if (id >= table.length) {
+          table = Arrays.copyOf(table, table.length * 2);
+        }
+        table[id] = value;
+        values = table;
+        ids.put(value, id);
+      }
+      return id;
+    }
+  }
+
+  /**
+   * Return the id of an object, or -1 if it has none yet.
+   */
+  int getId(T value) {
+    Integer id = ids.get(value);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Return the object with a given id.
+   */
+  @SuppressWarnings("unchecked")
+  T get(int id) {
+    return (T) values[id];
+  }
+
+  int size() {
+    return ids.size();
+  }
+}
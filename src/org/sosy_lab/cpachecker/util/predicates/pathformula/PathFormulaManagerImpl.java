@@ -28,9 +28,12 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.FluentIterable.from;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 
@@ -39,13 +42,20 @@ import javax.annotation.Nullable;
 import org.sosy_lab.common.Pair;
 import org.sosy_lab.common.Triple;
 import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.IntegerOption;
 import org.sosy_lab.common.configuration.InvalidConfigurationException;
 import org.sosy_lab.common.configuration.Option;
 import org.sosy_lab.common.configuration.Options;
 import org.sosy_lab.common.log.LogManager;
 import org.sosy_lab.cpachecker.cfa.CFA;
+import org.sosy_lab.cpachecker.cfa.ast.c.CDeclaration;
+import org.sosy_lab.cpachecker.cfa.ast.c.CVariableDeclaration;
 import org.sosy_lab.cpachecker.cfa.model.AssumeEdge;
 import org.sosy_lab.cpachecker.cfa.model.CFAEdge;
+import org.sosy_lab.cpachecker.cfa.model.CFAEdgeType;
+import org.sosy_lab.cpachecker.cfa.model.CFANode;
+import org.sosy_lab.cpachecker.cfa.model.MultiEdge;
+import org.sosy_lab.cpachecker.cfa.model.c.CDeclarationEdge;
 import org.sosy_lab.cpachecker.cfa.types.MachineModel;
 import org.sosy_lab.cpachecker.cfa.types.c.CNumericTypes;
 import org.sosy_lab.cpachecker.cfa.types.c.CType;
@@ -57,6 +67,7 @@ import org.sosy_lab.cpachecker.cpa.arg.ARGState;
 import org.sosy_lab.cpachecker.cpa.predicate.PredicateAbstractState;
 import org.sosy_lab.cpachecker.exceptions.CPATransferException;
 import org.sosy_lab.cpachecker.util.AbstractStates;
+import org.sosy_lab.cpachecker.util.CFAUtils;
 import org.sosy_lab.cpachecker.util.VariableClassification;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.BooleanFormula;
 import org.sosy_lab.cpachecker.util.predicates.interfaces.Formula;
@@ -80,6 +91,8 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicates;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
@@ -118,6 +131,22 @@ public class PathFormulaManagerImpl implements PathFormulaManager {
   @Option(description="add special information to formulas about non-deterministic functions")
   private boolean useNondetFlags = false;
 
+  @Option(description="Convert each CFA edge only once and re-use its formula for other"
+      + " SSA maps by shifting the SSA indices (e.g., when blocks are re-explored after"
+      + " refinements). Only used if the pointer-target set is empty.")
+  private boolean useEdgeTemplates = false;
+
+  @Option(description="maximal number of edge templates that are kept"
+      + " (cf. cpa.predicate.useEdgeTemplates). Least-recently used templates are evicted"
+      + " above this limit (0 for no limit).")
+  @IntegerOption(min=0)
+  private int edgeTemplatesMaxSize = 10000;
+
+  // Formulas of edges created from the empty path formula,
+  // absent for edges whose formula cannot be re-used.
+  // Thread-safe like the caches of CachingPathFormulaManager.
+  private final Cache<CFAEdge, Optional<PathFormula>> edgeTemplates;
+
   private final boolean backwards;
 
   @Deprecated
@@ -136,6 +165,26 @@ public class PathFormulaManagerImpl implements PathFormulaManager {
 
     this(pFmgr, config, pLogger, pShutdownNotifier, pCfa.getMachineModel(),
         pCfa.getVarClassification(), pBackwards);
+
+    SSAMap.registerVariables(getDeclaredVariables(pCfa));
+  }
+
+  /**
+   * Collect the qualified names of all variables declared in the CFA, sorted by name.
+   */
+  private static SortedSet<String> getDeclaredVariables(CFA pCfa) {
+    SortedSet<String> result = new TreeSet<>();
+    for (CFANode node : pCfa.getAllNodes()) {
+      for (CFAEdge edge : CFAUtils.leavingEdges(node)) {
+        if (edge instanceof CDeclarationEdge) {
+          CDeclaration decl = ((CDeclarationEdge) edge).getDeclaration();
+          if (decl instanceof CVariableDeclaration) {
+            result.add(decl.getQualifiedName());
+          }
+        }
+      }
+    }
+    return result;
   }
 
   @VisibleForTesting
@@ -147,6 +196,12 @@ public class PathFormulaManagerImpl implements PathFormulaManager {
 
     config.inject(this, PathFormulaManagerImpl.class);
 
+    CacheBuilder<Object, Object> edgeTemplatesBuilder = CacheBuilder.newBuilder();
+    if (edgeTemplatesMaxSize > 0) {
+      edgeTemplatesBuilder.maximumSize(edgeTemplatesMaxSize);
+    }
+    edgeTemplates = edgeTemplatesBuilder.build();
+
     fmgr = pFmgr;
     bfmgr = fmgr.getBooleanFormulaManager();
     ffmgr = fmgr.getFunctionFormulaManager();
@@ -236,10 +291,87 @@ public class PathFormulaManagerImpl implements PathFormulaManager {
 
   @Override
   public PathFormula makeAnd(PathFormula pOldFormula, CFAEdge pEdge) throws CPATransferException, InterruptedException {
+    if (useEdgeTemplates && !backwards && !useNondetFlags
+        && pOldFormula.getPointerTargetSet().equals(PointerTargetSet.emptyPointerTargetSet())) {
+      PathFormula template = getEdgeTemplate(pEdge);
+      if (template != null) {
+        return instantiateEdgeTemplate(template, pOldFormula);
+      }
+    }
+
     ErrorConditions errorConditions = ErrorConditions.dummyInstance(bfmgr);
     return makeAnd(pOldFormula, pEdge, errorConditions);
   }
 
+  /**
+   * Get the path formula for an edge starting from the empty path formula,
+   * or null if the edge cannot be handled by shifting SSA indices.
+   */
+  private @Nullable PathFormula getEdgeTemplate(CFAEdge pEdge)
+      throws CPATransferException, InterruptedException {
+    Optional<PathFormula> template = edgeTemplates.getIfPresent(pEdge);
+    if (template == null) {
+      if (containsDeclaration(pEdge)) {
+        // declarations modify the state of the converter
+        template = Optional.absent();
+      } else {
+        PathFormula start = makeEmptyPathFormula();
+        PathFormula result = makeAnd(start, pEdge, ErrorConditions.dummyInstance(bfmgr));
+        if (result.getPointerTargetSet().equals(start.getPointerTargetSet())) {
+          template = Optional.of(result);
+        } else {
+          template = Optional.absent();
+        }
+      }
+      edgeTemplates.put(pEdge, template);
+    }
+    return template.orNull();
+  }
+
+  private static boolean containsDeclaration(CFAEdge pEdge) {
+    if (pEdge instanceof MultiEdge) {
+      for (CFAEdge edge : (MultiEdge)pEdge) {
+        if (containsDeclaration(edge)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return pEdge.getEdgeType() == CFAEdgeType.DeclarationEdge;
+  }
+
+  /**
+   * Create the conjunction of a path formula with an edge template.
+   * The converter starts indices of variables that are not in the SSA map at 1,
+   * so each variable of the template is shifted by its current index minus 1
+   * (read accesses then use the current index, and writes use fresh indices).
+   */
+  @VisibleForTesting
+  PathFormula instantiateEdgeTemplate(PathFormula pTemplate, PathFormula pOldFormula) {
+    SSAMap oldSsa = pOldFormula.getSsa();
+    SSAMap templateSsa = pTemplate.getSsa();
+    SSAMapBuilder ssa = oldSsa.builder();
+    Map<String, Integer> offsets = new HashMap<>();
+
+    for (String var : templateSsa.allVariables()) {
+      int offset = Math.max(oldSsa.getIndex(var), 1) - 1;
+      if (offset != 0) {
+        offsets.put(var, offset);
+      }
+      ssa.setIndex(var, templateSsa.getType(var), templateSsa.getIndex(var) + offset);
+    }
+
+    BooleanFormula edgeFormula = fmgr.shiftIndices(pTemplate.getFormula(), offsets);
+    SSAMap newSsa = ssa.build();
+
+    if (bfmgr.isTrue(edgeFormula) && newSsa == oldSsa) {
+      // same as in CtoFormulaConverter
+      return pOldFormula;
+    }
+    return new PathFormula(bfmgr.and(pOldFormula.getFormula(), edgeFormula),
+        newSsa, pOldFormula.getPointerTargetSet(), pOldFormula.getLength() + 1);
+  }
+
   @Override
   public PathFormula makeEmptyPathFormula() {
     return new PathFormula(bfmgr.makeBoolean(true),
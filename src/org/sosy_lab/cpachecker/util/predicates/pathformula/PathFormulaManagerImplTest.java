@@ -376,4 +376,56 @@ public class PathFormulaManagerImplTest {
     // check for tautology of equiv
     assertTrue(solver.isUnsat(fmgr.makeNot(equiv)));
   }
-}
\ No newline at end of file
+
+  /**
+   * Check that instantiating the template of an edge (its formula from the empty path formula)
+   * gives the same result as converting the edge directly.
+   */
+  private void assertTemplateInstantiationEqualsMakeAnd(CFAEdge edge, PathFormula oldFormula)
+      throws Exception {
+    PathFormula template = pfmgr.makeAnd(pfmgr.makeEmptyPathFormula(), edge);
+    PathFormula instantiated = ((PathFormulaManagerImpl)pfmgr).instantiateEdgeTemplate(template, oldFormula);
+    PathFormula direct = pfmgr.makeAnd(oldFormula, edge);
+
+    assertEquals(direct.getSsa(), instantiated.getSsa());
+    assertEquals(direct.getLength(), instantiated.getLength());
+    BooleanFormula equiv = fmgr.makeEqual(direct.getFormula(), instantiated.getFormula());
+    assertTrue(solver.isUnsat(fmgr.makeNot(equiv)));
+  }
+
+  private PathFormula makePathFormulaWithIndex(String var, int index) {
+    PathFormula empty = pfmgr.makeEmptyPathFormula();
+    SSAMap ssa = SSAMap.emptySSAMap().builder().setIndex(var, CNumericTypes.INT, index).build();
+    return pfmgr.makeNewPathFormula(empty, ssa);
+  }
+
+  @Test
+  public void testEdgeTemplateWithUninitializedVariable() throws Exception {
+    Triple<CFAEdge, CFAEdge, MutableCFA> data = createCFA();
+
+    // x is not in the SSA map
+    PathFormula oldFormula = makePathFormulaWithIndex("y", 3);
+    assertTemplateInstantiationEqualsMakeAnd(data.getFirst(), oldFormula);
+    assertTemplateInstantiationEqualsMakeAnd(data.getSecond(), oldFormula);
+    assertTemplateInstantiationEqualsMakeAnd(data.getFirst(), pfmgr.makeEmptyPathFormula());
+  }
+
+  @Test
+  public void testEdgeTemplateWithShiftedIndices() throws Exception {
+    Triple<CFAEdge, CFAEdge, MutableCFA> data = createCFA();
+    CFAEdge a_to_b = data.getFirst();
+    CFAEdge b_to_a = data.getSecond();
+
+    for (int index : new int[] {1, 2, 5, 1337}) {
+      PathFormula oldFormula = makePathFormulaWithIndex("x", index);
+      assertTemplateInstantiationEqualsMakeAnd(a_to_b, oldFormula);
+      assertTemplateInstantiationEqualsMakeAnd(b_to_a, oldFormula);
+    }
+
+    // the assignment writes to a fresh index, the guard reads the current index
+    PathFormula afterAssignment = pfmgr.makeAnd(makePathFormulaWithIndex("x", 5), a_to_b);
+    assertEquals(5 + SSAMap.DEFAULT_INCREMENT, afterAssignment.getSsa().getIndex("x"));
+    assertTemplateInstantiationEqualsMakeAnd(b_to_a, afterAssignment);
+    assertTemplateInstantiationEqualsMakeAnd(a_to_b, afterAssignment);
+  }
+}
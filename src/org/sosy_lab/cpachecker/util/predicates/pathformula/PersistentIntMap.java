@@ -0,0 +1,492 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates.pathformula;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable persistent map from non-negative int keys to non-zero int values.
+ *
+ * The map is a bitmap-compressed trie with 32 children per node over the bits
+ * of the key (i.e., a hash array mapped trie where each key is its own hash).
+ * Keys are expected to be densely allocated ids, so the trie stays shallow.
+ * The shape of the trie depends only on the set of keys, thus equal maps have
+ * equal tries, and each node caches the size and hash code of its subtree.
+ * Updates copy only the path to the changed entry, and operations on two maps
+ * skip subtrees that are shared between them.
+ *
+ * The value 0 is used to represent absent keys.
+ */
+final class PersistentIntMap {
+
+  /** Callback for iterating over the entries of a map. */
+  interface EntryVisitor {
+    void visit(int key, int value);
+  }
+
+  /** Callback for resolving conflicts during {@link PersistentIntMap#merge}. */
+  interface MergeFunction {
+    /**
+     * Compute the merged value of a key whose values in both maps differ.
+     * Either value is 0 if the key is absent in the respective map.
+     */
+    int merge(int key, int value1, int value2);
+  }
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private static final PersistentIntMap EMPTY = new PersistentIntMap(null, 0);
+
+  /** The root node, null iff the map is empty. */
+  private final @Nullable Node root;
+
+  /** The shift of the root level, all keys are smaller than 1 << (shift + BITS). */
+  private final int shift;
+
+  private PersistentIntMap(@Nullable Node pRoot, int pShift) {
+    root = pRoot;
+    shift = pShift;
+  }
+
+  static PersistentIntMap of() {
+    return EMPTY;
+  }
+
+  int size() {
+    return root == null ? 0 : root.size;
+  }
+
+  boolean isEmpty() {
+    return root == null;
+  }
+
+  /**
+   * Return the value for a key, or 0 if the key is not present.
+   */
+  int get(int key) {
+    if (root == null || key < 0 || !fits(key, shift)) {
+      return 0;
+    }
+    Node node = root;
+    for (int s = shift; s > 0; s -= BITS) {
+      Inner inner = (Inner) node;
+      int bit = bit(key, s);
+      if ((inner.bitmap & bit) == 0) {
+        return 0;
+      }
+      node = inner.children[index(inner.bitmap, bit)];
+    }
+    Leaf leaf = (Leaf) node;
+    int bit = bit(key, 0);
+    if ((leaf.bitmap & bit) == 0) {
+      return 0;
+    }
+    return leaf.values[index(leaf.bitmap, bit)];
+  }
+
+  boolean containsKey(int key) {
+    return get(key) != 0;
+  }
+
+  /**
+   * Return a map where the given key is mapped to the given value.
+   */
+  PersistentIntMap put(int key, int value) {
+    checkArgument(key >= 0, "Negative key %s", key);
+    checkArgument(value != 0, "Value for key %s must not be 0", key);
+
+    if (root == null) {
+      int s = 0;
+      while (!fits(key, s)) {
+        s += BITS;
+      }
+      return new PersistentIntMap(put(null, s, key, value), s);
+    }
+
+    Node r = root;
+    int s = shift;
+    while (!fits(key, s)) {
+      // increase height, the old root becomes the first child of the new root
+      r = new Inner(1, new Node[] { r }, r.size, r.hash);
+      s += BITS;
+    }
+
+    Node newRoot = put(r, s, key, value);
+    if (newRoot == root) {
+      return this;
+    }
+    return new PersistentIntMap(newRoot, s);
+  }
+
+  private static Node put(@Nullable Node node, int s, int key, int value) {
+    int bit = bit(key, s);
+    if (s == 0) {
+      Leaf leaf = (Leaf) node;
+      if (leaf == null) {
+        return new Leaf(bit, new int[] { value }, 1, entryHash(key, value));
+      }
+      int idx = index(leaf.bitmap, bit);
+      if ((leaf.bitmap & bit) != 0) {
+        int oldValue = leaf.values[idx];
+        if (oldValue == value) {
+          return leaf;
+        }
+        int[] values = leaf.values.clone();
+        values[idx] = value;
+        return new Leaf(leaf.bitmap, values, leaf.size,
+            leaf.hash - entryHash(key, oldValue) + entryHash(key, value));
+      }
+      int[] values = new int[leaf.values.length + 1];
+      System.arraycopy(leaf.values, 0, values, 0, idx);
+      values[idx] = value;
+      System.arraycopy(leaf.values, idx, values, idx + 1, leaf.values.length - idx);
+      return new Leaf(leaf.bitmap | bit, values, leaf.size + 1, leaf.hash + entryHash(key, value));
+    }
+
+    Inner inner = (Inner) node;
+    if (inner == null) {
+      Node child = put(null, s - BITS, key, value);
+      return new Inner(bit, new Node[] { child }, child.size, child.hash);
+    }
+    int idx = index(inner.bitmap, bit);
+    if ((inner.bitmap & bit) != 0) {
+      Node oldChild = inner.children[idx];
+      Node child = put(oldChild, s - BITS, key, value);
+      if (child == oldChild) {
+        return inner;
+      }
+      Node[] children = inner.children.clone();
+      children[idx] = child;
+      return new Inner(inner.bitmap, children,
+          inner.size - oldChild.size + child.size,
+          inner.hash - oldChild.hash + child.hash);
+    }
+    Node child = put(null, s - BITS, key, value);
+    Node[] children = new Node[inner.children.length + 1];
+    System.arraycopy(inner.children, 0, children, 0, idx);
+    children[idx] = child;
+    System.arraycopy(inner.children, idx, children, idx + 1, inner.children.length - idx);
+    return new Inner(inner.bitmap | bit, children, inner.size + child.size, inner.hash + child.hash);
+  }
+
+  /**
+   * Return a map where the given key is not present.
+   */
+  PersistentIntMap remove(int key) {
+    if (get(key) == 0) {
+      return this;
+    }
+
+    Node r = remove(root, shift, key);
+    int s = shift;
+    // decrease height as long as only the first child of the root is present
+    while (r instanceof Inner && ((Inner) r).bitmap == 1) {
+      r = ((Inner) r).children[0];
+      s -= BITS;
+    }
+    if (r == null) {
+      return EMPTY;
+    }
+    return new PersistentIntMap(r, s);
+  }
+
+  /** Remove a key that is known to be present, returns null if the node becomes empty. */
+  private static @Nullable Node remove(Node node, int s, int key) {
+    int bit = bit(key, s);
+    int idx = index(node.bitmap, bit);
+    if (s == 0) {
+      Leaf leaf = (Leaf) node;
+      if (leaf.size == 1) {
+        return null;
+      }
+      int[] values = new int[leaf.values.length - 1];
+      System.arraycopy(leaf.values, 0, values, 0, idx);
+      System.arraycopy(leaf.values, idx + 1, values, idx, values.length - idx);
+      return new Leaf(leaf.bitmap & ~bit, values, leaf.size - 1,
+          leaf.hash - entryHash(key, leaf.values[idx]));
+    }
+
+    Inner inner = (Inner) node;
+    Node oldChild = inner.children[idx];
+    Node child = remove(oldChild, s - BITS, key);
+    if (child != null) {
+      Node[] children = inner.children.clone();
+      children[idx] = child;
+      return new Inner(inner.bitmap, children,
+          inner.size - oldChild.size + child.size,
+          inner.hash - oldChild.hash + child.hash);
+    }
+    if (inner.children.length == 1) {
+      return null;
+    }
+    Node[] children = new Node[inner.children.length - 1];
+    System.arraycopy(inner.children, 0, children, 0, idx);
+    System.arraycopy(inner.children, idx + 1, children, idx, children.length - idx);
+    return new Inner(inner.bitmap & ~bit, children,
+        inner.size - oldChild.size, inner.hash - oldChild.hash);
+  }
+
+  /**
+   * Visit all entries in ascending order of keys.
+   */
+  void forEach(EntryVisitor visitor) {
+    if (root != null) {
+      forEach(root, shift, 0, visitor);
+    }
+  }
+
+  private static void forEach(Node node, int s, int prefix, EntryVisitor visitor) {
+    int bitmap = node.bitmap;
+    int idx = 0;
+    while (bitmap != 0) {
+      int slot = Integer.numberOfTrailingZeros(bitmap);
+      bitmap &= bitmap - 1;
+      int key = prefix | (slot << s);
+      if (s == 0) {
+        visitor.visit(key, ((Leaf) node).values[idx]);
+      } else {
+        forEach(((Inner) node).children[idx], s - BITS, key, visitor);
+      }
+      idx++;
+    }
+  }
+
+  /**
+   * Merge two maps. For each key whose values in both maps differ
+   * (including keys that are present in only one of the maps),
+   * the merge function is called (in ascending order of keys)
+   * and its result is used in the merged map.
+   * Subtrees that are shared between both maps are skipped.
+   * If the result is equal to one of the input maps, that instance is returned.
+   */
+  static PersistentIntMap merge(PersistentIntMap m1, PersistentIntMap m2, MergeFunction function) {
+    if (m1.root == m2.root) {
+      return m1;
+    }
+
+    // bring both tries to the same height
+    int s = Math.max(m1.shift, m2.shift);
+    Node r1 = m1.root == null ? null : grow(m1.root, m1.shift, s);
+    Node r2 = m2.root == null ? null : grow(m2.root, m2.shift, s);
+
+    Node r = merge(r1, r2, s, 0, function);
+    while (r instanceof Inner && ((Inner) r).bitmap == 1) {
+      r = ((Inner) r).children[0];
+      s -= BITS;
+    }
+    if (r == m1.root) {
+      return m1;
+    } else if (r == m2.root) {
+      return m2;
+    } else if (r == null) {
+      return EMPTY;
+    }
+    return new PersistentIntMap(r, s);
+  }
+
+  private static Node grow(Node node, int fromShift, int toShift) {
+    Node n = node;
+    for (int s = fromShift; s < toShift; s += BITS) {
+      n = new Inner(1, new Node[] { n }, n.size, n.hash);
+    }
+    return n;
+  }
+
+  private static @Nullable Node merge(@Nullable Node n1, @Nullable Node n2,
+      int s, int prefix, MergeFunction function) {
+    if (n1 == n2) {
+      return n1;
+    }
+
+    int bitmap1 = n1 == null ? 0 : n1.bitmap;
+    int bitmap2 = n2 == null ? 0 : n2.bitmap;
+    int bitmap = 0;
+    int size = 0;
+    int hash = 0;
+    boolean equalTo1 = true;
+    boolean equalTo2 = true;
+
+    int union = bitmap1 | bitmap2;
+    int count = Integer.bitCount(union);
+    int[] values = s == 0 ? new int[count] : null;
+    Node[] children = s == 0 ? null : new Node[count];
+    int idx = 0;
+
+    for (int rest = union; rest != 0; rest &= rest - 1) {
+      int slot = Integer.numberOfTrailingZeros(rest);
+      int bit = 1 << slot;
+      int key = prefix | (slot << s);
+      boolean in1 = (bitmap1 & bit) != 0;
+      boolean in2 = (bitmap2 & bit) != 0;
+
+      if (s == 0) {
+        int v1 = in1 ? ((Leaf) n1).values[index(bitmap1, bit)] : 0;
+        int v2 = in2 ? ((Leaf) n2).values[index(bitmap2, bit)] : 0;
+        int v = v1 == v2 ? v1 : function.merge(key, v1, v2);
+        equalTo1 &= (v == v1);
+        equalTo2 &= (v == v2);
+        if (v != 0) {
+          values[idx++] = v;
+          bitmap |= bit;
+          size++;
+          hash += entryHash(key, v);
+        }
+
+      } else {
+        Node c1 = in1 ? ((Inner) n1).children[index(bitmap1, bit)] : null;
+        Node c2 = in2 ? ((Inner) n2).children[index(bitmap2, bit)] : null;
+        Node c = merge(c1, c2, s - BITS, key, function);
+        equalTo1 &= (c == c1);
+        equalTo2 &= (c == c2);
+        if (c != null) {
+          children[idx++] = c;
+          bitmap |= bit;
+          size += c.size;
+          hash += c.hash;
+        }
+      }
+    }
+
+    if (equalTo1) {
+      return n1;
+    } else if (equalTo2) {
+      return n2;
+    } else if (bitmap == 0) {
+      return null;
+    } else if (s == 0) {
+      return new Leaf(bitmap, idx == count ? values : Arrays.copyOf(values, idx), size, hash);
+    } else {
+      return new Inner(bitmap, idx == count ? children : Arrays.copyOf(children, idx), size, hash);
+    }
+  }
+
+  private static boolean fits(int key, int s) {
+    return s + BITS >= Integer.SIZE - 1 || (key >>> (s + BITS)) == 0;
+  }
+
+  private static int bit(int key, int s) {
+    return 1 << ((key >>> s) & MASK);
+  }
+
+  private static int index(int bitmap, int bit) {
+    return Integer.bitCount(bitmap & (bit - 1));
+  }
+
+  private static int entryHash(int key, int value) {
+    return (key * 0x9E3779B9) ^ value;
+  }
+
+  @Override
+  public int hashCode() {
+    return root == null ? 0 : root.hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    } else if (!(obj instanceof PersistentIntMap)) {
+      return false;
+    }
+    PersistentIntMap other = (PersistentIntMap) obj;
+    if (root == null || other.root == null) {
+      return root == other.root;
+    }
+    return shift == other.shift && nodesEqual(root, other.root);
+  }
+
+  private static boolean nodesEqual(Node n1, Node n2) {
+    if (n1 == n2) {
+      return true;
+    }
+    if (n1.bitmap != n2.bitmap || n1.size != n2.size || n1.hash != n2.hash) {
+      return false;
+    }
+    if (n1 instanceof Leaf) {
+      return Arrays.equals(((Leaf) n1).values, ((Leaf) n2).values);
+    }
+    Node[] children1 = ((Inner) n1).children;
+    Node[] children2 = ((Inner) n2).children;
+    for (int i = 0; i < children1.length; i++) {
+      if (!nodesEqual(children1[i], children2[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("{");
+    forEach(new EntryVisitor() {
+        @Override
+        public void visit(int key, int value) {
+          if (sb.length() > 1) {
+            sb.append(", ");
+          }
+          sb.append(key).append('=').append(value);
+        }
+      });
+    return sb.append('}').toString();
+  }
+
+  private abstract static class Node {
+    final int bitmap;
+    final int size;
+    final int hash;
+
+    Node(int pBitmap, int pSize, int pHash) {
+      bitmap = pBitmap;
+      size = pSize;
+      hash = pHash;
+    }
+  }
+
+  /** A node at the lowest level, storing the values of the present slots. */
+  private static final class Leaf extends Node {
+    final int[] values;
+
+    Leaf(int pBitmap, int[] pValues, int pSize, int pHash) {
+      super(pBitmap, pSize, pHash);
+      assert Integer.bitCount(pBitmap) == pValues.length;
+      values = pValues;
+    }
+  }
+
+  /** An inner node, storing the children of the present slots. */
+  private static final class Inner extends Node {
+    final Node[] children;
+
+    Inner(int pBitmap, Node[] pChildren, int pSize, int pHash) {
+      super(pBitmap, pSize, pHash);
+      assert Integer.bitCount(pBitmap) == pChildren.length;
+      children = pChildren;
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.predicates.pathformula;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class PersistentIntMapTest {
+
+  private static PersistentIntMap fromMap(Map<Integer, Integer> map) {
+    PersistentIntMap result = PersistentIntMap.of();
+    for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+      result = result.put(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+
+  private static void assertContent(Map<Integer, Integer> expected, PersistentIntMap actual) {
+    assertEquals(expected.size(), actual.size());
+    for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+      assertEquals(entry.getValue().intValue(), actual.get(entry.getKey()));
+    }
+
+    final List<Integer> keys = new ArrayList<>();
+    actual.forEach(new PersistentIntMap.EntryVisitor() {
+        @Override
+        public void visit(int key, int value) {
+          keys.add(key);
+        }
+      });
+    assertEquals(new ArrayList<>(expected.keySet()), keys);
+  }
+
+  @Test
+  public void testEmpty() {
+    PersistentIntMap map = PersistentIntMap.of();
+    assertTrue(map.isEmpty());
+    assertEquals(0, map.get(0));
+    assertEquals(0, map.get(Integer.MAX_VALUE));
+    assertSame(map, map.remove(5));
+  }
+
+  @Test
+  public void testPutIdenticalValue() {
+    PersistentIntMap map = PersistentIntMap.of().put(3, 1).put(1000, 2);
+    assertSame(map, map.put(1000, 2));
+  }
+
+  @Test
+  public void testRemoveShrinks() {
+    PersistentIntMap small = PersistentIntMap.of().put(1, 1);
+    PersistentIntMap big = small.put(Integer.MAX_VALUE, 2).remove(Integer.MAX_VALUE);
+    assertEquals(small, big);
+    assertEquals(small.hashCode(), big.hashCode());
+    assertTrue(small.put(1, 2).remove(1).isEmpty());
+  }
+
+  @Test
+  public void testRandomOperations() {
+    Random random = new Random(0);
+    for (int bound : new int[] { 40, 5000, Integer.MAX_VALUE }) {
+      PersistentIntMap map = PersistentIntMap.of();
+      TreeMap<Integer, Integer> expected = new TreeMap<>();
+      for (int i = 0; i < 1000; i++) {
+        int key = random.nextInt(bound);
+        if (random.nextInt(4) == 0) {
+          map = map.remove(key);
+          expected.remove(key);
+        } else {
+          int value = random.nextInt(10) + 1;
+          map = map.put(key, value);
+          expected.put(key, value);
+        }
+      }
+      assertContent(expected, map);
+
+      // shape of trie depends only on content
+      PersistentIntMap other = fromMap(expected);
+      assertEquals(map, other);
+      assertEquals(map.hashCode(), other.hashCode());
+    }
+  }
+
+  @Test
+  public void testMerge() {
+    PersistentIntMap base = PersistentIntMap.of().put(1, 1).put(2, 1).put(100, 3);
+    PersistentIntMap map1 = base.put(2, 4).put(5000, 1);
+    PersistentIntMap map2 = base.put(1, 2).put(7, 2);
+
+    final List<String> differences = new ArrayList<>();
+    PersistentIntMap merged = PersistentIntMap.merge(map1, map2, new PersistentIntMap.MergeFunction() {
+        @Override
+        public int merge(int key, int value1, int value2) {
+          differences.add(key + ":" + value1 + ":" + value2);
+          return Math.max(value1, value2);
+        }
+      });
+
+    TreeMap<Integer, Integer> expected = new TreeMap<>();
+    expected.put(1, 2);
+    expected.put(2, 4);
+    expected.put(7, 2);
+    expected.put(100, 3);
+    expected.put(5000, 1);
+    assertContent(expected, merged);
+    assertEquals(fromMap(expected), merged);
+    assertEquals(Arrays.asList("1:1:2", "2:4:1", "7:0:2", "5000:1:0"), differences);
+  }
+
+  @Test
+  public void testMergeIdentical() {
+    PersistentIntMap map = PersistentIntMap.of().put(1, 1).put(2, 1);
+    PersistentIntMap bigger = map.put(3, 2);
+    PersistentIntMap.MergeFunction max = new PersistentIntMap.MergeFunction() {
+        @Override
+        public int merge(int key, int value1, int value2) {
+          return Math.max(value1, value2);
+        }
+      };
+    assertSame(map, PersistentIntMap.merge(map, map, max));
+    assertSame(bigger, PersistentIntMap.merge(map, bigger, max));
+    assertSame(bigger, PersistentIntMap.merge(bigger, map, max));
+  }
+}
@@ -23,20 +23,21 @@
  */
 package org.sosy_lab.cpachecker.util.predicates.pathformula;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
+import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.ConcurrentMap;
 
 import org.sosy_lab.common.Pair;
 import org.sosy_lab.common.Triple;
-import org.sosy_lab.common.collect.Collections3;
-import org.sosy_lab.common.collect.PathCopyingPersistentTreeMap;
-import org.sosy_lab.common.collect.PersistentSortedMap;
-import org.sosy_lab.common.collect.PersistentSortedMaps;
 import org.sosy_lab.common.collect.PersistentSortedMaps.MergeConflictHandler;
 import org.sosy_lab.cpachecker.cfa.types.c.CComplexType;
 import org.sosy_lab.cpachecker.cfa.types.c.CComplexType.ComplexTypeKind;
@@ -44,16 +45,25 @@ import org.sosy_lab.cpachecker.cfa.types.c.CElaboratedType;
 import org.sosy_lab.cpachecker.cfa.types.c.CFunctionType;
 import org.sosy_lab.cpachecker.cfa.types.c.CPointerType;
 import org.sosy_lab.cpachecker.cfa.types.c.CType;
-import org.sosy_lab.cpachecker.cfa.types.c.CTypes;
 
-import com.google.common.base.Equivalence;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Ordering;
 
 /**
  * Maps a variable name to its latest "SSA index", that should be used when
  * referring to that variable.
+ *
+ * Internally, variable names and types are replaced by dense int ids
+ * from tables of the analyzed program (cf. {@link #registerVariables(Iterable)}),
+ * and the indices are stored in persistent int-to-int maps.
+ * Immutable SSAMaps (with the default default value) are hash-consed,
+ * so equal instances are usually identical.
  */
 public class SSAMap implements Serializable {
 
@@ -89,6 +99,59 @@ public class SSAMap implements Serializable {
     }
   };
 
+  /**
+   * The tables for the variable names and (canonical) types of one program.
+   * Type ids are stored incremented by one, because 0 means "absent".
+   * The size of the tables is bounded: all variable names are derived from
+   * declarations of the CFA (plus a fixed set of special names such as return variables),
+   * and the types from the types of these declarations.
+   */
+  private static final class IdTables {
+    private final IdTable<String> variables = new IdTable<>();
+    private final IdTable<CType> types = new IdTable<>();
+
+    // the variables with which these tables were created by registerVariables()
+    private final Set<String> registeredVariables;
+
+    private final SSAMap emptyMap;
+
+    private IdTables(Set<String> pRegisteredVariables) {
+      registeredVariables = pRegisteredVariables;
+      for (String variable : registeredVariables) {
+        variables.intern(variable);
+      }
+      emptyMap = new SSAMap(PersistentIntMap.of(), PersistentIntMap.of(), DEFAULT_DEFAULT_IDX, this);
+    }
+  }
+
+  // The tables of the program that is currently analyzed.
+  // Each SSAMap keeps a reference to the tables of its ids, so tables are garbage collected
+  // together with the last SSAMap of their program, and SSAMaps of different programs
+  // can still be merged.
+  private static volatile IdTables currentTables = new IdTables(ImmutableSet.<String>of());
+
+  /**
+   * Start new tables for variable names and types with the given variable names,
+   * which get ids in the given order,
+   * unless the current tables were created with the same variables.
+   * This should be called with the variables of the program before the analysis starts
+   * (e.g., sorted by name), such that the tables do not grow with the variables
+   * of all programs that are analyzed in the same JVM,
+   * and such that the ids of these variables are dense and
+   * the iteration order of the internal maps is close to the name order.
+   * Variables that are not registered here get an id on their first use.
+   *
+   * SSAMaps that were created before with other tables still work,
+   * but they are never equal to SSAMaps created afterwards,
+   * and merging them with such SSAMaps is more expensive.
+   */
+  public static synchronized void registerVariables(Iterable<String> variables) {
+    Set<String> registeredVariables = ImmutableSet.copyOf(variables);
+    if (!registeredVariables.equals(currentTables.registeredVariables)) {
+      currentTables = new IdTables(registeredVariables);
+    }
+  }
+
   /**
    * Builder for SSAMaps. Its state starts with an existing SSAMap, but may be
    * changed later. It supports read access, but it is not recommended to use
@@ -100,79 +163,81 @@ public class SSAMap implements Serializable {
   public static class SSAMapBuilder {
 
     private SSAMap ssa;
-    private PersistentSortedMap<String, Integer> vars; // Do not update without updating varsHashCode!
-    private PersistentSortedMap<String, CType> varTypes;
-
-    // Instead of computing vars.hashCode(),
-    // we calculate the hashCode ourselves incrementally
-    // (this is possible because a Map's hashCode is clearly defined).
-    private int varsHashCode;
+    private final IdTables tables;
+    private PersistentIntMap vars;
+    private PersistentIntMap varTypes;
 
     private SSAMapBuilder(SSAMap ssa) {
       this.ssa = ssa;
+      this.tables = ssa.tables;
       this.vars = ssa.vars;
       this.varTypes = ssa.varTypes;
-      this.varsHashCode = ssa.varsHashCode;
     }
 
     public int getIndex(String variable) {
-      return SSAMap.getIndex(variable, vars, ssa.defaultValue).getSecond();
+      return SSAMap.getIndex(tables.variables.getId(variable), vars, ssa.defaultValue);
     }
 
     public int getFreshIndex(String variable) {
-      return SSAMap.getFreshIndex(variable, vars, ssa.defaultValue);
+      return getIndex(variable) + DEFAULT_INCREMENT; // increment for a new index
     }
 
     public CType getType(String name) {
-      return varTypes.get(name);
+      return SSAMap.getType(tables.variables.getId(name), varTypes, tables);
     }
 
     public SSAMapBuilder setIndex(String name, CType type, int idx) {
       Preconditions.checkArgument(idx > 0, "Indices need to be positive for this SSAMap implementation:", name, type, idx);
-      int oldIdx = getIndex(name);
+      int id = tables.variables.intern(name);
+      int oldIdx = SSAMap.getIndex(id, vars, ssa.defaultValue);
       Preconditions.checkArgument(idx >= oldIdx, "SSAMap updates need to be strictly monotone:", name, type, idx);
 
       type = type.getCanonicalType();
-      CType oldType = varTypes.get(name);
+      CType oldType = SSAMap.getType(id, varTypes, tables);
       if (oldType != null) {
         TYPE_CONFLICT_CHECKER.resolveConflict(name, type, oldType);
       } else {
-        varTypes = varTypes.putAndCopy(name, type);
+        varTypes = varTypes.put(id, tables.types.intern(type) + 1);
       }
 
       if (idx > oldIdx || idx == ssa.defaultValue) {
-        vars = vars.putAndCopy(name, idx);
-        if (oldIdx != ssa.defaultValue) {
-          varsHashCode -= mapEntryHashCode(name, oldIdx);
-        }
-        varsHashCode += mapEntryHashCode(name, idx);
+        vars = vars.put(id, idx);
       }
 
       return this;
     }
 
     public SSAMapBuilder deleteVariable(String variable) {
-      int index = getIndex(variable);
+      int id = tables.variables.getId(variable);
+      int index = SSAMap.getIndex(id, vars, ssa.defaultValue);
       if (index != ssa.defaultValue) {
-        vars = vars.removeAndCopy(variable);
-        varsHashCode -= mapEntryHashCode(variable, index);
-
-        varTypes = varTypes.removeAndCopy(variable);
+        vars = vars.remove(id);
+        varTypes = varTypes.remove(id);
       }
 
       return this;
     }
 
     public SortedSet<String> allVariables() {
-      return varTypes.keySet();
+      return sortedVariables(varTypes, tables);
     }
 
     public SortedSet<Map.Entry<String, CType>> allVariablesWithTypes() {
-      return varTypes.entrySet();
+      return sortedVariablesWithTypes(varTypes, tables);
     }
 
-    public SortedMap<String, CType> allVariablesWithPrefix(String prefix) {
-      return Collections3.subMapWithPrefix(varTypes, prefix);
+    public SortedMap<String, CType> allVariablesWithPrefix(final String prefix) {
+      final ImmutableSortedMap.Builder<String, CType> result = ImmutableSortedMap.naturalOrder();
+      varTypes.forEach(new PersistentIntMap.EntryVisitor() {
+          @Override
+          public void visit(int id, int typeId) {
+            String name = tables.variables.get(id);
+            if (name.startsWith(prefix)) {
+              result.put(name, tables.types.get(typeId - 1));
+            }
+          }
+        });
+      return result.build();
     }
 
     /**
@@ -183,100 +248,178 @@ public class SSAMap implements Serializable {
         return ssa;
       }
 
-      ssa = new SSAMap(vars, varsHashCode, varTypes);
+      ssa = intern(vars, varTypes, tables);
       return ssa;
     }
+  }
 
-    /**
-     * Not-null safe copy of {@link SimpleImmutableEntry#hashCode()}
-     * for Object-to-int maps.
-     */
-    private static int mapEntryHashCode(Object key, int value) {
-      return key.hashCode() ^ value;
+  /**
+   * Key for hash-consing SSAMaps, in contrast to {@link SSAMap#equals(Object)}
+   * this also considers the types.
+   */
+  private static final class InternKey {
+    private final PersistentIntMap vars;
+    private final PersistentIntMap varTypes;
+    private final IdTables tables;
+
+    private InternKey(PersistentIntMap pVars, PersistentIntMap pVarTypes, IdTables pTables) {
+      vars = pVars;
+      varTypes = pVarTypes;
+      tables = pTables;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * vars.hashCode() + varTypes.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (!(obj instanceof InternKey)) {
+        return false;
+      }
+      InternKey other = (InternKey)obj;
+      return tables == other.tables && vars.equals(other.vars) && varTypes.equals(other.varTypes);
     }
   }
 
-  private static final SSAMap EMPTY_SSA_MAP = new SSAMap(
-      PathCopyingPersistentTreeMap.<String, Integer>of(),
-      0,
-      PathCopyingPersistentTreeMap.<String, CType>of());
+  // Values are weak such that unused SSAMaps can be garbage collected.
+  private static final ConcurrentMap<InternKey, SSAMap> INTERNED_MAPS =
+      new MapMaker().weakValues().makeMap();
+
+  private static SSAMap intern(PersistentIntMap vars, PersistentIntMap varTypes, IdTables tables) {
+    InternKey key = new InternKey(vars, varTypes, tables);
+    SSAMap result = INTERNED_MAPS.get(key);
+    if (result == null) {
+      SSAMap newMap = new SSAMap(vars, varTypes, DEFAULT_DEFAULT_IDX, tables);
+      result = INTERNED_MAPS.putIfAbsent(key, newMap);
+      if (result == null) {
+        result = newMap;
+      }
+    }
+    return result;
+  }
 
   /**
    * Returns an empty immutable SSAMap.
    */
   public static SSAMap emptySSAMap() {
-    return EMPTY_SSA_MAP;
+    return currentTables.emptyMap;
   }
 
   public SSAMap withDefault(final int defaultValue) {
-    return new SSAMap(this.vars, this.varsHashCode, this.varTypes, defaultValue);
+    return new SSAMap(this.vars, this.varTypes, defaultValue, this.tables);
+  }
+
+  /**
+   * Returns an SSAMap with the same content whose ids refer to the given tables.
+   */
+  private SSAMap withTables(final IdTables pTables) {
+    if (pTables == tables) {
+      return this;
+    }
+    final PersistentIntMap[] newVars = { PersistentIntMap.of() };
+    vars.forEach(new PersistentIntMap.EntryVisitor() {
+        @Override
+        public void visit(int id, int index) {
+          newVars[0] = newVars[0].put(pTables.variables.intern(tables.variables.get(id)), index);
+        }
+      });
+    final PersistentIntMap[] newVarTypes = { PersistentIntMap.of() };
+    varTypes.forEach(new PersistentIntMap.EntryVisitor() {
+        @Override
+        public void visit(int id, int typeId) {
+          newVarTypes[0] = newVarTypes[0].put(pTables.variables.intern(tables.variables.get(id)),
+              pTables.types.intern(tables.types.get(typeId - 1)) + 1);
+        }
+      });
+    SSAMap result = intern(newVars[0], newVarTypes[0], pTables);
+    return defaultValue == DEFAULT_DEFAULT_IDX ? result : result.withDefault(defaultValue);
   }
 
   /**
    * Creates an unmodifiable SSAMap that contains all indices from two SSAMaps.
    * If there are conflicting indices, the maximum of both is used.
    * Further returns a list with all variables for which different indices
-   * were found, together with the two conflicting indices.
+   * were found, together with the two conflicting indices
+   * (sorted by variable name, and with null for a missing index).
    */
   public static Pair<SSAMap, List<Triple<String, Integer, Integer>>> merge(SSAMap s1, SSAMap s2) {
+    // the ids of both maps need to refer to the same tables
+    s2 = s2.withTables(s1.tables);
+    final IdTables tables = s1.tables;
+
     // This method uses some optimizations to avoid work when parts of both SSAMaps
     // are equal. These checks use == instead of equals() because it is much faster
-    // and we create sets lazily (so when they are not identical, they are
-    // probably not equal, too).
-    // We don't bother checking the vars set for emptiness, because this will
-    // probably never be the case on a merge.
+    // and SSAMaps as well as their internal maps share structure
+    // (so when they are not identical, they are probably not equal, too).
 
-    PersistentSortedMap<String, Integer> vars;
-    List<Triple<String, Integer, Integer>> differences;
     if (s1.vars == s2.vars) {
-      differences = ImmutableList.of();
+      List<Triple<String, Integer, Integer>> differences = ImmutableList.of();
       // both are absolutely identical
       return Pair.of(s1, differences);
-
-    } else {
-      differences = new ArrayList<>();
-      vars = PersistentSortedMaps.merge(s1.vars, s2.vars, Equivalence.equals(),
-          PersistentSortedMaps.<String, Integer>getMaximumMergeConflictHandler(), differences);
     }
 
-    PersistentSortedMap<String, CType> varTypes = PersistentSortedMaps.merge(
-        s1.varTypes, s2.varTypes,
-        CTypes.canonicalTypeEquivalence(),
-        TYPE_CONFLICT_CHECKER,
-        null);
-
-    return Pair.of(new SSAMap(vars, 0, varTypes), differences);
+    final List<Triple<String, Integer, Integer>> differences = new ArrayList<>();
+    PersistentIntMap vars = PersistentIntMap.merge(s1.vars, s2.vars,
+        new PersistentIntMap.MergeFunction() {
+          @Override
+          public int merge(int id, int index1, int index2) {
+            differences.add(Triple.of(tables.variables.get(id),
+                index1 == 0 ? null : index1,
+                index2 == 0 ? null : index2));
+            return Math.max(index1, index2);
+          }
+        });
+    Collections.sort(differences, DIFFERENCE_ORDERING);
+
+    PersistentIntMap varTypes = PersistentIntMap.merge(s1.varTypes, s2.varTypes,
+        new PersistentIntMap.MergeFunction() {
+          @Override
+          public int merge(int id, int typeId1, int typeId2) {
+            if (typeId1 == 0) {
+              return typeId2;
+            } else if (typeId2 != 0) {
+              TYPE_CONFLICT_CHECKER.resolveConflict(tables.variables.get(id),
+                  tables.types.get(typeId1 - 1), tables.types.get(typeId2 - 1));
+            }
+            return typeId1;
+          }
+        });
+
+    return Pair.of(intern(vars, varTypes, tables), differences);
   }
 
-  private final PersistentSortedMap<String, Integer> vars;
-  private final PersistentSortedMap<String, CType> varTypes;
-
-  // Cache hashCode of potentially big map
-  private final int varsHashCode;
-
-  private SSAMap(PersistentSortedMap<String, Integer> vars,
-                 int varsHashCode,
-                 PersistentSortedMap<String, CType> varTypes,
-                 int defaultSSAIdx) {
+  private static final Comparator<Triple<String, Integer, Integer>> DIFFERENCE_ORDERING =
+      new Comparator<Triple<String, Integer, Integer>>() {
+        @Override
+        public int compare(Triple<String, Integer, Integer> pO1, Triple<String, Integer, Integer> pO2) {
+          return pO1.getFirst().compareTo(pO2.getFirst());
+        }
+      };
+
+  private final PersistentIntMap vars;
+  private final PersistentIntMap varTypes;
+  private final IdTables tables;
+
+  // caches for allVariables(), allVariablesWithTypes(), and toString(),
+  // computed on first use (this class is immutable)
+  private transient volatile SortedSet<String> allVariables = null;
+  private transient volatile SortedSet<Map.Entry<String, CType>> allVariablesWithTypes = null;
+  private transient volatile String stringRepresentation = null;
+
+  private SSAMap(PersistentIntMap vars,
+                 PersistentIntMap varTypes,
+                 int defaultSSAIdx,
+                 IdTables tables) {
     this.vars = vars;
     this.varTypes = varTypes;
-
-    if (varsHashCode == 0) {
-      this.varsHashCode = vars.hashCode();
-    } else {
-      this.varsHashCode = varsHashCode;
-      assert varsHashCode == vars.hashCode();
-    }
-
+    this.tables = tables;
     defaultValue = defaultSSAIdx;
   }
 
-  private SSAMap(PersistentSortedMap<String, Integer> vars,
-                 int varsHashCode,
-                 PersistentSortedMap<String, CType> varTypes) {
-    this(vars, varsHashCode, varTypes, DEFAULT_DEFAULT_IDX);
-  }
-
   /**
    * Returns a SSAMapBuilder that is initialized with the current SSAMap.
    */
@@ -284,20 +427,14 @@ public class SSAMap implements Serializable {
     return new SSAMapBuilder(this);
   }
 
-  static Pair<Boolean, Integer> getIndex(String variable, Map<String, Integer> vars, int defaultValue) {
-    Integer value = vars.get(variable);
-    if (value == null) {
-      return Pair.of(false, defaultValue);
-    }
-    return Pair.of(true, value);
+  private static int getIndex(int id, PersistentIntMap vars, int defaultValue) {
+    int value = id < 0 ? 0 : vars.get(id);
+    return value == 0 ? defaultValue : value;
   }
 
-  private static int getFreshIndex(String variable, Map<String, Integer> vars, int defaultValue) {
-    Integer value = vars.get(variable);
-    if (value == null) {
-      value = defaultValue;
-    }
-    return value + DEFAULT_INCREMENT; // increment for a new index
+  private static CType getType(int id, PersistentIntMap varTypes, IdTables tables) {
+    int typeId = id < 0 ? 0 : varTypes.get(id);
+    return typeId == 0 ? null : tables.types.get(typeId - 1);
   }
 
   /**
@@ -305,39 +442,99 @@ public class SSAMap implements Serializable {
    * or the [defaultValue].
    */
   public int getIndex(String variable) {
-    return getIndex(variable, vars, defaultValue).getSecond();
+    return getIndex(tables.variables.getId(variable), vars, defaultValue);
   }
 
   public Pair<Boolean, Integer> getMetaIndex(String variable) {
-    return getIndex(variable, vars, defaultValue);
+    if (containsVariable(variable)) {
+      return Pair.of(true, getIndex(variable));
+    }
+    return Pair.of(false, defaultValue);
   }
 
   public boolean containsVariable(String variable) {
-    return vars.containsKey(variable);
+    int id = tables.variables.getId(variable);
+    return id >= 0 && vars.containsKey(id);
   }
 
   public CType getType(String name) {
-    return varTypes.get(name);
+    return getType(tables.variables.getId(name), varTypes, tables);
   }
 
   public SortedSet<String> allVariables() {
-    return vars.keySet();
+    SortedSet<String> result = allVariables;
+    if (result == null) {
+      // benign race: concurrent callers compute equal sets
+      result = sortedVariables(vars, tables);
+      allVariables = result;
+    }
+    return result;
   }
 
   public SortedSet<Map.Entry<String, CType>> allVariablesWithTypes() {
-    return varTypes.entrySet();
+    SortedSet<Map.Entry<String, CType>> result = allVariablesWithTypes;
+    if (result == null) {
+      // benign race: concurrent callers compute equal sets
+      result = sortedVariablesWithTypes(varTypes, tables);
+      allVariablesWithTypes = result;
+    }
+    return result;
+  }
+
+  private static SortedSet<String> sortedVariables(PersistentIntMap map, final IdTables tables) {
+    final List<String> result = new ArrayList<>(map.size());
+    map.forEach(new PersistentIntMap.EntryVisitor() {
+        @Override
+        public void visit(int id, int value) {
+          result.add(tables.variables.get(id));
+        }
+      });
+    return ImmutableSortedSet.copyOf(result);
+  }
+
+  private static final Ordering<Map.Entry<String, ?>> ENTRY_ORDERING =
+      new Ordering<Map.Entry<String, ?>>() {
+        @Override
+        public int compare(Map.Entry<String, ?> pO1, Map.Entry<String, ?> pO2) {
+          return pO1.getKey().compareTo(pO2.getKey());
+        }
+      };
+
+  private static SortedSet<Map.Entry<String, CType>> sortedVariablesWithTypes(PersistentIntMap varTypes,
+      final IdTables tables) {
+    final List<Map.Entry<String, CType>> result = new ArrayList<>(varTypes.size());
+    varTypes.forEach(new PersistentIntMap.EntryVisitor() {
+        @Override
+        public void visit(int id, int typeId) {
+          result.add(new SimpleImmutableEntry<>(tables.variables.get(id), tables.types.get(typeId - 1)));
+        }
+      });
+    return ImmutableSortedSet.copyOf(ENTRY_ORDERING, result);
   }
 
   private static final Joiner joiner = Joiner.on(" ");
 
   @Override
   public String toString() {
-    return joiner.join(vars.entrySet());
+    String result = stringRepresentation;
+    if (result == null) {
+      final List<Map.Entry<String, Integer>> entries = new ArrayList<>(vars.size());
+      vars.forEach(new PersistentIntMap.EntryVisitor() {
+          @Override
+          public void visit(int id, int index) {
+            entries.add(new SimpleImmutableEntry<>(tables.variables.get(id), index));
+          }
+        });
+      Collections.sort(entries, ENTRY_ORDERING);
+      result = joiner.join(entries);
+      stringRepresentation = result;
+    }
+    return result;
   }
 
   @Override
   public int hashCode() {
-    return varsHashCode;
+    return vars.hashCode();
   }
 
   @Override
@@ -348,9 +545,67 @@ public class SSAMap implements Serializable {
       return false;
     } else {
       SSAMap other = (SSAMap)obj;
+      if (tables != other.tables) {
+        // ids of different tables are not comparable (cf. registerVariables())
+        return false;
+      }
       // Do a few cheap checks before the expensive ones.
-      return varsHashCode == other.varsHashCode
-          && vars.equals(other.vars);
+      // Hash-consed instances are usually identical if they are equal,
+      // but two maps that differ only in their types are still equal here.
+      return vars == other.vars
+          || (vars.hashCode() == other.vars.hashCode()
+              && vars.equals(other.vars));
+    }
+  }
+
+  // Ids are specific to the current process, so serialize names instead.
+  private Object writeReplace() throws ObjectStreamException {
+    return new SerializedSSAMap(this);
+  }
+
+  private static class SerializedSSAMap implements Serializable {
+
+    private static final long serialVersionUID = -3421859306548287432L;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Integer> indices = new ArrayList<>();
+    private final List<String> typedNames = new ArrayList<>();
+    private final List<CType> types = new ArrayList<>();
+    private final int defaultValue;
+
+    private SerializedSSAMap(SSAMap ssa) {
+      ssa.vars.forEach(new PersistentIntMap.EntryVisitor() {
+          @Override
+          public void visit(int id, int index) {
+            names.add(ssa.tables.variables.get(id));
+            indices.add(index);
+          }
+        });
+      ssa.varTypes.forEach(new PersistentIntMap.EntryVisitor() {
+          @Override
+          public void visit(int id, int typeId) {
+            typedNames.add(ssa.tables.variables.get(id));
+            types.add(ssa.tables.types.get(typeId - 1));
+          }
+        });
+      defaultValue = ssa.defaultValue;
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+      IdTables tables = currentTables;
+      PersistentIntMap vars = PersistentIntMap.of();
+      for (int i = 0; i < names.size(); i++) {
+        vars = vars.put(tables.variables.intern(names.get(i)), indices.get(i));
+      }
+      PersistentIntMap varTypes = PersistentIntMap.of();
+      for (int i = 0; i < typedNames.size(); i++) {
+        varTypes = varTypes.put(tables.variables.intern(typedNames.get(i)), tables.types.intern(types.get(i)) + 1);
+      }
+      SSAMap ssa = intern(vars, varTypes, tables);
+      if (defaultValue != DEFAULT_DEFAULT_IDX) {
+        ssa = ssa.withDefault(defaultValue);
+      }
+      return ssa;
     }
   }
 }
@@ -142,6 +142,57 @@ public class PrincessTheoremProver extends PrincessAbstractProver implements Pro
     return result;
   }
 
+  @Override
+  public boolean allSat(Collection<BooleanFormula> formulas, ProverEnvironment.AllSatCallback callback)
+      throws InterruptedException {
+    checkNotNull(callback);
+    checkArgument(!formulas.isEmpty());
+
+    // unpack formulas to terms
+    List<IFormula> importantFormulas = new ArrayList<>(formulas.size());
+    for (BooleanFormula impF : formulas) {
+      importantFormulas.add(castToFormula(mgr.getTerm(impF)));
+    }
+
+    boolean complete = true;
+    stack.push(1);
+    try {
+      while (stack.checkSat()) {
+        shutdownNotifier.shutdownIfNecessary();
+        final SimpleAPI.PartialModel model = stack.getPartialModel();
+
+        IFormula newFormula = new IBoolLit(true); // neutral element for AND
+        List<BooleanFormula> positive = new ArrayList<>(importantFormulas.size());
+        List<BooleanFormula> negative = new ArrayList<>(importantFormulas.size());
+        for (final IFormula f : importantFormulas) {
+          final Option<Object> value = model.eval(f);
+          if (value.isDefined()) {
+            final boolean isTrueValue = (Boolean)value.get();
+            newFormula = new IBinFormula(IBinJunctor.And(), newFormula, isTrueValue ? f : new INot(f));
+            if (isTrueValue) {
+              positive.add(mgr.encapsulateBooleanFormula(f));
+            } else {
+              negative.add(mgr.encapsulateBooleanFormula(f));
+            }
+          }
+        }
+
+        if (!callback.apply(positive, negative)) {
+          complete = false;
+          break;
+        }
+
+        // add negation of current formula to get a new model in next iteration
+        stack.assertTerm(new INot(newFormula));
+      }
+      shutdownNotifier.shutdownIfNecessary();
+    } finally {
+      stack.pop(1);
+    }
+
+    return complete;
+  }
+
   /**
    * callback used to build the predicate abstraction of a formula
    */
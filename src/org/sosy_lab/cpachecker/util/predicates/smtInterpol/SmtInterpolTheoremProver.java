@@ -150,6 +150,51 @@ class SmtInterpolTheoremProver implements ProverEnvironment {
     return result;
   }
 
+  @Override
+  public boolean allSat(Collection<BooleanFormula> formulas, AllSatCallback callback)
+      throws InterruptedException {
+    checkNotNull(callback);
+    checkArgument(!formulas.isEmpty());
+
+    SmtInterpolEnvironment allsatEnv = env;
+    checkNotNull(allsatEnv);
+
+    // unpack formulas to terms
+    Term[] importantTerms = new Term[formulas.size()];
+    int i = 0;
+    for (BooleanFormula impF : formulas) {
+      importantTerms[i++] = mgr.getTerm(impF);
+    }
+
+    boolean complete = true;
+    allsatEnv.push(1);
+    try {
+      for (Term[] model : allsatEnv.checkAllSat(importantTerms)) {
+        shutdownNotifier.shutdownIfNecessary();
+
+        List<BooleanFormula> positive = new ArrayList<>(model.length);
+        List<BooleanFormula> negative = new ArrayList<>(model.length);
+        for (Term t : model) {
+          if (isNot(t)) {
+            negative.add(mgr.encapsulateBooleanFormula(getArg(t, 0)));
+          } else {
+            positive.add(mgr.encapsulateBooleanFormula(t));
+          }
+        }
+
+        if (!callback.apply(positive, negative)) {
+          complete = false;
+          break;
+        }
+      }
+      shutdownNotifier.shutdownIfNecessary();
+    } finally {
+      allsatEnv.pop(1);
+    }
+
+    return complete;
+  }
+
   /**
    * callback used to build the predicate abstraction of a formula
    */
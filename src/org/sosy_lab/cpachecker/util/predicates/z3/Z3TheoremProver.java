@@ -27,6 +27,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static org.sosy_lab.cpachecker.util.predicates.z3.Z3NativeApi.*;
 import static org.sosy_lab.cpachecker.util.predicates.z3.Z3NativeApiConstants.*;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -190,6 +191,69 @@ public class Z3TheoremProver implements ProverEnvironment {
     return result;
   }
 
+  @Override
+  public boolean allSat(Collection<BooleanFormula> formulas, AllSatCallback callback)
+      throws InterruptedException {
+    checkNotNull(callback);
+    Preconditions.checkArgument(z3context != 0);
+
+    // unpack formulas to terms
+    long[] importantFormulas = new long[formulas.size()];
+    int i = 0;
+    for (BooleanFormula impF : formulas) {
+      importantFormulas[i++] = Z3FormulaManager.getZ3Expr(impF);
+    }
+
+    boolean complete = true;
+    solver_push(z3context, z3solver);
+    smtLogger.logPush(1);
+    smtLogger.logCheck();
+
+    try {
+      while (solver_check(z3context, z3solver) == Z3_LBOOL.Z3_L_TRUE.status) {
+        long[] valuesOfModel = new long[importantFormulas.length];
+        List<BooleanFormula> positive = new ArrayList<>(importantFormulas.length);
+        List<BooleanFormula> negative = new ArrayList<>(importantFormulas.length);
+        long z3model = solver_get_model(z3context, z3solver);
+
+        smtLogger.logGetModel();
+
+        for (int j = 0; j < importantFormulas.length; j++) {
+          long funcDecl = get_app_decl(z3context, importantFormulas[j]);
+          long valueOfExpr = model_get_const_interp(z3context, z3model, funcDecl);
+
+          if (isOP(z3context, valueOfExpr, Z3_OP_FALSE)) {
+            valuesOfModel[j] = mk_not(z3context, importantFormulas[j]);
+            inc_ref(z3context, valuesOfModel[j]);
+            negative.add(mgr.encapsulate(BooleanFormula.class, importantFormulas[j]));
+          } else {
+            valuesOfModel[j] = importantFormulas[j];
+            positive.add(mgr.encapsulate(BooleanFormula.class, importantFormulas[j]));
+          }
+        }
+
+        if (!callback.apply(positive, negative)) {
+          complete = false;
+          break;
+        }
+
+        long negatedModel = mk_not(z3context, mk_and(z3context, valuesOfModel));
+        inc_ref(z3context, negatedModel);
+        solver_assert(z3context, z3solver, negatedModel);
+
+        smtLogger.logAssert(negatedModel);
+        smtLogger.logCheck();
+      }
+
+    } finally {
+      // we pushed some levels on assertionStack, remove them
+      solver_pop(z3context, z3solver, 1);
+      smtLogger.logPop(1);
+    }
+
+    return complete;
+  }
+
   /**
    * this class is used to build the predicate abstraction of a formula
    */
@@ -109,6 +109,25 @@ public final class ResourceLimitChecker {
    */
   public static ResourceLimitChecker fromConfiguration(Configuration config,
       LogManager logger, ShutdownNotifier notifier) throws InvalidConfigurationException {
+    return fromConfiguration(config, logger, notifier, false);
+  }
+
+  /**
+   * Like {@link #fromConfiguration(Configuration, LogManager, ShutdownNotifier)},
+   * but the CPU-time limit applies to the CPU time of the current thread
+   * instead of the whole process.
+   * This is necessary if several analyses with separate limits
+   * run in parallel in the same process.
+   * The returned instance is not started yet.
+   */
+  public static ResourceLimitChecker fromConfigurationForCurrentThread(Configuration config,
+      LogManager logger, ShutdownNotifier notifier) throws InvalidConfigurationException {
+    return fromConfiguration(config, logger, notifier, true);
+  }
+
+  private static ResourceLimitChecker fromConfiguration(Configuration config,
+      LogManager logger, ShutdownNotifier notifier, boolean threadCpuTime)
+      throws InvalidConfigurationException {
 
     ResourceLimitOptions options = new ResourceLimitOptions();
     config.inject(options);
@@ -117,7 +136,14 @@ public final class ResourceLimitChecker {
     if (options.walltime.compareTo(TimeSpan.empty()) >= 0) {
       limits.add(WalltimeLimit.fromNowOn(options.walltime));
     }
-    if (options.cpuTime.compareTo(TimeSpan.empty()) >= 0) {
+    if (options.cpuTime.compareTo(TimeSpan.empty()) >= 0 && threadCpuTime) {
+      try {
+        limits.add(ThreadCpuTimeLimit.forCurrentThreadFromNowOn(options.cpuTime));
+      } catch (UnsupportedOperationException e) {
+        logger.logDebugException(e, "Querying thread cpu time failed");
+        logger.log(Level.WARNING, "Your Java VM does not support measuring the cpu time of threads, cpu time threshold disabled.");
+      }
+    } else if (options.cpuTime.compareTo(TimeSpan.empty()) >= 0) {
       try {
         limits.add(ProcessCpuTimeLimit.fromNowOn(options.cpuTime));
       } catch (JMException e) {
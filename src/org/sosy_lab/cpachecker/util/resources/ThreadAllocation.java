@@ -0,0 +1,61 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.resources;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Access to the number of bytes allocated on the heap by the current thread.
+ * This is only supported on some JVMs (e.g., HotSpot),
+ * on others all methods return -1.
+ */
+public final class ThreadAllocation {
+
+  private ThreadAllocation() { }
+
+  private static final com.sun.management.ThreadMXBean threadBean;
+
+  static {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()
+        && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemoryEnabled()) {
+      threadBean = (com.sun.management.ThreadMXBean)bean;
+    } else {
+      threadBean = null;
+    }
+  }
+
+  /**
+   * Return the total number of bytes allocated by the current thread so far,
+   * or -1 if this is not supported.
+   */
+  public static long getAllocatedBytesOfCurrentThread() {
+    if (threadBean == null) {
+      return -1;
+    }
+    return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+}
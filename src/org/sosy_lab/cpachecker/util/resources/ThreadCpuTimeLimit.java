@@ -0,0 +1,93 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.resources;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import org.sosy_lab.common.time.TimeSpan;
+
+/**
+ * A limit that measures the CPU time used by a single thread
+ * (if available on this JVM).
+ * This is useful if several analyses run in parallel in the same process,
+ * where the CPU time of the process does not reflect the effort of one analysis.
+ */
+public class ThreadCpuTimeLimit implements ResourceLimit {
+
+  private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+  private final long threadId;
+  private final long duration;
+  private final long endTime;
+
+  private ThreadCpuTimeLimit(long pThreadId, long pStart, long pLimit, TimeUnit pUnit) {
+    checkArgument(pLimit > 0);
+    threadId = pThreadId;
+    duration = TimeUnit.NANOSECONDS.convert(pLimit, pUnit);
+    endTime = pStart + duration;
+  }
+
+  /**
+   * Create a limit for the CPU time of the current thread, starting now.
+   * @throws UnsupportedOperationException If the JVM does not support measuring the CPU time of threads.
+   */
+  public static ThreadCpuTimeLimit forCurrentThreadFromNowOn(TimeSpan timeSpan) {
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    if (!threadBean.isThreadCpuTimeSupported() || !threadBean.isThreadCpuTimeEnabled()) {
+      throw new UnsupportedOperationException("Measuring the cpu time of threads is not supported");
+    }
+    return new ThreadCpuTimeLimit(Thread.currentThread().getId(),
+        threadBean.getCurrentThreadCpuTime(), timeSpan.asNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public long getCurrentValue() {
+    // -1 if the thread is not alive anymore
+    return threadBean.getThreadCpuTime(threadId);
+  }
+
+  @Override
+  public boolean isExceeded(long pCurrentValue) {
+    return pCurrentValue >= endTime;
+  }
+
+  @Override
+  public long nanoSecondsToNextCheck(long pCurrentValue) {
+    if (pCurrentValue < 0) {
+      // thread has terminated, we disable this limit
+      return Long.MAX_VALUE;
+    }
+    // a single thread cannot use more cpu time than wall time
+    return endTime - pCurrentValue;
+  }
+
+  @Override
+  public String getName() {
+    return "thread CPU-time limit of " + TimeUnit.NANOSECONDS.toSeconds(duration) + "s";
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.statistics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.ImmutableSortedMap;
+
+/**
+ * Registry of counters and gauges that describe the progress of the running analysis.
+ * In contrast to the usual statistics, which are printed at the end,
+ * these values can be read while the analysis is running
+ * (cf. {@link TelemetryExporter}).
+ *
+ * A counter counts events and only grows, so its rate is meaningful.
+ * A gauge describes a current size (e.g., of the waitlist), which may also shrink.
+ * Counters and gauges are identified by their name and shared by all components
+ * that ask for the same name, e.g., across nested analyses.
+ * A name can be used either for a counter or for a gauge, but not for both.
+ * Components should retrieve their counters once and keep a reference to them.
+ * Updating a counter or gauge does not need any lock.
+ *
+ * By convention, a counter "x.cached" counts how many of the events
+ * counted by "x" were answered from a cache.
+ */
+public final class Telemetry {
+
+  // contains Counters and Gauges, a single map makes registering a name atomic
+  private static final ConcurrentMap<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+  private Telemetry() { }
+
+  /**
+   * Get the counter with the given name, creating it if necessary.
+   * @throws IllegalArgumentException If the name is already used for a gauge.
+   */
+  public static Counter getCounter(String name) {
+    Object metric = metrics.get(name);
+    if (metric == null) {
+      Counter counter = new Counter();
+      metric = metrics.putIfAbsent(name, counter);
+      if (metric == null) {
+        return counter;
+      }
+    }
+    checkArgument(metric instanceof Counter, "%s is a gauge, not a counter", name);
+    return (Counter)metric;
+  }
+
+  /**
+   * Get the gauge with the given name, creating it if necessary.
+   * @throws IllegalArgumentException If the name is already used for a counter.
+   */
+  public static Gauge getGauge(String name) {
+    Object metric = metrics.get(name);
+    if (metric == null) {
+      Gauge gauge = new Gauge();
+      metric = metrics.putIfAbsent(name, gauge);
+      if (metric == null) {
+        return gauge;
+      }
+    }
+    checkArgument(metric instanceof Gauge, "%s is a counter, not a gauge", name);
+    return (Gauge)metric;
+  }
+
+  /**
+   * Get the current values of all counters and gauges, sorted by name.
+   * The values of different counters are not read atomically together.
+   */
+  public static ImmutableSortedMap<String, Long> getValues() {
+    return getValues(true);
+  }
+
+  /**
+   * Get the current values of all counters (without gauges), sorted by name.
+   * @see #getValues()
+   */
+  public static ImmutableSortedMap<String, Long> getCounterValues() {
+    return getValues(false);
+  }
+
+  private static ImmutableSortedMap<String, Long> getValues(boolean includeGauges) {
+    ImmutableSortedMap.Builder<String, Long> result = ImmutableSortedMap.naturalOrder();
+    for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+      Object metric = entry.getValue();
+      if (metric instanceof Counter) {
+        result.put(entry.getKey(), ((Counter)metric).get());
+      } else if (includeGauges) {
+        result.put(entry.getKey(), ((Gauge)metric).get());
+      }
+    }
+    return result.build();
+  }
+
+  public static final class Counter {
+
+    private final AtomicLong value = new AtomicLong();
+
+    private Counter() { }
+
+    public void inc() {
+      value.incrementAndGet();
+    }
+
+    public void add(long delta) {
+      value.addAndGet(delta);
+    }
+
+    public long get() {
+      return value.get();
+    }
+  }
+
+  public static final class Gauge {
+
+    private final AtomicLong value = new AtomicLong();
+
+    private Gauge() { }
+
+    public void set(long newValue) {
+      value.lazySet(newValue);
+    }
+
+    public long get() {
+      return value.get();
+    }
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.statistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import javax.annotation.Nullable;
+
+import org.sosy_lab.common.AbstractMBean;
+import org.sosy_lab.common.concurrency.Threads;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.FileOption;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.configuration.Option;
+import org.sosy_lab.common.configuration.Options;
+import org.sosy_lab.common.configuration.TimeSpanOption;
+import org.sosy_lab.common.io.Files;
+import org.sosy_lab.common.io.Path;
+import org.sosy_lab.common.io.Paths;
+import org.sosy_lab.common.log.LogManager;
+import org.sosy_lab.common.time.TimeSpan;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+
+/**
+ * Publishes the counters of {@link Telemetry} while the analysis is running,
+ * via JMX and by periodically rewriting a file.
+ *
+ * The file has one "key=value" line per counter and gauge,
+ * plus the rate per second of each counter (but not of gauges) since the previous update,
+ * the hit rate of each cache (cf. {@link Telemetry}),
+ * and the time since any counter last changed,
+ * which can be used to detect a stalled analysis.
+ */
+@Options(prefix="statistics.telemetry")
+public class TelemetryExporter {
+
+  public static interface TelemetryMXBean {
+    Map<String, Long> getCounters();
+
+    Map<String, Double> getRatesPerSecond();
+
+    long getMillisSinceLastProgress();
+  }
+
+  private class TelemetryMBean extends AbstractMBean implements TelemetryMXBean {
+
+    public TelemetryMBean() {
+      super("org.sosy_lab.cpachecker:type=Telemetry", logger);
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+      return Telemetry.getValues();
+    }
+
+    @Override
+    public Map<String, Double> getRatesPerSecond() {
+      return rates;
+    }
+
+    @Override
+    public long getMillisSinceLastProgress() {
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastProgress);
+    }
+  }
+
+  @Option(name="export",
+      description="publish live statistics about the running analysis via JMX and to a file")
+  private boolean exportTelemetry = false;
+
+  @Option(description="file that is periodically rewritten with live statistics")
+  @FileOption(FileOption.Type.OUTPUT_FILE)
+  private @Nullable Path file = Paths.get("telemetry.properties");
+
+  @Option(description="interval for updating the file with live statistics"
+      + " (use seconds or specify a unit)")
+  @TimeSpanOption(codeUnit=TimeUnit.MILLISECONDS,
+      defaultUserUnit=TimeUnit.SECONDS,
+      min=10)
+  private TimeSpan interval = TimeSpan.ofMillis(1000);
+
+  private final LogManager logger;
+
+  private @Nullable TelemetryMBean mxbean;
+  private @Nullable ScheduledExecutorService executor;
+
+  // only modified by the update thread
+  private Map<String, Long> lastValues = ImmutableMap.of();
+  private long lastUpdate;
+  private volatile long lastProgress;
+  private volatile Map<String, Double> rates = ImmutableMap.of();
+
+  public TelemetryExporter(Configuration pConfig, LogManager pLogger)
+      throws InvalidConfigurationException {
+    pConfig.inject(this);
+    logger = pLogger;
+  }
+
+  /**
+   * Start publishing (if enabled by the configuration).
+   */
+  public void start() {
+    if (!exportTelemetry) {
+      return;
+    }
+
+    lastUpdate = System.nanoTime();
+    lastProgress = lastUpdate;
+
+    mxbean = new TelemetryMBean();
+    mxbean.register();
+
+    executor = Executors.newSingleThreadScheduledExecutor(
+        Threads.threadFactoryBuilder().setDaemon(true).setNameFormat("CPAchecker telemetry").build());
+    executor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          update();
+        }
+      }, interval.asMillis(), interval.asMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop publishing and write the final values.
+   */
+  public void stop() {
+    if (executor == null) {
+      return;
+    }
+
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(interval.asMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    update();
+
+    mxbean.unregister();
+    mxbean = null;
+    executor = null;
+  }
+
+  private synchronized void update() {
+    long now = System.nanoTime();
+    ImmutableSortedMap<String, Long> values = Telemetry.getValues();
+    ImmutableSortedMap<String, Long> counterValues = Telemetry.getCounterValues();
+    double seconds = Math.max(now - lastUpdate, 1) / 1e9;
+
+    boolean progress = false;
+    for (Map.Entry<String, Long> entry : values.entrySet()) {
+      Long lastValue = lastValues.get(entry.getKey());
+      progress |= entry.getValue() != (lastValue == null ? 0 : lastValue);
+    }
+
+    // rates only make sense for counters, gauges may also shrink
+    ImmutableSortedMap.Builder<String, Double> newRates = ImmutableSortedMap.naturalOrder();
+    for (Map.Entry<String, Long> entry : counterValues.entrySet()) {
+      Long lastValue = lastValues.get(entry.getKey());
+      long delta = entry.getValue() - (lastValue == null ? 0 : lastValue);
+      newRates.put(entry.getKey(), delta / seconds);
+    }
+    if (progress) {
+      lastProgress = now;
+    }
+    rates = newRates.build();
+    lastValues = values;
+    lastUpdate = now;
+
+    if (file != null) {
+      try {
+        writeFile(values);
+      } catch (IOException e) {
+        logger.logUserException(Level.WARNING, e, "Could not write live statistics, disabling the file");
+        file = null;
+      }
+    }
+  }
+
+  private void writeFile(ImmutableSortedMap<String, Long> values) throws IOException {
+    Path tmp = Paths.get(file.getAbsolutePath() + ".tmp");
+    try (Writer w = Files.openOutputFile(tmp)) {
+      w.write("timestamp=" + System.currentTimeMillis() + "\n");
+      w.write("millisSinceLastProgress="
+          + TimeUnit.NANOSECONDS.toMillis(lastUpdate - lastProgress) + "\n");
+      for (Map.Entry<String, Long> entry : values.entrySet()) {
+        String name = entry.getKey();
+        w.write(name + "=" + entry.getValue() + "\n");
+        Double rate = rates.get(name);
+        if (rate != null) {
+          w.write(name + ".perSecond=" + String.format(Locale.ROOT, "%.1f", rate) + "\n");
+        }
+
+        Long cached = values.get(name + ".cached");
+        if (cached != null && entry.getValue() > 0) {
+          w.write(name + ".hitRate=" + String.format(Locale.ROOT, "%.3f", (double)cached / entry.getValue()) + "\n");
+        }
+      }
+    }
+
+    // replace the file at once, such that readers never see a partially written file
+    File target = file.toFile();
+    if (!tmp.toFile().renameTo(target)) {
+      // renaming does not replace an existing file on some platforms
+      if (!target.delete() || !tmp.toFile().renameTo(target)) {
+        throw new IOException("Could not rename " + tmp + " to " + file);
+      }
+    }
+  }
+}
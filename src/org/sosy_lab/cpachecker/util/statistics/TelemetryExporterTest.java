@@ -0,0 +1,111 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.statistics;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sosy_lab.common.configuration.Configuration;
+import org.sosy_lab.common.configuration.FileOption;
+import org.sosy_lab.common.configuration.InvalidConfigurationException;
+import org.sosy_lab.common.configuration.converters.FileTypeConverter;
+import org.sosy_lab.common.io.Files;
+import org.sosy_lab.common.io.Files.DeleteOnCloseFile;
+import org.sosy_lab.common.io.Paths;
+import org.sosy_lab.common.log.TestLogManager;
+import org.sosy_lab.cpachecker.util.statistics.Telemetry.Counter;
+
+public class TelemetryExporterTest {
+
+  private DeleteOnCloseFile tempFile;
+
+  @Before
+  public void setup() throws Exception {
+    tempFile = Files.createTempFile("telemetry", ".properties");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    tempFile.close();
+  }
+
+  private TelemetryExporter createExporter(boolean export) throws InvalidConfigurationException {
+    Configuration config = Configuration.builder()
+        .setOption("statistics.telemetry.export", Boolean.toString(export))
+        .setOption("statistics.telemetry.file", tempFile.toPath().getAbsolutePath())
+        .addConverter(FileOption.class, new FileTypeConverter(Configuration.defaultConfiguration()))
+        .build();
+    return new TelemetryExporter(config, TestLogManager.getInstance());
+  }
+
+  private List<String> readFile() throws Exception {
+    return tempFile.toPath().asCharSource(Charset.defaultCharset()).readLines();
+  }
+
+  @Test
+  public void testFileIsWrittenOnStop() throws Exception {
+    Counter counter = Telemetry.getCounter("test.exporter");
+    Counter cached = Telemetry.getCounter("test.exporter.cached");
+    Telemetry.getGauge("test.exporterGauge").set(7);
+
+    TelemetryExporter exporter = createExporter(true);
+    exporter.start();
+    counter.add(4);
+    cached.inc();
+    exporter.stop();
+
+    List<String> lines = readFile();
+    assertTrue(lines.contains("test.exporter=4"));
+    assertTrue(lines.contains("test.exporter.cached=1"));
+    assertTrue(lines.contains("test.exporter.hitRate=0.250"));
+    assertTrue(lines.contains("test.exporterGauge=7"));
+
+    boolean counterRate = false;
+    for (String line : lines) {
+      counterRate |= line.startsWith("test.exporter.perSecond=");
+      // gauges may shrink, so they have no rate
+      assertFalse(line.startsWith("test.exporterGauge.perSecond="));
+    }
+    assertTrue(counterRate);
+
+    // no temporary file is left behind
+    assertFalse(Paths.get(tempFile.toPath().getAbsolutePath() + ".tmp").exists());
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    Telemetry.getCounter("test.exporterDisabled").inc();
+
+    TelemetryExporter exporter = createExporter(false);
+    exporter.start();
+    exporter.stop();
+
+    assertTrue(readFile().isEmpty());
+  }
+}
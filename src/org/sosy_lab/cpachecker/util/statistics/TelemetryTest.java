@@ -0,0 +1,118 @@
+/*
+ *  CPAchecker is a tool for configurable software verification.
+ *  This file is part of CPAchecker.
+ *
+ *  Copyright (C) 2007-2014  Dirk Beyer
+ *  All rights reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ *
+ *  CPAchecker web page:
+ *    http://cpachecker.sosy-lab.org
+ */
+package org.sosy_lab.cpachecker.util.statistics;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.sosy_lab.cpachecker.util.statistics.Telemetry.Counter;
+import org.sosy_lab.cpachecker.util.statistics.Telemetry.Gauge;
+
+public class TelemetryTest {
+
+  @Test
+  public void testCountersAreShared() {
+    Counter counter = Telemetry.getCounter("test.shared");
+    assertSame(counter, Telemetry.getCounter("test.shared"));
+
+    counter.inc();
+    counter.add(2);
+    assertEquals(3, Telemetry.getCounter("test.shared").get());
+    assertEquals(Long.valueOf(3), Telemetry.getValues().get("test.shared"));
+    assertEquals(Long.valueOf(3), Telemetry.getCounterValues().get("test.shared"));
+  }
+
+  @Test
+  public void testGauges() {
+    Gauge gauge = Telemetry.getGauge("test.gauge");
+    assertSame(gauge, Telemetry.getGauge("test.gauge"));
+
+    gauge.set(5);
+    gauge.set(2);
+    assertEquals(2, gauge.get());
+    assertEquals(Long.valueOf(2), Telemetry.getValues().get("test.gauge"));
+    assertFalse(Telemetry.getCounterValues().containsKey("test.gauge"));
+  }
+
+  @Test(expected=IllegalArgumentException.class)
+  public void testCounterNameUsedForGauge() {
+    Telemetry.getGauge("test.conflict1");
+    Telemetry.getCounter("test.conflict1");
+  }
+
+  @Test(expected=IllegalArgumentException.class)
+  public void testGaugeNameUsedForCounter() {
+    Telemetry.getCounter("test.conflict2");
+    Telemetry.getGauge("test.conflict2");
+  }
+
+  @Test
+  public void testConcurrentRegistration() throws Exception {
+    final int threads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (int round = 0; round < 100; round++) {
+        final String name = "test.race" + round;
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+          final boolean counter = i % 2 == 0;
+          results.add(executor.submit(new Callable<Object>() {
+            @Override
+            public Object call() {
+              return counter ? Telemetry.getCounter(name) : Telemetry.getGauge(name);
+            }
+          }));
+        }
+
+        // the name is registered once, all other requests of the same kind get the same object
+        Object registered = null;
+        int failures = 0;
+        for (Future<Object> result : results) {
+          try {
+            Object metric = result.get();
+            if (registered == null) {
+              registered = metric;
+            }
+            assertSame(registered, metric);
+          } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+            failures++;
+          }
+        }
+        assertNotNull(registered);
+        assertEquals(threads / 2, failures);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,31 @@
+extern int __VERIFIER_nondet_int(void);
+
+void check_zero(int x) {
+  if (x != 0) {
+    ERROR: return;
+  }
+}
+
+void check_positive(int x) {
+  if (x <= 0) {
+    ERROR: return;
+  }
+}
+
+void check_small(int x) {
+  if (x > 5) {
+    ERROR: return;
+  }
+}
+
+int main(void) {
+  int a = 0;
+  int b = 1;
+  int c = __VERIFIER_nondet_int();
+
+  // the first two error locations are unreachable, the last one is reachable
+  check_zero(a);
+  check_positive(b);
+  check_small(c);
+  return 0;
+}
@@ -0,0 +1,27 @@
+extern int __VERIFIER_nondet_int(void);
+
+int main(void) {
+  int a = 1;
+  int b = 2;
+  int c = 0;
+  int unused = 5;
+  int x = __VERIFIER_nondet_int();
+
+  if (x > 0) {
+    c = a + b;
+  } else {
+    c = b + 1;
+  }
+  unused = unused + a;
+
+  if (c != 3) {
+    goto ERROR;
+  }
+  if (a + 1 != b) {
+    goto ERROR;
+  }
+  return 0;
+
+ERROR:
+  return 1;
+}